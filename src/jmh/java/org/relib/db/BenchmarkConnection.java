@@ -0,0 +1,34 @@
+package org.relib.db;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * A connection that hands out {@link BenchmarkPreparedStatement}s sharing a single result set.
+ *
+ * @author Troy Histed
+ */
+public class BenchmarkConnection extends MockConnection {
+
+	private final BenchmarkResultSet resultSet;
+
+	/**
+	 * Constructs a connection.
+	 *
+	 * @param resultSet
+	 *            the result set returned by every query
+	 */
+	public BenchmarkConnection(BenchmarkResultSet resultSet) {
+		this.resultSet = resultSet;
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql) throws SQLException {
+		return new BenchmarkPreparedStatement(this.resultSet);
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+		return this.prepareStatement(sql);
+	}
+}
@@ -0,0 +1,69 @@
+package org.relib.db;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * A prepared statement that keeps parameter values in an array and returns a rewound result set.
+ *
+ * @author Troy Histed
+ */
+public class BenchmarkPreparedStatement extends MockPreparedStatement {
+
+	private final Object[] parameterValues = new Object[64];
+	private final long[] numericValues = new long[64];
+	private final BenchmarkResultSet resultSet;
+
+	/**
+	 * Constructs a prepared statement.
+	 *
+	 * @param resultSet
+	 *            the result set returned by executeQuery (may be null)
+	 */
+	public BenchmarkPreparedStatement(BenchmarkResultSet resultSet) {
+		this.resultSet = resultSet;
+	}
+
+	/**
+	 * @param parameterIndex
+	 *            the parameter index
+	 * @return the object value that was set
+	 */
+	public Object getParameterValue(int parameterIndex) {
+		return this.parameterValues[parameterIndex];
+	}
+
+	/**
+	 * @param parameterIndex
+	 *            the parameter index
+	 * @return the int or long value that was set
+	 */
+	public long getNumericValue(int parameterIndex) {
+		return this.numericValues[parameterIndex];
+	}
+
+	@Override
+	public ResultSet executeQuery() throws SQLException {
+		return this.resultSet.reset();
+	}
+
+	@Override
+	public void setString(int parameterIndex, String x) throws SQLException {
+		this.parameterValues[parameterIndex] = x;
+	}
+
+	@Override
+	public void setInt(int parameterIndex, int x) throws SQLException {
+		this.numericValues[parameterIndex] = x;
+	}
+
+	@Override
+	public void setLong(int parameterIndex, long x) throws SQLException {
+		this.numericValues[parameterIndex] = x;
+	}
+
+	@Override
+	public void setObject(int parameterIndex, Object x) throws SQLException {
+		this.parameterValues[parameterIndex] = x;
+	}
+}
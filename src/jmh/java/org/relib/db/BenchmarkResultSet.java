@@ -0,0 +1,91 @@
+package org.relib.db;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+
+/**
+ * An array backed result set that can be rewound, so benchmarks measure the mapping code rather than the mock.
+ *
+ * @author Troy Histed
+ */
+public class BenchmarkResultSet extends MockResultSet {
+
+	private final Object[][] rows;
+	private final MockResultSetMetaData metaData;
+	private int cursor = -1;
+	private boolean wasNull = false;
+
+	/**
+	 * Constructs a result set.
+	 *
+	 * @param labels
+	 *            the column labels
+	 * @param rows
+	 *            the rows, each holding a value per column
+	 */
+	public BenchmarkResultSet(String[] labels, Object[][] rows) {
+		this.rows = rows;
+		final LinkedHashMap<String, Object> firstRow = new LinkedHashMap<String, Object>();
+		for (int i = 0; i < labels.length; i++) {
+			firstRow.put(labels[i], rows.length > 0 ? rows[0][i] : null);
+		}
+		this.metaData = new MockResultSetMetaData(firstRow);
+	}
+
+	/**
+	 * Moves the cursor back before the first row.
+	 *
+	 * @return this result set
+	 */
+	public BenchmarkResultSet reset() {
+		this.cursor = -1;
+		return this;
+	}
+
+	@Override
+	public boolean next() throws SQLException {
+		this.cursor++;
+		return this.cursor < this.rows.length;
+	}
+
+	@Override
+	public boolean isAfterLast() throws SQLException {
+		return this.cursor >= this.rows.length;
+	}
+
+	@Override
+	public boolean wasNull() throws SQLException {
+		return this.wasNull;
+	}
+
+	@Override
+	public Object getObject(int columnIndex) throws SQLException {
+		final Object value = this.rows[this.cursor][columnIndex - 1];
+		this.wasNull = value == null;
+		return value;
+	}
+
+	@Override
+	public String getString(int columnIndex) throws SQLException {
+		final Object value = this.getObject(columnIndex);
+		return value == null ? null : value.toString();
+	}
+
+	@Override
+	public int getInt(int columnIndex) throws SQLException {
+		final Object value = this.getObject(columnIndex);
+		return value == null ? 0 : ((Number) value).intValue();
+	}
+
+	@Override
+	public long getLong(int columnIndex) throws SQLException {
+		final Object value = this.getObject(columnIndex);
+		return value == null ? 0 : ((Number) value).longValue();
+	}
+
+	@Override
+	public ResultSetMetaData getMetaData() throws SQLException {
+		return this.metaData;
+	}
+}
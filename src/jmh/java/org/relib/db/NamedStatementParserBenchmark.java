@@ -0,0 +1,60 @@
+package org.relib.db;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of parsing named statements.
+ *
+ * @author Troy Histed
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NamedStatementParserBenchmark {
+
+	private static final String SHORT_STATEMENT = "select * from users where id = :id";
+
+	private static final String LONG_STATEMENT = "/* Orders placed by a customer */\n"
+			+ "select o.id, o.status, o.placed_on, o.total, c.name, c.email, a.street, a.city, a.country\n"
+			+ "from orders o\n"
+			+ "join customers c on c.id = o.customer_id\n"
+			+ "join addresses a on a.id = o.shipping_address_id\n"
+			+ "where o.customer_id = :customerId\n"
+			+ "and o.status in (:status1, :status2, :status3)\n"
+			+ "and o.placed_on between :fromDate and :toDate\n"
+			+ "and c.name <> 'it''s: not a param'\n"
+			+ "and a.country = :country\n"
+			+ "and o.total > :minimumTotal\n"
+			+ "order by o.placed_on desc";
+
+	private final NamedStatementParserStrategy parser = new NamedStatementParserStrategy();
+
+	/**
+	 * @return the parsed statement
+	 */
+	@Benchmark
+	public ParsedNamedStatement parseShort() {
+		return this.parser.prepareNamedStatement(NamedStatementParserBenchmark.SHORT_STATEMENT);
+	}
+
+	/**
+	 * @return the parsed statement
+	 */
+	@Benchmark
+	public ParsedNamedStatement parseLong() {
+		return this.parser.prepareNamedStatement(NamedStatementParserBenchmark.LONG_STATEMENT);
+	}
+}
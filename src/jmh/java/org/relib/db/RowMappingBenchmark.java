@@ -0,0 +1,137 @@
+package org.relib.db;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures mapping rows into beans for narrow and wide tables, one row at a time and through
+ * {@link Select#executeForAll()}.
+ *
+ * @author Troy Histed
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RowMappingBenchmark {
+
+	private static final int ROW_COUNT = 100;
+
+	private final BenchmarkResultSet narrowRow = RowMappingBenchmark.narrowResultSet(1);
+	private final BenchmarkResultSet wideRow = RowMappingBenchmark.wideResultSet(1);
+	private final BenchmarkConnection narrowConnection = new BenchmarkConnection(
+			RowMappingBenchmark.narrowResultSet(RowMappingBenchmark.ROW_COUNT));
+	private final BenchmarkConnection wideConnection = new BenchmarkConnection(
+			RowMappingBenchmark.wideResultSet(RowMappingBenchmark.ROW_COUNT));
+
+	private final BeanRowMapper<NarrowBean> narrowMapper = BeanRowMapper.forClass(NarrowBean.class);
+	private final BeanRowMapper<WideBean> wideMapper = BeanRowMapper.forClass(WideBean.class);
+	private final LazyRowMapper lazyRowMapper = new LazyRowMapper();
+
+	/**
+	 * @param rowCount
+	 *            the number of rows
+	 * @return a result set with three columns
+	 */
+	private static BenchmarkResultSet narrowResultSet(int rowCount) {
+		final Object[][] rows = new Object[rowCount][];
+		for (int i = 0; i < rowCount; i++) {
+			rows[i] = new Object[] { Long.valueOf(i), "name" + i, i % 2 == 0 ? "ACTIVE" : "CLOSED" };
+		}
+		return new BenchmarkResultSet(new String[] { "id", "name", "status" }, rows);
+	}
+
+	/**
+	 * @param rowCount
+	 *            the number of rows
+	 * @return a result set with thirty columns matching {@link WideBean}
+	 */
+	private static BenchmarkResultSet wideResultSet(int rowCount) {
+		final String[] labels = new String[30];
+		for (int i = 0; i < labels.length; i++) {
+			labels[i] = "col" + (i + 1);
+		}
+		final Object[][] rows = new Object[rowCount][];
+		for (int r = 0; r < rowCount; r++) {
+			rows[r] = new Object[labels.length];
+			for (int i = 0; i < labels.length; i++) {
+				switch ((i + 1) % 3) {
+				case 0:
+					rows[r][i] = "value" + i;
+					break;
+				case 1:
+					rows[r][i] = Integer.valueOf(r + i);
+					break;
+				default:
+					rows[r][i] = Long.valueOf(r * i);
+				}
+			}
+		}
+		return new BenchmarkResultSet(labels, rows);
+	}
+
+	/**
+	 * @return the mapped bean
+	 * @throws SQLException
+	 *             exception
+	 */
+	@Benchmark
+	public NarrowBean mapNarrowBean() throws SQLException {
+		this.narrowRow.reset().next();
+		return this.narrowMapper.mapRow(this.narrowRow);
+	}
+
+	/**
+	 * @return the mapped bean
+	 * @throws SQLException
+	 *             exception
+	 */
+	@Benchmark
+	public WideBean mapWideBean() throws SQLException {
+		this.wideRow.reset().next();
+		return this.wideMapper.mapRow(this.wideRow);
+	}
+
+	/**
+	 * @return three values read from a lazily mapped wide row
+	 * @throws SQLException
+	 *             exception
+	 */
+	@Benchmark
+	public Object mapWideLazyRowReadThree() throws SQLException {
+		this.wideRow.reset().next();
+		final LazyRow row = this.lazyRowMapper.mapRow(this.wideRow);
+		return row.getString("col3") + row.getInteger("col1") + row.getLong("col2");
+	}
+
+	/**
+	 * @return the mapped beans
+	 */
+	@Benchmark
+	public List<NarrowBean> selectNarrowBeans() {
+		return new Select<NarrowBean>("select id, name, status from narrow where status = :status",
+				this.narrowMapper, this.narrowConnection).set("status", "ACTIVE").executeForAll();
+	}
+
+	/**
+	 * @return the mapped beans
+	 */
+	@Benchmark
+	public List<WideBean> selectWideBeans() {
+		return new Select<WideBean>("select * from wide where col1 = :col1", this.wideMapper,
+				this.wideConnection).set("col1", 1).executeForAll();
+	}
+}
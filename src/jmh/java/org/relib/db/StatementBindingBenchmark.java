@@ -0,0 +1,94 @@
+package org.relib.db;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of binding named parameters into a prepared statement.
+ *
+ * @author Troy Histed
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatementBindingBenchmark {
+
+	private final BenchmarkStatement statement = new BenchmarkStatement(Arrays.asList("id", "name", "status",
+			"city", "country", "minimumTotal", "maximumTotal", "fromDate", "toDate", "customerId"));
+
+	private final NarrowBean bean = new NarrowBean();
+
+	/**
+	 * Sets up the bean used for setBean.
+	 */
+	public StatementBindingBenchmark() {
+		this.bean.setId(Long.valueOf(42));
+		this.bean.setName("name");
+		this.bean.setStatus("ACTIVE");
+	}
+
+	/**
+	 * @return the statement
+	 */
+	@Benchmark
+	public Statement bindTenParameters() {
+		return this.statement.set("id", 1L).set("name", "name").set("status", "ACTIVE").set("city", "city")
+				.set("country", "NZ").set("minimumTotal", 10).set("maximumTotal", 100).set("fromDate", "2016")
+				.set("toDate", "2017").set("customerId", 7L);
+	}
+
+	/**
+	 * @return the statement
+	 */
+	@Benchmark
+	public Statement bindBean() {
+		return this.statement.setBean(this.bean);
+	}
+
+	/**
+	 * A statement with a fixed parameter list and a benchmark prepared statement.
+	 */
+	static class BenchmarkStatement extends Statement {
+
+		private final List<String> parameters;
+		private final BenchmarkPreparedStatement preparedStatement = new BenchmarkPreparedStatement(null);
+		private final JdbcConnection connection = new JdbcConnection(new MockConnection());
+
+		/**
+		 * @param parameters
+		 *            the named parameters
+		 */
+		BenchmarkStatement(List<String> parameters) {
+			this.parameters = parameters;
+		}
+
+		@Override
+		protected List<String> getParameters() {
+			return this.parameters;
+		}
+
+		@Override
+		protected BenchmarkPreparedStatement getPreparedStatement() {
+			return this.preparedStatement;
+		}
+
+		@Override
+		protected JdbcConnection getConnection() {
+			return this.connection;
+		}
+	}
+}
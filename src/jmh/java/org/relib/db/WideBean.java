@@ -0,0 +1,490 @@
+package org.relib.db;
+
+/**
+ * A java bean with thirty properties, standing in for a wide table.
+
+ * @author Troy Histed
+ */
+public class WideBean {
+
+	private Integer col1;
+	private Long col2;
+	private String col3;
+	private Integer col4;
+	private Long col5;
+	private String col6;
+	private Integer col7;
+	private Long col8;
+	private String col9;
+	private Integer col10;
+	private Long col11;
+	private String col12;
+	private Integer col13;
+	private Long col14;
+	private String col15;
+	private Integer col16;
+	private Long col17;
+	private String col18;
+	private Integer col19;
+	private Long col20;
+	private String col21;
+	private Integer col22;
+	private Long col23;
+	private String col24;
+	private Integer col25;
+	private Long col26;
+	private String col27;
+	private Integer col28;
+	private Long col29;
+	private String col30;
+
+	/**
+	 * @return the col1
+	 */
+	public Integer getCol1() {
+		return this.col1;
+	}
+
+	/**
+	 * @param col1
+	 *            the col1 to set
+	 */
+	public void setCol1(Integer col1) {
+		this.col1 = col1;
+	}
+
+	/**
+	 * @return the col2
+	 */
+	public Long getCol2() {
+		return this.col2;
+	}
+
+	/**
+	 * @param col2
+	 *            the col2 to set
+	 */
+	public void setCol2(Long col2) {
+		this.col2 = col2;
+	}
+
+	/**
+	 * @return the col3
+	 */
+	public String getCol3() {
+		return this.col3;
+	}
+
+	/**
+	 * @param col3
+	 *            the col3 to set
+	 */
+	public void setCol3(String col3) {
+		this.col3 = col3;
+	}
+
+	/**
+	 * @return the col4
+	 */
+	public Integer getCol4() {
+		return this.col4;
+	}
+
+	/**
+	 * @param col4
+	 *            the col4 to set
+	 */
+	public void setCol4(Integer col4) {
+		this.col4 = col4;
+	}
+
+	/**
+	 * @return the col5
+	 */
+	public Long getCol5() {
+		return this.col5;
+	}
+
+	/**
+	 * @param col5
+	 *            the col5 to set
+	 */
+	public void setCol5(Long col5) {
+		this.col5 = col5;
+	}
+
+	/**
+	 * @return the col6
+	 */
+	public String getCol6() {
+		return this.col6;
+	}
+
+	/**
+	 * @param col6
+	 *            the col6 to set
+	 */
+	public void setCol6(String col6) {
+		this.col6 = col6;
+	}
+
+	/**
+	 * @return the col7
+	 */
+	public Integer getCol7() {
+		return this.col7;
+	}
+
+	/**
+	 * @param col7
+	 *            the col7 to set
+	 */
+	public void setCol7(Integer col7) {
+		this.col7 = col7;
+	}
+
+	/**
+	 * @return the col8
+	 */
+	public Long getCol8() {
+		return this.col8;
+	}
+
+	/**
+	 * @param col8
+	 *            the col8 to set
+	 */
+	public void setCol8(Long col8) {
+		this.col8 = col8;
+	}
+
+	/**
+	 * @return the col9
+	 */
+	public String getCol9() {
+		return this.col9;
+	}
+
+	/**
+	 * @param col9
+	 *            the col9 to set
+	 */
+	public void setCol9(String col9) {
+		this.col9 = col9;
+	}
+
+	/**
+	 * @return the col10
+	 */
+	public Integer getCol10() {
+		return this.col10;
+	}
+
+	/**
+	 * @param col10
+	 *            the col10 to set
+	 */
+	public void setCol10(Integer col10) {
+		this.col10 = col10;
+	}
+
+	/**
+	 * @return the col11
+	 */
+	public Long getCol11() {
+		return this.col11;
+	}
+
+	/**
+	 * @param col11
+	 *            the col11 to set
+	 */
+	public void setCol11(Long col11) {
+		this.col11 = col11;
+	}
+
+	/**
+	 * @return the col12
+	 */
+	public String getCol12() {
+		return this.col12;
+	}
+
+	/**
+	 * @param col12
+	 *            the col12 to set
+	 */
+	public void setCol12(String col12) {
+		this.col12 = col12;
+	}
+
+	/**
+	 * @return the col13
+	 */
+	public Integer getCol13() {
+		return this.col13;
+	}
+
+	/**
+	 * @param col13
+	 *            the col13 to set
+	 */
+	public void setCol13(Integer col13) {
+		this.col13 = col13;
+	}
+
+	/**
+	 * @return the col14
+	 */
+	public Long getCol14() {
+		return this.col14;
+	}
+
+	/**
+	 * @param col14
+	 *            the col14 to set
+	 */
+	public void setCol14(Long col14) {
+		this.col14 = col14;
+	}
+
+	/**
+	 * @return the col15
+	 */
+	public String getCol15() {
+		return this.col15;
+	}
+
+	/**
+	 * @param col15
+	 *            the col15 to set
+	 */
+	public void setCol15(String col15) {
+		this.col15 = col15;
+	}
+
+	/**
+	 * @return the col16
+	 */
+	public Integer getCol16() {
+		return this.col16;
+	}
+
+	/**
+	 * @param col16
+	 *            the col16 to set
+	 */
+	public void setCol16(Integer col16) {
+		this.col16 = col16;
+	}
+
+	/**
+	 * @return the col17
+	 */
+	public Long getCol17() {
+		return this.col17;
+	}
+
+	/**
+	 * @param col17
+	 *            the col17 to set
+	 */
+	public void setCol17(Long col17) {
+		this.col17 = col17;
+	}
+
+	/**
+	 * @return the col18
+	 */
+	public String getCol18() {
+		return this.col18;
+	}
+
+	/**
+	 * @param col18
+	 *            the col18 to set
+	 */
+	public void setCol18(String col18) {
+		this.col18 = col18;
+	}
+
+	/**
+	 * @return the col19
+	 */
+	public Integer getCol19() {
+		return this.col19;
+	}
+
+	/**
+	 * @param col19
+	 *            the col19 to set
+	 */
+	public void setCol19(Integer col19) {
+		this.col19 = col19;
+	}
+
+	/**
+	 * @return the col20
+	 */
+	public Long getCol20() {
+		return this.col20;
+	}
+
+	/**
+	 * @param col20
+	 *            the col20 to set
+	 */
+	public void setCol20(Long col20) {
+		this.col20 = col20;
+	}
+
+	/**
+	 * @return the col21
+	 */
+	public String getCol21() {
+		return this.col21;
+	}
+
+	/**
+	 * @param col21
+	 *            the col21 to set
+	 */
+	public void setCol21(String col21) {
+		this.col21 = col21;
+	}
+
+	/**
+	 * @return the col22
+	 */
+	public Integer getCol22() {
+		return this.col22;
+	}
+
+	/**
+	 * @param col22
+	 *            the col22 to set
+	 */
+	public void setCol22(Integer col22) {
+		this.col22 = col22;
+	}
+
+	/**
+	 * @return the col23
+	 */
+	public Long getCol23() {
+		return this.col23;
+	}
+
+	/**
+	 * @param col23
+	 *            the col23 to set
+	 */
+	public void setCol23(Long col23) {
+		this.col23 = col23;
+	}
+
+	/**
+	 * @return the col24
+	 */
+	public String getCol24() {
+		return this.col24;
+	}
+
+	/**
+	 * @param col24
+	 *            the col24 to set
+	 */
+	public void setCol24(String col24) {
+		this.col24 = col24;
+	}
+
+	/**
+	 * @return the col25
+	 */
+	public Integer getCol25() {
+		return this.col25;
+	}
+
+	/**
+	 * @param col25
+	 *            the col25 to set
+	 */
+	public void setCol25(Integer col25) {
+		this.col25 = col25;
+	}
+
+	/**
+	 * @return the col26
+	 */
+	public Long getCol26() {
+		return this.col26;
+	}
+
+	/**
+	 * @param col26
+	 *            the col26 to set
+	 */
+	public void setCol26(Long col26) {
+		this.col26 = col26;
+	}
+
+	/**
+	 * @return the col27
+	 */
+	public String getCol27() {
+		return this.col27;
+	}
+
+	/**
+	 * @param col27
+	 *            the col27 to set
+	 */
+	public void setCol27(String col27) {
+		this.col27 = col27;
+	}
+
+	/**
+	 * @return the col28
+	 */
+	public Integer getCol28() {
+		return this.col28;
+	}
+
+	/**
+	 * @param col28
+	 *            the col28 to set
+	 */
+	public void setCol28(Integer col28) {
+		this.col28 = col28;
+	}
+
+	/**
+	 * @return the col29
+	 */
+	public Long getCol29() {
+		return this.col29;
+	}
+
+	/**
+	 * @param col29
+	 *            the col29 to set
+	 */
+	public void setCol29(Long col29) {
+		this.col29 = col29;
+	}
+
+	/**
+	 * @return the col30
+	 */
+	public String getCol30() {
+		return this.col30;
+	}
+
+	/**
+	 * @param col30
+	 *            the col30 to set
+	 */
+	public void setCol30(String col30) {
+		this.col30 = col30;
+	}
+}
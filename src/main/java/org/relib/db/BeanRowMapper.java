@@ -17,7 +17,10 @@ package org.relib.db;
 
 import java.lang.reflect.InvocationTargetException;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.beanutils.BeanUtils;
 
@@ -33,6 +36,10 @@ public abstract class BeanRowMapper<T> extends RowMapper<T> {
 
 	protected Class<T> beanClass;
 
+	private final ConcurrentMap<String, StringDictionary> stringDictionaries =
+			new ConcurrentHashMap<String, StringDictionary>();
+	private boolean deduplicateAllStrings = false;
+
 	private BeanRowMapper(Class<T> beanClass) {
 		this.beanClass = beanClass;
 	}
@@ -71,6 +78,43 @@ public abstract class BeanRowMapper<T> extends RowMapper<T> {
 		};
 	}
 
+	/**
+	 * Shares a single instance of each repeated string value read from the specified columns.
+	 *
+	 * <p>
+	 * Each column gets its own bounded {@link StringDictionary} for the life of this row mapper. When no column
+	 * labels are given every string column is checked, and columns whose values rarely repeat stop being checked
+	 * once their dictionary fills up.
+	 *
+	 * @param columnLabels
+	 *            the labels of the columns to deduplicate, or none to detect repeated values in every column
+	 * @return this row mapper (for method chaining)
+	 */
+	public BeanRowMapper<T> deduplicateStrings(String... columnLabels) {
+		if (columnLabels.length == 0) {
+			this.deduplicateAllStrings = true;
+		}
+		for (final String columnLabel : columnLabels) {
+			this.stringDictionaries.put(columnLabel, new StringDictionary());
+		}
+		return this;
+	}
+
+	/**
+	 * Shares a single instance of each repeated string value read from the specified column using the given
+	 * dictionary. The dictionary may be shared with other queries.
+	 *
+	 * @param columnLabel
+	 *            the label of the column to deduplicate
+	 * @param dictionary
+	 *            the dictionary to use for the column
+	 * @return this row mapper (for method chaining)
+	 */
+	public BeanRowMapper<T> deduplicateStrings(String columnLabel, StringDictionary dictionary) {
+		this.stringDictionaries.put(columnLabel, dictionary);
+		return this;
+	}
+
 	/**
 	 * Generate an instance of the bean.
 	 *
@@ -92,8 +136,10 @@ public abstract class BeanRowMapper<T> extends RowMapper<T> {
 		int i = 1;
 		try {
 			final T bean = this.newBeanInstance();
-			for (i = 1; i <= resultSet.getMetaData().getColumnCount(); i++) {
-				BeanUtils.setProperty(bean, resultSet.getMetaData().getColumnLabel(i), resultSet.getObject(i));
+			final ResultSetMetaData metaData = resultSet.getMetaData();
+			for (i = 1; i <= metaData.getColumnCount(); i++) {
+				final String columnLabel = metaData.getColumnLabel(i);
+				BeanUtils.setProperty(bean, columnLabel, this.readValue(resultSet, i, columnLabel));
 			}
 			return bean;
 		} catch (final IllegalAccessException e) {
@@ -104,4 +150,34 @@ public abstract class BeanRowMapper<T> extends RowMapper<T> {
 					+ resultSet.getMetaData().getColumnLabel(i) + " with value " + resultSet.getObject(i), e);
 		}
 	}
+
+	/**
+	 * Reads the value of a column, passing strings through the column's dictionary when one applies.
+	 *
+	 * @param resultSet
+	 *            the result set positioned on the current row
+	 * @param columnIndex
+	 *            the column index
+	 * @param columnLabel
+	 *            the column label
+	 * @return the column value
+	 * @throws SQLException
+	 *             the sql exception
+	 */
+	private Object readValue(ResultSet resultSet, int columnIndex, String columnLabel) throws SQLException {
+		final Object value = resultSet.getObject(columnIndex);
+		if (!(value instanceof String) || (!this.deduplicateAllStrings && this.stringDictionaries.isEmpty())) {
+			return value;
+		}
+
+		StringDictionary dictionary = this.stringDictionaries.get(columnLabel);
+		if (dictionary == null && this.deduplicateAllStrings) {
+			dictionary = StringDictionary.adaptive(StringDictionary.DEFAULT_MAX_SIZE);
+			final StringDictionary existing = this.stringDictionaries.putIfAbsent(columnLabel, dictionary);
+			if (existing != null) {
+				dictionary = existing;
+			}
+		}
+		return dictionary != null ? dictionary.deduplicate((String) value) : value;
+	}
 }
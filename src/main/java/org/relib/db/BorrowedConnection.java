@@ -0,0 +1,121 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.db;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A connection that has been borrowed from a {@link JdbcConnector} and not yet returned.
+ *
+ * @author Troy Histed
+ * @see ConnectionTracker
+ */
+public class BorrowedConnection {
+
+	private final String connectionName;
+	private final String threadName;
+	private final long acquiredMillis;
+	private final long acquiredNanos;
+	private final Throwable acquisitionSite;
+	private volatile boolean flagged;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param connectionName
+	 *            the name of the connection, may be null for the default connection
+	 * @param acquisitionSite
+	 *            the stack of the thread that borrowed the connection, null when the borrow was not sampled
+	 */
+	BorrowedConnection(String connectionName, Throwable acquisitionSite) {
+		this.connectionName = connectionName;
+		this.threadName = Thread.currentThread().getName();
+		this.acquiredMillis = System.currentTimeMillis();
+		this.acquiredNanos = System.nanoTime();
+		this.acquisitionSite = acquisitionSite;
+	}
+
+	/**
+	 * @return the name of the connection, null for the default connection
+	 */
+	public String getConnectionName() {
+		return this.connectionName;
+	}
+
+	/**
+	 * @return the name of the thread that borrowed the connection
+	 */
+	public String getThreadName() {
+		return this.threadName;
+	}
+
+	/**
+	 * @return the time the connection was borrowed, in milliseconds since the epoch
+	 */
+	public long getAcquiredMillis() {
+		return this.acquiredMillis;
+	}
+
+	/**
+	 * @return how long the connection has been held in milliseconds
+	 */
+	public long getHeldMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.acquiredNanos);
+	}
+
+	/**
+	 * @return the stack where the connection was borrowed, or null when the borrow was not sampled
+	 */
+	public StackTraceElement[] getAcquisitionSite() {
+		return this.acquisitionSite == null ? null : this.acquisitionSite.getStackTrace();
+	}
+
+	/**
+	 * @return whether the connection has been reported as held longer than the leak threshold
+	 */
+	public boolean isFlagged() {
+		return this.flagged;
+	}
+
+	/**
+	 * @return the nano time the connection was borrowed
+	 */
+	long getAcquiredNanos() {
+		return this.acquiredNanos;
+	}
+
+	/**
+	 * Marks the connection as held longer than the leak threshold.
+	 *
+	 * @return true if the connection was not already flagged
+	 */
+	synchronized boolean flag() {
+		if (this.flagged) {
+			return false;
+		}
+		this.flagged = true;
+		return true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return "BorrowedConnection [connectionName=" + this.connectionName + ", threadName=" + this.threadName
+				+ ", heldMillis=" + this.getHeldMillis() + ", flagged=" + this.flagged + "]";
+	}
+}
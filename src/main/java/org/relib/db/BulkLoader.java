@@ -0,0 +1,563 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads a large number of rows with several writer threads, each with its own connection.
+ *
+ * <p>
+ * Producers {@link #add(Object)} beans, or maps of parameter names to values, to a bounded queue. Each writer
+ * takes up to a chunk of rows from the queue, binds them to an {@link Update} on its connection with
+ * {@link Update#setBean(Object)}, executes the batch and commits. The statement is parsed once, and each writer
+ * prepares it once and reuses it for every chunk. A chunk that fails is rolled back and recorded with its rows
+ * and the cause, and its statement is closed; the writer prepares the statement again for the next chunk. When
+ * the queue is full, {@link #add(Object)} blocks until a writer catches up.
+ *
+ * <pre>
+ * final BulkLoader&lt;Order&gt; loader = new BulkLoader&lt;Order&gt;(INSERT_SQL, null, 4);
+ * for (final Order order : orders) {
+ * 	loader.add(order);
+ * }
+ * final BulkLoader.Report report = loader.finish();
+ * </pre>
+ *
+ * @author Troy Histed
+ *
+ * @param <T>
+ *            the type of row being loaded
+ */
+public class BulkLoader<T> {
+
+	/**
+	 * The number of rows per chunk when none is given.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+	private static final Object END = new Object();
+
+	private final String statement;
+	private final ParsedNamedStatement parsedStatement;
+	private final String connectionName;
+	private final int chunkSize;
+	private final BlockingQueue<Object> queue;
+	private final List<Thread> writers = new ArrayList<Thread>();
+	private final AtomicInteger liveWriters = new AtomicInteger();
+	private final AtomicLong rowsAdded = new AtomicLong();
+	private final AtomicLong rowsLoaded = new AtomicLong();
+	private final AtomicLong chunksCommitted = new AtomicLong();
+	private final List<FailedChunk> failedChunks = Collections.synchronizedList(new ArrayList<FailedChunk>());
+	private final int writerCount;
+	private volatile boolean running = false;
+	private volatile boolean finished = false;
+	private long started;
+	private long ended;
+
+	/**
+	 * Constructs a loader with chunks of {@link #DEFAULT_CHUNK_SIZE} rows and a queue that holds two chunks per
+	 * writer.
+	 *
+	 * @param statement
+	 *            the insert or update statement
+	 * @param connectionName
+	 *            the name of the connection to use, null for the default connection
+	 * @param writerCount
+	 *            the number of writer threads and connections
+	 */
+	public BulkLoader(String statement, String connectionName, int writerCount) {
+		this(statement, connectionName, writerCount, BulkLoader.DEFAULT_CHUNK_SIZE,
+				writerCount * BulkLoader.DEFAULT_CHUNK_SIZE * 2);
+	}
+
+	/**
+	 * Constructs a loader. The writers are started when the first row is added.
+	 *
+	 * @param statement
+	 *            the insert or update statement
+	 * @param connectionName
+	 *            the name of the connection to use, null for the default connection
+	 * @param writerCount
+	 *            the number of writer threads and connections
+	 * @param chunkSize
+	 *            the number of rows executed in one batch and committed together
+	 * @param queueCapacity
+	 *            the number of rows that can wait for a writer before producers block
+	 */
+	public BulkLoader(String statement, String connectionName, int writerCount, int chunkSize, int queueCapacity) {
+		this(statement, connectionName, writerCount, chunkSize, queueCapacity, Dialect.GENERIC);
+	}
+
+	/**
+	 * Constructs a loader for a database of a specific dialect. The writers are started when the first row is
+	 * added.
+	 *
+	 * @param statement
+	 *            the insert or update statement
+	 * @param connectionName
+	 *            the name of the connection to use, null for the default connection
+	 * @param writerCount
+	 *            the number of writer threads and connections
+	 * @param chunkSize
+	 *            the number of rows executed in one batch and committed together
+	 * @param queueCapacity
+	 *            the number of rows that can wait for a writer before producers block
+	 * @param dialect
+	 *            the dialect used to parse the statement, or null for {@link Dialect#GENERIC}
+	 */
+	public BulkLoader(String statement, String connectionName, int writerCount, int chunkSize, int queueCapacity,
+			Dialect dialect) {
+		if (writerCount < 1 || chunkSize < 1 || queueCapacity < 1) {
+			throw new IllegalArgumentException("Writer count, chunk size and queue capacity must be positive");
+		}
+		this.statement = statement;
+		this.parsedStatement = Update.parse(statement, dialect);
+		this.connectionName = connectionName;
+		this.chunkSize = chunkSize;
+		this.queue = new ArrayBlockingQueue<Object>(queueCapacity);
+		this.writerCount = writerCount;
+	}
+
+	/**
+	 * Starts the writers if they have not been started.
+	 */
+	private synchronized void start() {
+		if (this.finished) {
+			throw new IllegalStateException("The loader has already been finished");
+		}
+		if (this.running) {
+			return;
+		}
+		this.started = System.nanoTime();
+		this.liveWriters.set(this.writerCount);
+		for (int i = 0; i < this.writerCount; i++) {
+			final Thread writer = new Thread(new Writer(), "BulkLoader-writer-" + i);
+			writer.setDaemon(true);
+			this.writers.add(writer);
+			writer.start();
+		}
+		this.running = true;
+	}
+
+	/**
+	 * Gets a connection for a writer.
+	 *
+	 * @param connectionName
+	 *            the connection name to use
+	 * @return a connection
+	 * @throws SQLException
+	 *             error connecting
+	 */
+	protected JdbcConnection connect(String connectionName) throws SQLException {
+		return JdbcConnection.connect(connectionName);
+	}
+
+	/**
+	 * Adds a row to be loaded, waiting for room in the queue if necessary.
+	 *
+	 * @param row
+	 *            a bean or a map of parameter names to values
+	 */
+	public void add(T row) {
+		if (!this.running || this.finished) {
+			this.start();
+		}
+		try {
+			while (!this.queue.offer(row, 100, TimeUnit.MILLISECONDS)) {
+				if (this.liveWriters.get() == 0) {
+					throw new DaoException("Every writer has stopped, see the failed chunks of " + this);
+				}
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DaoException("Interrupted while adding a row to " + this, e);
+		}
+		this.rowsAdded.incrementAndGet();
+	}
+
+	/**
+	 * Waits for every queued row to be written and stops the writers.
+	 *
+	 * @return the report of the load
+	 */
+	public Report finish() {
+		this.start();
+		synchronized (this) {
+			this.finished = true;
+		}
+		try {
+			for (int i = 0; i < this.writers.size(); i++) {
+				while (!this.queue.offer(BulkLoader.END, 100, TimeUnit.MILLISECONDS)) {
+					if (this.liveWriters.get() == 0) {
+						break;
+					}
+				}
+			}
+			for (final Thread writer : this.writers) {
+				writer.join();
+			}
+			this.failRemainingRows();
+			synchronized (this) {
+				this.ended = System.nanoTime();
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DaoException("Interrupted while finishing " + this, e);
+		}
+		return this.getReport();
+	}
+
+	/**
+	 * Records the rows left on the queue after every writer has stopped as a failed chunk.
+	 */
+	private void failRemainingRows() {
+		final List<Object> remaining = new ArrayList<Object>();
+		this.queue.drainTo(remaining);
+		remaining.removeAll(Collections.singleton(BulkLoader.END));
+		if (!remaining.isEmpty()) {
+			this.failedChunks.add(new FailedChunk(remaining,
+					new DaoException("Every writer stopped before these rows were written")));
+		}
+	}
+
+	/**
+	 * Reports the progress of the load. The report can be taken while rows are still being loaded.
+	 *
+	 * @return the report
+	 */
+	public Report getReport() {
+		final List<FailedChunk> failed;
+		synchronized (this.failedChunks) {
+			failed = new ArrayList<FailedChunk>(this.failedChunks);
+		}
+		final long elapsed;
+		synchronized (this) {
+			elapsed = !this.running ? 0 : (this.ended == 0 ? System.nanoTime() : this.ended) - this.started;
+		}
+		return new Report(this.rowsAdded.get(), this.rowsLoaded.get(), this.chunksCommitted.get(), failed,
+				elapsed);
+	}
+
+	/**
+	 * Binds a row to the update.
+	 *
+	 * @param update
+	 *            the update
+	 * @param row
+	 *            a bean or a map of parameter names to values
+	 */
+	private void bind(Update update, Object row) {
+		if (row instanceof Map) {
+			for (final Entry<?, ?> entry : ((Map<?, ?>) row).entrySet()) {
+				update.setObject(String.valueOf(entry.getKey()), entry.getValue());
+			}
+		} else {
+			update.setBean(row);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return "BulkLoader [statement=" + this.statement + ", writers=" + this.writers.size() + ", chunkSize="
+				+ this.chunkSize + "]";
+	}
+
+	/**
+	 * Takes chunks from the queue until it finds the end marker.
+	 */
+	private class Writer implements Runnable {
+
+		/** The statement prepared on this writer's connection, or null until the next chunk prepares it */
+		private Update update;
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public void run() {
+			final List<Object> chunk = new ArrayList<Object>(BulkLoader.this.chunkSize);
+			JdbcConnection jdbcConnection = null;
+			try {
+				jdbcConnection = BulkLoader.this.connect(BulkLoader.this.connectionName);
+				jdbcConnection.getSqlConnection().setAutoCommit(false);
+				boolean end = false;
+				while (!end) {
+					chunk.clear();
+					chunk.add(BulkLoader.this.queue.take());
+					BulkLoader.this.queue.drainTo(chunk, BulkLoader.this.chunkSize - 1);
+					end = this.removeEnds(chunk);
+					if (!chunk.isEmpty()) {
+						this.writeChunk(jdbcConnection, new ArrayList<Object>(chunk));
+					}
+				}
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (final SQLException e) {
+				// The writer could not connect or roll back; the rows of a failed chunk are already recorded
+				BulkLoader.this.failedChunks.add(new FailedChunk(new ArrayList<Object>(), e));
+			} catch (final RuntimeException e) {
+				BulkLoader.this.failedChunks.add(new FailedChunk(new ArrayList<Object>(), e));
+			} finally {
+				BulkLoader.this.liveWriters.decrementAndGet();
+				try {
+					this.closeStatement();
+				} finally {
+					if (jdbcConnection != null) {
+						jdbcConnection.cleanUp();
+					}
+				}
+			}
+		}
+
+		/**
+		 * Writes a chunk of rows and commits them.
+		 *
+		 * @param jdbcConnection
+		 *            the writer's connection
+		 * @param chunk
+		 *            the rows to write
+		 * @throws SQLException
+		 *             error rolling back a failed chunk
+		 */
+		private void writeChunk(JdbcConnection jdbcConnection, List<Object> chunk) throws SQLException {
+			final Connection connection = jdbcConnection.getSqlConnection();
+			try {
+				if (this.update == null) {
+					this.update = new Update(BulkLoader.this.statement, BulkLoader.this.parsedStatement,
+							new JdbcConnection(jdbcConnection));
+				}
+				for (final Object row : chunk) {
+					BulkLoader.this.bind(this.update, row);
+					this.update.addBatch();
+				}
+				this.update.executeBatchAndKeepOpen();
+				connection.commit();
+				BulkLoader.this.rowsLoaded.addAndGet(chunk.size());
+				BulkLoader.this.chunksCommitted.incrementAndGet();
+			} catch (final RuntimeException e) {
+				this.fail(connection, chunk, e);
+			} catch (final SQLException e) {
+				this.fail(connection, chunk, e);
+			}
+		}
+
+		/**
+		 * Records a failed chunk, rolls it back and closes the statement, which may hold part of the batch.
+		 *
+		 * @param connection
+		 *            the writer's connection
+		 * @param chunk
+		 *            the rows of the chunk
+		 * @param cause
+		 *            the failure
+		 * @throws SQLException
+		 *             error rolling back
+		 */
+		private void fail(Connection connection, List<Object> chunk, Exception cause) throws SQLException {
+			BulkLoader.this.failedChunks.add(new FailedChunk(chunk, cause));
+			try {
+				connection.rollback();
+			} finally {
+				this.closeStatement();
+			}
+		}
+
+		/**
+		 * Closes the writer's statement, if it has one.
+		 */
+		private void closeStatement() {
+			if (this.update != null) {
+				final Update closing = this.update;
+				this.update = null;
+				closing.getConnection().cleanUp();
+			}
+		}
+
+		/**
+		 * Removes the end markers from a drained chunk and puts back all but one for the other writers. Rows
+		 * drained after a marker stay in the chunk and are written by this writer.
+		 *
+		 * @param chunk
+		 *            the drained chunk
+		 * @return true if the chunk held an end marker for this writer
+		 * @throws InterruptedException
+		 *             interrupted while putting back a marker
+		 */
+		private boolean removeEnds(List<Object> chunk) throws InterruptedException {
+			int ends = 0;
+			for (final Iterator<Object> iterator = chunk.iterator(); iterator.hasNext();) {
+				if (iterator.next() == BulkLoader.END) {
+					iterator.remove();
+					ends++;
+				}
+			}
+			for (int i = 1; i < ends; i++) {
+				// Another writer may be blocked taking from a full queue, and no one needs markers once it stops
+				while (!BulkLoader.this.queue.offer(BulkLoader.END, 100, TimeUnit.MILLISECONDS)) {
+					if (BulkLoader.this.liveWriters.get() <= 1) {
+						return true;
+					}
+				}
+			}
+			return ends > 0;
+		}
+	}
+
+	/**
+	 * A chunk of rows that could not be loaded.
+	 */
+	public static class FailedChunk {
+
+		private final List<Object> rows;
+		private final Exception cause;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param rows
+		 *            the rows of the chunk
+		 * @param cause
+		 *            why the chunk failed
+		 */
+		FailedChunk(List<Object> rows, Exception cause) {
+			this.rows = Collections.unmodifiableList(rows);
+			this.cause = cause;
+		}
+
+		/**
+		 * @return the rows of the chunk, none of which were committed
+		 */
+		public List<Object> getRows() {
+			return this.rows;
+		}
+
+		/**
+		 * @return why the chunk failed
+		 */
+		public Exception getCause() {
+			return this.cause;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public String toString() {
+			return "FailedChunk [rows=" + this.rows.size() + ", cause=" + this.cause + "]";
+		}
+	}
+
+	/**
+	 * The progress of a load.
+	 */
+	public static class Report {
+
+		private final long rowsAdded;
+		private final long rowsLoaded;
+		private final long chunksCommitted;
+		private final List<FailedChunk> failedChunks;
+		private final long elapsedNanos;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param rowsAdded
+		 *            the number of rows added by producers
+		 * @param rowsLoaded
+		 *            the number of rows committed
+		 * @param chunksCommitted
+		 *            the number of chunks committed
+		 * @param failedChunks
+		 *            the chunks that failed
+		 * @param elapsedNanos
+		 *            the time since the first row was added
+		 */
+		Report(long rowsAdded, long rowsLoaded, long chunksCommitted, List<FailedChunk> failedChunks,
+				long elapsedNanos) {
+			this.rowsAdded = rowsAdded;
+			this.rowsLoaded = rowsLoaded;
+			this.chunksCommitted = chunksCommitted;
+			this.failedChunks = Collections.unmodifiableList(failedChunks);
+			this.elapsedNanos = elapsedNanos;
+		}
+
+		/**
+		 * @return the number of rows added by producers
+		 */
+		public long getRowsAdded() {
+			return this.rowsAdded;
+		}
+
+		/**
+		 * @return the number of rows committed
+		 */
+		public long getRowsLoaded() {
+			return this.rowsLoaded;
+		}
+
+		/**
+		 * @return the number of chunks committed
+		 */
+		public long getChunksCommitted() {
+			return this.chunksCommitted;
+		}
+
+		/**
+		 * @return the chunks that failed
+		 */
+		public List<FailedChunk> getFailedChunks() {
+			return this.failedChunks;
+		}
+
+		/**
+		 * @return the time since the first row was added in milliseconds
+		 */
+		public long getElapsedMillis() {
+			return TimeUnit.NANOSECONDS.toMillis(this.elapsedNanos);
+		}
+
+		/**
+		 * @return the number of rows committed per second
+		 */
+		public double getRowsPerSecond() {
+			return this.elapsedNanos == 0 ? 0 : this.rowsLoaded * 1e9 / this.elapsedNanos;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public String toString() {
+			return "Report [rowsAdded=" + this.rowsAdded + ", rowsLoaded=" + this.rowsLoaded + ", chunksCommitted="
+					+ this.chunksCommitted + ", failedChunks=" + this.failedChunks.size() + ", rowsPerSecond="
+					+ Math.round(this.getRowsPerSecond()) + "]";
+		}
+	}
+}
@@ -0,0 +1,235 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.db;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the connections borrowed through {@link JdbcConnection#connect(String)} to diagnose leaks and pool
+ * starvation.
+ *
+ * <p>
+ * A {@link Select} or {@link Update} borrows its connection when it is constructed and returns it when it is
+ * executed, so a statement that is built but never executed holds its connection forever. Every borrowed
+ * connection is recorded until it is cleaned up, and {@link #getLeakSuspects()} lists the ones held longer than
+ * the leak threshold. Capturing the stack of the borrowing thread is comparatively expensive, so only one in
+ * every {@link #getSampleRate()} borrows records its acquisition site; a connection that leaks repeatedly will
+ * soon be caught by a sample.
+ *
+ * <p>
+ * The time spent waiting for {@link JdbcConnector#getConnection()} is recorded per connection name. Long waits
+ * together with a high borrowed count point to a pool that is too small or connections that are held too long.
+ *
+ * @author Troy Histed
+ */
+public final class ConnectionTracker {
+
+	/**
+	 * The leak threshold used until one is set.
+	 */
+	public static final long DEFAULT_LEAK_THRESHOLD_MILLIS = 30000;
+
+	/**
+	 * The sample rate used until one is set.
+	 */
+	public static final int DEFAULT_SAMPLE_RATE = 100;
+
+	private static final String DEFAULT_CONNECTION = "";
+	private static final Comparator<BorrowedConnection> OLDEST_FIRST = new Comparator<BorrowedConnection>() {
+		@Override
+		public int compare(BorrowedConnection o1, BorrowedConnection o2) {
+			return Long.signum(o1.getAcquiredNanos() - o2.getAcquiredNanos());
+		}
+	};
+
+	private static final ConcurrentMap<BorrowedConnection, Boolean> BORROWED =
+			new ConcurrentHashMap<BorrowedConnection, Boolean>();
+	private static final ConcurrentMap<String, LatencyHistogram> WAIT_TIMES =
+			new ConcurrentHashMap<String, LatencyHistogram>();
+	private static final AtomicLong BORROWS = new AtomicLong();
+	private static final AtomicLong LEAKS = new AtomicLong();
+	private static volatile long leakThresholdMillis = ConnectionTracker.DEFAULT_LEAK_THRESHOLD_MILLIS;
+	private static volatile int sampleRate = ConnectionTracker.DEFAULT_SAMPLE_RATE;
+
+	/**
+	 * Not instantiable.
+	 */
+	private ConnectionTracker() {
+	}
+
+	/**
+	 * Records a borrowed connection.
+	 *
+	 * @param connectionName
+	 *            the name of the connection, null for the default connection
+	 * @param waitNanos
+	 *            how long the connector took to provide the connection
+	 * @return the borrowed connection to pass to {@link #returned(BorrowedConnection)}
+	 */
+	static BorrowedConnection borrowed(String connectionName, long waitNanos) {
+		ConnectionTracker.getWaitTimes(connectionName).record(waitNanos);
+		final int rate = ConnectionTracker.sampleRate;
+		final long borrow = ConnectionTracker.BORROWS.incrementAndGet();
+		final Throwable site = rate > 0 && borrow % rate == 0 ? new Throwable("Connection acquired") : null;
+		final BorrowedConnection borrowedConnection = new BorrowedConnection(connectionName, site);
+		ConnectionTracker.BORROWED.put(borrowedConnection, Boolean.TRUE);
+		return borrowedConnection;
+	}
+
+	/**
+	 * Records that a borrowed connection has been returned.
+	 *
+	 * @param borrowedConnection
+	 *            the connection returned by {@link #borrowed(String, long)}
+	 */
+	static void returned(BorrowedConnection borrowedConnection) {
+		ConnectionTracker.BORROWED.remove(borrowedConnection);
+	}
+
+	/**
+	 * @return the number of connections currently borrowed
+	 */
+	public static int getBorrowedCount() {
+		return ConnectionTracker.BORROWED.size();
+	}
+
+	/**
+	 * @return the total number of connections borrowed
+	 */
+	public static long getBorrowCount() {
+		return ConnectionTracker.BORROWS.get();
+	}
+
+	/**
+	 * @return the number of connections that have been flagged as held longer than the leak threshold
+	 */
+	public static long getLeakCount() {
+		return ConnectionTracker.LEAKS.get();
+	}
+
+	/**
+	 * @return the connection that has been held the longest, or null if no connections are borrowed
+	 */
+	public static BorrowedConnection getLongestHolder() {
+		BorrowedConnection longest = null;
+		for (final BorrowedConnection borrowedConnection : ConnectionTracker.BORROWED.keySet()) {
+			if (longest == null || ConnectionTracker.OLDEST_FIRST.compare(borrowedConnection, longest) < 0) {
+				longest = borrowedConnection;
+			}
+		}
+		return longest;
+	}
+
+	/**
+	 * Finds the connections held longer than the leak threshold, oldest first. Connections found for the first
+	 * time are flagged and counted in {@link #getLeakCount()}.
+	 *
+	 * @return the connections suspected of leaking
+	 */
+	public static List<BorrowedConnection> getLeakSuspects() {
+		final long thresholdNanos = TimeUnit.MILLISECONDS.toNanos(ConnectionTracker.leakThresholdMillis);
+		final long now = System.nanoTime();
+		final List<BorrowedConnection> suspects = new ArrayList<BorrowedConnection>();
+		for (final BorrowedConnection borrowedConnection : ConnectionTracker.BORROWED.keySet()) {
+			if (now - borrowedConnection.getAcquiredNanos() >= thresholdNanos) {
+				if (borrowedConnection.flag()) {
+					ConnectionTracker.LEAKS.incrementAndGet();
+				}
+				suspects.add(borrowedConnection);
+			}
+		}
+		Collections.sort(suspects, ConnectionTracker.OLDEST_FIRST);
+		return suspects;
+	}
+
+	/**
+	 * @param connectionName
+	 *            the name of the connection, null for the default connection
+	 * @return the time spent waiting for the connector to provide a connection
+	 */
+	public static LatencyHistogram getWaitTimes(String connectionName) {
+		final String key = connectionName == null ? ConnectionTracker.DEFAULT_CONNECTION : connectionName;
+		LatencyHistogram histogram = ConnectionTracker.WAIT_TIMES.get(key);
+		if (histogram == null) {
+			final LatencyHistogram created = new LatencyHistogram();
+			histogram = ConnectionTracker.WAIT_TIMES.putIfAbsent(key, created);
+			if (histogram == null) {
+				histogram = created;
+			}
+		}
+		return histogram;
+	}
+
+	/**
+	 * @return the wait time histogram of every connection name that has been used, the default connection is
+	 *         keyed by an empty string
+	 */
+	public static Map<String, LatencyHistogram> getWaitTimes() {
+		return new HashMap<String, LatencyHistogram>(ConnectionTracker.WAIT_TIMES);
+	}
+
+	/**
+	 * @return how long a connection can be held before it is suspected of leaking
+	 */
+	public static long getLeakThresholdMillis() {
+		return ConnectionTracker.leakThresholdMillis;
+	}
+
+	/**
+	 * @param leakThresholdMillis
+	 *            how long a connection can be held before it is suspected of leaking
+	 */
+	public static void setLeakThresholdMillis(long leakThresholdMillis) {
+		ConnectionTracker.leakThresholdMillis = leakThresholdMillis;
+	}
+
+	/**
+	 * @return one in how many borrows records the acquisition site, 0 when no sites are recorded
+	 */
+	public static int getSampleRate() {
+		return ConnectionTracker.sampleRate;
+	}
+
+	/**
+	 * @param sampleRate
+	 *            one in how many borrows records the acquisition site, 1 to record every site and 0 to record
+	 *            none
+	 */
+	public static void setSampleRate(int sampleRate) {
+		if (sampleRate < 0) {
+			throw new IllegalArgumentException("Sample rate can not be negative: " + sampleRate);
+		}
+		ConnectionTracker.sampleRate = sampleRate;
+	}
+
+	/**
+	 * Clears the counters and wait times. Connections that are currently borrowed remain tracked.
+	 */
+	public static void reset() {
+		ConnectionTracker.WAIT_TIMES.clear();
+		ConnectionTracker.BORROWS.set(0);
+		ConnectionTracker.LEAKS.set(0);
+	}
+}
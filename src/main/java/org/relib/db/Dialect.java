@@ -0,0 +1,98 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.db;
+
+/**
+ * Represents the SQL dialect of a database.
+ *
+ * <p>
+ * The dialect determines how quoted strings and identifiers are recognized when parsing named statements, and
+ * which form of statement is generated for features such as upserts that have no standard syntax.
+ *
+ * @author Troy Histed
+ */
+public enum Dialect {
+
+	/**
+	 * Recognizes the quoting rules shared by most databases, along with back tick identifiers and $$ strings.
+	 * Backslashes escape quotes inside strings. Square brackets are not quotes, since they also start array
+	 * subscripts; use {@link #SQL_SERVER} for bracketed identifiers.
+	 */
+	GENERIC(true, true, false, true),
+
+	/**
+	 * PostgreSQL with standard conforming strings. Supports E'' escape strings and $$ dollar quoting.
+	 */
+	POSTGRESQL(false, false, false, true),
+
+	/**
+	 * MySQL and MariaDB. Backslashes escape quotes and identifiers may be quoted with back ticks.
+	 */
+	MYSQL(true, true, false, false),
+
+	/**
+	 * Oracle.
+	 */
+	ORACLE(false, false, false, false),
+
+	/**
+	 * Microsoft SQL Server. Identifiers may be quoted with square brackets.
+	 */
+	SQL_SERVER(false, false, true, false),
+
+	/**
+	 * H2. Supports $$ quoted strings.
+	 */
+	H2(false, false, false, true);
+
+	final boolean backslashEscapes;
+	final boolean backtickQuotes;
+	final boolean bracketQuotes;
+	final boolean dollarQuotes;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param backslashEscapes
+	 *            whether a backslash escapes the next character in a quoted string
+	 * @param backtickQuotes
+	 *            whether identifiers may be quoted with back ticks
+	 * @param bracketQuotes
+	 *            whether identifiers may be quoted with square brackets
+	 * @param dollarQuotes
+	 *            whether strings may be quoted with $tag$
+	 */
+	Dialect(boolean backslashEscapes, boolean backtickQuotes, boolean bracketQuotes, boolean dollarQuotes) {
+		this.backslashEscapes = backslashEscapes;
+		this.backtickQuotes = backtickQuotes;
+		this.bracketQuotes = bracketQuotes;
+		this.dollarQuotes = dollarQuotes;
+	}
+
+	/**
+	 * Builds the statement that returns the query plan of a statement.
+	 *
+	 * @param statement
+	 *            the statement to explain
+	 * @return the explain statement, or null if the plan can not be read with a single query
+	 */
+	String explain(String statement) {
+		if (this == ORACLE || this == SQL_SERVER) {
+			return null;
+		}
+		return "EXPLAIN " + statement;
+	}
+}
@@ -0,0 +1,342 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.db;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded read-through cache of entities keyed by primary key.
+ *
+ * <p>
+ * Entities are loaded with a select that has a single named parameter for the key:
+ *
+ * <pre>
+ * EntityCache&lt;Long, User&gt; users = EntityCache.forBean("select * from users where id = :id", User.class, "id",
+ * 		1000);
+ * User user = users.get(Long.valueOf(42));
+ * </pre>
+ *
+ * <p>
+ * When several threads ask for the same missing key at the same time only one of them runs the select and the
+ * others wait for its result. The cache is divided into segments that each evict their least recently used
+ * entity once full, which approximates least recently used eviction for the whole cache without a single lock.
+ * Keys that do not match a row are not cached.
+ *
+ * <p>
+ * Cached entities are shared by every caller and should not be modified. Use {@link #invalidate(Object)}, or
+ * {@link Update#invalidates(EntityCache, Object)}, when the underlying row changes.
+ *
+ * @author Troy Histed
+ *
+ * @param <K>
+ *            the key type
+ * @param <T>
+ *            the entity type
+ */
+public class EntityCache<K, T> {
+
+	private static final int SEGMENT_COUNT = 16;
+
+	private final String select;
+	private final RowMapper<T> rowMapper;
+	private final String keyParameter;
+	private final String connectionName;
+	private final Segment<K, T>[] segments;
+	private final ConcurrentMap<K, FutureTask<T>> loading = new ConcurrentHashMap<K, FutureTask<T>>();
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+
+	/**
+	 * Constructs an entity cache.
+	 *
+	 * @param select
+	 *            the select that loads a single entity
+	 * @param rowMapper
+	 *            the row mapping to use
+	 * @param keyParameter
+	 *            the name of the select parameter that is set to the key
+	 * @param maxSize
+	 *            the maximum number of entities to hold
+	 * @param connectionName
+	 *            the name of the connection to use, or null for the default connection
+	 */
+	@SuppressWarnings("unchecked")
+	public EntityCache(String select, RowMapper<T> rowMapper, String keyParameter, int maxSize,
+			String connectionName) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("The maximum size must be positive: " + maxSize);
+		}
+		this.select = select;
+		this.rowMapper = rowMapper;
+		this.keyParameter = keyParameter;
+		this.connectionName = connectionName;
+
+		final int segmentCount = Math.min(EntityCache.SEGMENT_COUNT, maxSize);
+		this.segments = (Segment<K, T>[]) new Segment<?, ?>[segmentCount];
+		for (int i = 0; i < segmentCount; i++) {
+			// Spread any remainder over the first segments so the total is exactly maxSize
+			this.segments[i] = new Segment<K, T>(maxSize / segmentCount + (i < maxSize % segmentCount ? 1 : 0));
+		}
+	}
+
+	/**
+	 * Constructs an entity cache for a java bean.
+	 *
+	 * @param select
+	 *            the select that loads a single entity
+	 * @param beanClass
+	 *            the bean class to map to
+	 * @param keyParameter
+	 *            the name of the select parameter that is set to the key
+	 * @param maxSize
+	 *            the maximum number of entities to hold
+	 * @param <K>
+	 *            the key type
+	 * @param <T>
+	 *            the bean type
+	 * @return the entity cache
+	 */
+	public static <K, T> EntityCache<K, T> forBean(String select, Class<T> beanClass, String keyParameter,
+			int maxSize) {
+		return new EntityCache<K, T>(select, BeanRowMapper.forClass(beanClass), keyParameter, maxSize, null);
+	}
+
+	/**
+	 * Constructs an entity cache for a java bean.
+	 *
+	 * @param select
+	 *            the select that loads a single entity
+	 * @param beanClass
+	 *            the bean class to map to
+	 * @param keyParameter
+	 *            the name of the select parameter that is set to the key
+	 * @param maxSize
+	 *            the maximum number of entities to hold
+	 * @param connectionName
+	 *            the connection name to use
+	 * @param <K>
+	 *            the key type
+	 * @param <T>
+	 *            the bean type
+	 * @return the entity cache
+	 */
+	public static <K, T> EntityCache<K, T> forBean(String select, Class<T> beanClass, String keyParameter,
+			int maxSize, String connectionName) {
+		return new EntityCache<K, T>(select, BeanRowMapper.forClass(beanClass), keyParameter, maxSize,
+				connectionName);
+	}
+
+	/**
+	 * Returns the entity with the given key, loading it if it is not cached.
+	 *
+	 * @param key
+	 *            the key (not null)
+	 * @return the entity or null if no row has the key
+	 */
+	public T get(final K key) {
+		final Segment<K, T> segment = this.segmentFor(key);
+		synchronized (segment) {
+			final T value = segment.get(key);
+			if (value != null) {
+				this.hitCount.incrementAndGet();
+				return value;
+			}
+		}
+		this.missCount.incrementAndGet();
+
+		final FutureTask<T> task = new FutureTask<T>(new Callable<T>() {
+			public T call() {
+				return EntityCache.this.load(key);
+			}
+		});
+		FutureTask<T> loader = this.loading.putIfAbsent(key, task);
+		if (loader == null) {
+			loader = task;
+			try {
+				task.run();
+				this.store(key, task);
+			} finally {
+				this.loading.remove(key, task);
+			}
+		}
+
+		try {
+			return loader.get();
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new DaoException("Error loading " + key, e.getCause());
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DaoException("Interrupted waiting for " + key + " to load", e);
+		}
+	}
+
+	/**
+	 * Runs the select for a single key.
+	 *
+	 * @param key
+	 *            the key
+	 * @return the entity or null if no row has the key
+	 */
+	protected T load(K key) {
+		return new Select<T>(this.select, this.rowMapper, this.connectionName).setObject(this.keyParameter, key)
+				.execute();
+	}
+
+	/**
+	 * Removes the entity with the given key so that the next request loads it again.
+	 *
+	 * @param key
+	 *            the key
+	 */
+	public void invalidate(K key) {
+		this.loading.remove(key);
+		final Segment<K, T> segment = this.segmentFor(key);
+		synchronized (segment) {
+			segment.remove(key);
+		}
+	}
+
+	/**
+	 * Removes every entity from the cache.
+	 */
+	public void invalidateAll() {
+		this.loading.clear();
+		for (final Segment<K, T> segment : this.segments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+	}
+
+	/**
+	 * @return the number of entities held
+	 */
+	public int size() {
+		int size = 0;
+		for (final Segment<K, T> segment : this.segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * @return the number of requests that found a cached entity
+	 */
+	public long getHitCount() {
+		return this.hitCount.get();
+	}
+
+	/**
+	 * @return the number of requests that did not find a cached entity
+	 */
+	public long getMissCount() {
+		return this.missCount.get();
+	}
+
+	/**
+	 * Stores the result of a completed load, unless the key was invalidated while it was loading.
+	 *
+	 * @param key
+	 *            the key
+	 * @param task
+	 *            the completed load
+	 */
+	private void store(K key, FutureTask<T> task) {
+		final T value;
+		try {
+			value = task.get();
+		} catch (final ExecutionException e) {
+			return;
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+		if (value != null) {
+			final Segment<K, T> segment = this.segmentFor(key);
+			synchronized (segment) {
+				if (this.loading.get(key) == task) {
+					segment.put(key, value);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finds the segment responsible for a key.
+	 *
+	 * @param key
+	 *            the key
+	 * @return the segment
+	 */
+	private Segment<K, T> segmentFor(K key) {
+		int hash = key.hashCode();
+		hash ^= hash >>> 16;
+		return this.segments[(hash & Integer.MAX_VALUE) % this.segments.length];
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return "EntityCache [select=" + this.select + ", keyParameter=" + this.keyParameter + ", size="
+				+ this.size() + ", hitCount=" + this.hitCount + ", missCount=" + this.missCount + "]";
+	}
+
+	/**
+	 * A map that holds a fixed number of entries and discards the least recently used entry when full.
+	 *
+	 * @param <K>
+	 *            the key type
+	 * @param <T>
+	 *            the entity type
+	 */
+	private static final class Segment<K, T> extends LinkedHashMap<K, T> {
+
+		private static final long serialVersionUID = 2712046917313519543L;
+
+		private final int maxSize;
+
+		/**
+		 * @param maxSize
+		 *            the maximum number of entries
+		 */
+		Segment(int maxSize) {
+			super(16, 0.75f, true);
+			this.maxSize = maxSize;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, T> eldest) {
+			return this.size() > this.maxSize;
+		}
+	}
+}
@@ -0,0 +1,303 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.db;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Decides how many rows a {@link Select} asks the driver to fetch per round trip.
+ *
+ * <p>
+ * Drivers either fetch very few rows at a time (Oracle fetches 10) or the whole result at once (PostgreSQL
+ * without a cursor). A small fetch size makes large results slow while fetching everything can exhaust the
+ * heap. A policy is consulted before the statement is executed, again once the result's columns are known, and
+ * is told how many rows were read when the select completes.
+ *
+ * <p>
+ * Statements are identified by a fingerprint, the statement with its named parameters replaced, so executions
+ * with different parameter values share what has been learned.
+ *
+ * @author Troy Histed
+ */
+public abstract class FetchSizePolicy {
+
+	/**
+	 * The memory budget of an adaptive policy when none is given, 4MB.
+	 */
+	public static final long DEFAULT_MEMORY_BUDGET = 4L * 1024 * 1024;
+
+	/**
+	 * The largest fetch size an adaptive policy will use.
+	 */
+	public static final int MAX_FETCH_SIZE = 10000;
+
+	/**
+	 * Gets the fetch size to set on the prepared statement before it is executed.
+	 *
+	 * @param fingerprint
+	 *            the statement fingerprint
+	 * @return the fetch size, or 0 to leave the driver's default
+	 */
+	protected abstract int beforeExecute(String fingerprint);
+
+	/**
+	 * Gets the fetch size to set on the result set once its columns are known. The size applies to every fetch
+	 * after the first.
+	 *
+	 * @param fingerprint
+	 *            the statement fingerprint
+	 * @param metaData
+	 *            the result set meta data
+	 * @return the fetch size, or 0 to leave the fetch size unchanged
+	 * @throws SQLException
+	 *             error reading the meta data
+	 */
+	protected int afterExecute(String fingerprint, ResultSetMetaData metaData) throws SQLException {
+		return 0;
+	}
+
+	/**
+	 * Called when a select has read its rows.
+	 *
+	 * @param fingerprint
+	 *            the statement fingerprint
+	 * @param rows
+	 *            the number of rows read
+	 */
+	protected void completed(String fingerprint, long rows) {
+		// Nothing to learn by default
+	}
+
+	/**
+	 * Creates a policy that always uses the same fetch size.
+	 *
+	 * @param rows
+	 *            the number of rows per fetch
+	 * @return the policy
+	 */
+	public static FetchSizePolicy fixed(final int rows) {
+		if (rows < 1) {
+			throw new IllegalArgumentException("Fetch size must be positive: " + rows);
+		}
+		return new FetchSizePolicy() {
+			@Override
+			protected int beforeExecute(String fingerprint) {
+				return rows;
+			}
+		};
+	}
+
+	/**
+	 * Creates a policy that learns a fetch size for each statement within a memory budget of
+	 * {@link #DEFAULT_MEMORY_BUDGET}.
+	 *
+	 * @return the policy
+	 */
+	public static FetchSizePolicy adaptive() {
+		return new Adaptive(FetchSizePolicy.DEFAULT_MEMORY_BUDGET);
+	}
+
+	/**
+	 * Creates a policy that learns a fetch size for each statement.
+	 *
+	 * <p>
+	 * The estimated width of a row is taken from the column types of the result. The rows of a single fetch are
+	 * limited to what fits in the memory budget. Within the budget, the fetch size follows the average number
+	 * of rows the statement has returned so that a typical result is read in a single round trip. The policy
+	 * should be shared by the selects that use it, usually as a constant.
+	 *
+	 * @param memoryBudget
+	 *            the number of bytes the rows of a single fetch may occupy
+	 * @return the policy
+	 */
+	public static FetchSizePolicy adaptive(long memoryBudget) {
+		if (memoryBudget < 1) {
+			throw new IllegalArgumentException("Memory budget must be positive: " + memoryBudget);
+		}
+		return new Adaptive(memoryBudget);
+	}
+
+	/**
+	 * Estimates the number of bytes a row occupies once it has been read.
+	 *
+	 * @param metaData
+	 *            the result set meta data
+	 * @return the estimated row width in bytes
+	 * @throws SQLException
+	 *             error reading the meta data
+	 */
+	static int estimateRowWidth(ResultSetMetaData metaData) throws SQLException {
+		int width = 16;
+		for (int column = 1; column <= metaData.getColumnCount(); column++) {
+			width += FetchSizePolicy.estimateColumnWidth(metaData.getColumnType(column),
+					metaData.getColumnDisplaySize(column));
+		}
+		return width;
+	}
+
+	/**
+	 * Estimates the number of bytes a column value occupies once it has been read.
+	 *
+	 * @param sqlType
+	 *            the {@link Types} of the column
+	 * @param displaySize
+	 *            the display size of the column
+	 * @return the estimated column width in bytes
+	 */
+	private static int estimateColumnWidth(int sqlType, int displaySize) {
+		switch (sqlType) {
+		case Types.BIT:
+		case Types.BOOLEAN:
+		case Types.TINYINT:
+		case Types.SMALLINT:
+		case Types.INTEGER:
+		case Types.BIGINT:
+		case Types.REAL:
+		case Types.FLOAT:
+		case Types.DOUBLE:
+			return 24;
+		case Types.DATE:
+		case Types.TIME:
+		case Types.TIMESTAMP:
+		case Types.NUMERIC:
+		case Types.DECIMAL:
+			return 48;
+		case Types.BLOB:
+		case Types.CLOB:
+		case Types.NCLOB:
+		case Types.LONGVARCHAR:
+		case Types.LONGNVARCHAR:
+		case Types.LONGVARBINARY:
+			return 4096;
+		default:
+			// Character and binary columns, capped so unbounded types do not dominate the estimate
+			return 48 + Math.min(Math.max(displaySize, 16), 4000);
+		}
+	}
+
+	/**
+	 * Learns a fetch size for each statement fingerprint.
+	 */
+	private static class Adaptive extends FetchSizePolicy {
+
+		private static final int INITIAL_FETCH_SIZE = 100;
+		private static final int MAX_STATEMENTS = 1024;
+
+		private final long memoryBudget;
+		private final ConcurrentMap<String, History> histories = new ConcurrentHashMap<String, History>();
+
+		/**
+		 * Constructor.
+		 *
+		 * @param memoryBudget
+		 *            the number of bytes the rows of a single fetch may occupy
+		 */
+		Adaptive(long memoryBudget) {
+			this.memoryBudget = memoryBudget;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected int beforeExecute(String fingerprint) {
+			final History history = this.histories.get(fingerprint);
+			if (history == null) {
+				return Adaptive.INITIAL_FETCH_SIZE;
+			}
+			return this.fetchSize(history.rowWidth, history.averageRows);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected int afterExecute(String fingerprint, ResultSetMetaData metaData) throws SQLException {
+			History history = this.histories.get(fingerprint);
+			if (history == null) {
+				history = new History(FetchSizePolicy.estimateRowWidth(metaData));
+				if (this.histories.size() < Adaptive.MAX_STATEMENTS) {
+					final History existing = this.histories.putIfAbsent(fingerprint, history);
+					if (existing != null) {
+						history = existing;
+					}
+				}
+			}
+			return this.fetchSize(history.rowWidth, history.averageRows);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected void completed(String fingerprint, long rows) {
+			final History history = this.histories.get(fingerprint);
+			if (history != null) {
+				history.record(rows);
+			}
+		}
+
+		/**
+		 * @param rowWidth
+		 *            the estimated row width in bytes
+		 * @param averageRows
+		 *            the average number of rows returned, or -1 if unknown
+		 * @return the fetch size
+		 */
+		private int fetchSize(int rowWidth, long averageRows) {
+			long rows = Math.max(1, this.memoryBudget / rowWidth);
+			if (averageRows >= 0) {
+				// One more than expected lets the driver see the end of the result without another round trip
+				rows = Math.min(rows, averageRows + 1);
+			}
+			return (int) Math.min(rows, FetchSizePolicy.MAX_FETCH_SIZE);
+		}
+	}
+
+	/**
+	 * What has been learned about a statement.
+	 */
+	private static class History {
+
+		private final int rowWidth;
+		private volatile long averageRows = -1;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param rowWidth
+		 *            the estimated row width in bytes
+		 */
+		History(int rowWidth) {
+			this.rowWidth = rowWidth;
+		}
+
+		/**
+		 * Adds a row count to the moving average, weighting the latest count by a quarter.
+		 *
+		 * @param rows
+		 *            the number of rows read
+		 */
+		void record(long rows) {
+			final long average = this.averageRows;
+			this.averageRows = average < 0 ? rows : (average * 3 + rows + 3) / 4;
+		}
+	}
+}
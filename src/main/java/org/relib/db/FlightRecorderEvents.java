@@ -0,0 +1,244 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.db;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emits Java Flight Recorder events for the work done by {@link Select}, {@link Update} and
+ * {@link JdbcConnection}.
+ *
+ * <p>
+ * The events are off by default. Enable them with the system property <code>org.relib.db.jfr=true</code> or by
+ * calling {@link #setEnabled(boolean)}; once enabled they are recorded by any recording that has the
+ * <code>org.relib.db</code> events enabled, which the default and profile settings do. While disabled, the only
+ * cost is reading a volatile flag. On a JVM without the <code>jdk.jfr</code> API the events can not be enabled.
+ *
+ * <p>
+ * The events are:
+ * <ul>
+ * <li><code>org.relib.db.ConnectionAcquire</code> - borrowing a connection from a {@link JdbcConnector}</li>
+ * <li><code>org.relib.db.Prepare</code> - preparing a statement</li>
+ * <li><code>org.relib.db.Execute</code> - executing a statement, with the rows updated</li>
+ * <li><code>org.relib.db.Map</code> - reading and mapping the rows of a select, with the rows mapped</li>
+ * <li><code>org.relib.db.Cleanup</code> - closing the result set, statement and connection</li>
+ * </ul>
+ * Each event carries the statement fingerprint, the statement with its named parameters replaced.
+ *
+ * @author Troy Histed
+ */
+public final class FlightRecorderEvents {
+
+	/**
+	 * The system property that enables the events when set to true.
+	 */
+	public static final String ENABLED_PROPERTY = "org.relib.db.jfr";
+
+	static final int ACQUIRE = 0;
+	static final int PREPARE = 1;
+	static final int EXECUTE = 2;
+	static final int MAP = 3;
+	static final int CLEANUP = 4;
+
+	private static final boolean AVAILABLE = FlightRecorderEvents.isAvailable();
+	private static volatile boolean enabled = FlightRecorderEvents.AVAILABLE
+			&& Boolean.getBoolean(FlightRecorderEvents.ENABLED_PROPERTY);
+
+	/**
+	 * Not instantiable.
+	 */
+	private FlightRecorderEvents() {
+	}
+
+	/**
+	 * @return true if the events are enabled
+	 */
+	public static boolean isEnabled() {
+		return FlightRecorderEvents.enabled;
+	}
+
+	/**
+	 * Enables or disables the events.
+	 *
+	 * @param enable
+	 *            whether to emit the events
+	 * @return true if the events are now enabled, false when disabled or the JVM has no flight recorder
+	 */
+	public static boolean setEnabled(boolean enable) {
+		FlightRecorderEvents.enabled = enable && FlightRecorderEvents.AVAILABLE;
+		return FlightRecorderEvents.enabled;
+	}
+
+	/**
+	 * Starts timing an event.
+	 *
+	 * @param type
+	 *            the type of event, one of the constants of this class
+	 * @return the event to pass to {@link #end(Object, String, long)}, or null when events are disabled
+	 */
+	static Object begin(int type) {
+		if (!FlightRecorderEvents.enabled) {
+			return null;
+		}
+		return Recorder.begin(type);
+	}
+
+	/**
+	 * Ends an event and commits it if the recording wants it.
+	 *
+	 * @param event
+	 *            the event returned by {@link #begin(int)}, may be null
+	 * @param fingerprint
+	 *            the statement fingerprint, or the connection name for a connection acquire
+	 * @param rows
+	 *            the number of rows updated or mapped, 0 when not applicable
+	 */
+	static void end(Object event, String fingerprint, long rows) {
+		if (event != null) {
+			Recorder.end(event, fingerprint, rows);
+		}
+	}
+
+	/**
+	 * @return true if the jdk.jfr API can be loaded
+	 */
+	private static boolean isAvailable() {
+		try {
+			Class.forName("jdk.jfr.Event");
+			return true;
+		} catch (final ClassNotFoundException e) {
+			return false;
+		} catch (final LinkageError e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Keeps the references to the jdk.jfr API out of the outer class so it loads on JVMs without it.
+	 */
+	private static final class Recorder {
+
+		/**
+		 * @param type
+		 *            the type of event
+		 * @return the started event, or null if the event type is not enabled in any recording
+		 */
+		static Object begin(int type) {
+			final DatabaseEvent event;
+			switch (type) {
+			case ACQUIRE:
+				event = new ConnectionAcquireEvent();
+				break;
+			case PREPARE:
+				event = new PrepareEvent();
+				break;
+			case EXECUTE:
+				event = new ExecuteEvent();
+				break;
+			case MAP:
+				event = new MapEvent();
+				break;
+			default:
+				event = new CleanupEvent();
+			}
+			if (!event.isEnabled()) {
+				return null;
+			}
+			event.begin();
+			return event;
+		}
+
+		/**
+		 * @param started
+		 *            the started event
+		 * @param fingerprint
+		 *            the statement fingerprint
+		 * @param rows
+		 *            the number of rows
+		 */
+		static void end(Object started, String fingerprint, long rows) {
+			final DatabaseEvent event = (DatabaseEvent) started;
+			event.end();
+			if (event.shouldCommit()) {
+				event.fingerprint = fingerprint;
+				event.rows = rows;
+				event.commit();
+			}
+		}
+	}
+
+	/**
+	 * The fields shared by every event.
+	 */
+	@Category({ "relib", "Database" })
+	@StackTrace(false)
+	abstract static class DatabaseEvent extends Event {
+
+		@Label("Fingerprint")
+		@Description("The statement with its named parameters replaced, or the connection name")
+		String fingerprint;
+
+		@Label("Rows")
+		@Description("The number of rows updated or mapped")
+		long rows;
+	}
+
+	/**
+	 * Borrowing a connection.
+	 */
+	@Name("org.relib.db.ConnectionAcquire")
+	@Label("Connection Acquire")
+	@StackTrace(true)
+	static class ConnectionAcquireEvent extends DatabaseEvent {
+	}
+
+	/**
+	 * Preparing a statement.
+	 */
+	@Name("org.relib.db.Prepare")
+	@Label("Statement Prepare")
+	static class PrepareEvent extends DatabaseEvent {
+	}
+
+	/**
+	 * Executing a statement.
+	 */
+	@Name("org.relib.db.Execute")
+	@Label("Statement Execute")
+	static class ExecuteEvent extends DatabaseEvent {
+	}
+
+	/**
+	 * Reading and mapping rows.
+	 */
+	@Name("org.relib.db.Map")
+	@Label("Row Mapping")
+	static class MapEvent extends DatabaseEvent {
+	}
+
+	/**
+	 * Closing the resources of a statement.
+	 */
+	@Name("org.relib.db.Cleanup")
+	@Label("Statement Cleanup")
+	static class CleanupEvent extends DatabaseEvent {
+	}
+}
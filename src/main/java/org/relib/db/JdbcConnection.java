@@ -20,6 +20,8 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Represents a connection to a database.
@@ -30,6 +32,13 @@ public class JdbcConnection {
 
 	private Connection connection = null;
 	private PreparedStatement preparedStatement = null;
+	private final boolean closeConnection;
+	private BorrowedConnection borrowedConnection = null;
+	private String statement = null;
+	private final JdbcConnection owner;
+	private final Dialect dialect;
+	private final List<Runnable> beforeClose = new ArrayList<Runnable>();
+	private final List<Runnable> afterClose = new ArrayList<Runnable>();
 
 	/**
 	 * Constructs a DaoConnection with an SQL connection object.
@@ -38,14 +47,58 @@ public class JdbcConnection {
 	 *            the SQL connection to use (not null)
 	 */
 	JdbcConnection(Connection connection) {
+		this(connection, true, Dialect.GENERIC);
+	}
+
+	/**
+	 * Constructs a DaoConnection with an SQL connection object to a database of a specific dialect.
+	 *
+	 * @param connection
+	 *            the SQL connection to use (not null)
+	 * @param dialect
+	 *            the dialect of the statements run on the connection, or null for {@link Dialect#GENERIC}
+	 */
+	JdbcConnection(Connection connection, Dialect dialect) {
+		this(connection, true, dialect);
+	}
+
+	/**
+	 * Constructs a DaoConnection with an SQL connection object.
+	 *
+	 * @param connection
+	 *            the SQL connection to use (not null)
+	 * @param closeConnection
+	 *            whether cleaning up should close the SQL connection, false when the connection is shared by
+	 *            several statements and will be closed by its owner
+	 * @param dialect
+	 *            the dialect of the statements run on the connection, or null for {@link Dialect#GENERIC}
+	 */
+	JdbcConnection(Connection connection, boolean closeConnection, Dialect dialect) {
 		if (connection == null) {
 			throw new DaoException("Connection was null");
 		}
 		this.connection = connection;
+		this.closeConnection = closeConnection;
+		this.owner = this;
+		this.dialect = dialect == null ? Dialect.GENERIC : dialect;
 	}
 
 	/**
-	 * Gets a connection to the data source provided by the DaoConnection.
+	 * Constructs a DaoConnection that shares the SQL connection of another, which closes it.
+	 *
+	 * @param owner
+	 *            the connection that closes the SQL connection
+	 */
+	JdbcConnection(JdbcConnection owner) {
+		this.connection = owner.connection;
+		this.closeConnection = false;
+		this.owner = owner;
+		this.dialect = owner.dialect;
+	}
+
+	/**
+	 * Gets a connection to the data source provided by the DaoConnection. The connection is tracked by the
+	 * {@link ConnectionTracker} until it is cleaned up.
 	 *
 	 * @param connectionName
 	 *            the name given to a connection that corresponds to {@link JdbcConnector#getName()}
@@ -55,7 +108,57 @@ public class JdbcConnection {
 	 *             error creating connection
 	 */
 	public static JdbcConnection connect(String connectionName) throws SQLException {
-		return new JdbcConnection(ConnectorServiceLoader.getConnector(connectionName).getConnection());
+		return JdbcConnection.connect(connectionName, Dialect.GENERIC);
+	}
+
+	/**
+	 * Gets a connection to a database of a specific dialect from the DaoConnection. The connection is tracked
+	 * by the {@link ConnectionTracker} until it is cleaned up.
+	 *
+	 * @param connectionName
+	 *            the name given to a connection that corresponds to {@link JdbcConnector#getName()}
+	 * @param dialect
+	 *            the dialect of the statements run on the connection, or null for {@link Dialect#GENERIC}
+	 * @return a connection
+	 * @throws SQLException
+	 *             error creating connection
+	 */
+	public static JdbcConnection connect(String connectionName, Dialect dialect) throws SQLException {
+		return JdbcConnection.connect(ConnectorServiceLoader.getConnector(connectionName), connectionName, dialect);
+	}
+
+	/**
+	 * Gets a connection from a connector and tracks it until it is cleaned up.
+	 *
+	 * @param connector
+	 *            the connector providing the connection
+	 * @param connectionName
+	 *            the name of the connection, null for the default connection
+	 * @param dialect
+	 *            the dialect of the statements run on the connection, or null for {@link Dialect#GENERIC}
+	 * @return a connection
+	 */
+	static JdbcConnection connect(JdbcConnector connector, String connectionName, Dialect dialect) {
+		final Object event = FlightRecorderEvents.begin(FlightRecorderEvents.ACQUIRE);
+		final long start = System.nanoTime();
+		final JdbcConnection jdbcConnection = new JdbcConnection(connector.getConnection(), dialect);
+		jdbcConnection.borrowedConnection = ConnectionTracker.borrowed(connectionName, System.nanoTime() - start);
+		FlightRecorderEvents.end(event, connectionName, 0);
+		return jdbcConnection;
+	}
+
+	/**
+	 * @return the dialect of the statements run on the connection
+	 */
+	Dialect getDialect() {
+		return this.dialect;
+	}
+
+	/**
+	 * @return the underlying SQL connection
+	 */
+	Connection getSqlConnection() {
+		return this.connection;
 	}
 
 	/**
@@ -68,60 +171,140 @@ public class JdbcConnection {
 	 *             error building prepared statement
 	 */
 	PreparedStatement prepareStatement(String statement) throws SQLException {
+		final Object event = FlightRecorderEvents.begin(FlightRecorderEvents.PREPARE);
+		this.statement = statement;
 		this.preparedStatement = this.connection.prepareStatement(statement);
+		FlightRecorderEvents.end(event, statement, 0);
 		return this.preparedStatement;
 	}
 
 	/**
-	 * Prepares a statement using the established connection.
+	 * Prepares a statement that returns generated keys using the established connection.
 	 *
 	 * @param statement
 	 *            the statement to prepare
+	 * @param keyColumns
+	 *            the names of the key columns to return, or an empty array to let the driver choose
 	 * @return the prepared statement
 	 * @throws SQLException
 	 *             error building prepared statement
 	 */
-	PreparedStatement prepareStatementWithGeneratedKeys(String statement) throws SQLException {
-		this.preparedStatement = this.connection.prepareStatement(statement, Statement.RETURN_GENERATED_KEYS);
+	PreparedStatement prepareStatementWithGeneratedKeys(String statement, String[] keyColumns)
+			throws SQLException {
+		final Object event = FlightRecorderEvents.begin(FlightRecorderEvents.PREPARE);
+		this.statement = statement;
+		if (keyColumns.length == 0) {
+			this.preparedStatement = this.connection.prepareStatement(statement, Statement.RETURN_GENERATED_KEYS);
+		} else {
+			this.preparedStatement = this.connection.prepareStatement(statement, keyColumns);
+		}
+		FlightRecorderEvents.end(event, statement, 0);
 		return this.preparedStatement;
 	}
 
 	/**
-	 * Closes the connection.
+	 * Runs an action when this is cleaned up, after the result set is closed and before the prepared statement and
+	 * connection are.
+	 *
+	 * @param action
+	 *            the action to run
+	 */
+	void beforeClose(Runnable action) {
+		this.beforeClose.add(action);
+	}
+
+	/**
+	 * Runs an action once the transaction of a statement that just executed has ended, which is when the SQL
+	 * connection is closed. Does nothing on an auto-commit connection, where the statement has already been
+	 * committed.
+	 *
+	 * @param action
+	 *            the action to run
+	 * @throws SQLException
+	 *             error reading the auto-commit mode
+	 */
+	void afterTransaction(Runnable action) throws SQLException {
+		if (!this.connection.getAutoCommit()) {
+			this.owner.afterClose.add(action);
+		}
+	}
+
+	/**
+	 * Closes the prepared statement and, unless the connection is shared, the connection.
 	 */
 	public void cleanUp() {
+		final Object event = FlightRecorderEvents.begin(FlightRecorderEvents.CLEANUP);
+		try {
+			this.close();
+		} finally {
+			FlightRecorderEvents.end(event, this.statement, 0);
+		}
+	}
+
+	/**
+	 * Closes the connection and result set.
+	 *
+	 * @param resultSet
+	 *            the result set to close
+	 */
+	public void cleanUp(ResultSet resultSet) {
+		final Object event = FlightRecorderEvents.begin(FlightRecorderEvents.CLEANUP);
 		try {
+			if (resultSet != null) {
+				resultSet.close();
+			}
+		} catch (final SQLException e) {
+			throw new DaoException("Error closing result set: " + resultSet, e);
+		} finally {
+			try {
+				this.close();
+			} finally {
+				FlightRecorderEvents.end(event, this.statement, 0);
+			}
+		}
+	}
+
+	/**
+	 * Closes the prepared statement and, unless the connection is shared, the connection.
+	 */
+	private void close() {
+		try {
+			JdbcConnection.run(this.beforeClose);
 			if (this.preparedStatement != null) {
 				this.preparedStatement.close();
 			}
 		} catch (final SQLException e) {
 			throw new DaoException("Error closing prepared statement: " + this.preparedStatement, e);
 		} finally {
-			if (this.connection != null) {
+			if (this.connection != null && this.closeConnection) {
 				try {
 					this.connection.close();
 				} catch (final SQLException e) {
 					throw new DaoException("Error closing connection: " + this.connection, e);
+				} finally {
+					if (this.borrowedConnection != null) {
+						ConnectionTracker.returned(this.borrowedConnection);
+						this.borrowedConnection = null;
+					}
+					JdbcConnection.run(this.afterClose);
 				}
 			}
 		}
 	}
 
 	/**
-	 * Closes the connection and result set.
+	 * Runs and removes registered actions.
 	 *
-	 * @param resultSet
-	 *            the result set to close
+	 * @param actions
+	 *            the actions
 	 */
-	public void cleanUp(ResultSet resultSet) {
+	private static void run(List<Runnable> actions) {
 		try {
-			if (resultSet != null) {
-				resultSet.close();
+			for (final Runnable action : actions) {
+				action.run();
 			}
-		} catch (final SQLException e) {
-			throw new DaoException("Error closing result set: " + resultSet, e);
 		} finally {
-			this.cleanUp();
+			actions.clear();
 		}
 	}
 }
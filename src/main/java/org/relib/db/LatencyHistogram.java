@@ -0,0 +1,174 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.db;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations with buckets that double in size.
+ *
+ * <p>
+ * The first bucket holds durations up to one microsecond, the second up to two, the third up to four and so on.
+ * The last bucket holds everything longer. Recording a duration is a few atomic increments and never allocates,
+ * so a histogram can be updated on every call of a hot path and read by another thread at any time.
+ *
+ * @author Troy Histed
+ */
+public class LatencyHistogram {
+
+	/**
+	 * The number of buckets. The last bucket holds durations over 2^(BUCKETS - 2) microseconds (about 18 minutes).
+	 */
+	public static final int BUCKETS = 32;
+
+	private final AtomicLongArray counts = new AtomicLongArray(LatencyHistogram.BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong totalNanos = new AtomicLong();
+	private final AtomicLong maxNanos = new AtomicLong();
+
+	/**
+	 * Records a duration.
+	 *
+	 * @param nanos
+	 *            the duration in nanoseconds
+	 */
+	public void record(long nanos) {
+		final long duration = Math.max(nanos, 0);
+		this.counts.incrementAndGet(LatencyHistogram.bucketOf(duration));
+		this.count.incrementAndGet();
+		this.totalNanos.addAndGet(duration);
+		long max = this.maxNanos.get();
+		while (duration > max && !this.maxNanos.compareAndSet(max, duration)) {
+			max = this.maxNanos.get();
+		}
+	}
+
+	/**
+	 * @return the number of recorded durations
+	 */
+	public long getCount() {
+		return this.count.get();
+	}
+
+	/**
+	 * @return the sum of the recorded durations in nanoseconds
+	 */
+	public long getTotalNanos() {
+		return this.totalNanos.get();
+	}
+
+	/**
+	 * @return the longest recorded duration in nanoseconds
+	 */
+	public long getMaxNanos() {
+		return this.maxNanos.get();
+	}
+
+	/**
+	 * @return the average recorded duration in nanoseconds, or 0 if nothing has been recorded
+	 */
+	public long getMeanNanos() {
+		final long recorded = this.count.get();
+		return recorded == 0 ? 0 : this.totalNanos.get() / recorded;
+	}
+
+	/**
+	 * Estimates a percentile. The estimate is the upper bound of the bucket the percentile falls in, capped at the
+	 * longest recorded duration.
+	 *
+	 * @param percentile
+	 *            the percentile between 0 and 100
+	 * @return the estimated duration in nanoseconds, or 0 if nothing has been recorded
+	 */
+	public long getPercentileNanos(double percentile) {
+		final long[] buckets = this.getBucketCounts();
+		long recorded = 0;
+		for (final long bucket : buckets) {
+			recorded += bucket;
+		}
+		if (recorded == 0) {
+			return 0;
+		}
+		final long rank = Math.max(1, (long) Math.ceil(recorded * percentile / 100));
+		long seen = 0;
+		for (int i = 0; i < buckets.length; i++) {
+			seen += buckets[i];
+			if (seen >= rank) {
+				return Math.min(LatencyHistogram.getBucketUpperBoundNanos(i), this.maxNanos.get());
+			}
+		}
+		return this.maxNanos.get();
+	}
+
+	/**
+	 * @return a copy of the count of each bucket
+	 */
+	public long[] getBucketCounts() {
+		final long[] buckets = new long[LatencyHistogram.BUCKETS];
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = this.counts.get(i);
+		}
+		return buckets;
+	}
+
+	/**
+	 * @param bucket
+	 *            the bucket index
+	 * @return the longest duration held by the bucket in nanoseconds, or Long.MAX_VALUE for the last bucket
+	 */
+	public static long getBucketUpperBoundNanos(int bucket) {
+		if (bucket >= LatencyHistogram.BUCKETS - 1) {
+			return Long.MAX_VALUE;
+		}
+		return TimeUnit.MICROSECONDS.toNanos(1L << bucket);
+	}
+
+	/**
+	 * Clears the recorded durations.
+	 */
+	public void reset() {
+		for (int i = 0; i < LatencyHistogram.BUCKETS; i++) {
+			this.counts.set(i, 0);
+		}
+		this.count.set(0);
+		this.totalNanos.set(0);
+		this.maxNanos.set(0);
+	}
+
+	/**
+	 * @param nanos
+	 *            a duration in nanoseconds
+	 * @return the index of the bucket holding the duration
+	 */
+	private static int bucketOf(long nanos) {
+		final long micros = (nanos + 999) / 1000;
+		if (micros <= 1) {
+			return 0;
+		}
+		return Math.min(64 - Long.numberOfLeadingZeros(micros - 1), LatencyHistogram.BUCKETS - 1);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return "LatencyHistogram [count=" + this.getCount() + ", meanNanos=" + this.getMeanNanos() + ", p99Nanos="
+				+ this.getPercentileNanos(99) + ", maxNanos=" + this.getMaxNanos() + "]";
+	}
+}
@@ -0,0 +1,283 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.db;
+
+import java.lang.reflect.InvocationTargetException;
+import java.math.BigDecimal;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.commons.beanutils.BeanUtils;
+import org.apache.commons.beanutils.ConvertUtils;
+
+/**
+ * A read only view of a single result set row.
+ *
+ * <p>
+ * The row holds the raw column values exactly as they were returned by the driver. Values are only converted to
+ * the requested java type when they are read, so queries that select many columns but only use a few of them do
+ * not pay to convert every column of every row. When a java bean is needed it can be built from the row on demand
+ * using {@link #toBean(Class)}.
+ *
+ * <p>
+ * The row may be used as a {@link java.util.Map} keyed by column label. All rows from the same query share a
+ * single copy of the column labels.
+ *
+ * @author Troy Histed
+ */
+public class LazyRow extends AbstractMap<String, Object> {
+
+	private final ResultColumns columns;
+	private final Object[] values;
+
+	/**
+	 * Constructs a row.
+	 *
+	 * @param columns
+	 *            the columns of the result set
+	 * @param values
+	 *            the raw column values, in column order
+	 */
+	LazyRow(ResultColumns columns, Object[] values) {
+		this.columns = columns;
+		this.values = values;
+	}
+
+	/**
+	 * Returns the raw value of a column.
+	 *
+	 * @param columnIndex
+	 *            the column index (the first column is 1)
+	 * @return the raw value of the column
+	 */
+	public Object get(int columnIndex) {
+		return this.values[columnIndex - 1];
+	}
+
+	/**
+	 * Returns the value of a column converted to the specified type.
+	 *
+	 * @param label
+	 *            the column label
+	 * @param type
+	 *            the type to convert the value to
+	 * @param <V>
+	 *            the type of the value
+	 * @return the converted value or null if the column was null
+	 */
+	@SuppressWarnings("unchecked")
+	public <V> V get(String label, Class<V> type) {
+		final Object value = this.values[this.requireIndex(label)];
+		if (value == null || type.isInstance(value)) {
+			return (V) value;
+		}
+		return (V) ConvertUtils.convert(value, type);
+	}
+
+	/**
+	 * @param label
+	 *            the column label
+	 * @return the column value as a String
+	 */
+	public String getString(String label) {
+		return this.get(label, String.class);
+	}
+
+	/**
+	 * @param label
+	 *            the column label
+	 * @return the column value as an Integer
+	 */
+	public Integer getInteger(String label) {
+		return this.get(label, Integer.class);
+	}
+
+	/**
+	 * @param label
+	 *            the column label
+	 * @return the column value as a Long
+	 */
+	public Long getLong(String label) {
+		return this.get(label, Long.class);
+	}
+
+	/**
+	 * @param label
+	 *            the column label
+	 * @return the column value as a Double
+	 */
+	public Double getDouble(String label) {
+		return this.get(label, Double.class);
+	}
+
+	/**
+	 * @param label
+	 *            the column label
+	 * @return the column value as a BigDecimal
+	 */
+	public BigDecimal getBigDecimal(String label) {
+		return this.get(label, BigDecimal.class);
+	}
+
+	/**
+	 * @param label
+	 *            the column label
+	 * @return the column value as a Boolean
+	 */
+	public Boolean getBoolean(String label) {
+		return this.get(label, Boolean.class);
+	}
+
+	/**
+	 * @param label
+	 *            the column label
+	 * @return the column value as a Date
+	 */
+	public java.util.Date getDate(String label) {
+		return this.get(label, java.util.Date.class);
+	}
+
+	/**
+	 * Creates a new instance of the bean class and populates it with the values of this row.
+	 *
+	 * <p>
+	 * The class must have a no-arg constructor.
+	 *
+	 * @param beanClass
+	 *            the class of the bean
+	 * @param <T>
+	 *            the bean type
+	 * @return the populated bean
+	 */
+	public <T> T toBean(Class<T> beanClass) {
+		try {
+			return this.toBean(beanClass.getDeclaredConstructor().newInstance());
+		} catch (final InstantiationException e) {
+			throw new DaoException("Unable to create instance of " + beanClass.getName(), e);
+		} catch (final IllegalAccessException e) {
+			throw new DaoException("Unable to create instance of " + beanClass.getName(), e);
+		} catch (final InvocationTargetException e) {
+			throw new DaoException("Unable to create instance of " + beanClass.getName(), e);
+		} catch (final NoSuchMethodException e) {
+			throw new DaoException("Unable to create instance of " + beanClass.getName(), e);
+		}
+	}
+
+	/**
+	 * Populates the bean with the values of this row.
+	 *
+	 * @param bean
+	 *            the bean to populate
+	 * @param <T>
+	 *            the bean type
+	 * @return the populated bean
+	 */
+	public <T> T toBean(T bean) {
+		int i = 0;
+		try {
+			for (i = 0; i < this.values.length; i++) {
+				BeanUtils.setProperty(bean, this.columns.getLabel(i), this.values[i]);
+			}
+			return bean;
+		} catch (final IllegalAccessException e) {
+			throw new DaoException("Error occurred setting bean property " + this.columns.getLabel(i)
+					+ " with value " + this.values[i], e);
+		} catch (final InvocationTargetException e) {
+			throw new DaoException("Error occurred setting bean property " + this.columns.getLabel(i)
+					+ " with value " + this.values[i], e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Object get(Object label) {
+		final int index = label instanceof String ? this.columns.indexOf((String) label) : -1;
+		return index < 0 ? null : this.values[index];
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean containsKey(Object label) {
+		return label instanceof String && this.columns.indexOf((String) label) >= 0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int size() {
+		return this.values.length;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Set<Entry<String, Object>> entrySet() {
+		return new AbstractSet<Entry<String, Object>>() {
+			@Override
+			public Iterator<Entry<String, Object>> iterator() {
+				return new Iterator<Entry<String, Object>>() {
+					private int index = 0;
+
+					public boolean hasNext() {
+						return this.index < LazyRow.this.values.length;
+					}
+
+					public Entry<String, Object> next() {
+						if (!this.hasNext()) {
+							throw new NoSuchElementException();
+						}
+						final int i = this.index++;
+						return new SimpleImmutableEntry<String, Object>(LazyRow.this.columns.getLabel(i),
+								LazyRow.this.values[i]);
+					}
+
+					public void remove() {
+						throw new UnsupportedOperationException("Rows are read only");
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return LazyRow.this.values.length;
+			}
+		};
+	}
+
+	/**
+	 * Finds the index of a column and fails when the column does not exist.
+	 *
+	 * @param label
+	 *            the column label
+	 * @return the zero based column index
+	 */
+	private int requireIndex(String label) {
+		final int index = this.columns.indexOf(label);
+		if (index < 0) {
+			throw new DaoException("No column labeled " + label + " in row " + this);
+		}
+		return index;
+	}
+}
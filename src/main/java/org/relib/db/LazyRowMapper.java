@@ -0,0 +1,54 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.db;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Handles copying a row from a result set into a {@link LazyRow}.
+ *
+ * <p>
+ * The column labels are read from the result set meta data once per result set and shared by every row. Column
+ * values are copied as they were returned by the driver and are only converted when read from the row.
+ *
+ * <p>
+ * Instances keep track of the result set they are reading so they should not be shared between selects.
+ *
+ * @author Troy Histed
+ */
+public class LazyRowMapper extends RowMapper<LazyRow> {
+
+	private ResultSet currentResultSet;
+	private ResultColumns columns;
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected LazyRow mapRow(ResultSet resultSet) throws SQLException {
+		if (this.columns == null || this.currentResultSet != resultSet) {
+			this.columns = new ResultColumns(resultSet.getMetaData());
+			this.currentResultSet = resultSet;
+		}
+
+		final Object[] values = new Object[this.columns.size()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = resultSet.getObject(i + 1);
+		}
+		return new LazyRow(this.columns, values);
+	}
+}
@@ -16,85 +16,300 @@
 package org.relib.db;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * Parses an sql statement and replaces the named parameters with question marks and puts the named parameters
  * into a list in the order of appearance in the statement.
  *
+ * <p>
+ * The statement is lexed in a single pass. Named parameters inside of quoted strings, quoted identifiers,
+ * <code>--</code> line comments and <code>/* *&#47;</code> block comments are left alone, as are PostgreSQL
+ * <code>::</code> casts. How strings and identifiers are quoted depends on the {@link Dialect}.
+ *
  * @author Troy Histed
  */
 public class NamedStatementParserStrategy {
 
+	/** The ASCII characters that can start a quote, a comment or a named parameter. */
+	private static final boolean[] SPECIAL = new boolean[128];
+
+	static {
+		for (final char c : "'\"`[$-/:".toCharArray()) {
+			NamedStatementParserStrategy.SPECIAL[c] = true;
+		}
+	}
+
+	private static final NamedStatementParserStrategy[] PARSERS =
+			new NamedStatementParserStrategy[Dialect.values().length];
+
+	static {
+		for (final Dialect dialect : Dialect.values()) {
+			NamedStatementParserStrategy.PARSERS[dialect.ordinal()] = new NamedStatementParserStrategy(dialect);
+		}
+	}
+
+	private final Dialect dialect;
+
+	/**
+	 * Constructs a parser for the {@link Dialect#GENERIC} dialect.
+	 */
+	public NamedStatementParserStrategy() {
+		this(Dialect.GENERIC);
+	}
+
+	/**
+	 * Constructs a parser for a specific dialect.
+	 *
+	 * @param dialect
+	 *            the dialect of the statements that will be parsed
+	 */
+	public NamedStatementParserStrategy(Dialect dialect) {
+		this.dialect = dialect;
+	}
+
+	/**
+	 * Returns the shared parser for a dialect. Parsers hold no state besides their dialect, so they can be used
+	 * by any number of threads.
+	 *
+	 * @param dialect
+	 *            the dialect of the statements, or null for {@link Dialect#GENERIC}
+	 * @return the parser
+	 */
+	static NamedStatementParserStrategy forDialect(Dialect dialect) {
+		return NamedStatementParserStrategy.PARSERS[(dialect == null ? Dialect.GENERIC : dialect).ordinal()];
+	}
+
 	/**
 	 * Given a query this will extract the named parameters and replace them with the prepared statement variable
 	 * marker "?". The named parameters will be inserted into a list in the order of appearance in the original
 	 * statement.
 	 *
+	 * <p>
+	 * A named parameter is a colon followed by a letter, digit or underscore, and continues while the characters
+	 * are valid in a java identifier or are dots (for nested bean properties).
+	 *
 	 * @param statement
 	 *            the statement to prepare for use as a named prepared statement
 	 * @return the parsed named statement
 	 */
-	ParsedNamedStatement prepareNamedStatement(String sqlStatement) {
+	ParsedNamedStatement prepareNamedStatement(String statement) {
 
-		final char[] statement = sqlStatement.toCharArray();
-		final char[] parsedStatement = new char[statement.length];
+		final int length = statement.length();
 		final List<String> parameters = new ArrayList<String>();
+		int[] offsets = null;
+		char[] parsedStatement = null;
+		int parsedLength = 0;
+		int copiedTo = 0;
 
 		int i = 0;
-		int j = 0;
-		while (i < statement.length) {
-			if (statement[i] == '/') {
-				if (i + 1 < statement.length && statement[i + 1] == '*') {
-					parsedStatement[j++] = statement[i++]; // the /
-					parsedStatement[j++] = statement[i++]; // the *
-					while (statement[i] != '/' || statement[i - 1] != '*') {
-						parsedStatement[j++] = statement[i++]; // the body of the comment
+		while (i < length) {
+			final char c = statement.charAt(i);
+			if (c >= NamedStatementParserStrategy.SPECIAL.length || !NamedStatementParserStrategy.SPECIAL[c]) {
+				i++;
+				continue;
+			}
+			switch (c) {
+			case '\'':
+				i = this.skipString(statement, i, this.dialect.backslashEscapes || this.isEscapeString(statement, i));
+				break;
+			case '"':
+				i = this.skipString(statement, i, this.dialect.backslashEscapes);
+				break;
+			case '`':
+				i = this.dialect.backtickQuotes ? this.skipTo(statement, i + 1, "`") : i + 1;
+				break;
+			case '[':
+				i = this.dialect.bracketQuotes ? this.skipTo(statement, i + 1, "]") : i + 1;
+				break;
+			case '$':
+				i = this.dialect.dollarQuotes ? this.skipDollarQuote(statement, i) : i + 1;
+				break;
+			case '-':
+				i = i + 1 < length && statement.charAt(i + 1) == '-' ? this.skipLine(statement, i + 2) : i + 1;
+				break;
+			case '/':
+				i = i + 1 < length && statement.charAt(i + 1) == '*' ? this.skipTo(statement, i + 2, "*/") : i + 1;
+				break;
+			default: // The colon
+				if (i + 1 < length && statement.charAt(i + 1) == ':') {
+					i += 2; // A cast such as value::integer
+				} else if (i + 1 < length && this.isParameterStart(statement.charAt(i + 1))) {
+					final int end = this.parameterEnd(statement, i + 1);
+					if (parsedStatement == null) {
+						parsedStatement = new char[length]; // Replacing names with ? never makes it longer
+						offsets = new int[8];
+					}
+					statement.getChars(copiedTo, i, parsedStatement, parsedLength);
+					parsedLength += i - copiedTo;
+					parsedStatement[parsedLength++] = '?';
+					if (parameters.size() == offsets.length) {
+						offsets = Arrays.copyOf(offsets, offsets.length * 2);
 					}
-					parsedStatement[j++] = statement[i++]; // the closing /
+					offsets[parameters.size()] = i;
+					parameters.add(statement.substring(i + 1, end));
+					copiedTo = end;
+					i = end;
 				} else {
-					parsedStatement[j++] = statement[i++]; // add the / since it's not a comment
-				}
-			} else if (statement[i] == '\'' && statement[i - 1] != '\\') {
-				parsedStatement[j++] = statement[i++]; // Add the '
-				while (statement[i] != '\'' || statement[i - 1] == '\\') {
-					parsedStatement[j++] = statement[i++];
-				}
-				parsedStatement[j++] = statement[i++]; // add the final '
-			} else if (statement[i] == '\"' && statement[i - 1] != '\\') {
-				parsedStatement[j++] = statement[i++]; // Add the '
-				while (statement[i] != '\"' || statement[i - 1] == '\\') {
-					parsedStatement[j++] = statement[i++];
-				}
-				parsedStatement[j++] = statement[i++]; // add the final '
-			} else if (statement[i] == ':') {
-				parsedStatement[j++] = '?'; // replace with a prepared statement marker
-				i++;
-				int lengthOfParameterName = 0;
-				while (i < statement.length && statement[i] != ' ' && statement[i] != ')'
-						&& statement[i] != ',') {
-					lengthOfParameterName++;
 					i++;
 				}
-				final char[] parameterName = new char[lengthOfParameterName];
-				for (int index = 1; index <= lengthOfParameterName; index++) {
-					parameterName[lengthOfParameterName - index] = statement[i - index];
-				}
-
-				final String param = String.valueOf(parameterName);
-				parameters.add(param);
-			} else {
-				parsedStatement[j++] = statement[i++];
 			}
 		}
 
-		while (j < parsedStatement.length) {
-			parsedStatement[j++] = ' ';
-		}
-
 		final ParsedNamedStatement parsedNamedStatement = new ParsedNamedStatement();
-		parsedNamedStatement.setStatement(String.valueOf(parsedStatement));
+		if (parsedStatement == null) {
+			parsedNamedStatement.setStatement(statement);
+			parsedNamedStatement.setParameterOffsets(new int[0]);
+		} else {
+			statement.getChars(copiedTo, length, parsedStatement, parsedLength);
+			parsedLength += length - copiedTo;
+			parsedNamedStatement.setStatement(new String(parsedStatement, 0, parsedLength));
+			parsedNamedStatement.setParameterOffsets(Arrays.copyOf(offsets, parameters.size()));
+		}
 		parsedNamedStatement.setParameters(parameters);
 		return parsedNamedStatement;
 	}
+
+	/**
+	 * Finds the end of a quoted string or identifier. A doubled quote inside the string is treated as the end of
+	 * one string immediately followed by another, which has the same effect as treating it as an escape.
+	 *
+	 * @param statement
+	 *            the statement
+	 * @param start
+	 *            the index of the opening quote
+	 * @param backslashEscapes
+	 *            whether a backslash escapes the following character
+	 * @return the index after the closing quote, or the statement length if the string is not closed
+	 */
+	private int skipString(String statement, int start, boolean backslashEscapes) {
+		final char quote = statement.charAt(start);
+		final int length = statement.length();
+		int i = start + 1;
+		while (i < length) {
+			final char c = statement.charAt(i);
+			if (c == quote) {
+				return i + 1;
+			}
+			i += backslashEscapes && c == '\\' ? 2 : 1;
+		}
+		return length;
+	}
+
+	/**
+	 * Determines if the quote at the index starts a PostgreSQL escape string such as E'it\'s'.
+	 *
+	 * @param statement
+	 *            the statement
+	 * @param quoteIndex
+	 *            the index of the opening quote
+	 * @return true if the quote is preceded by a standalone E
+	 */
+	private boolean isEscapeString(String statement, int quoteIndex) {
+		if (quoteIndex < 1) {
+			return false;
+		}
+		final char prefix = statement.charAt(quoteIndex - 1);
+		return (prefix == 'E' || prefix == 'e')
+				&& (quoteIndex < 2 || !Character.isJavaIdentifierPart(statement.charAt(quoteIndex - 2)));
+	}
+
+	/**
+	 * Finds the end of a dollar quoted string such as $$text$$ or $tag$text$tag$.
+	 *
+	 * @param statement
+	 *            the statement
+	 * @param start
+	 *            the index of the first dollar sign
+	 * @return the index after the closing tag, or the index after the dollar sign when it does not start a
+	 *         dollar quoted string
+	 */
+	private int skipDollarQuote(String statement, int start) {
+		if (start > 0 && Character.isJavaIdentifierPart(statement.charAt(start - 1))) {
+			return start + 1; // Part of an identifier such as V$SESSION
+		}
+		final int length = statement.length();
+		int tagEnd = start + 1;
+		while (tagEnd < length && statement.charAt(tagEnd) != '$') {
+			final char c = statement.charAt(tagEnd);
+			if (!(Character.isLetter(c) || c == '_' || tagEnd > start + 1 && Character.isDigit(c))) {
+				return start + 1;
+			}
+			tagEnd++;
+		}
+		if (tagEnd >= length) {
+			return start + 1;
+		}
+		return this.skipTo(statement, tagEnd + 1, statement.substring(start, tagEnd + 1));
+	}
+
+	/**
+	 * Finds the end of a line comment.
+	 *
+	 * @param statement
+	 *            the statement
+	 * @param start
+	 *            the index after the comment marker
+	 * @return the index of the end of line character, or the statement length
+	 */
+	private int skipLine(String statement, int start) {
+		final int length = statement.length();
+		int i = start;
+		while (i < length && statement.charAt(i) != '\n' && statement.charAt(i) != '\r') {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Finds the index after the next occurrence of the terminator.
+	 *
+	 * @param statement
+	 *            the statement
+	 * @param start
+	 *            the index to start searching from
+	 * @param terminator
+	 *            the terminator
+	 * @return the index after the terminator, or the statement length if there is no terminator
+	 */
+	private int skipTo(String statement, int start, String terminator) {
+		final int end = statement.indexOf(terminator, start);
+		return end < 0 ? statement.length() : end + terminator.length();
+	}
+
+	/**
+	 * @param c
+	 *            the character after a colon
+	 * @return true if the character can start a parameter name
+	 */
+	private boolean isParameterStart(char c) {
+		return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_'
+				|| c >= 128 && Character.isLetterOrDigit(c);
+	}
+
+	/**
+	 * Finds the end of a parameter name. Trailing dots are not part of the name.
+	 *
+	 * @param statement
+	 *            the statement
+	 * @param start
+	 *            the index of the first character of the name
+	 * @return the index after the last character of the name
+	 */
+	private int parameterEnd(String statement, int start) {
+		final int length = statement.length();
+		int end = start + 1;
+		while (end < length) {
+			final char c = statement.charAt(end);
+			if (!(this.isParameterStart(c) || c == '.' || c == '$' || c >= 128 && Character.isJavaIdentifierPart(c))) {
+				break;
+			}
+			end++;
+		}
+		while (statement.charAt(end - 1) == '.') {
+			end--;
+		}
+		return end;
+	}
 }
@@ -0,0 +1,144 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Remembers the parameters set on a prepared statement so they can be set again on another statement, such as
+ * the <code>EXPLAIN</code> of the statement.
+ *
+ * <p>
+ * Parameters set from streams can only be read once, so a statement with stream parameters can not be replayed.
+ *
+ * @author Troy Histed
+ */
+final class ParameterRecorder implements InvocationHandler {
+
+	private final PreparedStatement preparedStatement;
+	private final List<Method> setters = new ArrayList<Method>();
+	private final List<Object[]> arguments = new ArrayList<Object[]>();
+
+	/**
+	 * @param preparedStatement
+	 *            the statement to record
+	 */
+	private ParameterRecorder(PreparedStatement preparedStatement) {
+		this.preparedStatement = preparedStatement;
+	}
+
+	/**
+	 * Wraps a prepared statement so that the parameters set on it are recorded.
+	 *
+	 * @param preparedStatement
+	 *            the statement to record
+	 * @return the recording statement
+	 */
+	static PreparedStatement wrap(PreparedStatement preparedStatement) {
+		return (PreparedStatement) Proxy.newProxyInstance(ParameterRecorder.class.getClassLoader(),
+				new Class<?>[] { PreparedStatement.class }, new ParameterRecorder(preparedStatement));
+	}
+
+	/**
+	 * Finds the recorder of a statement returned by {@link #wrap(PreparedStatement)}.
+	 *
+	 * @param preparedStatement
+	 *            the statement
+	 * @return the recorder, or null if the statement is not being recorded
+	 */
+	static ParameterRecorder of(PreparedStatement preparedStatement) {
+		if (Proxy.isProxyClass(preparedStatement.getClass())) {
+			final InvocationHandler handler = Proxy.getInvocationHandler(preparedStatement);
+			if (handler instanceof ParameterRecorder) {
+				return (ParameterRecorder) handler;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Sets the recorded parameters on another statement.
+	 *
+	 * @param target
+	 *            the statement to set the parameters on
+	 * @throws SQLException
+	 *             error setting a parameter
+	 */
+	synchronized void replay(PreparedStatement target) throws SQLException {
+		for (int i = 0; i < this.setters.size(); i++) {
+			ParameterRecorder.invoke(this.setters.get(i), target, this.arguments.get(i));
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		if (method.getName().startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+			synchronized (this) {
+				this.setters.add(method);
+				this.arguments.add(args.clone());
+			}
+		} else if ("clearParameters".equals(method.getName())) {
+			synchronized (this) {
+				this.setters.clear();
+				this.arguments.clear();
+			}
+		}
+		return ParameterRecorder.invoke(method, this.preparedStatement, args);
+	}
+
+	/**
+	 * Invokes a statement method, rethrowing the exception thrown by the method itself.
+	 *
+	 * @param method
+	 *            the method
+	 * @param target
+	 *            the statement
+	 * @param args
+	 *            the arguments
+	 * @return the result of the method
+	 * @throws SQLException
+	 *             error thrown by the method
+	 */
+	private static Object invoke(Method method, PreparedStatement target, Object[] args) throws SQLException {
+		try {
+			return method.invoke(target, args);
+		} catch (final IllegalAccessException e) {
+			throw new IllegalStateException("Unable to invoke " + method, e);
+		} catch (final InvocationTargetException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof SQLException) {
+				throw (SQLException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+}
@@ -27,6 +27,7 @@ public class ParsedNamedStatement {
 
 	private String statement;
 	private List<String> parameters;
+	private int[] parameterOffsets;
 
 	/**
 	 * @return the statement
@@ -58,6 +59,21 @@ public class ParsedNamedStatement {
 		this.parameters = parameters;
 	}
 
+	/**
+	 * @return the index in the original statement of the colon that starts each named parameter
+	 */
+	public int[] getParameterOffsets() {
+		return this.parameterOffsets;
+	}
+
+	/**
+	 * @param parameterOffsets
+	 *            the parameterOffsets to set
+	 */
+	public void setParameterOffsets(int[] parameterOffsets) {
+		this.parameterOffsets = parameterOffsets;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -0,0 +1,357 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs several unrelated statements back to back on a single connection.
+ *
+ * <p>
+ * Each {@link Select} or {@link Update} normally borrows its own connection. A pipeline borrows one connection,
+ * creates its statements on that connection, and runs them in the order they were added when
+ * {@link #execute()} is called. The connection is closed once every statement has run or one of them fails.
+ *
+ * <pre>
+ * final Pipeline pipeline = new Pipeline();
+ * final Pipeline.Result&lt;User&gt; user = pipeline.add(pipeline.forBean(USER_SQL, User.class).set("id", id));
+ * final Pipeline.Result&lt;List&lt;Order&gt;&gt; orders = pipeline
+ * 		.addForAll(pipeline.forBean(ORDERS_SQL, Order.class).set("userId", id));
+ * final Pipeline.Result&lt;Integer&gt; visits = pipeline.add(pipeline.update(VISIT_SQL).set("userId", id));
+ * pipeline.execute();
+ * </pre>
+ *
+ * @author Troy Histed
+ */
+public class Pipeline {
+
+	private final JdbcConnection connection;
+	private final List<Step<?>> steps = new ArrayList<Step<?>>();
+	private boolean executed = false;
+
+	/**
+	 * Constructs a pipeline using the default connection.
+	 */
+	public Pipeline() {
+		this((String) null);
+	}
+
+	/**
+	 * Constructs a pipeline using a named connection.
+	 *
+	 * @param connectionName
+	 *            the name of the connection to use
+	 */
+	public Pipeline(String connectionName) {
+		this(connectionName, Dialect.GENERIC);
+	}
+
+	/**
+	 * Constructs a pipeline using a named connection to a database of a specific dialect.
+	 *
+	 * @param connectionName
+	 *            the name of the connection to use
+	 * @param dialect
+	 *            the dialect used to parse the pipeline's statements, or null for {@link Dialect#GENERIC}
+	 */
+	public Pipeline(String connectionName, Dialect dialect) {
+		try {
+			this.connection = JdbcConnection.connect(connectionName, dialect);
+		} catch (final SQLException e) {
+			throw new DaoException("Error occured while creating connection to datasource.", e);
+		}
+	}
+
+	/**
+	 * Constructs a pipeline using the given connection. The connection will be closed when the pipeline is
+	 * executed.
+	 *
+	 * @param connection
+	 *            the connection to use
+	 */
+	public Pipeline(Connection connection) {
+		this(connection, Dialect.GENERIC);
+	}
+
+	/**
+	 * Constructs a pipeline using the given connection to a database of a specific dialect. The connection will
+	 * be closed when the pipeline is executed.
+	 *
+	 * @param connection
+	 *            the connection to use
+	 * @param dialect
+	 *            the dialect used to parse the pipeline's statements, or null for {@link Dialect#GENERIC}
+	 */
+	public Pipeline(Connection connection, Dialect dialect) {
+		this.connection = new JdbcConnection(connection, dialect);
+	}
+
+	/**
+	 * Creates a select on the pipeline's connection. The select must be added to the pipeline to be executed.
+	 *
+	 * @param statement
+	 *            the select statement
+	 * @param rowMapper
+	 *            the row mapping to use
+	 * @param <T>
+	 *            the object type
+	 * @return the Select
+	 */
+	public <T> Select<T> forObject(String statement, RowMapper<T> rowMapper) {
+		return new Select<T>(statement, rowMapper, this.sharedConnection());
+	}
+
+	/**
+	 * Creates a select for a java bean on the pipeline's connection.
+	 *
+	 * @param statement
+	 *            the select statement
+	 * @param beanClass
+	 *            the bean class to map to
+	 * @param <T>
+	 *            the object type
+	 * @return the Select
+	 */
+	public <T> Select<T> forBean(String statement, Class<T> beanClass) {
+		return this.forObject(statement, BeanRowMapper.forClass(beanClass));
+	}
+
+	/**
+	 * Creates a select for an Integer on the pipeline's connection.
+	 *
+	 * @param statement
+	 *            the select statement
+	 * @return the Select
+	 */
+	public Select<Integer> forInteger(String statement) {
+		return this.forObject(statement, RowMappers.INTEGER_MAPPER);
+	}
+
+	/**
+	 * Creates a select for a Long on the pipeline's connection.
+	 *
+	 * @param statement
+	 *            the select statement
+	 * @return the Select
+	 */
+	public Select<Long> forLong(String statement) {
+		return this.forObject(statement, RowMappers.LONG_MAPPER);
+	}
+
+	/**
+	 * Creates a select for a String on the pipeline's connection.
+	 *
+	 * @param statement
+	 *            the select statement
+	 * @return the Select
+	 */
+	public Select<String> forString(String statement) {
+		return this.forObject(statement, RowMappers.STRING_MAPPER);
+	}
+
+	/**
+	 * Creates an update on the pipeline's connection.
+	 *
+	 * @param statement
+	 *            the update statement
+	 * @return the Update
+	 */
+	public Update update(String statement) {
+		return new Update(statement, this.sharedConnection());
+	}
+
+	/**
+	 * Adds a select whose first row will be mapped when the pipeline is executed.
+	 *
+	 * @param select
+	 *            a select created by this pipeline
+	 * @param <T>
+	 *            the object type
+	 * @return the result, available once the pipeline has been executed
+	 */
+	public <T> Result<T> add(final Select<T> select) {
+		return this.addStep(new Step<T>(select) {
+			@Override
+			T run() {
+				return select.execute();
+			}
+		});
+	}
+
+	/**
+	 * Adds a select whose rows will all be mapped when the pipeline is executed.
+	 *
+	 * @param select
+	 *            a select created by this pipeline
+	 * @param <T>
+	 *            the object type
+	 * @return the result, available once the pipeline has been executed
+	 */
+	public <T> Result<List<T>> addForAll(final Select<T> select) {
+		return this.addStep(new Step<List<T>>(select) {
+			@Override
+			List<T> run() {
+				return select.executeForAll();
+			}
+		});
+	}
+
+	/**
+	 * Adds an update that will be executed when the pipeline is executed.
+	 *
+	 * @param update
+	 *            an update created by this pipeline
+	 * @return the result holding the number of records updated, available once the pipeline has been executed
+	 */
+	public Result<Integer> add(final Update update) {
+		return this.addStep(new Step<Integer>(update) {
+			@Override
+			Integer run() {
+				return Integer.valueOf(update.execute());
+			}
+		});
+	}
+
+	/**
+	 * Executes every statement in the order it was added and then closes the connection.
+	 *
+	 * <p>
+	 * If a statement fails, the statements after it are not executed and their results remain unavailable.
+	 */
+	public void execute() {
+		if (this.executed) {
+			throw new IllegalStateException("The pipeline has already been executed");
+		}
+		this.executed = true;
+
+		int i = 0;
+		try {
+			for (i = 0; i < this.steps.size(); i++) {
+				this.steps.get(i).complete();
+			}
+		} finally {
+			for (int j = i + 1; j < this.steps.size(); j++) {
+				this.steps.get(j).statement.getConnection().cleanUp();
+			}
+			this.connection.cleanUp();
+		}
+	}
+
+	/**
+	 * Creates a connection wrapper for a single statement that leaves the pipeline's connection open.
+	 *
+	 * @return the statement connection
+	 */
+	private JdbcConnection sharedConnection() {
+		if (this.executed) {
+			throw new IllegalStateException("The pipeline has already been executed");
+		}
+		return new JdbcConnection(this.connection);
+	}
+
+	/**
+	 * Adds a step to the pipeline.
+	 *
+	 * @param step
+	 *            the step
+	 * @param <T>
+	 *            the result type
+	 * @return the step's result
+	 */
+	private <T> Result<T> addStep(Step<T> step) {
+		if (this.executed) {
+			throw new IllegalStateException("The pipeline has already been executed");
+		}
+		this.steps.add(step);
+		return step.result;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return "Pipeline [connection=" + this.connection + ", steps=" + this.steps.size() + ", executed="
+				+ this.executed + "]";
+	}
+
+	/**
+	 * Holds the result of a statement once the pipeline has been executed.
+	 *
+	 * @param <T>
+	 *            the result type
+	 */
+	public static class Result<T> {
+
+		private T value;
+		private boolean available = false;
+
+		/**
+		 * @return the result of the statement
+		 */
+		public T get() {
+			if (!this.available) {
+				throw new IllegalStateException("The pipeline has not executed this statement");
+			}
+			return this.value;
+		}
+
+		/**
+		 * @return true if the statement has been executed
+		 */
+		public boolean isAvailable() {
+			return this.available;
+		}
+	}
+
+	/**
+	 * A statement waiting to be executed.
+	 *
+	 * @param <T>
+	 *            the result type
+	 */
+	private abstract static class Step<T> {
+
+		final Statement statement;
+		final Result<T> result = new Result<T>();
+
+		/**
+		 * @param statement
+		 *            the statement to execute
+		 */
+		Step(Statement statement) {
+			this.statement = statement;
+		}
+
+		/**
+		 * Executes the statement.
+		 *
+		 * @return the statement result
+		 */
+		abstract T run();
+
+		/**
+		 * Executes the statement and stores the result.
+		 */
+		void complete() {
+			this.result.value = this.run();
+			this.result.available = true;
+		}
+	}
+}
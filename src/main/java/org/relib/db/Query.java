@@ -46,6 +46,34 @@ public final class Query {
 		return new Update(statement, connectionName);
 	}
 
+	/**
+	 * Static constructor for an Update that returns generated keys.
+	 *
+	 * @param statement
+	 *            the insert statement to execute
+	 * @param keyColumns
+	 *            the generated key columns to return, or none to let the driver choose the columns
+	 * @return the Update
+	 */
+	public static Update insertReturningKeys(String statement, String... keyColumns) {
+		return new Update(statement, (String) null, keyColumns);
+	}
+
+	/**
+	 * Static constructor for an Update that returns generated keys.
+	 *
+	 * @param statement
+	 *            the insert statement to execute
+	 * @param keyColumns
+	 *            the generated key columns to return, or an empty array to let the driver choose the columns
+	 * @param connectionName
+	 *            the connection name to use
+	 * @return the Update
+	 */
+	public static Update insertReturningKeys(String statement, String[] keyColumns, String connectionName) {
+		return new Update(statement, connectionName, keyColumns);
+	}
+
 	/**
 	 * Static constructor for building a select for an Object.
 	 *
@@ -110,6 +138,30 @@ public final class Query {
 		return new Select<T>(statement, BeanRowMapper.forClass(beanClass), connectionName);
 	}
 
+	/**
+	 * Static constructor for building a select for rows that are converted to java types as they are read.
+	 *
+	 * @param statement
+	 *            the select statement to execute
+	 * @return the Select
+	 */
+	public static Select<LazyRow> forLazyRow(String statement) {
+		return new Select<LazyRow>(statement, new LazyRowMapper());
+	}
+
+	/**
+	 * Static constructor for building a select for rows that are converted to java types as they are read.
+	 *
+	 * @param statement
+	 *            the select statement to execute
+	 * @param connectionName
+	 *            the connection name to use
+	 * @return the Select
+	 */
+	public static Select<LazyRow> forLazyRow(String statement, String connectionName) {
+		return new Select<LazyRow>(statement, new LazyRowMapper(), connectionName);
+	}
+
 	/**
 	 * Static constructor for building a select for an Integer.
 	 *
@@ -205,4 +257,39 @@ public final class Query {
 	public static Select<String> forString(String statement, String connectionName) {
 		return new Select<String>(statement, RowMappers.STRING_MAPPER, connectionName);
 	}
+
+	/**
+	 * Static constructor for a Pipeline that runs several statements on one connection.
+	 *
+	 * @return the Pipeline
+	 */
+	public static Pipeline pipeline() {
+		return new Pipeline();
+	}
+
+	/**
+	 * Static constructor for a Pipeline that runs several statements on one connection.
+	 *
+	 * @param connectionName
+	 *            the connection name to use
+	 * @return the Pipeline
+	 */
+	public static Pipeline pipeline(String connectionName) {
+		return new Pipeline(connectionName);
+	}
+
+	/**
+	 * Static constructor for an Upsert that inserts a row or updates it when its key already exists.
+	 *
+	 * @param table
+	 *            the table to write to
+	 * @param dialect
+	 *            the dialect of the database
+	 * @param keyColumns
+	 *            the columns of the key that identifies a row
+	 * @return the Upsert
+	 */
+	public static Upsert upsert(String table, Dialect dialect, String... keyColumns) {
+		return new Upsert(table, dialect, keyColumns);
+	}
 }
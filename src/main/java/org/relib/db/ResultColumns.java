@@ -0,0 +1,99 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.db;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Describes the columns of a result set so that the column labels only need to be read from the meta data once
+ * per query rather than once per row.
+ *
+ * <p>
+ * Column labels are matched exactly first and then without regard to case, since most databases treat unquoted
+ * labels as case insensitive.
+ *
+ * @author Troy Histed
+ */
+class ResultColumns {
+
+	private final String[] labels;
+	private final Map<String, Integer> indexes;
+
+	/**
+	 * Reads the column labels from the meta data.
+	 *
+	 * @param metaData
+	 *            the result set meta data
+	 * @throws SQLException
+	 *             error reading the meta data
+	 */
+	ResultColumns(ResultSetMetaData metaData) throws SQLException {
+		final int columnCount = metaData.getColumnCount();
+		this.labels = new String[columnCount];
+		this.indexes = new HashMap<String, Integer>(columnCount * 4);
+		for (int i = 0; i < columnCount; i++) {
+			this.labels[i] = metaData.getColumnLabel(i + 1);
+			final Integer index = Integer.valueOf(i);
+			if (!this.indexes.containsKey(this.labels[i])) {
+				this.indexes.put(this.labels[i], index);
+			}
+			final String upperCaseLabel = this.labels[i].toUpperCase(Locale.ENGLISH);
+			if (!this.indexes.containsKey(upperCaseLabel)) {
+				this.indexes.put(upperCaseLabel, index);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of columns
+	 */
+	int size() {
+		return this.labels.length;
+	}
+
+	/**
+	 * Returns the label of a column.
+	 *
+	 * @param index
+	 *            the zero based column index
+	 * @return the column label
+	 */
+	String getLabel(int index) {
+		return this.labels[index];
+	}
+
+	/**
+	 * Finds the zero based index of the column with the given label.
+	 *
+	 * @param label
+	 *            the column label
+	 * @return the column index or -1 if there is no column with the label
+	 */
+	int indexOf(String label) {
+		if (label == null) {
+			return -1;
+		}
+		Integer index = this.indexes.get(label);
+		if (index == null) {
+			index = this.indexes.get(label.toUpperCase(Locale.ENGLISH));
+		}
+		return index == null ? -1 : index.intValue();
+	}
+}
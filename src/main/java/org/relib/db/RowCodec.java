@@ -0,0 +1,291 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.db;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.sql.Time;
+import java.sql.Timestamp;
+
+/**
+ * Encodes column values into a compact binary form and decodes them again.
+ *
+ * <p>
+ * Each value is written as a single byte tag followed by the value. The common JDBC types are written directly;
+ * any other {@link Serializable} value is written using java serialization.
+ *
+ * @author Troy Histed
+ */
+final class RowCodec {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final byte NULL = 0;
+	private static final byte STRING = 1;
+	private static final byte INTEGER = 2;
+	private static final byte LONG = 3;
+	private static final byte DOUBLE = 4;
+	private static final byte FLOAT = 5;
+	private static final byte SHORT = 6;
+	private static final byte BYTE = 7;
+	private static final byte BOOLEAN = 8;
+	private static final byte BIG_DECIMAL = 9;
+	private static final byte BIG_INTEGER = 10;
+	private static final byte TIMESTAMP = 11;
+	private static final byte DATE = 12;
+	private static final byte TIME = 13;
+	private static final byte BYTES = 14;
+	private static final byte SERIALIZED = 15;
+
+	private RowCodec() {
+		// Static methods only
+	}
+
+	/**
+	 * Encodes the values of a row into the buffer, growing the buffer when it is too small.
+	 *
+	 * @param values
+	 *            the row values
+	 * @param buffer
+	 *            the buffer to write to
+	 * @return the buffer that was written to, which may be a new larger buffer
+	 */
+	static ByteBuffer encode(Object[] values, ByteBuffer buffer) {
+		ByteBuffer out = buffer;
+		for (final Object value : values) {
+			out = RowCodec.encode(value, out);
+		}
+		return out;
+	}
+
+	/**
+	 * Decodes the values of a row from the buffer.
+	 *
+	 * @param buffer
+	 *            the buffer positioned at the start of the row
+	 * @param columnCount
+	 *            the number of values in the row
+	 * @return the row values
+	 */
+	static Object[] decode(ByteBuffer buffer, int columnCount) {
+		final Object[] values = new Object[columnCount];
+		for (int i = 0; i < columnCount; i++) {
+			values[i] = RowCodec.decode(buffer);
+		}
+		return values;
+	}
+
+	/**
+	 * Encodes a single value.
+	 *
+	 * @param value
+	 *            the value to encode
+	 * @param buffer
+	 *            the buffer to write to
+	 * @return the buffer that was written to
+	 */
+	private static ByteBuffer encode(Object value, ByteBuffer buffer) {
+		if (value == null) {
+			return RowCodec.ensureCapacity(buffer, 1).put(RowCodec.NULL);
+		} else if (value instanceof String) {
+			return RowCodec.putBytes(RowCodec.STRING, ((String) value).getBytes(RowCodec.UTF_8), buffer);
+		} else if (value instanceof Integer) {
+			return RowCodec.ensureCapacity(buffer, 5).put(RowCodec.INTEGER).putInt(((Integer) value).intValue());
+		} else if (value instanceof Long) {
+			return RowCodec.ensureCapacity(buffer, 9).put(RowCodec.LONG).putLong(((Long) value).longValue());
+		} else if (value instanceof Double) {
+			return RowCodec.ensureCapacity(buffer, 9).put(RowCodec.DOUBLE)
+					.putDouble(((Double) value).doubleValue());
+		} else if (value instanceof Float) {
+			return RowCodec.ensureCapacity(buffer, 5).put(RowCodec.FLOAT).putFloat(((Float) value).floatValue());
+		} else if (value instanceof Short) {
+			return RowCodec.ensureCapacity(buffer, 3).put(RowCodec.SHORT).putShort(((Short) value).shortValue());
+		} else if (value instanceof Byte) {
+			return RowCodec.ensureCapacity(buffer, 2).put(RowCodec.BYTE).put(((Byte) value).byteValue());
+		} else if (value instanceof Boolean) {
+			return RowCodec.ensureCapacity(buffer, 2).put(RowCodec.BOOLEAN)
+					.put(((Boolean) value).booleanValue() ? (byte) 1 : (byte) 0);
+		} else if (value instanceof BigDecimal) {
+			final BigDecimal decimal = (BigDecimal) value;
+			final ByteBuffer out = RowCodec.putBytes(RowCodec.BIG_DECIMAL, decimal.unscaledValue().toByteArray(),
+					buffer);
+			return RowCodec.ensureCapacity(out, 4).putInt(decimal.scale());
+		} else if (value instanceof BigInteger) {
+			return RowCodec.putBytes(RowCodec.BIG_INTEGER, ((BigInteger) value).toByteArray(), buffer);
+		} else if (value instanceof Timestamp) {
+			final Timestamp timestamp = (Timestamp) value;
+			return RowCodec.ensureCapacity(buffer, 13).put(RowCodec.TIMESTAMP).putLong(timestamp.getTime())
+					.putInt(timestamp.getNanos());
+		} else if (value instanceof java.sql.Date) {
+			return RowCodec.ensureCapacity(buffer, 9).put(RowCodec.DATE).putLong(((java.sql.Date) value).getTime());
+		} else if (value instanceof Time) {
+			return RowCodec.ensureCapacity(buffer, 9).put(RowCodec.TIME).putLong(((Time) value).getTime());
+		} else if (value instanceof byte[]) {
+			return RowCodec.putBytes(RowCodec.BYTES, (byte[]) value, buffer);
+		} else if (value instanceof Serializable) {
+			return RowCodec.putBytes(RowCodec.SERIALIZED, RowCodec.serialize((Serializable) value), buffer);
+		}
+		throw new DaoException("Unable to copy value of type " + value.getClass().getName() + ": " + value);
+	}
+
+	/**
+	 * Decodes a single value.
+	 *
+	 * @param buffer
+	 *            the buffer positioned at the start of the value
+	 * @return the value
+	 */
+	private static Object decode(ByteBuffer buffer) {
+		final byte tag = buffer.get();
+		switch (tag) {
+		case NULL:
+			return null;
+		case STRING:
+			return new String(RowCodec.getBytes(buffer), RowCodec.UTF_8);
+		case INTEGER:
+			return Integer.valueOf(buffer.getInt());
+		case LONG:
+			return Long.valueOf(buffer.getLong());
+		case DOUBLE:
+			return Double.valueOf(buffer.getDouble());
+		case FLOAT:
+			return Float.valueOf(buffer.getFloat());
+		case SHORT:
+			return Short.valueOf(buffer.getShort());
+		case BYTE:
+			return Byte.valueOf(buffer.get());
+		case BOOLEAN:
+			return Boolean.valueOf(buffer.get() != 0);
+		case BIG_DECIMAL:
+			final BigInteger unscaled = new BigInteger(RowCodec.getBytes(buffer));
+			return new BigDecimal(unscaled, buffer.getInt());
+		case BIG_INTEGER:
+			return new BigInteger(RowCodec.getBytes(buffer));
+		case TIMESTAMP:
+			final Timestamp timestamp = new Timestamp(buffer.getLong());
+			timestamp.setNanos(buffer.getInt());
+			return timestamp;
+		case DATE:
+			return new java.sql.Date(buffer.getLong());
+		case TIME:
+			return new Time(buffer.getLong());
+		case BYTES:
+			return RowCodec.getBytes(buffer);
+		case SERIALIZED:
+			return RowCodec.deserialize(RowCodec.getBytes(buffer));
+		default:
+			throw new DaoException("Unknown value tag " + tag + " at position " + (buffer.position() - 1));
+		}
+	}
+
+	/**
+	 * Writes a tag followed by a length prefixed array of bytes.
+	 *
+	 * @param tag
+	 *            the value tag
+	 * @param bytes
+	 *            the bytes to write
+	 * @param buffer
+	 *            the buffer to write to
+	 * @return the buffer that was written to
+	 */
+	private static ByteBuffer putBytes(byte tag, byte[] bytes, ByteBuffer buffer) {
+		return RowCodec.ensureCapacity(buffer, 5 + bytes.length).put(tag).putInt(bytes.length).put(bytes);
+	}
+
+	/**
+	 * Reads a length prefixed array of bytes.
+	 *
+	 * @param buffer
+	 *            the buffer to read from
+	 * @return the bytes
+	 */
+	private static byte[] getBytes(ByteBuffer buffer) {
+		final byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Makes sure the buffer has room for the specified number of bytes, copying it into a larger buffer when it
+	 * does not.
+	 *
+	 * @param buffer
+	 *            the buffer
+	 * @param length
+	 *            the number of bytes needed
+	 * @return a buffer with enough room
+	 */
+	private static ByteBuffer ensureCapacity(ByteBuffer buffer, int length) {
+		if (buffer.remaining() >= length) {
+			return buffer;
+		}
+		final int capacity = Math.max(buffer.capacity() * 2, buffer.position() + length);
+		final ByteBuffer larger = ByteBuffer.allocate(capacity);
+		buffer.flip();
+		larger.put(buffer);
+		return larger;
+	}
+
+	/**
+	 * Serializes a value using java serialization.
+	 *
+	 * @param value
+	 *            the value
+	 * @return the serialized bytes
+	 */
+	private static byte[] serialize(Serializable value) {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try {
+			final ObjectOutputStream out = new ObjectOutputStream(bytes);
+			out.writeObject(value);
+			out.close();
+		} catch (final IOException e) {
+			throw new DaoException("Unable to serialize " + value, e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Deserializes a value using java serialization.
+	 *
+	 * @param bytes
+	 *            the serialized bytes
+	 * @return the value
+	 */
+	private static Object deserialize(byte[] bytes) {
+		try {
+			final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+			try {
+				return in.readObject();
+			} finally {
+				in.close();
+			}
+		} catch (final IOException e) {
+			throw new DaoException("Unable to deserialize value", e);
+		} catch (final ClassNotFoundException e) {
+			throw new DaoException("Unable to deserialize value", e);
+		}
+	}
+}
@@ -64,4 +64,21 @@ public class RowMappers {
 			return Double.valueOf(value);
 		}
 	};
+
+	/**
+	 * Creates a row mapper that returns the first column as a String, sharing a single instance of each repeated
+	 * value through the dictionary.
+	 *
+	 * @param dictionary
+	 *            the dictionary used to share repeated values
+	 * @return a new row mapper
+	 */
+	public static RowMapper<String> stringMapper(final StringDictionary dictionary) {
+		return new RowMapper<String>() {
+			@Override
+			protected String mapRow(ResultSet resultSet) throws SQLException {
+				return dictionary.deduplicate(resultSet.getString(1));
+			}
+		};
+	}
 }
@@ -0,0 +1,475 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.db;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Reads the current row of a result set through column indexes that are resolved once per result set.
+ *
+ * <p>
+ * Columns can be read either by a {@link Column} declared on a {@link RowReaderMapper}, which costs an array read
+ * per value, or by label, which costs a hash lookup per value. Both avoid the linear label search many drivers
+ * perform for {@link ResultSet#getInt(String)} and friends.
+ *
+ * <p>
+ * The primitive getters take the value to return when the column is null so that nullable columns can be read
+ * without boxing. {@link #wasNull()} reports whether the last value read was null.
+ *
+ * @author Troy Histed
+ */
+public final class RowReader {
+
+	private final ResultSet resultSet;
+	private final ResultColumns columns;
+	private final Column[] declared;
+	private final int[] indexes;
+
+	/**
+	 * Resolves the declared columns against the result set.
+	 *
+	 * @param resultSet
+	 *            the result set to read
+	 * @param columns
+	 *            the columns of the result set
+	 * @param declared
+	 *            the columns declared by the mapper, in slot order
+	 */
+	RowReader(ResultSet resultSet, ResultColumns columns, List<Column> declared) {
+		this.resultSet = resultSet;
+		this.columns = columns;
+		this.declared = declared.toArray(new Column[declared.size()]);
+		this.indexes = new int[this.declared.length];
+		for (int i = 0; i < this.indexes.length; i++) {
+			this.indexes[i] = columns.indexOf(this.declared[i].getLabel()) + 1;
+		}
+	}
+
+	/**
+	 * @return the result set being read
+	 */
+	public ResultSet getResultSet() {
+		return this.resultSet;
+	}
+
+	/**
+	 * @param column
+	 *            the declared column
+	 * @return true if the result set has the column
+	 */
+	public boolean hasColumn(Column column) {
+		return this.resolve(column) > 0;
+	}
+
+	/**
+	 * @param label
+	 *            the column label
+	 * @return true if the result set has a column with the label
+	 */
+	public boolean hasColumn(String label) {
+		return this.columns.indexOf(label) >= 0;
+	}
+
+	/**
+	 * @return true if the last value read was null
+	 * @throws SQLException
+	 *             error reading the result set
+	 */
+	public boolean wasNull() throws SQLException {
+		return this.resultSet.wasNull();
+	}
+
+	/**
+	 * @param column
+	 *            the declared column
+	 * @return the column value as a String
+	 * @throws SQLException
+	 *             error reading the result set
+	 */
+	public String getString(Column column) throws SQLException {
+		return this.resultSet.getString(this.index(column));
+	}
+
+	/**
+	 * @param label
+	 *            the column label
+	 * @return the column value as a String
+	 * @throws SQLException
+	 *             error reading the result set
+	 */
+	public String getString(String label) throws SQLException {
+		return this.resultSet.getString(this.index(label));
+	}
+
+	/**
+	 * @param column
+	 *            the declared column
+	 * @return the column value as an int, or 0 if null
+	 * @throws SQLException
+	 *             error reading the result set
+	 */
+	public int getInt(Column column) throws SQLException {
+		return this.resultSet.getInt(this.index(column));
+	}
+
+	/**
+	 * @param column
+	 *            the declared column
+	 * @param valueIfNull
+	 *            the value to return when the column is null
+	 * @return the column value as an int
+	 * @throws SQLException
+	 *             error reading the result set
+	 */
+	public int getInt(Column column, int valueIfNull) throws SQLException {
+		final int value = this.resultSet.getInt(this.index(column));
+		return this.resultSet.wasNull() ? valueIfNull : value;
+	}
+
+	/**
+	 * @param label
+	 *            the column label
+	 * @return the column value as an int, or 0 if null
+	 * @throws SQLException
+	 *             error reading the result set
+	 */
+	public int getInt(String label) throws SQLException {
+		return this.resultSet.getInt(this.index(label));
+	}
+
+	/**
+	 * @param label
+	 *            the column label
+	 * @param valueIfNull
+	 *            the value to return when the column is null
+	 * @return the column value as an int
+	 * @throws SQLException
+	 *             error reading the result set
+	 */
+	public int getInt(String label, int valueIfNull) throws SQLException {
+		final int value = this.resultSet.getInt(this.index(label));
+		return this.resultSet.wasNull() ? valueIfNull : value;
+	}
+
+	/**
+	 * @param column
+	 *            the declared column
+	 * @return the column value as a long, or 0 if null
+	 * @throws SQLException
+	 *             error reading the result set
+	 */
+	public long getLong(Column column) throws SQLException {
+		return this.resultSet.getLong(this.index(column));
+	}
+
+	/**
+	 * @param column
+	 *            the declared column
+	 * @param valueIfNull
+	 *            the value to return when the column is null
+	 * @return the column value as a long
+	 * @throws SQLException
+	 *             error reading the result set
+	 */
+	public long getLong(Column column, long valueIfNull) throws SQLException {
+		final long value = this.resultSet.getLong(this.index(column));
+		return this.resultSet.wasNull() ? valueIfNull : value;
+	}
+
+	/**
+	 * @param label
+	 *            the column label
+	 * @return the column value as a long, or 0 if null
+	 * @throws SQLException
+	 *             error reading the result set
+	 */
+	public long getLong(String label) throws SQLException {
+		return this.resultSet.getLong(this.index(label));
+	}
+
+	/**
+	 * @param label
+	 *            the column label
+	 * @param valueIfNull
+	 *            the value to return when the column is null
+	 * @return the column value as a long
+	 * @throws SQLException
+	 *             error reading the result set
+	 */
+	public long getLong(String label, long valueIfNull) throws SQLException {
+		final long value = this.resultSet.getLong(this.index(label));
+		return this.resultSet.wasNull() ? valueIfNull : value;
+	}
+
+	/**
+	 * @param column
+	 *            the declared column
+	 * @return the column value as a double, or 0 if null
+	 * @throws SQLException
+	 *             error reading the result set
+	 */
+	public double getDouble(Column column) throws SQLException {
+		return this.resultSet.getDouble(this.index(column));
+	}
+
+	/**
+	 * @param column
+	 *            the declared column
+	 * @param valueIfNull
+	 *            the value to return when the column is null
+	 * @return the column value as a double
+	 * @throws SQLException
+	 *             error reading the result set
+	 */
+	public double getDouble(Column column, double valueIfNull) throws SQLException {
+		final double value = this.resultSet.getDouble(this.index(column));
+		return this.resultSet.wasNull() ? valueIfNull : value;
+	}
+
+	/**
+	 * @param label
+	 *            the column label
+	 * @return the column value as a double, or 0 if null
+	 * @throws SQLException
+	 *             error reading the result set
+	 */
+	public double getDouble(String label) throws SQLException {
+		return this.resultSet.getDouble(this.index(label));
+	}
+
+	/**
+	 * @param label
+	 *            the column label
+	 * @param valueIfNull
+	 *            the value to return when the column is null
+	 * @return the column value as a double
+	 * @throws SQLException
+	 *             error reading the result set
+	 */
+	public double getDouble(String label, double valueIfNull) throws SQLException {
+		final double value = this.resultSet.getDouble(this.index(label));
+		return this.resultSet.wasNull() ? valueIfNull : value;
+	}
+
+	/**
+	 * @param column
+	 *            the declared column
+	 * @return the column value as a boolean, or false if null
+	 * @throws SQLException
+	 *             error reading the result set
+	 */
+	public boolean getBoolean(Column column) throws SQLException {
+		return this.resultSet.getBoolean(this.index(column));
+	}
+
+	/**
+	 * @param column
+	 *            the declared column
+	 * @param valueIfNull
+	 *            the value to return when the column is null
+	 * @return the column value as a boolean
+	 * @throws SQLException
+	 *             error reading the result set
+	 */
+	public boolean getBoolean(Column column, boolean valueIfNull) throws SQLException {
+		final boolean value = this.resultSet.getBoolean(this.index(column));
+		return this.resultSet.wasNull() ? valueIfNull : value;
+	}
+
+	/**
+	 * @param label
+	 *            the column label
+	 * @return the column value as a boolean, or false if null
+	 * @throws SQLException
+	 *             error reading the result set
+	 */
+	public boolean getBoolean(String label) throws SQLException {
+		return this.resultSet.getBoolean(this.index(label));
+	}
+
+	/**
+	 * @param label
+	 *            the column label
+	 * @param valueIfNull
+	 *            the value to return when the column is null
+	 * @return the column value as a boolean
+	 * @throws SQLException
+	 *             error reading the result set
+	 */
+	public boolean getBoolean(String label, boolean valueIfNull) throws SQLException {
+		final boolean value = this.resultSet.getBoolean(this.index(label));
+		return this.resultSet.wasNull() ? valueIfNull : value;
+	}
+
+	/**
+	 * @param column
+	 *            the declared column
+	 * @return the column value as a BigDecimal
+	 * @throws SQLException
+	 *             error reading the result set
+	 */
+	public BigDecimal getBigDecimal(Column column) throws SQLException {
+		return this.resultSet.getBigDecimal(this.index(column));
+	}
+
+	/**
+	 * @param label
+	 *            the column label
+	 * @return the column value as a BigDecimal
+	 * @throws SQLException
+	 *             error reading the result set
+	 */
+	public BigDecimal getBigDecimal(String label) throws SQLException {
+		return this.resultSet.getBigDecimal(this.index(label));
+	}
+
+	/**
+	 * @param column
+	 *            the declared column
+	 * @return the column value as a Timestamp
+	 * @throws SQLException
+	 *             error reading the result set
+	 */
+	public Timestamp getTimestamp(Column column) throws SQLException {
+		return this.resultSet.getTimestamp(this.index(column));
+	}
+
+	/**
+	 * @param label
+	 *            the column label
+	 * @return the column value as a Timestamp
+	 * @throws SQLException
+	 *             error reading the result set
+	 */
+	public Timestamp getTimestamp(String label) throws SQLException {
+		return this.resultSet.getTimestamp(this.index(label));
+	}
+
+	/**
+	 * @param column
+	 *            the declared column
+	 * @return the column value as returned by the driver
+	 * @throws SQLException
+	 *             error reading the result set
+	 */
+	public Object getObject(Column column) throws SQLException {
+		return this.resultSet.getObject(this.index(column));
+	}
+
+	/**
+	 * @param label
+	 *            the column label
+	 * @return the column value as returned by the driver
+	 * @throws SQLException
+	 *             error reading the result set
+	 */
+	public Object getObject(String label) throws SQLException {
+		return this.resultSet.getObject(this.index(label));
+	}
+
+	/**
+	 * Finds the one based index of a declared column, or 0 if the result set does not have the column. A column
+	 * declared by another mapper, or after this reader was created, is found by its label.
+	 *
+	 * @param column
+	 *            the declared column
+	 * @return the column index
+	 */
+	private int resolve(Column column) {
+		final int slot = column.getSlot();
+		if (slot < this.indexes.length && this.declared[slot] == column) {
+			return this.indexes[slot];
+		}
+		return this.columns.indexOf(column.getLabel()) + 1;
+	}
+
+	/**
+	 * @param column
+	 *            the declared column
+	 * @return the one based column index
+	 * @throws SQLException
+	 *             if the result set does not have the column
+	 */
+	private int index(Column column) throws SQLException {
+		final int index = this.resolve(column);
+		if (index == 0) {
+			throw new SQLException("No column labeled " + column.getLabel());
+		}
+		return index;
+	}
+
+	/**
+	 * @param label
+	 *            the column label
+	 * @return the one based column index
+	 * @throws SQLException
+	 *             if the result set does not have the column
+	 */
+	private int index(String label) throws SQLException {
+		final int index = this.columns.indexOf(label);
+		if (index < 0) {
+			throw new SQLException("No column labeled " + label);
+		}
+		return index + 1;
+	}
+
+	/**
+	 * A column declared by a {@link RowReaderMapper}. The column is resolved to an index once per result set and
+	 * read by that index for every row.
+	 */
+	public static final class Column {
+
+		private final String label;
+		private final int slot;
+
+		/**
+		 * @param label
+		 *            the column label
+		 * @param slot
+		 *            the position of the column in the declaring mapper
+		 */
+		Column(String label, int slot) {
+			this.label = label;
+			this.slot = slot;
+		}
+
+		/**
+		 * @return the column label
+		 */
+		public String getLabel() {
+			return this.label;
+		}
+
+		/**
+		 * @return the position of the column in the declaring mapper
+		 */
+		int getSlot() {
+			return this.slot;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public String toString() {
+			return this.label;
+		}
+	}
+}
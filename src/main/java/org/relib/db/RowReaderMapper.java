@@ -0,0 +1,95 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.db;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Handles converting a row from a result set into an object of type T by reading through a {@link RowReader}.
+ *
+ * <p>
+ * Columns are declared once, typically as fields, and resolved to column indexes once per result set:
+ *
+ * <pre>
+ * public class PersonMapper extends RowReaderMapper&lt;Person&gt; {
+ *     private final Column id = this.column("id");
+ *     private final Column age = this.column("age");
+ *
+ *     protected Person mapRow(RowReader row) throws SQLException {
+ *         return new Person(row.getLong(this.id), row.getInt(this.age, -1));
+ *     }
+ * }
+ * </pre>
+ *
+ * <p>
+ * Declared columns belong to the mapper that declared them. A column declared by another mapper can still be read,
+ * but is found by its label for every row.
+ *
+ * @author Troy Histed
+ *
+ * @param <T>
+ *            The object type that will be created with each row
+ */
+public abstract class RowReaderMapper<T> extends RowMapper<T> {
+
+	private final List<RowReader.Column> declared = new ArrayList<RowReader.Column>();
+	private volatile RowReader reader;
+
+	/**
+	 * Declares a column to be read by each row.
+	 *
+	 * @param label
+	 *            the column label
+	 * @return the declared column
+	 */
+	protected final RowReader.Column column(String label) {
+		synchronized (this.declared) {
+			final RowReader.Column column = new RowReader.Column(label, this.declared.size());
+			this.declared.add(column);
+			return column;
+		}
+	}
+
+	/**
+	 * Maps the current row of the reader to an instance of the query type.
+	 *
+	 * @param row
+	 *            the reader positioned on the row to process
+	 * @return the mapped row
+	 * @throws SQLException
+	 *             the sql exception
+	 */
+	protected abstract T mapRow(RowReader row) throws SQLException;
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected final T mapRow(ResultSet resultSet) throws SQLException {
+		RowReader rowReader = this.reader;
+		if (rowReader == null || rowReader.getResultSet() != resultSet) {
+			final ResultColumns columns = new ResultColumns(resultSet.getMetaData());
+			synchronized (this.declared) {
+				rowReader = new RowReader(resultSet, columns, this.declared);
+			}
+			this.reader = rowReader;
+		}
+		return this.mapRow(rowReader);
+	}
+}
@@ -32,14 +32,15 @@ import java.util.List;
  */
 public class Select<T> extends Statement {
 
-	private static final NamedStatementParserStrategy STATEMENT_PARSER = new NamedStatementParserStrategy();
-
 	private final String statement;
 	private final JdbcConnection connection;
 	private final PreparedStatement preparedStatement;
 	private final RowMapper<T> rowMapper;
 	private T defaultWhenNull = null;
 	private List<String> parameters;
+	private final String fingerprint;
+	private FetchSizePolicy fetchSizePolicy = null;
+	private long executeNanos;
 
 	/**
 	 * Constructs a select and performs initialization.
@@ -64,26 +65,47 @@ public class Select<T> extends Statement {
 	 *            the name of the connection to use
 	 */
 	public Select(String select, RowMapper<T> rowMapper, String connectionName) {
+		this(select, rowMapper, connectionName, Dialect.GENERIC);
+	}
+
+	/**
+	 * Constructs a select for a database of a specific dialect and performs initialization.
+	 *
+	 * @param select
+	 *            the select to be executed
+	 * @param rowMapper
+	 *            the row mapping to use
+	 * @param connectionName
+	 *            the name of the connection to use
+	 * @param dialect
+	 *            the dialect used to parse the select, or null for {@link Dialect#GENERIC}
+	 */
+	public Select(String select, RowMapper<T> rowMapper, String connectionName, Dialect dialect) {
 
 		this.statement = select;
 		this.rowMapper = rowMapper;
-		final ParsedNamedStatement preparedSelect = Select.STATEMENT_PARSER.prepareNamedStatement(select);
+		final ParsedNamedStatement preparedSelect = NamedStatementParserStrategy.forDialect(dialect)
+				.prepareNamedStatement(select);
 		this.parameters = preparedSelect.getParameters();
+		this.fingerprint = preparedSelect.getStatement();
 
+		JdbcConnection jdbcConnection = null;
 		try {
-			this.connection = this.connect(connectionName);
-			this.preparedStatement = this.connection.prepareStatement(preparedSelect.getStatement());
+			jdbcConnection = this.connect(connectionName);
+			this.preparedStatement = StatementStatistics
+					.prepared(jdbcConnection.prepareStatement(preparedSelect.getStatement()));
 		} catch (final SQLException e) {
-			if (this.connection != null) {
-				this.connection.cleanUp();
+			if (jdbcConnection != null) {
+				jdbcConnection.cleanUp();
 			}
 			throw new DaoException("Error occured while creating connection to datasource.", e);
 		} catch (final RuntimeException e) {
-			if (this.connection != null) {
-				this.connection.cleanUp();
+			if (jdbcConnection != null) {
+				jdbcConnection.cleanUp();
 			}
 			throw e;
 		}
+		this.connection = jdbcConnection;
 	}
 
 	/**
@@ -97,16 +119,49 @@ public class Select<T> extends Statement {
 	 *            the connection to use
 	 */
 	public Select(String select, RowMapper<T> rowMapper, Connection connection) {
+		this(select, rowMapper, new JdbcConnection(connection));
+	}
+
+	/**
+	 * Constructs a select for a database of a specific dialect and performs initialization.
+	 *
+	 * @param select
+	 *            the select to be executed
+	 * @param rowMapper
+	 *            the row mapping to use
+	 * @param connection
+	 *            the connection to use
+	 * @param dialect
+	 *            the dialect used to parse the select, or null for {@link Dialect#GENERIC}
+	 */
+	public Select(String select, RowMapper<T> rowMapper, Connection connection, Dialect dialect) {
+		this(select, rowMapper, new JdbcConnection(connection, dialect));
+	}
+
+	/**
+	 * Constructs a select and performs initialization.
+	 *
+	 * @param select
+	 *            the select to be executed
+	 * @param rowMapper
+	 *            the row mapping to use
+	 * @param connection
+	 *            the connection to use, whose dialect is used to parse the select
+	 */
+	Select(String select, RowMapper<T> rowMapper, JdbcConnection connection) {
 
 		this.statement = select;
 		this.rowMapper = rowMapper;
-		this.connection = new JdbcConnection(connection);
+		this.connection = connection;
 
-		final ParsedNamedStatement preparedSelect = Select.STATEMENT_PARSER.prepareNamedStatement(select);
+		final ParsedNamedStatement preparedSelect = NamedStatementParserStrategy.forDialect(connection.getDialect())
+				.prepareNamedStatement(select);
 		this.parameters = preparedSelect.getParameters();
+		this.fingerprint = preparedSelect.getStatement();
 
 		try {
-			this.preparedStatement = this.connection.prepareStatement(preparedSelect.getStatement());
+			this.preparedStatement = StatementStatistics
+					.prepared(this.connection.prepareStatement(preparedSelect.getStatement()));
 		} catch (final SQLException e) {
 			this.connection.cleanUp();
 			throw new DaoException("Error occured while preparing statement: " + select, e);
@@ -150,15 +205,19 @@ public class Select<T> extends Statement {
 		ResultSet resultSet = null;
 
 		try {
-			resultSet = this.preparedStatement.executeQuery();
+			resultSet = this.executeQuery();
+			final Object event = FlightRecorderEvents.begin(FlightRecorderEvents.MAP);
 			if (!moveCursor || resultSet.next()) {
 				t = this.rowMapper.mapRow(resultSet);
 			}
+			FlightRecorderEvents.end(event, this.fingerprint, t == null ? 0 : 1);
+			this.executed();
 		} catch (final SQLException e) {
 			throw new DaoException("Error executing : " + this, e);
 		} finally {
 			this.connection.cleanUp(resultSet);
 		}
+		this.completed(t == null ? 0 : 1);
 
 		if (t == null) {
 			return this.defaultWhenNull;
@@ -194,7 +253,8 @@ public class Select<T> extends Statement {
 		ResultSet resultSet = null;
 
 		try {
-			resultSet = this.preparedStatement.executeQuery();
+			resultSet = this.executeQuery();
+			final Object event = FlightRecorderEvents.begin(FlightRecorderEvents.MAP);
 			if (moveCursor) {
 				while (resultSet.next()) {
 					list.add(this.rowMapper.mapRow(resultSet));
@@ -204,15 +264,143 @@ public class Select<T> extends Statement {
 					list.add(this.rowMapper.mapRow(resultSet));
 				}
 			}
+			FlightRecorderEvents.end(event, this.fingerprint, list.size());
+			this.executed();
 		} catch (final SQLException e) {
 			throw new DaoException("Error executing : " + this, e);
 		} finally {
 			this.connection.cleanUp(resultSet);
 		}
+		this.completed(list.size());
 
 		return list;
 	}
 
+	/**
+	 * Executes the select and copies every row into a temporary file outside of the java heap.
+	 *
+	 * <p>
+	 * This is meant for results that are too large to hold on the heap but must be read more than once. The row
+	 * mapper is not used; each row is returned as a {@link LazyRow} that can be converted to a bean with
+	 * {@link LazyRow#toBean(Class)}. The returned rows must be closed to delete the temporary file.
+	 *
+	 * @return the spilled rows
+	 */
+	@SuppressWarnings("resource")
+	public SpilledRows executeForSpilledRows() {
+		ResultSet resultSet = null;
+		SpilledRows rows = null;
+		RuntimeException failure = null;
+
+		try {
+			resultSet = this.executeQuery();
+			final Object event = FlightRecorderEvents.begin(FlightRecorderEvents.MAP);
+			rows = SpilledRows.spill(resultSet);
+			FlightRecorderEvents.end(event, this.fingerprint, rows.size());
+			this.executed();
+			this.completed(rows.size());
+			return rows;
+		} catch (final SQLException e) {
+			failure = new DaoException("Error executing : " + this, e);
+			throw failure;
+		} catch (final RuntimeException e) {
+			failure = e;
+			throw e;
+		} finally {
+			try {
+				this.connection.cleanUp(resultSet);
+			} catch (final DaoException e) {
+				// keep the original failure rather than replacing it with the cleanup failure
+				if (failure != null) {
+					failure.addSuppressed(e);
+				} else {
+					if (rows != null) {
+						rows.close();
+					}
+					throw e;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Executes the prepared statement, applying the fetch size policy and recording the execute event.
+	 *
+	 * @return the result set
+	 * @throws SQLException
+	 *             error executing the statement
+	 */
+	private ResultSet executeQuery() throws SQLException {
+		this.executeNanos = System.nanoTime();
+		final Object event = FlightRecorderEvents.begin(FlightRecorderEvents.EXECUTE);
+		if (this.fetchSizePolicy == null) {
+			final ResultSet resultSet = this.preparedStatement.executeQuery();
+			FlightRecorderEvents.end(event, this.fingerprint, 0);
+			return resultSet;
+		}
+		final int fetchSize = this.fetchSizePolicy.beforeExecute(this.fingerprint);
+		if (fetchSize > 0) {
+			this.preparedStatement.setFetchSize(fetchSize);
+		}
+		final ResultSet resultSet = this.preparedStatement.executeQuery();
+		FlightRecorderEvents.end(event, this.fingerprint, 0);
+		final int resultFetchSize = this.fetchSizePolicy.afterExecute(this.fingerprint, resultSet.getMetaData());
+		if (resultFetchSize > 0 && resultFetchSize != fetchSize) {
+			resultSet.setFetchSize(resultFetchSize);
+		}
+		return resultSet;
+	}
+
+	/**
+	 * Records the latency of the select once its rows have been mapped. A slow select is explained when its result
+	 * set is closed, before the connection is.
+	 */
+	private void executed() {
+		if (StatementStatistics.isEnabled()) {
+			final Runnable explain = StatementStatistics.executed(this.fingerprint,
+					System.nanoTime() - this.executeNanos, this.connection.getSqlConnection(), this.preparedStatement);
+			if (explain != null) {
+				this.connection.beforeClose(explain);
+			}
+		}
+	}
+
+	/**
+	 * Tells the fetch size policy how many rows were read.
+	 *
+	 * @param rows
+	 *            the number of rows read
+	 */
+	private void completed(long rows) {
+		if (this.fetchSizePolicy != null) {
+			this.fetchSizePolicy.completed(this.fingerprint, rows);
+		}
+	}
+
+	/**
+	 * Sets the number of rows the driver should fetch per round trip.
+	 *
+	 * @param rows
+	 *            the number of rows per fetch
+	 * @return the Statement (for method chaining)
+	 */
+	public Select<T> fetchSize(int rows) {
+		return this.fetchSize(FetchSizePolicy.fixed(rows));
+	}
+
+	/**
+	 * Sets the policy that decides how many rows the driver should fetch per round trip. By default the driver's
+	 * fetch size is used.
+	 *
+	 * @param fetchSizePolicy
+	 *            the policy, usually a shared {@link FetchSizePolicy#adaptive(long)} policy
+	 * @return the Statement (for method chaining)
+	 */
+	public Select<T> fetchSize(FetchSizePolicy fetchSizePolicy) {
+		this.fetchSizePolicy = fetchSizePolicy;
+		return this;
+	}
+
 	/**
 	 * Defines a default value that will be returned instead of a null value.
 	 *
@@ -0,0 +1,357 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.db;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The rows of a result set copied into a temporary file outside of the java heap.
+ *
+ * <p>
+ * Rows are written in a compact binary form and read back through memory mapped segments of the file, so a
+ * result set many times larger than the heap can be held and iterated any number of times without adding to
+ * garbage collection work. Each iteration decodes the rows into new {@link LazyRow} instances that can be
+ * discarded as soon as they have been used.
+ *
+ * <p>
+ * The temporary file is readable only by its owner where the file system supports it, and is deleted when the
+ * rows are closed. Iterators must not be used after the rows have been
+ * closed.
+ *
+ * @author Troy Histed
+ */
+public class SpilledRows implements Iterable<LazyRow>, Closeable {
+
+	/**
+	 * The default size of each memory mapped segment of the file.
+	 */
+	static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+	private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+	private static final int END_OF_SEGMENT = -1;
+
+	private final ResultColumns columns;
+	private final File file;
+	private final int rowCount;
+	private ByteBuffer[] segments;
+
+	/**
+	 * Constructs the spilled rows.
+	 *
+	 * @param columns
+	 *            the columns of the result set
+	 * @param file
+	 *            the file holding the rows
+	 * @param segments
+	 *            the mapped segments of the file
+	 * @param rowCount
+	 *            the number of rows
+	 */
+	private SpilledRows(ResultColumns columns, File file, ByteBuffer[] segments, int rowCount) {
+		this.columns = columns;
+		this.file = file;
+		this.segments = segments;
+		this.rowCount = rowCount;
+	}
+
+	/**
+	 * Copies the remaining rows of the result set into a temporary file.
+	 *
+	 * @param resultSet
+	 *            the result set, positioned before the first row to copy
+	 * @return the spilled rows
+	 * @throws SQLException
+	 *             error reading the result set
+	 */
+	static SpilledRows spill(ResultSet resultSet) throws SQLException {
+		return SpilledRows.spill(resultSet, SpilledRows.DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Copies the remaining rows of the result set into a temporary file.
+	 *
+	 * @param resultSet
+	 *            the result set, positioned before the first row to copy
+	 * @param segmentSize
+	 *            the size of each memory mapped segment, which limits the size of a single row
+	 * @return the spilled rows
+	 * @throws SQLException
+	 *             error reading the result set
+	 */
+	@SuppressWarnings("resource")
+	static SpilledRows spill(ResultSet resultSet, int segmentSize) throws SQLException {
+
+		final ResultColumns columns = new ResultColumns(resultSet.getMetaData());
+		File file = null;
+		RandomAccessFile randomAccessFile = null;
+		try {
+			file = SpilledRows.createTempFile();
+			randomAccessFile = new RandomAccessFile(file, "rw");
+			final FileChannel channel = randomAccessFile.getChannel();
+
+			final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(SpilledRows.WRITE_BUFFER_SIZE);
+			ByteBuffer rowBuffer = ByteBuffer.allocate(1024);
+			final Object[] values = new Object[columns.size()];
+			long position = 0;
+			int rowCount = 0;
+
+			while (resultSet.next()) {
+				for (int i = 0; i < values.length; i++) {
+					values[i] = resultSet.getObject(i + 1);
+				}
+				rowBuffer.clear();
+				rowBuffer = RowCodec.encode(values, rowBuffer);
+				rowBuffer.flip();
+
+				final int recordLength = 4 + rowBuffer.remaining();
+				if (recordLength > segmentSize) {
+					throw new DaoException("Row " + (rowCount + 1) + " is larger than the segment size "
+							+ segmentSize);
+				}
+
+				final long segmentRemaining = segmentSize - position % segmentSize;
+				if (recordLength > segmentRemaining) {
+					// Records never span segments, skip to the start of the next one
+					if (segmentRemaining >= 4) {
+						SpilledRows.write(channel, writeBuffer, SpilledRows.END_OF_SEGMENT);
+					}
+					SpilledRows.flush(channel, writeBuffer);
+					position += segmentRemaining;
+					channel.position(position);
+				}
+
+				SpilledRows.write(channel, writeBuffer, rowBuffer.remaining());
+				SpilledRows.write(channel, writeBuffer, rowBuffer);
+				position += recordLength;
+				rowCount++;
+			}
+			SpilledRows.flush(channel, writeBuffer);
+
+			final List<ByteBuffer> segments = new ArrayList<ByteBuffer>();
+			for (long offset = 0; offset < position; offset += segmentSize) {
+				segments.add(channel.map(FileChannel.MapMode.READ_ONLY, offset,
+						Math.min(segmentSize, position - offset)));
+			}
+
+			return new SpilledRows(columns, file, segments.toArray(new ByteBuffer[segments.size()]), rowCount);
+		} catch (final IOException e) {
+			SpilledRows.delete(file);
+			throw new DaoException("Unable to write rows to temporary file " + file, e);
+		} catch (final RuntimeException e) {
+			SpilledRows.delete(file);
+			throw e;
+		} finally {
+			if (randomAccessFile != null) {
+				try {
+					randomAccessFile.close();
+				} catch (final IOException e) {
+					throw new DaoException("Unable to close temporary file " + file, e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes an int through the write buffer.
+	 *
+	 * @param channel
+	 *            the file channel
+	 * @param writeBuffer
+	 *            the write buffer
+	 * @param value
+	 *            the value to write
+	 * @throws IOException
+	 *             error writing to the file
+	 */
+	private static void write(FileChannel channel, ByteBuffer writeBuffer, int value) throws IOException {
+		if (writeBuffer.remaining() < 4) {
+			SpilledRows.flush(channel, writeBuffer);
+		}
+		writeBuffer.putInt(value);
+	}
+
+	/**
+	 * Writes the remaining bytes of the source through the write buffer.
+	 *
+	 * @param channel
+	 *            the file channel
+	 * @param writeBuffer
+	 *            the write buffer
+	 * @param source
+	 *            the bytes to write
+	 * @throws IOException
+	 *             error writing to the file
+	 */
+	private static void write(FileChannel channel, ByteBuffer writeBuffer, ByteBuffer source) throws IOException {
+		while (source.hasRemaining()) {
+			if (!writeBuffer.hasRemaining()) {
+				SpilledRows.flush(channel, writeBuffer);
+			}
+			final int length = Math.min(writeBuffer.remaining(), source.remaining());
+			final ByteBuffer slice = source.duplicate();
+			slice.limit(slice.position() + length);
+			writeBuffer.put(slice);
+			source.position(source.position() + length);
+		}
+	}
+
+	/**
+	 * Writes the contents of the write buffer to the file.
+	 *
+	 * @param channel
+	 *            the file channel
+	 * @param writeBuffer
+	 *            the write buffer
+	 * @throws IOException
+	 *             error writing to the file
+	 */
+	private static void flush(FileChannel channel, ByteBuffer writeBuffer) throws IOException {
+		writeBuffer.flip();
+		while (writeBuffer.hasRemaining()) {
+			channel.write(writeBuffer);
+		}
+		writeBuffer.clear();
+	}
+
+	/**
+	 * @return the number of rows
+	 */
+	public int size() {
+		return this.rowCount;
+	}
+
+	/**
+	 * Returns an iterator that decodes the rows in the order they were read from the result set.
+	 *
+	 * @return an iterator over the rows
+	 */
+	public Iterator<LazyRow> iterator() {
+		if (this.segments == null) {
+			throw new IllegalStateException("The rows have been closed");
+		}
+		final ByteBuffer[] readSegments = new ByteBuffer[this.segments.length];
+		for (int i = 0; i < readSegments.length; i++) {
+			readSegments[i] = this.segments[i].duplicate();
+		}
+
+		return new Iterator<LazyRow>() {
+			private int rowIndex = 0;
+			private int segmentIndex = 0;
+
+			public boolean hasNext() {
+				return this.rowIndex < SpilledRows.this.rowCount;
+			}
+
+			public LazyRow next() {
+				if (!this.hasNext()) {
+					throw new NoSuchElementException();
+				}
+
+				ByteBuffer segment = readSegments[this.segmentIndex];
+				if (segment.remaining() < 4 || segment.getInt(segment.position()) == SpilledRows.END_OF_SEGMENT) {
+					this.segmentIndex++;
+					segment = readSegments[this.segmentIndex];
+				}
+
+				final int length = segment.getInt();
+				final ByteBuffer row = segment.slice();
+				row.limit(length);
+				segment.position(segment.position() + length);
+				this.rowIndex++;
+
+				return new LazyRow(SpilledRows.this.columns,
+						RowCodec.decode(row, SpilledRows.this.columns.size()));
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException("Rows are read only");
+			}
+		};
+	}
+
+	/**
+	 * Releases the mapped segments and deletes the temporary file.
+	 */
+	public void close() {
+		this.segments = null;
+		SpilledRows.delete(this.file);
+	}
+
+	/**
+	 * @return the temporary file holding the rows
+	 */
+	File getFile() {
+		return this.file;
+	}
+
+	/**
+	 * Creates the temporary file, readable and writable only by its owner on a POSIX file system.
+	 *
+	 * @return the file
+	 * @throws IOException
+	 *             error creating the file
+	 */
+	private static File createTempFile() throws IOException {
+		if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+			final FileAttribute<?> ownerOnly = PosixFilePermissions
+					.asFileAttribute(EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE));
+			return Files.createTempFile("relib-rows", ".tmp", ownerOnly).toFile();
+		}
+		return Files.createTempFile("relib-rows", ".tmp").toFile();
+	}
+
+	/**
+	 * Deletes the temporary file if it exists.
+	 *
+	 * @param file
+	 *            the file, or null if it was not created
+	 */
+	private static void delete(File file) {
+		if (file == null) {
+			return;
+		}
+		try {
+			Files.deleteIfExists(file.toPath());
+		} catch (final IOException e) {
+			// The file may still be mapped on some platforms, leave it to the cleaning of the temporary directory
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return "SpilledRows [file=" + this.file + ", rowCount=" + this.rowCount + "]";
+	}
+}
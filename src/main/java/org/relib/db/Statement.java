@@ -303,7 +303,8 @@ public abstract class Statement {
 
 	/**
 	 * Sets all of the bean properties into the prepared statement using the bean property name as the parameter
-	 * name.
+	 * name. Enum properties are set by name and Character properties as a string, since most drivers accept
+	 * neither.
 	 *
 	 * @param javaBean
 	 *            the java bean to use
@@ -317,7 +318,7 @@ public abstract class Statement {
 			for (int i = 0; i < this.getParameters().size(); i++) {
 				if (propertyUtils.isReadable(javaBean, this.getParameters().get(i))) {
 					final Object value = propertyUtils.getNestedProperty(javaBean, this.getParameters().get(i));
-					this.getPreparedStatement().setObject(i + 1, value);
+					this.getPreparedStatement().setObject(i + 1, Statement.columnValue(value));
 				}
 			}
 		} catch (final SQLException e) {
@@ -332,4 +333,21 @@ public abstract class Statement {
 		}
 		return this;
 	}
+
+	/**
+	 * Converts a bean property to a value drivers accept.
+	 *
+	 * @param value
+	 *            the property value
+	 * @return the name of an enum, a Character as a string, or the value itself
+	 */
+	private static Object columnValue(Object value) {
+		if (value instanceof Enum) {
+			return ((Enum<?>) value).name();
+		}
+		if (value instanceof Character) {
+			return value.toString();
+		}
+		return value;
+	}
 }
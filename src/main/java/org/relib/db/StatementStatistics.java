@@ -0,0 +1,538 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a latency histogram for each select statement and captures the query plan of statements that are slow.
+ *
+ * <p>
+ * Statements are identified by their fingerprint, the statement with its named parameters replaced, so every
+ * execution of the same SQL shape is recorded together. The latency of a select is measured from executing the
+ * statement until its rows have been mapped. At most {@link #MAX_STATEMENTS} statements are tracked.
+ *
+ * <p>
+ * Statistics are off by default; enable them with {@link #setEnabled(boolean)}. Setting an explain dialect with
+ * {@link #setExplainDialect(Dialect)} also captures the <code>EXPLAIN</code> output of a select that takes longer
+ * than the slow threshold. The plan is captured on the select's connection, with the select's parameters, before the
+ * connection is returned. When the connection is in a transaction the explain runs inside a savepoint, so a failed
+ * explain can not abort the caller's transaction. Each statement is explained at most once per explain interval, so
+ * a statement that is always slow costs one extra query per interval. Oracle and SQL Server can not be explained
+ * this way since they report plans through a plan table or session setting.
+ *
+ * <p>
+ * {@link #toJson()} dumps every tracked statement, for example to serve from a diagnostics endpoint.
+ *
+ * @author Troy Histed
+ */
+public final class StatementStatistics {
+
+	/**
+	 * The most statements that are tracked.
+	 */
+	public static final int MAX_STATEMENTS = 1024;
+
+	/**
+	 * The slow threshold used until one is set.
+	 */
+	public static final long DEFAULT_SLOW_THRESHOLD_MILLIS = 1000;
+
+	/**
+	 * The explain interval used until one is set.
+	 */
+	public static final long DEFAULT_EXPLAIN_INTERVAL_MILLIS = 600000;
+
+	private static final Comparator<Entry> SLOWEST_FIRST = new Comparator<Entry>() {
+		@Override
+		public int compare(Entry o1, Entry o2) {
+			return Long.signum(o2.getLatency().getTotalNanos() - o1.getLatency().getTotalNanos());
+		}
+	};
+
+	private static final ConcurrentMap<String, Entry> STATEMENTS = new ConcurrentHashMap<String, Entry>();
+	private static volatile boolean enabled = false;
+	private static volatile Dialect explainDialect = null;
+	private static volatile long slowThresholdMillis = StatementStatistics.DEFAULT_SLOW_THRESHOLD_MILLIS;
+	private static volatile long explainIntervalMillis = StatementStatistics.DEFAULT_EXPLAIN_INTERVAL_MILLIS;
+
+	/**
+	 * Not instantiable.
+	 */
+	private StatementStatistics() {
+	}
+
+	/**
+	 * @return true if statistics are being recorded
+	 */
+	public static boolean isEnabled() {
+		return StatementStatistics.enabled;
+	}
+
+	/**
+	 * Enables or disables recording statistics.
+	 *
+	 * @param enabled
+	 *            true to record statistics
+	 */
+	public static void setEnabled(boolean enabled) {
+		StatementStatistics.enabled = enabled;
+	}
+
+	/**
+	 * @return the dialect used to explain slow statements, or null if slow statements are not explained
+	 */
+	public static Dialect getExplainDialect() {
+		return StatementStatistics.explainDialect;
+	}
+
+	/**
+	 * Sets the dialect used to explain slow statements. Only selects constructed while a dialect is set can be
+	 * explained, since their parameters must be recorded.
+	 *
+	 * @param explainDialect
+	 *            the dialect, or null to stop explaining slow statements
+	 */
+	public static void setExplainDialect(Dialect explainDialect) {
+		StatementStatistics.explainDialect = explainDialect;
+	}
+
+	/**
+	 * @return the latency in milliseconds above which a statement is slow
+	 */
+	public static long getSlowThresholdMillis() {
+		return StatementStatistics.slowThresholdMillis;
+	}
+
+	/**
+	 * @param slowThresholdMillis
+	 *            the latency in milliseconds above which a statement is slow
+	 */
+	public static void setSlowThresholdMillis(long slowThresholdMillis) {
+		StatementStatistics.slowThresholdMillis = slowThresholdMillis;
+	}
+
+	/**
+	 * @return the least time in milliseconds between two explains of the same statement
+	 */
+	public static long getExplainIntervalMillis() {
+		return StatementStatistics.explainIntervalMillis;
+	}
+
+	/**
+	 * @param explainIntervalMillis
+	 *            the least time in milliseconds between two explains of the same statement
+	 */
+	public static void setExplainIntervalMillis(long explainIntervalMillis) {
+		StatementStatistics.explainIntervalMillis = explainIntervalMillis;
+	}
+
+	/**
+	 * Wraps a newly prepared statement so that its parameters can be replayed to explain it.
+	 *
+	 * @param preparedStatement
+	 *            the prepared statement
+	 * @return the statement to set parameters on and execute
+	 */
+	static PreparedStatement prepared(PreparedStatement preparedStatement) {
+		if (StatementStatistics.enabled && StatementStatistics.explainDialect != null) {
+			return ParameterRecorder.wrap(preparedStatement);
+		}
+		return preparedStatement;
+	}
+
+	/**
+	 * Records an execution of a statement and, if it was slow and has not been explained recently, returns the
+	 * explain of it. The caller runs the explain once the result set of the statement is closed, since some drivers
+	 * can not run another statement on the connection while it is open. Failing to explain a statement never fails
+	 * the statement; the error is stored in place of the plan.
+	 *
+	 * @param fingerprint
+	 *            the statement fingerprint
+	 * @param nanos
+	 *            the latency of the execution
+	 * @param connection
+	 *            the connection the statement executed on
+	 * @param preparedStatement
+	 *            the executed statement
+	 * @return the explain to run, or null if the statement is not to be explained
+	 */
+	static Runnable executed(String fingerprint, long nanos, final Connection connection,
+			PreparedStatement preparedStatement) {
+		if (!StatementStatistics.enabled) {
+			return null;
+		}
+		final Entry entry = StatementStatistics.entry(fingerprint);
+		if (entry == null) {
+			return null;
+		}
+		entry.latency.record(nanos);
+		if (nanos < TimeUnit.MILLISECONDS.toNanos(StatementStatistics.slowThresholdMillis)) {
+			return null;
+		}
+		entry.slowCount.incrementAndGet();
+
+		final Dialect dialect = StatementStatistics.explainDialect;
+		final ParameterRecorder parameters = ParameterRecorder.of(preparedStatement);
+		final String explain = dialect == null ? null : dialect.explain(fingerprint);
+		if (explain == null || parameters == null || !entry.claimExplain(System.currentTimeMillis())) {
+			return null;
+		}
+		return new Runnable() {
+			public void run() {
+				entry.plan = StatementStatistics.explain(explain, connection, parameters);
+			}
+		};
+	}
+
+	/**
+	 * Finds or creates the entry of a statement.
+	 *
+	 * @param fingerprint
+	 *            the statement fingerprint
+	 * @return the entry, or null if the most statements are already tracked
+	 */
+	private static Entry entry(String fingerprint) {
+		Entry entry = StatementStatistics.STATEMENTS.get(fingerprint);
+		if (entry == null) {
+			if (StatementStatistics.STATEMENTS.size() >= StatementStatistics.MAX_STATEMENTS) {
+				return null;
+			}
+			final Entry created = new Entry(fingerprint);
+			entry = StatementStatistics.STATEMENTS.putIfAbsent(fingerprint, created);
+			if (entry == null) {
+				entry = created;
+			}
+		}
+		return entry;
+	}
+
+	/**
+	 * Runs the explain of a statement, inside a savepoint when the connection is in a transaction.
+	 *
+	 * @param explain
+	 *            the explain statement
+	 * @param connection
+	 *            the connection to run it on
+	 * @param parameters
+	 *            the parameters of the explained statement
+	 * @return the plan, or why it could not be read
+	 */
+	private static String explain(String explain, Connection connection, ParameterRecorder parameters) {
+		Savepoint savepoint = null;
+		try {
+			if (!connection.getAutoCommit()) {
+				// Some databases abort the whole transaction when a statement fails
+				savepoint = connection.setSavepoint();
+			}
+			final String plan = StatementStatistics.readPlan(explain, connection, parameters);
+			if (savepoint != null) {
+				connection.releaseSavepoint(savepoint);
+			}
+			return plan;
+		} catch (final SQLException e) {
+			StatementStatistics.rollback(connection, savepoint);
+			return "Unable to explain statement: " + e.getMessage();
+		} catch (final RuntimeException e) {
+			StatementStatistics.rollback(connection, savepoint);
+			return "Unable to explain statement: " + e;
+		}
+	}
+
+	/**
+	 * Quietly rolls back to the savepoint set for an explain.
+	 *
+	 * @param connection
+	 *            the connection
+	 * @param savepoint
+	 *            the savepoint, may be null
+	 */
+	private static void rollback(Connection connection, Savepoint savepoint) {
+		if (savepoint == null) {
+			return;
+		}
+		try {
+			connection.rollback(savepoint);
+		} catch (final SQLException e) {
+			// the caller's next statement reports the state of the transaction
+		}
+	}
+
+	/**
+	 * Runs the explain statement and reads the plan.
+	 *
+	 * @param explain
+	 *            the explain statement
+	 * @param connection
+	 *            the connection to run it on
+	 * @param parameters
+	 *            the parameters of the explained statement
+	 * @return the plan, one line per row with the columns separated by tabs
+	 * @throws SQLException
+	 *             error running the explain
+	 */
+	private static String readPlan(String explain, Connection connection, ParameterRecorder parameters)
+			throws SQLException {
+		PreparedStatement preparedStatement = null;
+		ResultSet resultSet = null;
+		try {
+			preparedStatement = connection.prepareStatement(explain);
+			parameters.replay(preparedStatement);
+			resultSet = preparedStatement.executeQuery();
+			final int columnCount = resultSet.getMetaData().getColumnCount();
+			final StringBuilder plan = new StringBuilder();
+			while (resultSet.next()) {
+				if (plan.length() > 0) {
+					plan.append('\n');
+				}
+				for (int i = 1; i <= columnCount; i++) {
+					if (i > 1) {
+						plan.append('\t');
+					}
+					plan.append(resultSet.getString(i));
+				}
+			}
+			return plan.toString();
+		} finally {
+			StatementStatistics.close(resultSet, preparedStatement);
+		}
+	}
+
+	/**
+	 * Quietly closes the explain result set and statement.
+	 *
+	 * @param resultSet
+	 *            the result set, may be null
+	 * @param preparedStatement
+	 *            the statement, may be null
+	 */
+	private static void close(ResultSet resultSet, PreparedStatement preparedStatement) {
+		try {
+			if (resultSet != null) {
+				resultSet.close();
+			}
+		} catch (final SQLException e) {
+			// the plan has already been read
+		}
+		try {
+			if (preparedStatement != null) {
+				preparedStatement.close();
+			}
+		} catch (final SQLException e) {
+			// the plan has already been read
+		}
+	}
+
+	/**
+	 * @param fingerprint
+	 *            the statement fingerprint
+	 * @return the statistics of the statement, or null if it has not been recorded
+	 */
+	public static Entry get(String fingerprint) {
+		return StatementStatistics.STATEMENTS.get(fingerprint);
+	}
+
+	/**
+	 * @return the statistics of every tracked statement, the statements with the most total latency first
+	 */
+	public static List<Entry> getAll() {
+		final List<Entry> entries = new ArrayList<Entry>(StatementStatistics.STATEMENTS.values());
+		Collections.sort(entries, StatementStatistics.SLOWEST_FIRST);
+		return entries;
+	}
+
+	/**
+	 * Forgets every tracked statement.
+	 */
+	public static void reset() {
+		StatementStatistics.STATEMENTS.clear();
+	}
+
+	/**
+	 * Dumps every tracked statement as a JSON array, the statements with the most total latency first. Durations
+	 * are in microseconds.
+	 *
+	 * @return the JSON
+	 */
+	public static String toJson() {
+		final StringBuilder json = new StringBuilder("[");
+		for (final Entry entry : StatementStatistics.getAll()) {
+			if (json.length() > 1) {
+				json.append(',');
+			}
+			entry.appendJson(json);
+		}
+		return json.append(']').toString();
+	}
+
+	/**
+	 * Appends a JSON string.
+	 *
+	 * @param json
+	 *            the JSON being built
+	 * @param value
+	 *            the string, may be null
+	 */
+	private static void appendJsonString(StringBuilder json, String value) {
+		if (value == null) {
+			json.append("null");
+			return;
+		}
+		json.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				json.append("\\\"");
+				break;
+			case '\\':
+				json.append("\\\\");
+				break;
+			case '\n':
+				json.append("\\n");
+				break;
+			case '\r':
+				json.append("\\r");
+				break;
+			case '\t':
+				json.append("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					json.append(String.format("\\u%04x", Integer.valueOf(c)));
+				} else {
+					json.append(c);
+				}
+			}
+		}
+		json.append('"');
+	}
+
+	/**
+	 * The statistics of one statement.
+	 */
+	public static final class Entry {
+
+		private final String fingerprint;
+		private final LatencyHistogram latency = new LatencyHistogram();
+		private final AtomicLong slowCount = new AtomicLong();
+		private final AtomicLong planCapturedMillis = new AtomicLong();
+		private volatile String plan;
+
+		/**
+		 * @param fingerprint
+		 *            the statement fingerprint
+		 */
+		Entry(String fingerprint) {
+			this.fingerprint = fingerprint;
+		}
+
+		/**
+		 * Claims the right to explain the statement if it has not been explained within the explain interval.
+		 *
+		 * @param now
+		 *            the current time in milliseconds
+		 * @return true if the caller should explain the statement
+		 */
+		boolean claimExplain(long now) {
+			final long last = this.planCapturedMillis.get();
+			if (last != 0 && now - last < StatementStatistics.explainIntervalMillis) {
+				return false;
+			}
+			return this.planCapturedMillis.compareAndSet(last, now);
+		}
+
+		/**
+		 * @return the statement fingerprint
+		 */
+		public String getFingerprint() {
+			return this.fingerprint;
+		}
+
+		/**
+		 * @return the latency of every execution
+		 */
+		public LatencyHistogram getLatency() {
+			return this.latency;
+		}
+
+		/**
+		 * @return the number of executions slower than the slow threshold
+		 */
+		public long getSlowCount() {
+			return this.slowCount.get();
+		}
+
+		/**
+		 * @return the most recently captured plan, or null if the statement has not been explained
+		 */
+		public String getPlan() {
+			return this.plan;
+		}
+
+		/**
+		 * @return the time the plan was captured in milliseconds since the epoch, or 0 if it has not been
+		 */
+		public long getPlanCapturedMillis() {
+			return this.planCapturedMillis.get();
+		}
+
+		/**
+		 * Appends the statistics as a JSON object.
+		 *
+		 * @param json
+		 *            the JSON being built
+		 */
+		void appendJson(StringBuilder json) {
+			json.append("{\"fingerprint\":");
+			StatementStatistics.appendJsonString(json, this.fingerprint);
+			json.append(",\"count\":").append(this.latency.getCount());
+			json.append(",\"slowCount\":").append(this.getSlowCount());
+			json.append(",\"meanMicros\":").append(TimeUnit.NANOSECONDS.toMicros(this.latency.getMeanNanos()));
+			json.append(",\"p50Micros\":")
+					.append(TimeUnit.NANOSECONDS.toMicros(this.latency.getPercentileNanos(50)));
+			json.append(",\"p99Micros\":")
+					.append(TimeUnit.NANOSECONDS.toMicros(this.latency.getPercentileNanos(99)));
+			json.append(",\"maxMicros\":").append(TimeUnit.NANOSECONDS.toMicros(this.latency.getMaxNanos()));
+			json.append(",\"planCapturedMillis\":").append(this.getPlanCapturedMillis());
+			json.append(",\"plan\":");
+			StatementStatistics.appendJsonString(json, this.plan);
+			json.append('}');
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public String toString() {
+			final StringBuilder json = new StringBuilder();
+			this.appendJson(json);
+			return json.toString();
+		}
+	}
+}
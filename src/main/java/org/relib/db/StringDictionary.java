@@ -0,0 +1,152 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.db;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded dictionary of strings used to share a single instance of each distinct value.
+ *
+ * <p>
+ * Columns such as status codes or type names repeat the same few values across every row of a result. Passing
+ * the values through a dictionary lets every row reference the same String instance rather than each row
+ * holding its own copy. Once the dictionary holds the maximum number of values, new values are returned as is.
+ *
+ * <p>
+ * An adaptive dictionary watches how often values repeat. If it is full and, after at least twice its maximum
+ * size in lookups, fewer than a quarter of the lookups found an existing value, the column is not worth
+ * deduplicating and the dictionary clears itself and stops checking values.
+ *
+ * <p>
+ * Dictionaries are safe to share between threads and queries.
+ *
+ * @author Troy Histed
+ */
+public class StringDictionary {
+
+	/**
+	 * The maximum number of values held when no size is specified.
+	 */
+	public static final int DEFAULT_MAX_SIZE = 1024;
+
+	private final int maxSize;
+	private final boolean adaptive;
+	private final ConcurrentMap<String, String> values = new ConcurrentHashMap<String, String>();
+	private final AtomicInteger lookups = new AtomicInteger();
+	private final AtomicInteger hits = new AtomicInteger();
+	private volatile boolean enabled = true;
+
+	/**
+	 * Constructs a dictionary that holds up to {@link #DEFAULT_MAX_SIZE} values.
+	 */
+	public StringDictionary() {
+		this(StringDictionary.DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * Constructs a dictionary.
+	 *
+	 * @param maxSize
+	 *            the maximum number of distinct values to hold
+	 */
+	public StringDictionary(int maxSize) {
+		this(maxSize, false);
+	}
+
+	/**
+	 * Constructs a dictionary.
+	 *
+	 * @param maxSize
+	 *            the maximum number of distinct values to hold
+	 * @param adaptive
+	 *            whether the dictionary should disable itself when values do not repeat
+	 */
+	private StringDictionary(int maxSize, boolean adaptive) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("The maximum size must be positive: " + maxSize);
+		}
+		this.maxSize = maxSize;
+		this.adaptive = adaptive;
+	}
+
+	/**
+	 * Creates a dictionary that disables itself if the values it sees do not repeat often.
+	 *
+	 * @param maxSize
+	 *            the maximum number of distinct values to hold
+	 * @return a new adaptive dictionary
+	 */
+	public static StringDictionary adaptive(int maxSize) {
+		return new StringDictionary(maxSize, true);
+	}
+
+	/**
+	 * Returns the shared instance of the value.
+	 *
+	 * @param value
+	 *            the value to look up (may be null)
+	 * @return the shared instance equal to the value, or the value itself if it is not held by the dictionary
+	 */
+	public String deduplicate(String value) {
+		if (value == null || !this.enabled) {
+			return value;
+		}
+
+		final int lookupCount = this.lookups.incrementAndGet();
+		final String existing = this.values.get(value);
+		if (existing != null) {
+			this.hits.incrementAndGet();
+			return existing;
+		}
+
+		if (this.values.size() < this.maxSize) {
+			final String previous = this.values.putIfAbsent(value, value);
+			return previous != null ? previous : value;
+		}
+
+		if (this.adaptive && lookupCount >= this.maxSize * 2 && this.hits.get() < lookupCount / 4) {
+			this.enabled = false;
+			this.values.clear();
+		}
+		return value;
+	}
+
+	/**
+	 * @return true if the dictionary is still checking values
+	 */
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+
+	/**
+	 * @return the number of distinct values held
+	 */
+	public int size() {
+		return this.values.size();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return "StringDictionary [maxSize=" + this.maxSize + ", adaptive=" + this.adaptive + ", enabled="
+				+ this.enabled + ", size=" + this.values.size() + ", lookups=" + this.lookups + ", hits="
+				+ this.hits + "]";
+	}
+}
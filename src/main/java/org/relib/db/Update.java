@@ -15,25 +15,37 @@
  */
 package org.relib.db;
 
+import java.lang.reflect.InvocationTargetException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import org.apache.commons.beanutils.BeanUtils;
+
 /**
  * Represents an SQL update statement.
  *
+ * <p>
+ * Generated keys are only returned by statements constructed with key columns, such as those created by
+ * {@link Query#insertReturningKeys(String, String...)}. Other statements are prepared without asking the driver
+ * to track keys, and asking them for keys fails.
+ *
  * @author Troy Histed
  */
 public class Update extends Statement {
 
-	private static final NamedStatementParserStrategy STATEMENT_PARSER = new NamedStatementParserStrategy();
-
 	private final String statement;
 	private final JdbcConnection connection;
 	private final PreparedStatement preparedStatement;
 	private final List<String> parameters;
+	private final String fingerprint;
+	private final String[] keyColumns;
+	private final List<Runnable> afterExecute = new ArrayList<Runnable>();
 
 	/**
 	 * Constructs an update statement and performs initialization.
@@ -54,27 +66,75 @@ public class Update extends Statement {
 	 *            the name of the connection to use
 	 */
 	public Update(String statement, String connectionName) {
+		this(statement, connectionName, (String[]) null);
+	}
+
+	/**
+	 * Constructs an update statement that can return generated keys and performs initialization.
+	 *
+	 * @param statement
+	 *            the statement to be executed
+	 * @param connectionName
+	 *            the name of the connection to use
+	 * @param keyColumns
+	 *            the names of the generated key columns to return, an empty array to let the driver choose the
+	 *            columns, or null to not return generated keys
+	 */
+	public Update(String statement, String connectionName, String[] keyColumns) {
+		this(statement, connectionName, keyColumns, Dialect.GENERIC);
+	}
+
+	/**
+	 * Constructs an update statement for a database of a specific dialect and performs initialization.
+	 *
+	 * @param statement
+	 *            the statement to be executed
+	 * @param connectionName
+	 *            the name of the connection to use
+	 * @param dialect
+	 *            the dialect used to parse the statement, or null for {@link Dialect#GENERIC}
+	 */
+	public Update(String statement, String connectionName, Dialect dialect) {
+		this(statement, connectionName, null, dialect);
+	}
+
+	/**
+	 * Constructs an update statement that can return generated keys and performs initialization.
+	 *
+	 * @param statement
+	 *            the statement to be executed
+	 * @param connectionName
+	 *            the name of the connection to use
+	 * @param keyColumns
+	 *            the generated key columns to return, an empty array for the driver's choice, or null for none
+	 * @param dialect
+	 *            the dialect used to parse the statement, or null for {@link Dialect#GENERIC}
+	 */
+	private Update(String statement, String connectionName, String[] keyColumns, Dialect dialect) {
 
 		this.statement = statement;
+		this.keyColumns = keyColumns;
 
-		final ParsedNamedStatement preparedStatement = Update.STATEMENT_PARSER.prepareNamedStatement(statement);
+		final ParsedNamedStatement preparedStatement = Update.parse(statement, dialect);
 		this.parameters = preparedStatement.getParameters();
+		this.fingerprint = preparedStatement.getStatement();
 
+		JdbcConnection jdbcConnection = null;
 		try {
-			this.connection = this.connect(connectionName);
-			this.preparedStatement = this.connection
-					.prepareStatementWithGeneratedKeys(preparedStatement.getStatement());
+			jdbcConnection = this.connect(connectionName);
+			this.preparedStatement = Update.prepare(jdbcConnection, preparedStatement.getStatement(), keyColumns);
 		} catch (final SQLException e) {
-			if (this.connection != null) {
-				this.connection.cleanUp();
+			if (jdbcConnection != null) {
+				jdbcConnection.cleanUp();
 			}
 			throw new DaoException("Error creating connection and preparing statement: " + statement, e);
 		} catch (final RuntimeException e) {
-			if (this.connection != null) {
-				this.connection.cleanUp();
+			if (jdbcConnection != null) {
+				jdbcConnection.cleanUp();
 			}
 			throw e;
 		}
+		this.connection = jdbcConnection;
 	}
 
 	/**
@@ -86,16 +146,87 @@ public class Update extends Statement {
 	 *            the connection to use
 	 */
 	public Update(String statement, Connection aConnection) {
+		this(statement, new JdbcConnection(aConnection));
+	}
 
-		this.statement = statement;
-		this.connection = new JdbcConnection(aConnection);
+	/**
+	 * Constructs an update statement for a database of a specific dialect and performs initialization.
+	 *
+	 * @param statement
+	 *            the statement to be executed
+	 * @param aConnection
+	 *            the connection to use
+	 * @param dialect
+	 *            the dialect used to parse the statement, or null for {@link Dialect#GENERIC}
+	 */
+	public Update(String statement, Connection aConnection, Dialect dialect) {
+		this(statement, new JdbcConnection(aConnection, dialect));
+	}
 
-		final ParsedNamedStatement preparedStatement = Update.STATEMENT_PARSER.prepareNamedStatement(statement);
+	/**
+	 * Constructs an update statement that can return generated keys and performs initialization.
+	 *
+	 * @param statement
+	 *            the statement to be executed
+	 * @param aConnection
+	 *            the connection to use
+	 * @param keyColumns
+	 *            the names of the generated key columns to return, an empty array to let the driver choose the
+	 *            columns, or null to not return generated keys
+	 */
+	public Update(String statement, Connection aConnection, String[] keyColumns) {
+		this(statement, Update.parse(statement, Dialect.GENERIC), new JdbcConnection(aConnection), keyColumns);
+	}
+
+	/**
+	 * Constructs an update statement and performs initialization.
+	 *
+	 * @param statement
+	 *            the statement to be executed
+	 * @param aConnection
+	 *            the connection to use, whose dialect is used to parse the statement
+	 */
+	Update(String statement, JdbcConnection aConnection) {
+		this(statement, Update.parse(statement, aConnection.getDialect()), aConnection);
+	}
+
+	/**
+	 * Constructs an update statement from a statement that has already been parsed.
+	 *
+	 * @param statement
+	 *            the statement to be executed
+	 * @param preparedStatement
+	 *            the parsed statement
+	 * @param aConnection
+	 *            the connection to use
+	 */
+	Update(String statement, ParsedNamedStatement preparedStatement, JdbcConnection aConnection) {
+		this(statement, preparedStatement, aConnection, null);
+	}
+
+	/**
+	 * Constructs an update statement from a statement that has already been parsed.
+	 *
+	 * @param statement
+	 *            the statement to be executed
+	 * @param preparedStatement
+	 *            the parsed statement
+	 * @param aConnection
+	 *            the connection to use
+	 * @param keyColumns
+	 *            the generated key columns to return, an empty array for the driver's choice, or null for none
+	 */
+	Update(String statement, ParsedNamedStatement preparedStatement, JdbcConnection aConnection,
+			String[] keyColumns) {
+
+		this.statement = statement;
+		this.connection = aConnection;
+		this.keyColumns = keyColumns;
 		this.parameters = preparedStatement.getParameters();
+		this.fingerprint = preparedStatement.getStatement();
 
 		try {
-			this.preparedStatement = this.connection
-					.prepareStatementWithGeneratedKeys(preparedStatement.getStatement());
+			this.preparedStatement = Update.prepare(this.connection, preparedStatement.getStatement(), keyColumns);
 		} catch (final SQLException e) {
 			if (this.connection != null) {
 				this.connection.cleanUp();
@@ -104,6 +235,40 @@ public class Update extends Statement {
 		}
 	}
 
+	/**
+	 * Parses a statement so it can be used to construct several updates.
+	 *
+	 * @param statement
+	 *            the statement
+	 * @param dialect
+	 *            the dialect of the statement, or null for {@link Dialect#GENERIC}
+	 * @return the parsed statement
+	 */
+	static ParsedNamedStatement parse(String statement, Dialect dialect) {
+		return NamedStatementParserStrategy.forDialect(dialect).prepareNamedStatement(statement);
+	}
+
+	/**
+	 * Prepares a statement, asking the driver to track generated keys only when key columns were given.
+	 *
+	 * @param connection
+	 *            the connection
+	 * @param statement
+	 *            the parsed statement
+	 * @param keyColumns
+	 *            the generated key columns, or null for none
+	 * @return the prepared statement
+	 * @throws SQLException
+	 *             error preparing the statement
+	 */
+	private static PreparedStatement prepare(JdbcConnection connection, String statement, String[] keyColumns)
+			throws SQLException {
+		if (keyColumns == null) {
+			return connection.prepareStatement(statement);
+		}
+		return connection.prepareStatementWithGeneratedKeys(statement, keyColumns);
+	}
+
 	/**
 	 * Gets a connection.
 	 *
@@ -123,7 +288,11 @@ public class Update extends Statement {
 	 */
 	public int execute() {
 		try {
-			return this.preparedStatement.executeUpdate();
+			final Object event = FlightRecorderEvents.begin(FlightRecorderEvents.EXECUTE);
+			final int updateCount = this.preparedStatement.executeUpdate();
+			FlightRecorderEvents.end(event, this.fingerprint, updateCount);
+			this.runAfterExecute();
+			return updateCount;
 		} catch (final SQLException e) {
 			throw new DaoException("Error executing : " + this, e);
 		} finally {
@@ -140,8 +309,7 @@ public class Update extends Statement {
 	public long executeAndReturnKey() {
 		ResultSet resultSet = null;
 		try {
-			this.preparedStatement.executeUpdate();
-			resultSet = this.preparedStatement.getGeneratedKeys();
+			resultSet = this.executeForKeys();
 			if (resultSet.next()) {
 				return resultSet.getLong(1);
 			}
@@ -153,6 +321,54 @@ public class Update extends Statement {
 		}
 	}
 
+	/**
+	 * Executes the statement and returns every generated key column, for tables with composite or non-numeric
+	 * keys.
+	 *
+	 * @return the generated key columns
+	 */
+	@SuppressWarnings("resource")
+	public LazyRow executeAndReturnKeys() {
+		ResultSet resultSet = null;
+		try {
+			resultSet = this.executeForKeys();
+			if (resultSet.next()) {
+				return new LazyRowMapper().mapRow(resultSet);
+			}
+			throw new DaoException("No key was generated for " + this);
+		} catch (final SQLException e) {
+			throw new DaoException("Error executing : " + this, e);
+		} finally {
+			this.connection.cleanUp(resultSet);
+		}
+	}
+
+	/**
+	 * Executes the statement and opens the generated keys.
+	 *
+	 * @return the generated keys
+	 * @throws SQLException
+	 *             error executing the statement
+	 */
+	private ResultSet executeForKeys() throws SQLException {
+		this.requireKeys();
+		final Object event = FlightRecorderEvents.begin(FlightRecorderEvents.EXECUTE);
+		final int updateCount = this.preparedStatement.executeUpdate();
+		FlightRecorderEvents.end(event, this.fingerprint, updateCount);
+		this.runAfterExecute();
+		return this.preparedStatement.getGeneratedKeys();
+	}
+
+	/**
+	 * Makes sure the statement was prepared to return generated keys.
+	 */
+	private void requireKeys() {
+		if (this.keyColumns == null) {
+			throw new DaoException("Generated keys were not requested for " + this
+					+ "; construct it with key columns, such as with Query.insertReturningKeys");
+		}
+	}
+
 	/**
 	 * Adds a set of parameters to this objects batch of commands.
 	 */
@@ -172,14 +388,30 @@ public class Update extends Statement {
 	 */
 	public int[] executeBatch() {
 		try {
-			return this.preparedStatement.executeBatch();
-		} catch (final SQLException e) {
-			throw new DaoException("Error executing batch: " + this, e);
+			return this.executeBatchAndKeepOpen();
 		} finally {
 			this.connection.cleanUp();
 		}
 	}
 
+	/**
+	 * Executes the batch statements that have been added to this object and leaves the statement open, so that
+	 * another batch can be added and executed without preparing the statement again.
+	 *
+	 * @return array containing the number of records updated for each batch statement
+	 */
+	int[] executeBatchAndKeepOpen() {
+		try {
+			final Object event = FlightRecorderEvents.begin(FlightRecorderEvents.EXECUTE);
+			final int[] updateCounts = this.preparedStatement.executeBatch();
+			FlightRecorderEvents.end(event, this.fingerprint, event == null ? 0 : Update.sum(updateCounts));
+			this.runAfterExecute();
+			return updateCounts;
+		} catch (final SQLException e) {
+			throw new DaoException("Error executing batch: " + this, e);
+		}
+	}
+
 	/**
 	 * Executes the batch statements that have been added to this object.
 	 *
@@ -189,28 +421,164 @@ public class Update extends Statement {
 	public long[] executeBatchAndReturnKeys() {
 		ResultSet resultSet = null;
 		try {
-			final int[] updateCount = this.preparedStatement.executeBatch();
+			final int[] updateCount = this.executeBatchForKeys();
 
 			resultSet = this.preparedStatement.getGeneratedKeys();
-			if (resultSet.next()) {
-				final long[] generatedKeys = new long[updateCount.length];
-				int i = 0;
+			long[] generatedKeys = new long[updateCount.length];
+			int i = 0;
+			while (resultSet.next()) {
+				if (i == generatedKeys.length) {
+					generatedKeys = Arrays.copyOf(generatedKeys, Math.max(i * 2, 16));
+				}
 				generatedKeys[i] = resultSet.getLong(1);
 				i++;
-				while (resultSet.next()) {
-					generatedKeys[i] = resultSet.getLong(1);
-					i++;
+			}
+			if (i == 0) {
+				throw new DaoException("No key was generated for " + this);
+			}
+			return i == generatedKeys.length ? generatedKeys : Arrays.copyOf(generatedKeys, i);
+		} catch (final SQLException e) {
+			throw new DaoException("Error executing batch: " + this, e);
+		} finally {
+			this.connection.cleanUp(resultSet);
+		}
+	}
+
+	/**
+	 * Adds each bean to the batch, executes the batch and copies the generated keys back onto the beans.
+	 *
+	 * <p>
+	 * Each key column is copied to the bean property named by the key column given to the constructor, or by the
+	 * column label the driver returned when the driver chose the key columns. Keys are matched to beans by
+	 * position, so the driver must return one row of keys per bean.
+	 *
+	 * @param beans
+	 *            the beans to insert
+	 * @param <T>
+	 *            the bean type
+	 * @return the beans, with their generated keys set
+	 */
+	@SuppressWarnings("resource")
+	public <T> List<T> executeBatchAndReturnKeys(List<T> beans) {
+		for (final T bean : beans) {
+			this.setBean(bean);
+			this.addBatch();
+		}
+
+		ResultSet resultSet = null;
+		try {
+			this.executeBatchForKeys();
+
+			resultSet = this.preparedStatement.getGeneratedKeys();
+			final String[] properties = this.keyProperties(resultSet.getMetaData());
+			int row = 0;
+			while (resultSet.next()) {
+				if (row == beans.size()) {
+					throw new DaoException("More keys were generated than beans were added for " + this);
+				}
+				for (int i = 0; i < properties.length; i++) {
+					BeanUtils.setProperty(beans.get(row), properties[i], resultSet.getObject(i + 1));
 				}
-				return generatedKeys;
+				row++;
 			}
-			throw new DaoException("No key was generated for " + this);
+			if (row != beans.size()) {
+				throw new DaoException(row + " keys were generated for " + beans.size() + " beans by " + this);
+			}
+			return beans;
 		} catch (final SQLException e) {
 			throw new DaoException("Error executing batch: " + this, e);
+		} catch (final IllegalAccessException e) {
+			throw new DaoException("Error setting generated keys: " + this, e);
+		} catch (final InvocationTargetException e) {
+			throw new DaoException("Error setting generated keys: " + this, e);
 		} finally {
 			this.connection.cleanUp(resultSet);
 		}
 	}
 
+	/**
+	 * Executes the batch on a statement that was prepared to return generated keys.
+	 *
+	 * @return the update counts
+	 * @throws SQLException
+	 *             error executing the batch
+	 */
+	private int[] executeBatchForKeys() throws SQLException {
+		this.requireKeys();
+		final Object event = FlightRecorderEvents.begin(FlightRecorderEvents.EXECUTE);
+		final int[] updateCount = this.preparedStatement.executeBatch();
+		FlightRecorderEvents.end(event, this.fingerprint, event == null ? 0 : Update.sum(updateCount));
+		this.runAfterExecute();
+		return updateCount;
+	}
+
+	/**
+	 * Determines the bean property each generated key column is copied to.
+	 *
+	 * @param metaData
+	 *            the generated keys meta data
+	 * @return the property names, in column order
+	 * @throws SQLException
+	 *             error reading the meta data
+	 */
+	private String[] keyProperties(ResultSetMetaData metaData) throws SQLException {
+		final String[] properties = new String[metaData.getColumnCount()];
+		for (int i = 0; i < properties.length; i++) {
+			properties[i] = i < this.keyColumns.length ? this.keyColumns[i] : metaData.getColumnLabel(i + 1);
+		}
+		return properties;
+	}
+
+	/**
+	 * Removes the entity with the given key from the cache once this statement has executed successfully. When the
+	 * connection is not in auto-commit mode the entity is removed again once the connection is closed, so a copy
+	 * of the old row loaded by another reader before the transaction committed is not kept.
+	 *
+	 * @param cache
+	 *            the cache holding the entity
+	 * @param key
+	 *            the key of the entity changed by this statement
+	 * @param <K>
+	 *            the key type
+	 * @return the statement (for method chaining)
+	 */
+	public <K> Update invalidates(final EntityCache<K, ?> cache, final K key) {
+		this.afterExecute.add(new Runnable() {
+			public void run() {
+				cache.invalidate(key);
+			}
+		});
+		return this;
+	}
+
+	/**
+	 * Adds the update counts of a batch, ignoring counts the driver could not determine.
+	 *
+	 * @param updateCounts
+	 *            the update counts
+	 * @return the total
+	 */
+	private static long sum(int[] updateCounts) {
+		long total = 0;
+		for (final int updateCount : updateCounts) {
+			total += Math.max(updateCount, 0);
+		}
+		return total;
+	}
+
+	/**
+	 * Runs the actions registered to follow a successful execution, and again once the transaction has ended.
+	 *
+	 * @throws SQLException
+	 *             error reading the auto-commit mode
+	 */
+	private void runAfterExecute() throws SQLException {
+		for (final Runnable runnable : this.afterExecute) {
+			runnable.run();
+			this.connection.afterTransaction(runnable);
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
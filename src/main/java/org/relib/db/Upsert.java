@@ -0,0 +1,403 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.db;
+
+import java.beans.PropertyDescriptor;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.beanutils.PropertyUtilsBean;
+
+/**
+ * Inserts a row or updates it when a row with the same key already exists, using the native statement of the
+ * database rather than a select followed by an insert or update.
+ *
+ * <p>
+ * The statement is generated from the table, the key columns and the columns to write. Unless columns are
+ * given, every readable bean property of a simple type is written to the column of the same name. The
+ * generated statement uses the property names as named parameters, so the bean is bound with
+ * {@link Update#setBean(Object)}, which writes enums by name and characters as strings. Statements are generated
+ * once per bean class and cached, so an upsert is usually held as a constant.
+ *
+ * <pre>
+ * private static final Upsert USER_UPSERT = Query.upsert("users", Dialect.POSTGRESQL, "id");
+ *
+ * USER_UPSERT.execute(user);
+ * USER_UPSERT.executeBatch(users);
+ * </pre>
+ *
+ * <ul>
+ * <li>PostgreSQL: <code>INSERT ... ON CONFLICT (keys) DO UPDATE SET ...</code></li>
+ * <li>MySQL: <code>INSERT ... ON DUPLICATE KEY UPDATE ...</code></li>
+ * <li>Oracle and SQL Server: <code>MERGE INTO ... USING ...</code></li>
+ * <li>H2: <code>MERGE INTO ... KEY (keys) VALUES ...</code></li>
+ * </ul>
+ *
+ * @author Troy Histed
+ */
+public class Upsert {
+
+	private final String table;
+	private final Dialect dialect;
+	private final List<String> keyColumns;
+	private List<String> columns = null;
+	private final ConcurrentMap<Class<?>, String> statements = new ConcurrentHashMap<Class<?>, String>();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param table
+	 *            the table to write to
+	 * @param dialect
+	 *            the dialect of the database
+	 * @param keyColumns
+	 *            the columns of the primary or unique key that identifies a row
+	 */
+	public Upsert(String table, Dialect dialect, String... keyColumns) {
+		if (dialect == Dialect.GENERIC) {
+			throw new IllegalArgumentException("Upserts have no generic form, a specific dialect is required");
+		}
+		if (keyColumns.length == 0) {
+			throw new IllegalArgumentException("At least one key column is required for " + table);
+		}
+		this.table = table;
+		this.dialect = dialect;
+		this.keyColumns = Arrays.asList(keyColumns);
+	}
+
+	/**
+	 * Sets the columns to write instead of the bean's properties. The columns must include the key columns.
+	 *
+	 * @param columnNames
+	 *            the columns, which are also the names of the bean properties bound to them
+	 * @return the upsert (for method chaining)
+	 */
+	public Upsert columns(String... columnNames) {
+		final List<String> columnList = Arrays.asList(columnNames);
+		this.checkKeyColumns(columnList);
+		this.columns = columnList;
+		this.statements.clear();
+		return this;
+	}
+
+	/**
+	 * Gets the statement for a bean class.
+	 *
+	 * @param beanClass
+	 *            the class of the beans to write
+	 * @return the statement with named parameters
+	 */
+	public String getStatement(Class<?> beanClass) {
+		String statement = this.statements.get(beanClass);
+		if (statement == null) {
+			final List<String> columnList = this.columns == null ? this.readColumns(beanClass) : this.columns;
+			statement = this.buildStatement(columnList);
+			this.statements.put(beanClass, statement);
+		}
+		return statement;
+	}
+
+	/**
+	 * Creates an update for beans of the given class using the default connection. Bind a bean with
+	 * {@link Update#setBean(Object)}.
+	 *
+	 * @param beanClass
+	 *            the class of the beans to write
+	 * @return the update
+	 */
+	public Update update(Class<?> beanClass) {
+		return new Update(this.getStatement(beanClass), (String) null, this.dialect);
+	}
+
+	/**
+	 * Creates an update for beans of the given class using a named connection.
+	 *
+	 * @param beanClass
+	 *            the class of the beans to write
+	 * @param connectionName
+	 *            the name of the connection to use
+	 * @return the update
+	 */
+	public Update update(Class<?> beanClass, String connectionName) {
+		return new Update(this.getStatement(beanClass), connectionName, this.dialect);
+	}
+
+	/**
+	 * Creates an update for beans of the given class using a connection.
+	 *
+	 * @param beanClass
+	 *            the class of the beans to write
+	 * @param connection
+	 *            the connection to use
+	 * @return the update
+	 */
+	public Update update(Class<?> beanClass, Connection connection) {
+		return new Update(this.getStatement(beanClass), connection, this.dialect);
+	}
+
+	/**
+	 * Writes a bean using the default connection.
+	 *
+	 * @param bean
+	 *            the bean to write
+	 * @return the number of records affected, as reported by the driver
+	 */
+	public int execute(Object bean) {
+		return this.update(bean.getClass()).setBean(bean).execute();
+	}
+
+	/**
+	 * Writes beans of the same class in a single batch using the default connection.
+	 *
+	 * @param beans
+	 *            the beans to write
+	 * @return the number of records affected by each bean, as reported by the driver
+	 */
+	public int[] executeBatch(Collection<?> beans) {
+		if (beans.isEmpty()) {
+			return new int[0];
+		}
+		return this.addBatch(this.update(beans.iterator().next().getClass()), beans).executeBatch();
+	}
+
+	/**
+	 * Binds each bean to the update and adds it to the batch.
+	 *
+	 * @param update
+	 *            the update
+	 * @param beans
+	 *            the beans to write
+	 * @return the update
+	 */
+	Update addBatch(Update update, Collection<?> beans) {
+		for (final Object bean : beans) {
+			update.setBean(bean);
+			update.addBatch();
+		}
+		return update;
+	}
+
+	/**
+	 * Finds the readable properties of a bean class that hold simple values. The key columns come first, followed
+	 * by the other properties in alphabetical order.
+	 *
+	 * @param beanClass
+	 *            the bean class
+	 * @return the property names
+	 */
+	private List<String> readColumns(Class<?> beanClass) {
+		final List<String> properties = new ArrayList<String>();
+		for (final PropertyDescriptor descriptor : new PropertyUtilsBean().getPropertyDescriptors(beanClass)) {
+			if (descriptor.getReadMethod() != null && Upsert.isColumnType(descriptor.getPropertyType())) {
+				properties.add(descriptor.getName());
+			}
+		}
+		this.checkKeyColumns(properties);
+		properties.removeAll(this.keyColumns);
+		Collections.sort(properties);
+
+		final List<String> columnList = new ArrayList<String>(this.keyColumns);
+		columnList.addAll(properties);
+		return columnList;
+	}
+
+	/**
+	 * @param type
+	 *            a property type
+	 * @return true if the type can be written to a single column
+	 */
+	private static boolean isColumnType(Class<?> type) {
+		return type != null && (type.isPrimitive() || type.isEnum() || Number.class.isAssignableFrom(type)
+				|| CharSequence.class.isAssignableFrom(type) || Date.class.isAssignableFrom(type)
+				|| type == Boolean.class || type == Character.class || type == byte[].class);
+	}
+
+	/**
+	 * @param columnList
+	 *            the columns to write
+	 */
+	private void checkKeyColumns(List<String> columnList) {
+		if (!columnList.containsAll(this.keyColumns)) {
+			throw new IllegalArgumentException("The columns " + columnList + " must include the key columns "
+					+ this.keyColumns + " of " + this.table);
+		}
+	}
+
+	/**
+	 * Generates the statement of the dialect.
+	 *
+	 * @param columnList
+	 *            the columns to write
+	 * @return the statement
+	 */
+	String buildStatement(List<String> columnList) {
+		final List<String> updateColumns = new ArrayList<String>(columnList);
+		updateColumns.removeAll(this.keyColumns);
+
+		final StringBuilder sql = new StringBuilder();
+		switch (this.dialect) {
+		case POSTGRESQL:
+			this.appendInsert(sql, columnList);
+			sql.append(" ON CONFLICT (");
+			Upsert.appendList(sql, this.keyColumns, "");
+			if (updateColumns.isEmpty()) {
+				sql.append(") DO NOTHING");
+			} else {
+				sql.append(") DO UPDATE SET ");
+				Upsert.appendAssignments(sql, updateColumns, "", "EXCLUDED.", "");
+			}
+			break;
+		case MYSQL:
+			this.appendInsert(sql, columnList);
+			sql.append(" ON DUPLICATE KEY UPDATE ");
+			if (updateColumns.isEmpty()) {
+				// Assigning a key to itself makes a duplicate a no-op when there is nothing else to update
+				Upsert.appendAssignments(sql, this.keyColumns.subList(0, 1), "", "", "");
+			} else {
+				Upsert.appendAssignments(sql, updateColumns, "", "VALUES(", ")");
+			}
+			break;
+		case H2:
+			sql.append("MERGE INTO ").append(this.table).append(" (");
+			Upsert.appendList(sql, columnList, "");
+			sql.append(") KEY (");
+			Upsert.appendList(sql, this.keyColumns, "");
+			sql.append(") VALUES (");
+			Upsert.appendList(sql, columnList, ":");
+			sql.append(")");
+			break;
+		case ORACLE:
+		case SQL_SERVER:
+			this.appendMerge(sql, columnList, updateColumns);
+			break;
+		default:
+			throw new IllegalStateException("Unsupported dialect " + this.dialect);
+		}
+		return sql.toString();
+	}
+
+	/**
+	 * Appends an insert of every column.
+	 *
+	 * @param sql
+	 *            the statement being built
+	 * @param columnList
+	 *            the columns to write
+	 */
+	private void appendInsert(StringBuilder sql, List<String> columnList) {
+		sql.append("INSERT INTO ").append(this.table).append(" (");
+		Upsert.appendList(sql, columnList, "");
+		sql.append(") VALUES (");
+		Upsert.appendList(sql, columnList, ":");
+		sql.append(")");
+	}
+
+	/**
+	 * Appends a standard MERGE statement in the form used by Oracle or SQL Server.
+	 *
+	 * @param sql
+	 *            the statement being built
+	 * @param columnList
+	 *            the columns to write
+	 * @param updateColumns
+	 *            the columns to update when the row exists
+	 */
+	private void appendMerge(StringBuilder sql, List<String> columnList, List<String> updateColumns) {
+		final boolean oracle = this.dialect == Dialect.ORACLE;
+		sql.append("MERGE INTO ").append(this.table);
+		sql.append(oracle ? " target USING (SELECT " : " AS target USING (VALUES (");
+		if (oracle) {
+			for (int i = 0; i < columnList.size(); i++) {
+				sql.append(i == 0 ? ":" : ", :").append(columnList.get(i)).append(" AS ").append(columnList.get(i));
+			}
+			sql.append(" FROM dual) source ON (");
+		} else {
+			Upsert.appendList(sql, columnList, ":");
+			sql.append(")) AS source (");
+			Upsert.appendList(sql, columnList, "");
+			sql.append(") ON (");
+		}
+		for (int i = 0; i < this.keyColumns.size(); i++) {
+			final String key = this.keyColumns.get(i);
+			sql.append(i == 0 ? "" : " AND ").append("target.").append(key).append(" = source.").append(key);
+		}
+		sql.append(")");
+		if (!updateColumns.isEmpty()) {
+			sql.append(" WHEN MATCHED THEN UPDATE SET ");
+			Upsert.appendAssignments(sql, updateColumns, "target.", "source.", "");
+		}
+		sql.append(" WHEN NOT MATCHED THEN INSERT (");
+		Upsert.appendList(sql, columnList, "");
+		sql.append(") VALUES (");
+		Upsert.appendList(sql, columnList, "source.");
+		sql.append(oracle ? ")" : ");");
+	}
+
+	/**
+	 * Appends a comma separated list of the columns.
+	 *
+	 * @param sql
+	 *            the statement being built
+	 * @param columnList
+	 *            the columns
+	 * @param prefix
+	 *            the text before each column
+	 */
+	private static void appendList(StringBuilder sql, List<String> columnList, String prefix) {
+		for (int i = 0; i < columnList.size(); i++) {
+			sql.append(i == 0 ? "" : ", ").append(prefix).append(columnList.get(i));
+		}
+	}
+
+	/**
+	 * Appends a comma separated list of assignments of each column to a value of the same name.
+	 *
+	 * @param sql
+	 *            the statement being built
+	 * @param columnList
+	 *            the columns
+	 * @param targetPrefix
+	 *            the text before each assigned column
+	 * @param valuePrefix
+	 *            the text before each value
+	 * @param valueSuffix
+	 *            the text after each value
+	 */
+	private static void appendAssignments(StringBuilder sql, List<String> columnList, String targetPrefix,
+			String valuePrefix, String valueSuffix) {
+		for (int i = 0; i < columnList.size(); i++) {
+			final String column = columnList.get(i);
+			sql.append(i == 0 ? "" : ", ").append(targetPrefix).append(column).append(" = ").append(valuePrefix)
+					.append(column).append(valueSuffix);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return "Upsert [table=" + this.table + ", dialect=" + this.dialect + ", keyColumns=" + this.keyColumns
+				+ "]";
+	}
+}
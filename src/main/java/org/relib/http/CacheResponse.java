@@ -0,0 +1,63 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.http;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Caches the response of a handler for GET and HEAD requests.
+ *
+ * <p>
+ * The status, headers and body written by the handler are kept in memory and sent again for later requests with
+ * the same path params, the same values for the request params named by varyBy and the same accept type, until
+ * the ttl passes. When several requests for a response that is not cached arrive together, the handler is called
+ * once and every request is sent its response.
+ *
+ * <pre>
+ *  &#64;HandleRequest(value = "/reports/{year}", method = HttpMethod.GET, accept = MediaType.JSON)
+ *  &#64;CacheResponse(ttl = 60000, varyBy = "region")
+ *  public Report getReport(&#64;PathParam("{year}") int year, &#64;RequestParam("region") String region)
+ * </pre>
+ *
+ * <p>
+ * Only responses with a 200 status are kept. Responses are cached before compression, so a cached response is
+ * still compressed for each request that accepts it. Handlers returning a {@link View} can not be cached, since
+ * the view is rendered by the container.
+ *
+ * @author Troy Histed
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface CacheResponse {
+
+	/**
+	 * @return the number of milliseconds a response is kept
+	 */
+	long ttl();
+
+	/**
+	 * @return the names of the request params whose values select different responses
+	 */
+	String[] varyBy() default {};
+
+	/**
+	 * @return the most responses kept for the handler
+	 */
+	int maxEntries() default 1000;
+}
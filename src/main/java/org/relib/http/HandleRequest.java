@@ -55,6 +55,10 @@ import java.lang.annotation.Target;
  * <ul>
  * <li>void - no additional processing takes place
  * <li>view - the view specifies how the response will be returned.
+ * <li>CompletionStage or Future - the response is built from the result once it completes, or a 503 is sent if
+ * it does not complete within the timeout. When the servlet runs on a Servlet 3 container and is declared with
+ * async-supported, the container thread is released while a json CompletionStage completes; otherwise the
+ * request waits for the result.
  * </ul>
  *
  * @author Troy Histed
@@ -82,4 +86,9 @@ public @interface HandleRequest {
 	 * @return the Content-Type value
 	 */
 	MediaType contentType() default MediaType.UNKNOWN;
+
+	/**
+	 * @return the milliseconds to wait for a CompletionStage or Future result before sending a 503
+	 */
+	long timeout() default 30000;
 }
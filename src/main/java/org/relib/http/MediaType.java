@@ -32,41 +32,42 @@ public enum MediaType {
 	/**
 	 * application/json
 	 */
-	JSON("application", "json"),
+	JSON("application", "json", true),
 
 	/**
 	 * application/pdf
 	 */
-	PDF("application", "pdf"),
+	PDF("application", "pdf", false),
 
 	/**
 	 * text/html
 	 */
-	HTML("text", "html"),
+	HTML("text", "html", true),
 
 	/**
 	 * text/xml
 	 */
-	XML("text", "xml"),
+	XML("text", "xml", true),
 
 	/**
 	 * text/javascript
 	 */
-	JAVASCRIPT("text", "javascript"),
+	JAVASCRIPT("text", "javascript", true),
 
 	/**
 	 * text/css
 	 */
-	CSS("text", "css"),
+	CSS("text", "css", true),
 
 	/**
 	 * Unknown
 	 */
-	UNKNOWN("", "");
+	UNKNOWN("", "", false);
 
 	String type;
 	String subType;
 	String typeString;
+	boolean compressible;
 
 	static Map<String, MediaType> MEDIA_TYPE_LOOKUP = new HashMap<String, MediaType>();
 	static {
@@ -80,11 +81,16 @@ public enum MediaType {
 	 *
 	 * @param type
 	 *            the type string
+	 * @param subType
+	 *            the subtype string
+	 * @param compressible
+	 *            whether content of this type gets smaller when compressed
 	 */
-	MediaType(String type, String subType) {
+	MediaType(String type, String subType, boolean compressible) {
 		this.type = type;
 		this.subType = subType;
 		this.typeString = type + "/" + subType;
+		this.compressible = compressible;
 	}
 
 	/**
@@ -110,4 +116,16 @@ public enum MediaType {
 	public String getTypeString() {
 		return this.typeString;
 	}
+
+	/**
+	 * Returns whether content of this type is worth compressing.
+	 *
+	 * <p>
+	 * Text formats compress well, while formats such as pdf are usually compressed already.
+	 *
+	 * @return true if the content should be compressed
+	 */
+	public boolean isCompressible() {
+		return this.compressible;
+	}
 }
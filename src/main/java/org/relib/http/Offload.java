@@ -0,0 +1,69 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.http;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Runs a handler off the container's request thread, for handlers that spend most of their time blocked on a
+ * database or another service.
+ *
+ * <p>
+ * On a Servlet 3 container with the servlet declared async-supported, the request is started asynchronously and
+ * the handler is run on a virtual thread (JDK 21 and later) or, on older JDKs, a pooled thread, so the container
+ * thread is free for other requests while the handler blocks. Otherwise the handler runs on the container thread
+ * as usual.
+ *
+ * <p>
+ * maxConcurrent limits how many requests run the handler at once, so that a burst of requests waits for a
+ * permit rather than exhausting a connection pool. An offloaded request waits on its own thread, not the container's,
+ * and is sent a 503 if it waits longer than the timeout. The timeout is also a deadline for an offloaded request as
+ * a whole: a handler still running when it passes is interrupted and the request is sent a 503.
+ * Each handler has its own limit, including when the annotation is placed on the controller.
+ *
+ * <pre>
+ *  &#64;HandleRequest(value = "/orders/{id}", method = HttpMethod.GET, accept = MediaType.JSON)
+ *  &#64;Offload(maxConcurrent = 20)
+ *  public Order getOrder(&#64;PathParam("{id}") long id)
+ * </pre>
+ *
+ * <p>
+ * On a controller the annotation applies to every handler that does not have its own, except handlers returning
+ * a {@link View}, which must be rendered on the container thread. Placing it on a handler returning a view is an
+ * error.
+ *
+ * @author Troy Histed
+ */
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.TYPE, ElementType.METHOD })
+public @interface Offload {
+
+	/**
+	 * @return the most requests running the handler at once, or 0 for no limit
+	 */
+	int maxConcurrent() default 0;
+
+	/**
+	 * @return the milliseconds a request waits for a turn to run the handler, and an offloaded request may take in
+	 *         all, before sending a 503
+	 */
+	long timeout() default 30000;
+}
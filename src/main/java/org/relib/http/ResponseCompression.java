@@ -0,0 +1,82 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.http;
+
+/**
+ * Settings for compressing response bodies.
+ *
+ * <p>
+ * When enabled, a response is compressed with gzip or deflate if the request's Accept-Encoding allows it, the
+ * content type {@link MediaType#isCompressible() is compressible} and the body reaches the threshold. Smaller bodies
+ * are sent as they are, since compressing them saves little and costs a Deflater.
+ *
+ * <pre>
+ * <code>
+ * ResponseCompression.setThreshold(4096);
+ * </code>
+ * </pre>
+ *
+ * @author Troy Histed
+ */
+public final class ResponseCompression {
+
+	/**
+	 * The default number of bytes a body must reach before it is compressed.
+	 */
+	public static final int DEFAULT_THRESHOLD = 1024;
+
+	private static volatile boolean enabled = true;
+	private static volatile int threshold = ResponseCompression.DEFAULT_THRESHOLD;
+
+	/**
+	 * Static methods only.
+	 */
+	private ResponseCompression() {
+	}
+
+	/**
+	 * @return true if responses are compressed
+	 */
+	public static boolean isEnabled() {
+		return ResponseCompression.enabled;
+	}
+
+	/**
+	 * @param enabled
+	 *            true to compress responses, which is the default
+	 */
+	public static void setEnabled(boolean enabled) {
+		ResponseCompression.enabled = enabled;
+	}
+
+	/**
+	 * @return the number of bytes a body must reach before it is compressed
+	 */
+	public static int getThreshold() {
+		return ResponseCompression.threshold;
+	}
+
+	/**
+	 * @param threshold
+	 *            the number of bytes a body must reach before it is compressed
+	 */
+	public static void setThreshold(int threshold) {
+		if (threshold < 0) {
+			throw new IllegalArgumentException("Threshold must not be negative: " + threshold);
+		}
+		ResponseCompression.threshold = threshold;
+	}
+}
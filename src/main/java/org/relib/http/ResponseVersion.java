@@ -0,0 +1,55 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.http;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Names a method of the controller that returns the current version of a handler's response.
+ *
+ * <p>
+ * For GET and HEAD requests the version method is called first, with its arguments mapped the same way as the
+ * handler's. The version becomes the ETag of the response, and a Date or Calendar version also becomes its
+ * Last-Modified time. If the request's If-None-Match or If-Modified-Since shows the client already has that
+ * version, a 304 is returned without calling the handler.
+ *
+ * <pre>
+ *  &#64;HandleRequest(value = "/catalog/{id}", accept = MediaType.JSON)
+ *  &#64;ResponseVersion("catalogVersion")
+ *  public Catalog getCatalog(&#64;PathParam("{id}") int id)
+ *
+ *  public Date catalogVersion(&#64;PathParam("{id}") int id)
+ * </pre>
+ *
+ * <p>
+ * Handlers without a version that return json get an ETag computed from the json instead, which saves sending
+ * the body but not building it.
+ *
+ * @author Troy Histed
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface ResponseVersion {
+
+	/**
+	 * @return the name of the public controller method that returns the version
+	 */
+	String value();
+
+}
@@ -15,6 +15,7 @@
  */
 package org.relib.http.json;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -40,6 +41,9 @@ import org.relib.util.Strings;
  * </pre>
  *
  * <p>
+ * The json can also be written straight to a Writer, or any other Appendable, without building the String.
+ *
+ * <p>
  * Handles parsing a JSON string into the equivalent request parameter map
  *
  * <pre>
@@ -68,6 +72,23 @@ public class Json {
 		return JSON.build(object);
 	}
 
+	/**
+	 * Writes a JSON representation of the specified object.
+	 *
+	 * <p>
+	 * Uses reflection to traverse the object tree, writing each value as it is reached.
+	 *
+	 * @param object
+	 *            the object to convert to json
+	 * @param out
+	 *            where the json is written
+	 * @throws IOException
+	 *             if the json can not be written
+	 */
+	public static void toJson(Object object, Appendable out) throws IOException {
+		JSON.write(object, out);
+	}
+
 	/**
 	 * Parses a JSON string into a map of parameters.
 	 *
@@ -87,42 +108,62 @@ public class Json {
 	 * @return string
 	 */
 	public String build(Object object) {
+		final StringBuilder buffer = new StringBuilder();
+		try {
+			this.write(object, buffer);
+		} catch (final IOException e) {
+			throw new IllegalStateException("StringBuilder does not throw IOException", e);
+		}
+		return buffer.toString();
+	}
+
+	/**
+	 * Writes the json representation.
+	 *
+	 * @param object
+	 *            the object to write json for
+	 * @param out
+	 *            where the json is written
+	 * @throws IOException
+	 *             if the json can not be written
+	 */
+	public void write(Object object, Appendable out) throws IOException {
 		if (object == null) {
-			return "null";
+			out.append("null");
 		} else if (object instanceof String) {
-			return "\"" + object + "\"";
+			out.append('"').append((String) object).append('"');
 		} else if (object instanceof Enum) {
-			return "\"" + ((Enum<?>) object).name() + "\"";
+			out.append('"').append(((Enum<?>) object).name()).append('"');
 		} else if (object instanceof Boolean || object instanceof Number) {
-			return object.toString();
+			out.append(object.toString());
 		} else if (object instanceof Character) {
-			return "\'" + object + "\'";
+			out.append('\'').append(((Character) object).charValue()).append('\'');
 		} else if (object instanceof Object[]) {
-			return this.handleObjectArray((Object[]) object);
+			this.writeObjectArray((Object[]) object, out);
 		} else if (object instanceof byte[]) {
-			return this.handleByteArray((byte[]) object);
+			this.writeByteArray((byte[]) object, out);
 		} else if (object instanceof short[]) {
-			return this.handleShortArray((short[]) object);
+			this.writeShortArray((short[]) object, out);
 		} else if (object instanceof int[]) {
-			return this.handleIntArray((int[]) object);
+			this.writeIntArray((int[]) object, out);
 		} else if (object instanceof long[]) {
-			return this.handleLongArray((long[]) object);
+			this.writeLongArray((long[]) object, out);
 		} else if (object instanceof float[]) {
-			return this.handleFloatArray((float[]) object);
+			this.writeFloatArray((float[]) object, out);
 		} else if (object instanceof double[]) {
-			return this.handleDoubleArray((double[]) object);
+			this.writeDoubleArray((double[]) object, out);
 		} else if (object instanceof boolean[]) {
-			return this.handleBooleanArray((boolean[]) object);
+			this.writeBooleanArray((boolean[]) object, out);
 		} else if (object instanceof char[]) {
-			return this.handleCharArray((char[]) object);
+			this.writeCharArray((char[]) object, out);
 		} else if (object instanceof Date) {
-			return this.handleDate((Date) object);
+			out.append(String.valueOf(((Date) object).getTime()));
 		} else if (object instanceof Calendar) {
-			return this.handleCalendar((Calendar) object);
+			out.append(String.valueOf(((Calendar) object).getTimeInMillis()));
 		} else if (object instanceof DynaClass && object instanceof DynaBean) {
-			return this.handleDynaBeanClass((DynaClass) object);
+			this.writeDynaBeanClass((DynaClass) object, out);
 		} else {
-			return this.handleOtherObject(object);
+			this.writeOtherObject(object, out);
 		}
 	}
 
@@ -131,12 +172,14 @@ public class Json {
 	 *
 	 * @param object
 	 *            the object to convert
-	 * @return string containing json
+	 * @param out
+	 *            where the json is written
+	 * @throws IOException
+	 *             if the json can not be written
 	 */
-	private String handleOtherObject(Object object) {
+	private void writeOtherObject(Object object, Appendable out) throws IOException {
 
-		final StringBuilder buffer = new StringBuilder();
-		buffer.append("{");
+		out.append('{');
 		String delimiter = "";
 
 		final Method[] methods = object.getClass().getMethods();
@@ -157,8 +200,8 @@ public class Json {
 					continue;
 				}
 
-				buffer.append(delimiter);
-				buffer.append("\"").append(fieldName).append("\":");
+				out.append(delimiter);
+				out.append('"').append(fieldName).append("\":");
 
 				Object fieldValue;
 				try {
@@ -172,16 +215,15 @@ public class Json {
 				}
 
 				if (object != fieldValue) {
-					buffer.append(this.build(fieldValue));
+					this.write(fieldValue, out);
 				} else {
-					buffer.append("match!");
+					out.append("match!");
 				}
 				delimiter = ", ";
 			}
 		}
 
-		buffer.append("}");
-		return buffer.toString();
+		out.append('}');
 	}
 
 	/**
@@ -189,183 +231,188 @@ public class Json {
 	 *
 	 * @param objects
 	 *            the objects to convert
-	 * @return string containing json
+	 * @param out
+	 *            where the json is written
+	 * @throws IOException
+	 *             if the json can not be written
 	 */
-	private String handleObjectArray(Object[] objects) {
-		final StringBuilder buffer = new StringBuilder("[");
+	private void writeObjectArray(Object[] objects, Appendable out) throws IOException {
+		out.append('[');
 		String delim = "";
 		for (final Object item : objects) {
-			buffer.append(delim).append(this.build(item));
+			out.append(delim);
+			this.write(item, out);
 			delim = ", ";
 		}
-		buffer.append("]");
-		return buffer.toString();
+		out.append(']');
 	}
 
 	/**
 	 * Handles converting an array of bytes.
 	 *
-	 * @param objects
-	 *            the objects to convert
-	 * @return string containing json
+	 * @param bytes
+	 *            the bytes to convert
+	 * @param out
+	 *            where the json is written
+	 * @throws IOException
+	 *             if the json can not be written
 	 */
-	private String handleByteArray(byte[] bytes) {
-		final StringBuilder buffer = new StringBuilder("[");
+	private void writeByteArray(byte[] bytes, Appendable out) throws IOException {
+		out.append('[');
 		String delim = "";
 		for (final byte item : bytes) {
-			buffer.append(delim).append(item);
+			out.append(delim);
+			out.append(String.valueOf(item));
 			delim = ", ";
 		}
-		buffer.append("]");
-		return buffer.toString();
+		out.append(']');
 	}
 
 	/**
 	 * Handles converting an array of shorts.
 	 *
-	 * @param objects
-	 *            the objects to convert
-	 * @return string containing json
+	 * @param shorts
+	 *            the shorts to convert
+	 * @param out
+	 *            where the json is written
+	 * @throws IOException
+	 *             if the json can not be written
 	 */
-	private String handleShortArray(short[] shorts) {
-		final StringBuilder buffer = new StringBuilder("[");
+	private void writeShortArray(short[] shorts, Appendable out) throws IOException {
+		out.append('[');
 		String delim = "";
 		for (final short item : shorts) {
-			buffer.append(delim).append(item);
+			out.append(delim);
+			out.append(String.valueOf(item));
 			delim = ", ";
 		}
-		buffer.append("]");
-		return buffer.toString();
+		out.append(']');
 	}
 
 	/**
 	 * Handles converting an array of ints.
 	 *
-	 * @param objects
-	 *            the objects to convert
-	 * @return string containing json
+	 * @param ints
+	 *            the ints to convert
+	 * @param out
+	 *            where the json is written
+	 * @throws IOException
+	 *             if the json can not be written
 	 */
-	private String handleIntArray(int[] ints) {
-		final StringBuilder buffer = new StringBuilder("[");
+	private void writeIntArray(int[] ints, Appendable out) throws IOException {
+		out.append('[');
 		String delim = "";
 		for (final int item : ints) {
-			buffer.append(delim).append(item);
+			out.append(delim);
+			out.append(String.valueOf(item));
 			delim = ", ";
 		}
-		buffer.append("]");
-		return buffer.toString();
+		out.append(']');
 	}
 
 	/**
 	 * Handles converting an array of longs.
 	 *
-	 * @param objects
-	 *            the objects to convert
-	 * @return string containing json
+	 * @param longs
+	 *            the longs to convert
+	 * @param out
+	 *            where the json is written
+	 * @throws IOException
+	 *             if the json can not be written
 	 */
-	private String handleLongArray(long[] longs) {
-		final StringBuilder buffer = new StringBuilder("[");
+	private void writeLongArray(long[] longs, Appendable out) throws IOException {
+		out.append('[');
 		String delim = "";
 		for (final long item : longs) {
-			buffer.append(delim).append(item);
+			out.append(delim);
+			out.append(String.valueOf(item));
 			delim = ", ";
 		}
-		buffer.append("]");
-		return buffer.toString();
+		out.append(']');
 	}
 
 	/**
 	 * Handles converting an array of floats.
 	 *
-	 * @param objects
-	 *            the objects to convert
-	 * @return string containing json
+	 * @param floats
+	 *            the floats to convert
+	 * @param out
+	 *            where the json is written
+	 * @throws IOException
+	 *             if the json can not be written
 	 */
-	private String handleFloatArray(float[] floats) {
-		final StringBuilder buffer = new StringBuilder("[");
+	private void writeFloatArray(float[] floats, Appendable out) throws IOException {
+		out.append('[');
 		String delim = "";
 		for (final float item : floats) {
-			buffer.append(delim).append(item);
+			out.append(delim);
+			out.append(String.valueOf(item));
 			delim = ", ";
 		}
-		buffer.append("]");
-		return buffer.toString();
+		out.append(']');
 	}
 
 	/**
 	 * Handles converting an array of doubles.
 	 *
-	 * @param objects
-	 *            the objects to convert
-	 * @return string containing json
+	 * @param doubles
+	 *            the doubles to convert
+	 * @param out
+	 *            where the json is written
+	 * @throws IOException
+	 *             if the json can not be written
 	 */
-	private String handleDoubleArray(double[] doubles) {
-		final StringBuilder buffer = new StringBuilder("[");
+	private void writeDoubleArray(double[] doubles, Appendable out) throws IOException {
+		out.append('[');
 		String delim = "";
 		for (final double item : doubles) {
-			buffer.append(delim).append(item);
+			out.append(delim);
+			out.append(String.valueOf(item));
 			delim = ", ";
 		}
-		buffer.append("]");
-		return buffer.toString();
+		out.append(']');
 	}
 
 	/**
 	 * Handles converting an array of booleans.
 	 *
-	 * @param objects
-	 *            the objects to convert
-	 * @return string containing json
+	 * @param booleans
+	 *            the booleans to convert
+	 * @param out
+	 *            where the json is written
+	 * @throws IOException
+	 *             if the json can not be written
 	 */
-	private String handleBooleanArray(boolean[] booleans) {
-		final StringBuilder buffer = new StringBuilder("[");
+	private void writeBooleanArray(boolean[] booleans, Appendable out) throws IOException {
+		out.append('[');
 		String delim = "";
 		for (final boolean item : booleans) {
-			buffer.append(delim).append(item);
+			out.append(delim);
+			out.append(String.valueOf(item));
 			delim = ", ";
 		}
-		buffer.append("]");
-		return buffer.toString();
+		out.append(']');
 	}
 
 	/**
 	 * Handles converting an array of chars.
 	 *
-	 * @param objects
-	 *            the objects to convert
-	 * @return string containing json
+	 * @param chars
+	 *            the chars to convert
+	 * @param out
+	 *            where the json is written
+	 * @throws IOException
+	 *             if the json can not be written
 	 */
-	private String handleCharArray(char[] chars) {
-		final StringBuilder buffer = new StringBuilder("[");
+	private void writeCharArray(char[] chars, Appendable out) throws IOException {
+		out.append('[');
 		String delim = "";
 		for (final char item : chars) {
-			buffer.append(delim).append("'").append(item).append("'");
+			out.append(delim);
+			out.append('\'').append(item).append('\'');
 			delim = ", ";
 		}
-		buffer.append("]");
-		return buffer.toString();
-	}
-
-	/**
-	 * Handles converting a Date.
-	 *
-	 * @param date
-	 *            the object to convert
-	 * @return string containing json
-	 */
-	private String handleDate(Date date) {
-		return String.valueOf(date.getTime());
-	}
-
-	/**
-	 * Handles converting a Calendar.
-	 *
-	 * @param calendar
-	 *            the object to convert
-	 * @return string containing json
-	 */
-	private String handleCalendar(Calendar calendar) {
-		return String.valueOf(calendar.getTimeInMillis());
+		out.append(']');
 	}
 
 	/**
@@ -373,28 +420,29 @@ public class Json {
 	 *
 	 * @param dynaClass
 	 *            the object to convert
-	 * @return string containing json
+	 * @param out
+	 *            where the json is written
+	 * @throws IOException
+	 *             if the json can not be written
 	 */
-	private String handleDynaBeanClass(DynaClass dynaClass) {
+	private void writeDynaBeanClass(DynaClass dynaClass, Appendable out) throws IOException {
 
 		final DynaProperty[] dynaProperties = dynaClass.getDynaProperties();
 
-		final StringBuilder buffer = new StringBuilder("{");
+		out.append('{');
 		String delim = "";
 
 		if (dynaProperties != null) {
 			for (final DynaProperty dynaProperty : dynaProperties) {
 				if (dynaProperty != null) {
 					final String propertyName = dynaProperty.getName();
-					buffer.append(delim).append("\"").append(propertyName).append("\":");
-					final String value = this.build(((DynaBean) dynaClass).get(propertyName));
-					buffer.append(value);
+					out.append(delim).append('"').append(propertyName).append("\":");
+					this.write(((DynaBean) dynaClass).get(propertyName), out);
 					delim = ", ";
 				}
 			}
 		}
-		buffer.append("}");
-		return buffer.toString();
+		out.append('}');
 	}
 
 	/**
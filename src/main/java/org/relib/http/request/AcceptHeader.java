@@ -0,0 +1,217 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.http.request;
+
+import java.util.Arrays;
+
+import org.relib.http.MediaType;
+
+/**
+ * The media types accepted by a request, parsed from its Accept header.
+ *
+ * <p>
+ * Each {@link MediaType} is given the quality of the most specific media range in the header that covers it, so
+ * <code>text/html;q=0.5, text/*, *&#47;*;q=0.1</code> gives html a quality of 0.5, css a quality of 1 and json a
+ * quality of 0.1. A type is explicit when a range names it exactly; types only covered by <code>type/*</code> or
+ * <code>*&#47;*</code> are acceptable but a definition that does not specify an accept type is preferred for them.
+ *
+ * @author Troy Histed
+ */
+final class AcceptHeader {
+
+	private static final int EXACT = 3;
+	private static final int SUBTYPE_WILDCARD = 2;
+	private static final int WILDCARD = 1;
+
+	/**
+	 * Used when a request has no Accept header, which accepts every type.
+	 */
+	static final AcceptHeader ANY = AcceptHeader.parse("*/*");
+
+	private final float[] qualities;
+	private final boolean[] explicit;
+	private final MediaType preferred;
+
+	/**
+	 * @param qualities
+	 *            the quality of each media type, by ordinal
+	 * @param explicit
+	 *            whether each media type is named exactly, by ordinal
+	 * @param preferred
+	 *            the explicit type with the highest quality, or UNKNOWN
+	 */
+	private AcceptHeader(float[] qualities, boolean[] explicit, MediaType preferred) {
+		this.qualities = qualities;
+		this.explicit = explicit;
+		this.preferred = preferred;
+	}
+
+	/**
+	 * Parses an Accept header.
+	 *
+	 * @param header
+	 *            the header value
+	 * @return the accepted types
+	 */
+	static AcceptHeader parse(String header) {
+		final MediaType[] mediaTypes = MediaType.values();
+		final float[] qualities = new float[mediaTypes.length];
+		final boolean[] explicit = new boolean[mediaTypes.length];
+		final int[] specificity = new int[mediaTypes.length];
+		final int[] position = new int[mediaTypes.length];
+		Arrays.fill(position, Integer.MAX_VALUE);
+
+		int index = 0;
+		for (final String element : header.split(",")) {
+			final int semicolon = element.indexOf(';');
+			final String range = (semicolon < 0 ? element : element.substring(0, semicolon)).trim();
+			final int slash = range.indexOf('/');
+			if (slash < 0) {
+				continue;
+			}
+			final String type = range.substring(0, slash).trim();
+			final String subType = range.substring(slash + 1).trim();
+			final float quality = semicolon < 0 ? 1 : AcceptHeader.quality(element.substring(semicolon + 1));
+
+			for (final MediaType mediaType : mediaTypes) {
+				if (mediaType == MediaType.UNKNOWN) {
+					continue;
+				}
+				final int ordinal = mediaType.ordinal();
+				final int match = AcceptHeader.match(mediaType, type, subType);
+				if (match > specificity[ordinal]) {
+					specificity[ordinal] = match;
+					qualities[ordinal] = quality;
+					explicit[ordinal] = match == AcceptHeader.EXACT;
+					position[ordinal] = index;
+				}
+			}
+			index++;
+		}
+
+		MediaType preferred = MediaType.UNKNOWN;
+		for (final MediaType mediaType : mediaTypes) {
+			final int ordinal = mediaType.ordinal();
+			if (explicit[ordinal] && qualities[ordinal] > 0
+					&& (preferred == MediaType.UNKNOWN || qualities[ordinal] > qualities[preferred.ordinal()]
+							|| qualities[ordinal] == qualities[preferred.ordinal()]
+									&& position[ordinal] < position[preferred.ordinal()])) {
+				preferred = mediaType;
+			}
+		}
+		return new AcceptHeader(qualities, explicit, preferred);
+	}
+
+	/**
+	 * Creates an Accept header that names a single media type.
+	 *
+	 * @param mediaType
+	 *            the media type, UNKNOWN accepts nothing
+	 * @return the accepted types
+	 */
+	static AcceptHeader of(MediaType mediaType) {
+		final float[] qualities = new float[MediaType.values().length];
+		final boolean[] explicit = new boolean[qualities.length];
+		if (mediaType != MediaType.UNKNOWN) {
+			qualities[mediaType.ordinal()] = 1;
+			explicit[mediaType.ordinal()] = true;
+		}
+		return new AcceptHeader(qualities, explicit, mediaType);
+	}
+
+	/**
+	 * Determines how specifically a media range covers a media type.
+	 *
+	 * @param mediaType
+	 *            the media type
+	 * @param type
+	 *            the type of the range
+	 * @param subType
+	 *            the subtype of the range
+	 * @return EXACT, SUBTYPE_WILDCARD, WILDCARD or 0 if the range does not cover the type
+	 */
+	private static int match(MediaType mediaType, String type, String subType) {
+		final String typeString = mediaType.getTypeString();
+		final int slash = typeString.indexOf('/');
+		if ("*".equals(type)) {
+			return "*".equals(subType) ? AcceptHeader.WILDCARD : 0;
+		}
+		if (type.length() != slash || !typeString.regionMatches(true, 0, type, 0, slash)) {
+			return 0;
+		}
+		if ("*".equals(subType)) {
+			return AcceptHeader.SUBTYPE_WILDCARD;
+		}
+		return typeString.regionMatches(true, slash + 1, subType, 0, subType.length())
+				&& typeString.length() - slash - 1 == subType.length() ? AcceptHeader.EXACT : 0;
+	}
+
+	/**
+	 * Reads the q parameter of a media range.
+	 *
+	 * @param parameters
+	 *            the parameters following the range
+	 * @return the quality, 1 if there is no q parameter or 0 if it is not a number
+	 */
+	private static float quality(String parameters) {
+		for (final String parameter : parameters.split(";")) {
+			final int equals = parameter.indexOf('=');
+			if (equals > 0 && "q".equalsIgnoreCase(parameter.substring(0, equals).trim())) {
+				try {
+					return Math.max(0, Math.min(1, Float.parseFloat(parameter.substring(equals + 1).trim())));
+				} catch (final NumberFormatException e) {
+					return 0;
+				}
+			}
+		}
+		return 1;
+	}
+
+	/**
+	 * @param mediaType
+	 *            the media type
+	 * @return the quality the request gives the type, 0 if it is not acceptable
+	 */
+	float quality(MediaType mediaType) {
+		return this.qualities[mediaType.ordinal()];
+	}
+
+	/**
+	 * @param mediaType
+	 *            the media type
+	 * @return true if a range in the header names the type exactly
+	 */
+	boolean isExplicit(MediaType mediaType) {
+		return this.explicit[mediaType.ordinal()];
+	}
+
+	/**
+	 * @return the explicitly named type with the highest quality, the first listed if several share it, or UNKNOWN
+	 */
+	MediaType getPreferred() {
+		return this.preferred;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "AcceptHeader [qualities=" + Arrays.toString(this.qualities) + ", preferred=" + this.preferred + "]";
+	}
+}
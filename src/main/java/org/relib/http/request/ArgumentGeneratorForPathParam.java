@@ -60,7 +60,7 @@ class ArgumentGeneratorForPathParam implements ArgumentGenerator {
 	 * {@inheritDoc}
 	 */
 	public Object generateArgument(RequestInfo requestInfo) {
-		return ConvertUtils.convert(requestInfo.getPathParts()[this.pathIndex], this.type);
+		return ConvertUtils.convert(requestInfo.getPath().get(this.pathIndex), this.type);
 	}
 
 	/*
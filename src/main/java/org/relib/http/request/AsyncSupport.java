@@ -0,0 +1,239 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.http.request;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Starts and completes Servlet 3 asynchronous processing through reflection.
+ *
+ * <p>
+ * The library is built against the Servlet 2.5 API, which has no asynchronous processing. When it runs on a
+ * Servlet 3 container the request has <code>isAsyncSupported()</code> and <code>startAsync()</code> methods, and
+ * those are found and called by name. On an older container, or when the servlet is not declared with
+ * async-supported, {@link #start(HttpServletRequest)} returns null and the caller handles the request
+ * synchronously.
+ *
+ * @author Troy Histed
+ */
+final class AsyncSupport {
+
+	private static final String ASYNC_CONTEXT = "javax.servlet.AsyncContext";
+	private static final Logger LOG = Logger.getLogger(AsyncSupport.class.getName());
+
+	/**
+	 * Methods already looked up, by class and then by name. {@link #MISSING} marks a method that does not exist.
+	 */
+	private static final ConcurrentMap<Class<?>, ConcurrentMap<String, Object>> METHODS =
+			new ConcurrentHashMap<Class<?>, ConcurrentMap<String, Object>>();
+	private static final Object MISSING = new Object();
+
+	private static final ScheduledExecutorService TIMEOUTS = Executors
+			.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					final Thread thread = new Thread(runnable, "relib-async-timeout");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	/**
+	 * Static methods only.
+	 */
+	private AsyncSupport() {
+	}
+
+	/**
+	 * Starts asynchronous processing of a request.
+	 *
+	 * <p>
+	 * The container's timeout is turned off, since the caller enforces its own.
+	 *
+	 * @param request
+	 *            the request
+	 * @return the AsyncContext, or null if the request can not be processed asynchronously or already is
+	 */
+	static Object start(HttpServletRequest request) {
+		final Method isAsyncSupported = AsyncSupport.find(request.getClass(), "isAsyncSupported");
+		final Method isAsyncStarted = AsyncSupport.find(request.getClass(), "isAsyncStarted");
+		final Method startAsync = AsyncSupport.find(request.getClass(), "startAsync");
+		if (isAsyncSupported == null || startAsync == null
+				|| !Boolean.TRUE.equals(AsyncSupport.invoke(isAsyncSupported, request))
+				|| isAsyncStarted != null && Boolean.TRUE.equals(AsyncSupport.invoke(isAsyncStarted, request))) {
+			return null;
+		}
+		final Object asyncContext = AsyncSupport.invoke(startAsync, request);
+		final Method setTimeout = AsyncSupport.find(asyncContext.getClass(), "setTimeout", long.class);
+		if (setTimeout != null) {
+			AsyncSupport.invoke(setTimeout, asyncContext, Long.valueOf(0));
+		}
+		return asyncContext;
+	}
+
+	/**
+	 * Completes asynchronous processing, which sends the response.
+	 *
+	 * @param asyncContext
+	 *            the AsyncContext returned by {@link #start(HttpServletRequest)}
+	 */
+	static void complete(Object asyncContext) {
+		final Method complete = AsyncSupport.find(asyncContext.getClass(), "complete");
+		if (complete == null) {
+			throw new IllegalStateException("No complete method on " + asyncContext.getClass());
+		}
+		AsyncSupport.invoke(complete, asyncContext);
+	}
+
+	/**
+	 * Schedules the timeout of an asynchronous request.
+	 *
+	 * @param timeout
+	 *            the work to do when the request times out
+	 * @param delay
+	 *            the milliseconds until it times out
+	 * @return the scheduled timeout, to cancel when the request finishes first
+	 */
+	static ScheduledFuture<?> schedule(Runnable timeout, long delay) {
+		return AsyncSupport.TIMEOUTS.schedule(timeout, delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Sends a 500 for a failure that can no longer reach the container, which has already returned.
+	 *
+	 * <p>
+	 * The failure is logged rather than sent, so its message is not shown to the client.
+	 *
+	 * @param response
+	 *            the response
+	 * @param failure
+	 *            the failure
+	 */
+	static void sendError(HttpServletResponse response, Throwable failure) {
+		final Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+				? failure.getCause() : failure;
+		AsyncSupport.LOG.log(Level.SEVERE, "Asynchronous request failed", cause);
+		try {
+			if (!response.isCommitted()) {
+				response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+			}
+		} catch (final IOException e) {
+			throw new IllegalStateException("Unable to send error for " + cause, e);
+		}
+	}
+
+	/**
+	 * Finds a public method, caching the result for the class. Each name is only ever looked up with one set of
+	 * parameter types, so the name alone identifies the method.
+	 *
+	 * @param type
+	 *            the runtime class of the object
+	 * @param name
+	 *            the method name
+	 * @param parameterTypes
+	 *            the parameter types
+	 * @return the method, or null if it does not exist
+	 */
+	private static Method find(Class<?> type, String name, Class<?>... parameterTypes) {
+		ConcurrentMap<String, Object> methods = AsyncSupport.METHODS.get(type);
+		if (methods == null) {
+			final ConcurrentMap<String, Object> created = new ConcurrentHashMap<String, Object>();
+			methods = AsyncSupport.METHODS.putIfAbsent(type, created);
+			if (methods == null) {
+				methods = created;
+			}
+		}
+		Object method = methods.get(name);
+		if (method == null) {
+			final Method found = AsyncSupport.lookup(type, name, parameterTypes);
+			method = found == null ? AsyncSupport.MISSING : found;
+			methods.putIfAbsent(name, method);
+		}
+		return method == AsyncSupport.MISSING ? null : (Method) method;
+	}
+
+	/**
+	 * Looks up a public method, preferring the declaration on the AsyncContext interface so that a container's
+	 * implementation class does not need to be public.
+	 *
+	 * @param type
+	 *            the runtime class of the object
+	 * @param name
+	 *            the method name
+	 * @param parameterTypes
+	 *            the parameter types
+	 * @return the method, or null if it does not exist
+	 */
+	private static Method lookup(Class<?> type, String name, Class<?>... parameterTypes) {
+		for (final Class<?> anInterface : type.getInterfaces()) {
+			if (AsyncSupport.ASYNC_CONTEXT.equals(anInterface.getName())) {
+				try {
+					return anInterface.getMethod(name, parameterTypes);
+				} catch (final NoSuchMethodException e) {
+					return null;
+				}
+			}
+		}
+		try {
+			final Method method = type.getMethod(name, parameterTypes);
+			method.setAccessible(true);
+			return method;
+		} catch (final NoSuchMethodException e) {
+			return null;
+		} catch (final RuntimeException e) {
+			// the method exists but can not be made accessible
+			return null;
+		}
+	}
+
+	/**
+	 * Invokes a method, rethrowing anything it throws unchecked.
+	 *
+	 * @param method
+	 *            the method
+	 * @param target
+	 *            the object to invoke it on
+	 * @param args
+	 *            the arguments
+	 * @return the result
+	 */
+	private static Object invoke(Method method, Object target, Object... args) {
+		try {
+			return method.invoke(target, args);
+		} catch (final IllegalAccessException e) {
+			throw new IllegalStateException("Unable to call " + method, e);
+		} catch (final InvocationTargetException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException("Unable to call " + method, e.getCause());
+		}
+	}
+}
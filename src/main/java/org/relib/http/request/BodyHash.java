@@ -0,0 +1,69 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.http.request;
+
+/**
+ * Hashes characters as they are appended, without keeping them.
+ *
+ * <p>
+ * Uses the 64 bit FNV-1a hash, which is fast and spreads small changes in the body across the whole hash.
+ *
+ * @author Troy Histed
+ */
+final class BodyHash implements Appendable {
+
+	private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long PRIME = 0x100000001b3L;
+
+	private long hash = BodyHash.OFFSET_BASIS;
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Appendable append(CharSequence csq) {
+		return this.append(csq, 0, csq.length());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Appendable append(CharSequence csq, int start, int end) {
+		long h = this.hash;
+		for (int i = start; i < end; i++) {
+			final char c = csq.charAt(i);
+			h = (h ^ (c & 0xff)) * BodyHash.PRIME;
+			h = (h ^ (c >>> 8)) * BodyHash.PRIME;
+		}
+		this.hash = h;
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Appendable append(char c) {
+		this.hash = (this.hash ^ (c & 0xff)) * BodyHash.PRIME;
+		this.hash = (this.hash ^ (c >>> 8)) * BodyHash.PRIME;
+		return this;
+	}
+
+	/**
+	 * @return the hash of everything appended
+	 */
+	long getHash() {
+		return this.hash;
+	}
+}
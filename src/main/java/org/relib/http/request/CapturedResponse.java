@@ -0,0 +1,304 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.http.request;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Records the status, headers and body written to a response instead of sending them, so they can be sent again
+ * later.
+ *
+ * @author Troy Histed
+ */
+class CapturedResponse extends HttpServletResponseWrapper {
+
+	private static final String DEFAULT_CHARACTER_ENCODING = "ISO-8859-1";
+
+	private final List<Object[]> headers = new ArrayList<Object[]>();
+	private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+	private int status = HttpServletResponse.SC_OK;
+	private String contentType;
+	private String characterEncoding;
+	private PrintWriter writer;
+	private ServletOutputStream outputStream;
+
+	/**
+	 * @param response
+	 *            the response the captured response is for
+	 */
+	CapturedResponse(HttpServletResponse response) {
+		super(response);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setHeader(String name, String value) {
+		this.removeHeader(name);
+		this.headers.add(new Object[] { name, value });
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void addHeader(String name, String value) {
+		this.headers.add(new Object[] { name, value });
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setDateHeader(String name, long date) {
+		this.removeHeader(name);
+		this.headers.add(new Object[] { name, Long.valueOf(date) });
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void addDateHeader(String name, long date) {
+		this.headers.add(new Object[] { name, Long.valueOf(date) });
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setIntHeader(String name, int value) {
+		this.setHeader(name, String.valueOf(value));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void addIntHeader(String name, int value) {
+		this.addHeader(name, String.valueOf(value));
+	}
+
+	/**
+	 * Checks the captured headers and those already set on the response, such as the ETag of a
+	 * {@link org.relib.http.ResponseVersion}.
+	 */
+	@Override
+	public boolean containsHeader(String name) {
+		return this.getHeader(name) != null || super.containsHeader(name);
+	}
+
+	/**
+	 * @param name
+	 *            the header name
+	 * @return the first value set for the header, or null
+	 */
+	String getHeader(String name) {
+		final int index = this.indexOf(name);
+		return index < 0 ? null : String.valueOf(this.headers.get(index)[1]);
+	}
+
+	/**
+	 * @param name
+	 *            the header name
+	 * @return the index of the first value set for the header, or -1
+	 */
+	private int indexOf(String name) {
+		for (int i = 0; i < this.headers.size(); i++) {
+			if (((String) this.headers.get(i)[0]).equalsIgnoreCase(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param name
+	 *            the header to remove
+	 */
+	private void removeHeader(String name) {
+		for (int i = this.headers.size() - 1; i >= 0; i--) {
+			if (((String) this.headers.get(i)[0]).equalsIgnoreCase(name)) {
+				this.headers.remove(i);
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setStatus(int sc) {
+		this.status = sc;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void sendError(int sc) {
+		this.status = sc;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void sendError(int sc, String msg) {
+		this.status = sc;
+	}
+
+	/**
+	 * @return the status
+	 */
+	int getStatus() {
+		return this.status;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setContentType(String type) {
+		this.contentType = type;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getContentType() {
+		return this.contentType;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setCharacterEncoding(String charset) {
+		this.characterEncoding = charset;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getCharacterEncoding() {
+		if (this.characterEncoding != null) {
+			return this.characterEncoding;
+		}
+		final String encoding = super.getCharacterEncoding();
+		return encoding != null ? encoding : CapturedResponse.DEFAULT_CHARACTER_ENCODING;
+	}
+
+	/**
+	 * The length is counted from the captured body.
+	 */
+	@Override
+	public void setContentLength(int len) {
+		// ignored
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ServletOutputStream getOutputStream() {
+		if (this.writer != null) {
+			throw new IllegalStateException("getWriter has already been called");
+		}
+		if (this.outputStream == null) {
+			this.outputStream = new ServletOutputStream() {
+				@Override
+				public void write(int b) {
+					CapturedResponse.this.body.write(b);
+				}
+
+				@Override
+				public void write(byte[] b, int off, int len) {
+					CapturedResponse.this.body.write(b, off, len);
+				}
+			};
+		}
+		return this.outputStream;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public PrintWriter getWriter() throws IOException {
+		if (this.outputStream != null) {
+			throw new IllegalStateException("getOutputStream has already been called");
+		}
+		if (this.writer == null) {
+			this.writer = new PrintWriter(new OutputStreamWriter(this.body, this.getCharacterEncoding()));
+		}
+		return this.writer;
+	}
+
+	/**
+	 * Nothing is sent until the response is replayed.
+	 */
+	@Override
+	public void flushBuffer() {
+		if (this.writer != null) {
+			this.writer.flush();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isCommitted() {
+		return false;
+	}
+
+	/**
+	 * Stops capturing.
+	 *
+	 * @return the body
+	 */
+	byte[] finish() {
+		this.flushBuffer();
+		return this.body.toByteArray();
+	}
+
+	/**
+	 * @return the headers, each a name and a String value or a Long date
+	 */
+	List<Object[]> getHeaders() {
+		return this.headers;
+	}
+
+	/**
+	 * @return the character encoding set by the handler, or null
+	 */
+	String getCharacterEncodingSet() {
+		return this.characterEncoding;
+	}
+}
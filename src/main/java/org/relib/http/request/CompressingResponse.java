@@ -0,0 +1,406 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.http.request;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Wraps a response to compress its body with gzip or deflate.
+ *
+ * <p>
+ * The first bytes of the body are held until the threshold is reached. If the body ends or is flushed before
+ * that, or its content type is not compressible, it is sent as it is, with a Content-Length when the body ended.
+ * Otherwise the Content-Encoding is set and the body is compressed as it is written, with each flush sending the
+ * data compressed so far, so a streamed body stays streamed. {@link #finish()} must be called once the body is
+ * written.
+ *
+ * <p>
+ * An ETag set through this response is held with the body, and made weak if the body is compressed, since the
+ * compressed bytes are no longer the ones it was computed from.
+ *
+ * @author Troy Histed
+ */
+class CompressingResponse extends HttpServletResponseWrapper {
+
+	private static final String DEFAULT_CHARACTER_ENCODING = "ISO-8859-1";
+	private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+	private final String encoding;
+	private final CompressingStream stream;
+	private PrintWriter writer;
+	private boolean streamReturned;
+	private String etag;
+	private boolean notModified;
+
+	/**
+	 * @param response
+	 *            the response to compress
+	 * @param encoding
+	 *            gzip or deflate
+	 * @param threshold
+	 *            the number of bytes the body must reach before it is compressed
+	 */
+	CompressingResponse(HttpServletResponse response, String encoding, int threshold) {
+		super(response);
+		this.encoding = encoding;
+		this.stream = new CompressingStream(threshold);
+	}
+
+	/**
+	 * Chooses the encoding to compress a response with.
+	 *
+	 * @param acceptEncoding
+	 *            the Accept-Encoding header of the request, may be null
+	 * @return gzip or deflate, or null if the request accepts neither
+	 */
+	static String chooseEncoding(String acceptEncoding) {
+		if (acceptEncoding == null) {
+			return null;
+		}
+		float gzip = -1;
+		float deflate = -1;
+		float any = -1;
+		for (final String element : acceptEncoding.split(",")) {
+			final int semicolon = element.indexOf(';');
+			final String coding = (semicolon < 0 ? element : element.substring(0, semicolon)).trim();
+			final float quality = semicolon < 0 ? 1 : CompressingResponse.quality(element.substring(semicolon + 1));
+			if ("gzip".equalsIgnoreCase(coding) || "x-gzip".equalsIgnoreCase(coding)) {
+				gzip = quality;
+			} else if ("deflate".equalsIgnoreCase(coding)) {
+				deflate = quality;
+			} else if ("*".equals(coding)) {
+				any = quality;
+			}
+		}
+		gzip = gzip < 0 ? any : gzip;
+		deflate = deflate < 0 ? any : deflate;
+		if (gzip > 0 && gzip >= deflate) {
+			return "gzip";
+		}
+		return deflate > 0 ? "deflate" : null;
+	}
+
+	/**
+	 * Reads the q parameter of an Accept-Encoding element.
+	 *
+	 * @param parameters
+	 *            the parameters following the coding
+	 * @return the quality, 1 if there is no q parameter or 0 if it is not a number
+	 */
+	private static float quality(String parameters) {
+		final int equals = parameters.indexOf('=');
+		if (equals < 0 || !"q".equalsIgnoreCase(parameters.substring(0, equals).trim())) {
+			return 1;
+		}
+		try {
+			return Float.parseFloat(parameters.substring(equals + 1).trim());
+		} catch (final NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ServletOutputStream getOutputStream() throws IOException {
+		if (this.writer != null) {
+			throw new IllegalStateException("getWriter has already been called");
+		}
+		this.streamReturned = true;
+		return this.stream;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public PrintWriter getWriter() throws IOException {
+		if (this.streamReturned) {
+			throw new IllegalStateException("getOutputStream has already been called");
+		}
+		if (this.writer == null) {
+			final String characterEncoding = this.getCharacterEncoding();
+			this.writer = new PrintWriter(new OutputStreamWriter(this.stream,
+					characterEncoding != null ? characterEncoding : CompressingResponse.DEFAULT_CHARACTER_ENCODING));
+		}
+		return this.writer;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setHeader(String name, String value) {
+		if ("ETag".equalsIgnoreCase(name)) {
+			this.etag = value;
+		} else {
+			super.setHeader(name, value);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean containsHeader(String name) {
+		return "ETag".equalsIgnoreCase(name) && this.etag != null || super.containsHeader(name);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setStatus(int sc) {
+		this.notModified = sc == HttpServletResponse.SC_NOT_MODIFIED;
+		super.setStatus(sc);
+	}
+
+	/**
+	 * Holds the length until it is known whether the body is compressed, which changes it.
+	 */
+	@Override
+	public void setContentLength(int len) {
+		this.stream.contentLength = len;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void flushBuffer() throws IOException {
+		if (this.writer != null) {
+			this.writer.flush();
+		}
+		this.stream.flush();
+	}
+
+	/**
+	 * Writes whatever part of the body is still held and ends the compressed data.
+	 *
+	 * @throws IOException
+	 *             if the body can not be written
+	 */
+	void finish() throws IOException {
+		if (this.writer != null) {
+			this.writer.flush();
+		}
+		this.stream.finish();
+	}
+
+	/**
+	 * Returns the Deflater to the pool if the body was not finished, such as when building the response failed.
+	 * Nothing more is written.
+	 */
+	void release() {
+		this.stream.release();
+	}
+
+	/**
+	 * @return true if the body is being compressed
+	 */
+	boolean isCompressing() {
+		return this.stream.deflater != null;
+	}
+
+	/**
+	 * Sets the held ETag on the response.
+	 *
+	 * @param compressed
+	 *            true if the body is compressed, which makes the ETag weak
+	 */
+	private void sendETag(boolean compressed) {
+		if (this.etag != null) {
+			super.setHeader("ETag", compressed && !this.etag.startsWith("W/") ? "W/" + this.etag : this.etag);
+		}
+	}
+
+	/**
+	 * Writes an int in little endian order, as gzip requires.
+	 *
+	 * @param out
+	 *            the stream
+	 * @param value
+	 *            the value
+	 * @throws IOException
+	 *             if the value can not be written
+	 */
+	private static void writeInt(OutputStream out, int value) throws IOException {
+		out.write(value & 0xff);
+		out.write((value >>> 8) & 0xff);
+		out.write((value >>> 16) & 0xff);
+		out.write((value >>> 24) & 0xff);
+	}
+
+	/**
+	 * The body, held until the threshold and then compressed or passed through.
+	 */
+	private final class CompressingStream extends ServletOutputStream {
+
+		private final byte[] held;
+		private int count;
+		private int contentLength = -1;
+		private OutputStream out;
+		private Deflater deflater;
+		private CRC32 crc;
+		private boolean finished;
+
+		/**
+		 * @param threshold
+		 *            the number of bytes to hold before deciding to compress
+		 */
+		CompressingStream(int threshold) {
+			this.held = new byte[threshold];
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void write(int b) throws IOException {
+			if (this.out == null && !this.finished && this.count + 1 < this.held.length) {
+				this.held[this.count++] = (byte) b;
+			} else {
+				this.write(new byte[] { (byte) b }, 0, 1);
+			}
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (this.finished) {
+				throw new IOException("Response body already finished");
+			}
+			if (this.out == null) {
+				if (this.count + len < this.held.length) {
+					System.arraycopy(b, off, this.held, this.count, len);
+					this.count += len;
+					return;
+				}
+				this.start(true);
+			}
+			if (this.crc != null) {
+				this.crc.update(b, off, len);
+			}
+			this.out.write(b, off, len);
+		}
+
+		/**
+		 * Sends the body written so far. A body still under the threshold is sent uncompressed.
+		 */
+		@Override
+		public void flush() throws IOException {
+			if (this.out == null) {
+				this.start(false);
+			}
+			this.out.flush();
+		}
+
+		/**
+		 * Ends the body.
+		 *
+		 * @throws IOException
+		 *             if the body can not be written
+		 */
+		void finish() throws IOException {
+			if (this.finished) {
+				return;
+			}
+			if (CompressingResponse.this.notModified) {
+				this.finished = true;
+				CompressingResponse.this.sendETag(false);
+				return;
+			}
+			if (this.out == null) {
+				this.contentLength = this.count;
+				this.start(false);
+			}
+			this.finished = true;
+			if (this.deflater != null) {
+				try {
+					((DeflaterOutputStream) this.out).finish();
+					final OutputStream target = CompressingResponse.this.getResponse().getOutputStream();
+					if (this.crc != null) {
+						CompressingResponse.writeInt(target, (int) this.crc.getValue());
+						CompressingResponse.writeInt(target, (int) this.deflater.getBytesRead());
+					}
+					// The deflating stream would sync flush the Deflater even after it is back in the pool
+					this.out = target;
+				} finally {
+					this.release();
+				}
+			}
+			this.out.flush();
+		}
+
+		/**
+		 * Returns the Deflater to the pool and ends the body without writing anything more.
+		 */
+		void release() {
+			this.finished = true;
+			if (this.deflater != null) {
+				DeflaterPool.release(this.deflater, this.crc != null);
+				this.deflater = null;
+			}
+		}
+
+		/**
+		 * Decides whether to compress and writes the held bytes.
+		 *
+		 * @param reachedThreshold
+		 *            true if the body has reached the threshold
+		 * @throws IOException
+		 *             if the body can not be written
+		 */
+		private void start(boolean reachedThreshold) throws IOException {
+			final HttpServletResponse response = (HttpServletResponse) CompressingResponse.this.getResponse();
+			if (reachedThreshold && !response.containsHeader("Content-Encoding")
+					&& MediaTypeResolver.contentType(response.getContentType()).isCompressible()) {
+				response.setHeader("Content-Encoding", CompressingResponse.this.encoding);
+				response.addHeader("Vary", "Accept-Encoding");
+				CompressingResponse.this.sendETag(true);
+				final OutputStream target = response.getOutputStream();
+				final boolean gzip = "gzip".equals(CompressingResponse.this.encoding);
+				if (gzip) {
+					target.write(CompressingResponse.GZIP_HEADER);
+					this.crc = new CRC32();
+					this.crc.update(this.held, 0, this.count);
+				}
+				this.deflater = DeflaterPool.acquire(gzip);
+				this.out = new DeflaterOutputStream(target, this.deflater, 8192, true);
+			} else {
+				CompressingResponse.this.sendETag(false);
+				if (this.contentLength >= 0 && !response.isCommitted()) {
+					response.setContentLength(this.contentLength);
+				}
+				this.out = response.getOutputStream();
+			}
+			this.out.write(this.held, 0, this.count);
+		}
+	}
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.http.request;
+
+import java.util.Calendar;
+import java.util.Date;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Answers conditional GET and HEAD requests.
+ *
+ * <p>
+ * If-None-Match is compared with the weak comparison, so a client holding the weak ETag of a compressed body still
+ * matches the strong ETag of the same body. If-Modified-Since is only used when the request has no If-None-Match.
+ *
+ * @author Troy Histed
+ */
+final class ConditionalRequest {
+
+	/**
+	 * Static methods only.
+	 */
+	private ConditionalRequest() {
+	}
+
+	/**
+	 * @param request
+	 *            the request
+	 * @return true if the request is a GET or HEAD, the only methods answered with a 304
+	 */
+	static boolean isConditional(HttpServletRequest request) {
+		return "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod());
+	}
+
+	/**
+	 * Builds an ETag from a hash.
+	 *
+	 * @param hash
+	 *            the hash
+	 * @param weak
+	 *            true for a weak ETag
+	 * @return the quoted ETag
+	 */
+	static String etag(long hash, boolean weak) {
+		final String hex = Long.toHexString(hash);
+		final StringBuilder etag = new StringBuilder(weak ? 20 : 18);
+		if (weak) {
+			etag.append("W/");
+		}
+		etag.append('"');
+		for (int i = hex.length(); i < 16; i++) {
+			etag.append('0');
+		}
+		return etag.append(hex).append('"').toString();
+	}
+
+	/**
+	 * Sets the validators for a version and answers with a 304 if the client already has it.
+	 *
+	 * <p>
+	 * The ETag of a version is weak, since it identifies the content rather than the exact bytes sent.
+	 *
+	 * @param request
+	 *            the request
+	 * @param response
+	 *            the response
+	 * @param version
+	 *            the version returned by the handler's version method
+	 * @return true if a 304 was sent and the handler should not be called
+	 */
+	static boolean checkVersion(HttpServletRequest request, HttpServletResponse response, Object version) {
+		long lastModified = -1;
+		if (version instanceof Date) {
+			lastModified = ((Date) version).getTime();
+		} else if (version instanceof Calendar) {
+			lastModified = ((Calendar) version).getTimeInMillis();
+		}
+
+		final String etag;
+		if (lastModified >= 0) {
+			etag = ConditionalRequest.etag(lastModified, true);
+			response.setDateHeader("Last-Modified", lastModified);
+		} else {
+			final BodyHash hash = new BodyHash();
+			hash.append(String.valueOf(version));
+			etag = ConditionalRequest.etag(hash.getHash(), true);
+		}
+		response.setHeader("ETag", etag);
+
+		if (ConditionalRequest.isNotModified(request, etag, lastModified)) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Determines if the client already has the current response.
+	 *
+	 * @param request
+	 *            the request
+	 * @param etag
+	 *            the ETag of the current response
+	 * @param lastModified
+	 *            the time the response last changed, or -1 if unknown
+	 * @return true if a 304 should be sent
+	 */
+	static boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+		final String ifNoneMatch = request.getHeader("If-None-Match");
+		if (ifNoneMatch != null) {
+			final String opaque = ConditionalRequest.opaque(etag);
+			for (final String candidate : ifNoneMatch.split(",")) {
+				final String value = candidate.trim();
+				if ("*".equals(value) || ConditionalRequest.opaque(value).equals(opaque)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		if (lastModified >= 0) {
+			final long ifModifiedSince;
+			try {
+				ifModifiedSince = request.getDateHeader("If-Modified-Since");
+			} catch (final IllegalArgumentException e) {
+				return false;
+			}
+			// Http dates only hold whole seconds
+			return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+		}
+		return false;
+	}
+
+	/**
+	 * @param etag
+	 *            an ETag
+	 * @return the ETag without the weak indicator
+	 */
+	private static String opaque(String etag) {
+		return etag.startsWith("W/") ? etag.substring(2) : etag;
+	}
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.http.request;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * Keeps Deflaters for reuse.
+ *
+ * <p>
+ * A Deflater holds native memory that is only freed by {@link Deflater#end()} or finalization, so creating one per
+ * response is costly. Released Deflaters are reset and kept, up to {@link #MAX_POOLED} of each kind; any beyond
+ * that are ended.
+ *
+ * @author Troy Histed
+ */
+final class DeflaterPool {
+
+	/**
+	 * The number of Deflaters of each kind kept for reuse.
+	 */
+	static final int MAX_POOLED = 32;
+
+	private static final BlockingQueue<Deflater> ZLIB = new ArrayBlockingQueue<Deflater>(DeflaterPool.MAX_POOLED);
+	private static final BlockingQueue<Deflater> RAW = new ArrayBlockingQueue<Deflater>(DeflaterPool.MAX_POOLED);
+
+	/**
+	 * Static methods only.
+	 */
+	private DeflaterPool() {
+	}
+
+	/**
+	 * Takes a Deflater from the pool, creating one if the pool is empty.
+	 *
+	 * @param nowrap
+	 *            true for raw deflate data as used inside gzip, false for the zlib format
+	 * @return the Deflater
+	 */
+	static Deflater acquire(boolean nowrap) {
+		final Deflater deflater = (nowrap ? DeflaterPool.RAW : DeflaterPool.ZLIB).poll();
+		return deflater != null ? deflater : new Deflater(Deflater.DEFAULT_COMPRESSION, nowrap);
+	}
+
+	/**
+	 * Returns a Deflater to the pool.
+	 *
+	 * @param deflater
+	 *            the Deflater
+	 * @param nowrap
+	 *            the format the Deflater was acquired for
+	 */
+	static void release(Deflater deflater, boolean nowrap) {
+		deflater.reset();
+		if (!(nowrap ? DeflaterPool.RAW : DeflaterPool.ZLIB).offer(deflater)) {
+			deflater.end();
+		}
+	}
+}
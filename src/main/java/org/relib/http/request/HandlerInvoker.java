@@ -0,0 +1,202 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.http.request;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Invokes the method of a {@link RequestDefinition} on a controller through a method handle that is bound once.
+ *
+ * <p>
+ * The handle takes the {@link RequestInfo} and runs each {@link ArgumentGenerator} to produce the matching method
+ * argument before calling the method, so invoking a handler needs no argument array and no access check. Like
+ * {@link Method#invoke(Object, Object...)}, an exception thrown by the method is wrapped in an
+ * {@link InvocationTargetException}, while an exception thrown by an argument generator is not, and a generated
+ * argument that is null for a primitive parameter or of the wrong type throws an {@link IllegalArgumentException}.
+ *
+ * @author Troy Histed
+ */
+final class HandlerInvoker {
+
+	private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, RequestInfo.class);
+	private static final MethodHandle GENERATE_ARGUMENT;
+	private static final MethodHandle MISSING_ARGUMENT;
+	private static final MethodHandle WRAP_EXCEPTION;
+	private static final MethodHandle MISMATCHED_ARGUMENT;
+
+	static {
+		final MethodHandles.Lookup lookup = MethodHandles.lookup();
+		try {
+			GENERATE_ARGUMENT = lookup.findVirtual(ArgumentGenerator.class, "generateArgument",
+					MethodType.methodType(Object.class, RequestInfo.class));
+			MISSING_ARGUMENT = lookup.findStatic(HandlerInvoker.class, "missingArgument",
+					MethodType.methodType(Object.class, RequestInfo.class));
+			WRAP_EXCEPTION = lookup.findStatic(HandlerInvoker.class, "wrapException",
+					MethodType.methodType(Object.class, Throwable.class));
+			MISMATCHED_ARGUMENT = lookup.findStatic(HandlerInvoker.class, "mismatchedArgument",
+					MethodType.methodType(Object.class, RuntimeException.class, Object.class));
+		} catch (final NoSuchMethodException e) {
+			throw new ExceptionInInitializerError(e);
+		} catch (final IllegalAccessException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private final MethodHandle invoker;
+
+	/**
+	 * Binds the method of a definition to a controller.
+	 *
+	 * @param controller
+	 *            the controller to invoke the method on
+	 * @param requestDefinition
+	 *            the definition
+	 */
+	HandlerInvoker(Object controller, RequestDefinition requestDefinition) {
+		final Method method = requestDefinition.getMethod();
+		final MethodHandle target;
+		try {
+			method.setAccessible(true);
+			target = MethodHandles.lookup().unreflect(method).bindTo(controller);
+		} catch (final IllegalAccessException e) {
+			throw new IllegalStateException("Unable to access controller method " + method, e);
+		}
+
+		final Class<?>[] parameterTypes = method.getParameterTypes();
+		final ArgumentGenerator[] argumentGenerators = requestDefinition.getArgumentGenerators();
+		final MethodHandle[] filters = new MethodHandle[parameterTypes.length];
+		for (int i = 0; i < parameterTypes.length; i++) {
+			final MethodHandle generator = argumentGenerators[i] == null
+					? HandlerInvoker.missingArgumentGenerator(parameterTypes[i])
+					: HandlerInvoker.GENERATE_ARGUMENT.bindTo(argumentGenerators[i]);
+			filters[i] = MethodHandles.filterReturnValue(generator, HandlerInvoker.conversion(parameterTypes[i]));
+		}
+
+		final MethodHandle wrapped = MethodHandles.catchException(target, Throwable.class,
+				MethodHandles.dropArguments(
+						HandlerInvoker.WRAP_EXCEPTION.asType(
+								MethodType.methodType(target.type().returnType(), Throwable.class)),
+						1, parameterTypes));
+		final MethodHandle generated = MethodHandles.filterArguments(wrapped, 0, filters);
+		this.invoker = MethodHandles
+				.permuteArguments(generated,
+						MethodType.methodType(target.type().returnType(), RequestInfo.class),
+						new int[parameterTypes.length])
+				.asType(HandlerInvoker.INVOKER_TYPE);
+	}
+
+	/**
+	 * Generates the arguments and invokes the method.
+	 *
+	 * @param requestInfo
+	 *            the parsed request information
+	 * @return the value returned by the method, or null for a void method
+	 * @throws InvocationTargetException
+	 *             if the method threw an exception
+	 */
+	Object invoke(RequestInfo requestInfo) throws InvocationTargetException {
+		try {
+			return (Object) this.invoker.invokeExact(requestInfo);
+		} catch (final InvocationTargetException e) {
+			throw e;
+		} catch (final RuntimeException e) {
+			throw e;
+		} catch (final Error e) {
+			throw e;
+		} catch (final Throwable e) {
+			throw new InvocationTargetException(e);
+		}
+	}
+
+	/**
+	 * Builds the generator for a parameter that has no argument generator. Reference parameters are passed null,
+	 * as they were by reflection; primitive parameters can not be.
+	 *
+	 * @param parameterType
+	 *            the parameter type
+	 * @return the generator
+	 */
+	private static MethodHandle missingArgumentGenerator(Class<?> parameterType) {
+		if (parameterType.isPrimitive()) {
+			return HandlerInvoker.MISSING_ARGUMENT;
+		}
+		return MethodHandles.dropArguments(MethodHandles.constant(Object.class, null), 0, RequestInfo.class);
+	}
+
+	/**
+	 * Builds the conversion of a generated argument to its parameter type. The cast or unboxing is done by the
+	 * handle, so widening is allowed as with reflection, but a failure throws an {@link IllegalArgumentException}
+	 * rather than a ClassCastException or NullPointerException.
+	 *
+	 * @param parameterType
+	 *            the parameter type
+	 * @return the conversion from Object to the parameter type
+	 */
+	private static MethodHandle conversion(Class<?> parameterType) {
+		final MethodHandle cast = MethodHandles.identity(Object.class)
+				.asType(MethodType.methodType(parameterType, Object.class));
+		if (parameterType == Object.class) {
+			return cast;
+		}
+		return MethodHandles.catchException(cast, RuntimeException.class, HandlerInvoker.MISMATCHED_ARGUMENT
+				.asType(MethodType.methodType(parameterType, RuntimeException.class, Object.class)));
+	}
+
+	/**
+	 * Fails to convert a generated argument to its parameter type.
+	 *
+	 * @param cause
+	 *            the exception thrown by the conversion
+	 * @param argument
+	 *            the generated argument
+	 * @return never returns
+	 */
+	@SuppressWarnings("unused")
+	private static Object mismatchedArgument(RuntimeException cause, Object argument) {
+		throw new IllegalArgumentException("argument type mismatch: "
+				+ (argument == null ? "null" : argument.getClass().getName()), cause);
+	}
+
+	/**
+	 * Fails to generate an argument for a primitive parameter without an argument generator.
+	 *
+	 * @param requestInfo
+	 *            the parsed request information
+	 * @return never returns
+	 */
+	@SuppressWarnings("unused")
+	private static Object missingArgument(RequestInfo requestInfo) {
+		throw new IllegalArgumentException("No argument can be generated for a primitive parameter");
+	}
+
+	/**
+	 * Wraps an exception thrown by the controller method.
+	 *
+	 * @param cause
+	 *            the exception
+	 * @return never returns
+	 * @throws InvocationTargetException
+	 *             always
+	 */
+	@SuppressWarnings("unused")
+	private static Object wrapException(Throwable cause) throws InvocationTargetException {
+		throw new InvocationTargetException(cause);
+	}
+}
@@ -0,0 +1,317 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.http.request;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.relib.http.Offload;
+
+/**
+ * Runs an {@link Offload} handler on another thread and limits how many requests run it at once.
+ *
+ * <p>
+ * The container thread only tries for a permit without waiting. A request that does not get one waits on its
+ * offload thread, so a burst over the limit does not hold container threads. The timeout is also a deadline for an
+ * offloaded request: when it passes the request is sent a 503 and the handler's thread is interrupted.
+ *
+ * @author Troy Histed
+ */
+class HandlerOffload {
+
+	/**
+	 * The most platform threads used for offloaded handlers when the JDK has no virtual threads. Handlers are run on
+	 * the container thread while all of them are busy.
+	 */
+	private static final int MAX_PLATFORM_THREADS = 200;
+	private static final ExecutorService EXECUTOR = HandlerOffload.createExecutor();
+
+	private final Semaphore permits;
+	private final long timeout;
+
+	/**
+	 * @param offload
+	 *            the annotation of the handler or its controller
+	 */
+	HandlerOffload(Offload offload) {
+		this.permits = offload.maxConcurrent() > 0 ? new Semaphore(offload.maxConcurrent(), true) : null;
+		this.timeout = offload.timeout();
+	}
+
+	/**
+	 * Handles a request, on another thread if asynchronous processing can be started, once a permit is available.
+	 * Sends a 503 if none is available within the timeout.
+	 *
+	 * @param req
+	 *            the http servlet request
+	 * @param resp
+	 *            the http servlet response
+	 * @param handler
+	 *            the work of handling the request
+	 * @throws ServletException
+	 *             exception from the handler, when run on the container thread
+	 * @throws IOException
+	 *             exception from the handler, when run on the container thread
+	 */
+	void handle(HttpServletRequest req, HttpServletResponse resp, Handler handler)
+			throws ServletException, IOException {
+		final boolean acquired = this.permits == null || this.permits.tryAcquire();
+		final Object asyncContext;
+		try {
+			asyncContext = AsyncSupport.start(req);
+		} catch (final RuntimeException e) {
+			if (acquired) {
+				this.release();
+			}
+			throw e;
+		}
+
+		if (asyncContext != null) {
+			new Offloaded(resp, handler, asyncContext, acquired).dispatch();
+			return;
+		}
+
+		// nowhere else to wait
+		if (!acquired && !this.acquire()) {
+			HandlerOffload.sendUnavailable(resp);
+			return;
+		}
+		try {
+			handler.handle();
+		} finally {
+			this.release();
+		}
+	}
+
+	/**
+	 * Waits up to the timeout for a permit.
+	 *
+	 * @return true if a permit was taken or there is no limit
+	 */
+	private boolean acquire() {
+		if (this.permits == null) {
+			return true;
+		}
+		try {
+			return this.permits.tryAcquire(this.timeout, TimeUnit.MILLISECONDS);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/**
+	 * Returns a permit taken by {@link #acquire()}.
+	 */
+	private void release() {
+		if (this.permits != null) {
+			this.permits.release();
+		}
+	}
+
+	/**
+	 * @return the number of requests that could start the handler now, or -1 if there is no limit
+	 */
+	int availablePermits() {
+		return this.permits == null ? -1 : this.permits.availablePermits();
+	}
+
+	/**
+	 * Sends a 503 for a request that did not get a turn, or took too long.
+	 *
+	 * @param resp
+	 *            the http servlet response
+	 */
+	private static void sendUnavailable(HttpServletResponse resp) {
+		try {
+			if (!resp.isCommitted()) {
+				resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+			}
+		} catch (final IOException e) {
+			throw new IllegalStateException("Unable to send unavailable", e);
+		}
+	}
+
+	/**
+	 * Creates the executor for offloaded handlers, which starts a virtual thread per request when the JDK has them
+	 * and otherwise pools at most {@link #MAX_PLATFORM_THREADS} platform threads.
+	 *
+	 * @return the executor
+	 */
+	private static ExecutorService createExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (final NoSuchMethodException e) {
+			// before JDK 21
+		} catch (final IllegalAccessException e) {
+			// not usable
+		} catch (final InvocationTargetException e) {
+			// virtual threads are a disabled preview
+		}
+		return new ThreadPoolExecutor(0, HandlerOffload.MAX_PLATFORM_THREADS, 60, TimeUnit.SECONDS,
+				new SynchronousQueue<Runnable>(), new ThreadFactory() {
+					public Thread newThread(Runnable runnable) {
+						final Thread thread = new Thread(runnable, "relib-offload");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+	}
+
+	/**
+	 * A request running on an offload thread, which finishes when the handler does or the timeout passes, whichever
+	 * is first.
+	 */
+	private final class Offloaded implements Runnable {
+
+		private final HttpServletResponse resp;
+		private final Handler handler;
+		private final Object asyncContext;
+		private final AtomicBoolean done = new AtomicBoolean();
+		private boolean acquired;
+		private ScheduledFuture<?> timer;
+		/** The thread running the handler, guarded by this */
+		private Thread running;
+
+		/**
+		 * @param resp
+		 *            the http servlet response
+		 * @param handler
+		 *            the work of handling the request
+		 * @param asyncContext
+		 *            the started AsyncContext
+		 * @param acquired
+		 *            true if the container thread already took a permit
+		 */
+		Offloaded(HttpServletResponse resp, Handler handler, Object asyncContext, boolean acquired) {
+			this.resp = resp;
+			this.handler = handler;
+			this.asyncContext = asyncContext;
+			this.acquired = acquired;
+		}
+
+		/**
+		 * Starts the timeout and runs the request on an offload thread, or on this thread if none is free.
+		 */
+		void dispatch() {
+			this.timer = AsyncSupport.schedule(new Runnable() {
+				public void run() {
+					Offloaded.this.expire();
+				}
+			}, HandlerOffload.this.timeout);
+			try {
+				HandlerOffload.EXECUTOR.execute(this);
+			} catch (final RejectedExecutionException e) {
+				// every offload thread is busy
+				this.run();
+			}
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public void run() {
+			synchronized (this) {
+				this.running = Thread.currentThread();
+			}
+			Exception failure = null;
+			try {
+				if (!this.acquired) {
+					this.acquired = HandlerOffload.this.acquire();
+				}
+				if (this.acquired) {
+					try {
+						if (!this.done.get()) {
+							this.handler.handle();
+						}
+					} finally {
+						HandlerOffload.this.release();
+					}
+				}
+			} catch (final Exception e) {
+				failure = e;
+			} finally {
+				synchronized (this) {
+					this.running = null;
+					// an interrupt from expire() must not reach the next task on a pooled thread
+					Thread.interrupted();
+				}
+			}
+
+			if (this.done.compareAndSet(false, true)) {
+				this.timer.cancel(false);
+				try {
+					if (failure != null) {
+						AsyncSupport.sendError(this.resp, failure);
+					} else if (!this.acquired) {
+						HandlerOffload.sendUnavailable(this.resp);
+					}
+				} finally {
+					AsyncSupport.complete(this.asyncContext);
+				}
+			}
+		}
+
+		/**
+		 * Sends a 503 and interrupts the handler when the timeout passes before the request finishes.
+		 */
+		void expire() {
+			if (!this.done.compareAndSet(false, true)) {
+				return;
+			}
+			synchronized (this) {
+				if (this.running != null) {
+					this.running.interrupt();
+				}
+			}
+			try {
+				HandlerOffload.sendUnavailable(this.resp);
+			} finally {
+				AsyncSupport.complete(this.asyncContext);
+			}
+		}
+	}
+
+	/**
+	 * The work of handling a request.
+	 */
+	interface Handler {
+
+		/**
+		 * Handles the request.
+		 *
+		 * @throws ServletException
+		 *             exception
+		 * @throws IOException
+		 *             exception
+		 */
+		void handle() throws ServletException, IOException;
+	}
+}
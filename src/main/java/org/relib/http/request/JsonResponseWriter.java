@@ -0,0 +1,228 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.http.request;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Writes a json response body through a reusable buffer.
+ *
+ * <p>
+ * The body is collected in a buffer of {@link #BUFFER_SIZE} characters. If the whole body fits, the Content-Length
+ * is set before it is written. Otherwise each full buffer is passed to the response writer as it fills and the
+ * response writer is flushed every {@link #FLUSH_SIZE} characters, so a large body is sent in chunks as it is
+ * built instead of being held in memory. Buffers are returned to a small pool when the writer is closed.
+ *
+ * <p>
+ * Given a GET or HEAD request, a body that fits in the buffer is also hashed into a strong ETag when the writer is
+ * closed, and a 304 is sent in place of the body if the request already has it. A streamed body has started before
+ * its hash is known, so it is sent without an ETag.
+ *
+ * @author Troy Histed
+ */
+class JsonResponseWriter extends Writer {
+
+	/**
+	 * The number of characters buffered before the body is streamed.
+	 */
+	static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * The number of characters streamed between flushes of the response.
+	 */
+	static final int FLUSH_SIZE = 32768;
+
+	private static final String DEFAULT_CHARACTER_ENCODING = "ISO-8859-1";
+	private static final BlockingQueue<char[]> BUFFERS = new ArrayBlockingQueue<char[]>(64);
+
+	private final HttpServletResponse response;
+	private final HttpServletRequest conditionalRequest;
+	private char[] buffer;
+	private int count;
+	private Writer out;
+	private int unflushed;
+
+	/**
+	 * @param response
+	 *            the response to write the body to
+	 */
+	JsonResponseWriter(HttpServletResponse response) {
+		this(response, null);
+	}
+
+	/**
+	 * @param response
+	 *            the response to write the body to
+	 * @param conditionalRequest
+	 *            the request to compare the body's ETag with, or null to send no ETag
+	 */
+	JsonResponseWriter(HttpServletResponse response, HttpServletRequest conditionalRequest) {
+		this.response = response;
+		this.conditionalRequest = conditionalRequest;
+		final char[] pooled = JsonResponseWriter.BUFFERS.poll();
+		this.buffer = pooled != null ? pooled : new char[JsonResponseWriter.BUFFER_SIZE];
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void write(int c) throws IOException {
+		if (this.count == this.buffer.length) {
+			this.stream();
+		}
+		this.buffer[this.count++] = (char) c;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		int offset = off;
+		int remaining = len;
+		while (remaining > 0) {
+			if (this.count == this.buffer.length) {
+				this.stream();
+			}
+			final int length = Math.min(remaining, this.buffer.length - this.count);
+			System.arraycopy(cbuf, offset, this.buffer, this.count, length);
+			this.count += length;
+			offset += length;
+			remaining -= length;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void write(String str, int off, int len) throws IOException {
+		int offset = off;
+		int remaining = len;
+		while (remaining > 0) {
+			if (this.count == this.buffer.length) {
+				this.stream();
+			}
+			final int length = Math.min(remaining, this.buffer.length - this.count);
+			str.getChars(offset, offset + length, this.buffer, this.count);
+			this.count += length;
+			offset += length;
+			remaining -= length;
+		}
+	}
+
+	/**
+	 * Sends what has been buffered so far, which commits the response without a Content-Length.
+	 */
+	@Override
+	public void flush() throws IOException {
+		this.stream();
+		this.out.flush();
+		this.unflushed = 0;
+	}
+
+	/**
+	 * Finishes the body and releases the buffer.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (this.buffer == null) {
+			return;
+		}
+		if (this.out == null) {
+			if (this.conditionalRequest != null && this.sendETag()) {
+				this.release();
+				return;
+			}
+			this.response.setContentLength(this.encodedLength());
+			this.out = this.response.getWriter();
+		}
+		this.out.write(this.buffer, 0, this.count);
+		this.out.flush();
+		this.release();
+	}
+
+	/**
+	 * Returns the buffer to the pool.
+	 */
+	private void release() {
+		JsonResponseWriter.BUFFERS.offer(this.buffer);
+		this.buffer = null;
+		this.count = 0;
+	}
+
+	/**
+	 * @return true once the body no longer fits in the buffer and is being streamed
+	 */
+	boolean isStreaming() {
+		return this.out != null;
+	}
+
+	/**
+	 * Passes the buffered characters to the response writer.
+	 *
+	 * @throws IOException
+	 *             if the response can not be written
+	 */
+	private void stream() throws IOException {
+		if (this.out == null) {
+			this.out = this.response.getWriter();
+		}
+		this.out.write(this.buffer, 0, this.count);
+		this.unflushed += this.count;
+		this.count = 0;
+		if (this.unflushed >= JsonResponseWriter.FLUSH_SIZE) {
+			this.out.flush();
+			this.unflushed = 0;
+		}
+	}
+
+	/**
+	 * Sets the ETag of the buffered body, and a 304 status if the request already has the body.
+	 *
+	 * @return true if the response is not modified and the body must not be sent
+	 */
+	private boolean sendETag() {
+		final BodyHash hash = new BodyHash();
+		hash.append(CharBuffer.wrap(this.buffer, 0, this.count));
+		final String etag = ConditionalRequest.etag(hash.getHash(), false);
+		this.response.setHeader("ETag", etag);
+		if (ConditionalRequest.isNotModified(this.conditionalRequest, etag, -1)) {
+			this.response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return the number of bytes the buffered characters take in the response's character encoding
+	 */
+	private int encodedLength() {
+		final String characterEncoding = this.response.getCharacterEncoding();
+		final Charset charset = Charset.forName(
+				characterEncoding != null ? characterEncoding : JsonResponseWriter.DEFAULT_CHARACTER_ENCODING);
+		return charset.encode(CharBuffer.wrap(this.buffer, 0, this.count)).remaining();
+	}
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.http.request;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.relib.http.MediaType;
+
+/**
+ * Resolves the Content-Type and Accept headers of requests to media types.
+ *
+ * <p>
+ * Clients send the same few header values over and over, so each distinct value is parsed once and kept. The
+ * caches hold at most {@link #MAX_CACHED} values each and are cleared when they fill, which keeps a client sending
+ * made up headers from growing them without bound.
+ *
+ * @author Troy Histed
+ */
+final class MediaTypeResolver {
+
+	/**
+	 * The number of distinct header values kept for each header.
+	 */
+	static final int MAX_CACHED = 256;
+
+	private static final ConcurrentMap<String, MediaType> CONTENT_TYPES = new ConcurrentHashMap<String, MediaType>();
+	private static final ConcurrentMap<String, AcceptHeader> ACCEPTS = new ConcurrentHashMap<String, AcceptHeader>();
+
+	/**
+	 * Static methods only.
+	 */
+	private MediaTypeResolver() {
+	}
+
+	/**
+	 * Resolves a Content-Type header, ignoring any parameters such as the charset.
+	 *
+	 * @param header
+	 *            the header value, may be null
+	 * @return the matching MediaType or UNKNOWN
+	 */
+	static MediaType contentType(String header) {
+		if (header == null) {
+			return MediaType.UNKNOWN;
+		}
+		MediaType mediaType = MediaTypeResolver.CONTENT_TYPES.get(header);
+		if (mediaType == null) {
+			final int semicolon = header.indexOf(';');
+			final String typeString = semicolon < 0 ? header : header.substring(0, semicolon);
+			mediaType = MediaType.byTypeString(typeString.trim().toLowerCase(Locale.ENGLISH));
+			MediaTypeResolver.cache(MediaTypeResolver.CONTENT_TYPES, header, mediaType);
+		}
+		return mediaType;
+	}
+
+	/**
+	 * Resolves an Accept header.
+	 *
+	 * @param header
+	 *            the header value, may be null
+	 * @return the accepted types, every type is accepted if there is no header
+	 */
+	static AcceptHeader accept(String header) {
+		if (header == null) {
+			return AcceptHeader.ANY;
+		}
+		AcceptHeader acceptHeader = MediaTypeResolver.ACCEPTS.get(header);
+		if (acceptHeader == null) {
+			acceptHeader = AcceptHeader.parse(header);
+			MediaTypeResolver.cache(MediaTypeResolver.ACCEPTS, header, acceptHeader);
+		}
+		return acceptHeader;
+	}
+
+	/**
+	 * Adds a parsed header to a cache, clearing it first if it is full.
+	 *
+	 * @param cache
+	 *            the cache
+	 * @param header
+	 *            the header value
+	 * @param value
+	 *            the parsed value
+	 */
+	private static <T> void cache(ConcurrentMap<String, T> cache, String header, T value) {
+		if (cache.size() >= MediaTypeResolver.MAX_CACHED) {
+			cache.clear();
+		}
+		cache.put(header, value);
+	}
+
+	/**
+	 * @return the number of header values cached
+	 */
+	static int size() {
+		return MediaTypeResolver.CONTENT_TYPES.size() + MediaTypeResolver.ACCEPTS.size();
+	}
+}
@@ -35,6 +35,10 @@ class RequestDefinition {
 	MediaType contentType;
 	MediaType accept;
 	Method method;
+	HandlerInvoker invoker;
+	HandlerInvoker versionInvoker;
+	ResponseCache responseCache;
+	HandlerOffload offload;
 
 	/**
 	 * @return the argumentGenerators
@@ -141,6 +145,66 @@ class RequestDefinition {
 		this.method = method;
 	}
 
+	/**
+	 * @return the invoker
+	 */
+	public HandlerInvoker getInvoker() {
+		return this.invoker;
+	}
+
+	/**
+	 * @param invoker
+	 *            the invoker to set
+	 */
+	public void setInvoker(HandlerInvoker invoker) {
+		this.invoker = invoker;
+	}
+
+	/**
+	 * @return the invoker of the {@link org.relib.http.ResponseVersion} method, or null
+	 */
+	public HandlerInvoker getVersionInvoker() {
+		return this.versionInvoker;
+	}
+
+	/**
+	 * @param versionInvoker
+	 *            the versionInvoker to set
+	 */
+	public void setVersionInvoker(HandlerInvoker versionInvoker) {
+		this.versionInvoker = versionInvoker;
+	}
+
+	/**
+	 * @return the cache of a {@link org.relib.http.CacheResponse} handler, or null
+	 */
+	public ResponseCache getResponseCache() {
+		return this.responseCache;
+	}
+
+	/**
+	 * @param responseCache
+	 *            the responseCache to set
+	 */
+	public void setResponseCache(ResponseCache responseCache) {
+		this.responseCache = responseCache;
+	}
+
+	/**
+	 * @return the offload of an {@link org.relib.http.Offload} handler, or null
+	 */
+	public HandlerOffload getOffload() {
+		return this.offload;
+	}
+
+	/**
+	 * @param offload
+	 *            the offload to set
+	 */
+	public void setOffload(HandlerOffload offload) {
+		this.offload = offload;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 *
@@ -17,6 +17,8 @@ package org.relib.http.request;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Future;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -62,6 +64,25 @@ public class RequestDefinitionBuilder {
 		return requestDefinition;
 	}
 
+	/**
+	 * Generates the definition of a {@link org.relib.http.ResponseVersion} method, whose arguments are mapped the
+	 * same way as the arguments of the handler it versions.
+	 *
+	 * @param handleRequest
+	 *            the annotation of the handler being versioned
+	 * @param method
+	 *            the version method
+	 * @return a definition holding the method and its argument generators
+	 */
+	RequestDefinition parseVersion(HandleRequest handleRequest, Method method) {
+		final RequestDefinition requestDefinition = new RequestDefinition();
+
+		requestDefinition.setMethod(method);
+		requestDefinition.setArgumentGenerators(this.buildArgumentGenerators(handleRequest, method));
+
+		return requestDefinition;
+	}
+
 	/**
 	 * Builds argument generators for each of the method arguments.
 	 *
@@ -206,11 +227,23 @@ public class RequestDefinitionBuilder {
 			return new ResponseGeneratorForVoid();
 		} else if (returnType.isAssignableFrom(View.class)) {
 			return new ResponseGeneratorForView();
+		} else if (CompletionStage.class.isAssignableFrom(returnType) || Future.class.isAssignableFrom(returnType)) {
+			// The result type is erased, so json handlers get json and others are treated as returning a view
+			final boolean json = handleRequest.accept() == MediaType.JSON;
+			return new ResponseGeneratorForFuture(json ? this.buildJsonResponseGenerator()
+					: new ResponseGeneratorForView(), handleRequest.timeout(), json);
 		} else if (handleRequest.accept() == MediaType.JSON) {
-			return new ResponseGeneratorForJson();
+			return this.buildJsonResponseGenerator();
 		}
 
 		throw new IllegalStateException("Return type of " + returnType + " is not supported");
 	}
 
+	/**
+	 * @return the generator for json responses, which are compressed and given an ETag
+	 */
+	private ResponseGenerator buildJsonResponseGenerator() {
+		return new ResponseGeneratorForCompression(new ResponseGeneratorForETag());
+	}
+
 }
@@ -0,0 +1,340 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.http.request;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.relib.http.HttpMethod;
+import org.relib.http.MediaType;
+
+/**
+ * Finds the {@link RequestDefinition} that handles a request by walking a tree of path segments.
+ *
+ * <p>
+ * Each node of the tree has a child for every literal segment, found with a hash lookup on the segment's region
+ * of the request uri, and a single child for path param segments, which match any value. The definitions are
+ * added in the order set by the {@link RequestDefinitionComparator} and that order is kept as a rank, so when
+ * several definitions match a request the one that would have come first in the sorted list is chosen. Literal
+ * children are searched before path param children and a subtree is skipped once it can not hold a better match,
+ * so most requests are resolved by following a single path through the tree.
+ *
+ * <p>
+ * Definitions the comparator considers equal share a group. Within a group the definition whose accept type has
+ * the highest quality in the request's Accept header wins, so <code>text/html, application/json;q=0.9</code>
+ * chooses the html definition of a path that has both. A definition whose accept type is only covered by a
+ * wildcard range such as <code>*&#47;*</code> still matches, but after every definition that matches otherwise,
+ * so a browser's trailing <code>*&#47;*</code> does not pull it to a json definition over one without an accept
+ * type.
+ *
+ * @author Troy Histed
+ */
+class RequestDefinitionTrie {
+
+	private final Node root = new Node();
+	private final int groupCount;
+
+	/**
+	 * Builds the tree.
+	 *
+	 * @param requestDefinitions
+	 *            the definitions, sorted with the {@link RequestDefinitionComparator}
+	 */
+	RequestDefinitionTrie(List<RequestDefinition> requestDefinitions) {
+		final RequestDefinitionComparator comparator = new RequestDefinitionComparator();
+		int group = 0;
+		for (int rank = 0; rank < requestDefinitions.size(); rank++) {
+			if (rank > 0 && comparator.compare(requestDefinitions.get(rank - 1), requestDefinitions.get(rank)) != 0) {
+				group++;
+			}
+			this.add(requestDefinitions.get(rank), rank, group);
+		}
+		this.groupCount = group + 1;
+	}
+
+	/**
+	 * Adds a definition to the tree.
+	 *
+	 * @param requestDefinition
+	 *            the definition
+	 * @param rank
+	 *            the position of the definition in the sorted list
+	 * @param group
+	 *            the group of definitions the comparator considers equal
+	 */
+	private void add(RequestDefinition requestDefinition, int rank, int group) {
+		Node node = this.root;
+		node.minGroup = Math.min(node.minGroup, group);
+		for (final PathDefinition pathDefinition : requestDefinition.getPathParts()) {
+			node = node.child(pathDefinition.getValue());
+			node.minGroup = Math.min(node.minGroup, group);
+		}
+		node.routes.add(new Route(requestDefinition, rank, group));
+	}
+
+	/**
+	 * Finds the definition that handles a request.
+	 *
+	 * @param requestInfo
+	 *            the request
+	 * @return the best ranked matching definition, or null if no definition matches
+	 */
+	RequestDefinition find(RequestInfo requestInfo) {
+		final Match match = this.search(this.root, requestInfo.getPath(), 0, requestInfo, null);
+		return match == null ? null : match.route.requestDefinition;
+	}
+
+	/**
+	 * Searches a subtree for a better match than the best match found so far.
+	 *
+	 * @param node
+	 *            the subtree
+	 * @param path
+	 *            the request path
+	 * @param depth
+	 *            the index of the path segment the subtree matches
+	 * @param requestInfo
+	 *            the request
+	 * @param best
+	 *            the best match found so far, or null
+	 * @return the best match
+	 */
+	private Match search(Node node, RequestPath path, int depth, RequestInfo requestInfo, Match best) {
+		if (best != null && node.minGroup > best.group) {
+			return best;
+		}
+		if (depth == path.size()) {
+			Match result = best;
+			for (final Route route : node.routes) {
+				if (result != null && route.group > result.group) {
+					break;
+				}
+				final Match match = this.match(requestInfo, route);
+				if (match != null && (result == null || match.isBetterThan(result))) {
+					result = match;
+				}
+			}
+			return result;
+		}
+
+		Match result = best;
+		final Node literal = node.literal(path, depth);
+		if (literal != null) {
+			result = this.search(literal, path, depth + 1, requestInfo, result);
+		}
+		if (node.pathParam != null) {
+			result = this.search(node.pathParam, path, depth + 1, requestInfo, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Determines if the http method, accept header and content type of a request match a definition. The path
+	 * has already been matched by the tree.
+	 *
+	 * @param requestInfo
+	 *            the servlet request information
+	 * @param route
+	 *            the annotated method definition for handling a request
+	 * @return the match, or null if the definition can not handle the request
+	 */
+	private Match match(RequestInfo requestInfo, Route route) {
+		final RequestDefinition requestDefinition = route.requestDefinition;
+		if (requestDefinition.getHttpMethod() != HttpMethod.UNKNOWN
+				&& requestDefinition.getHttpMethod() != requestInfo.getMethod()
+				|| requestDefinition.getContentType() != MediaType.UNKNOWN
+						&& requestDefinition.getContentType() != requestInfo.getContentType()) {
+			return null;
+		}
+		if (requestDefinition.getAccept() == MediaType.UNKNOWN) {
+			return new Match(route, route.group, 1);
+		}
+		final AcceptHeader acceptHeader = requestInfo.getAcceptHeader();
+		final float quality = acceptHeader.quality(requestDefinition.getAccept());
+		if (quality <= 0) {
+			return null;
+		}
+		final boolean explicit = acceptHeader.isExplicit(requestDefinition.getAccept());
+		return new Match(route, explicit ? route.group : route.group + this.groupCount, quality);
+	}
+
+	/**
+	 * A node of the tree, matching one path segment.
+	 *
+	 * <p>
+	 * Literal children are kept in an open addressing table keyed by the String hash code of the segment, so a
+	 * segment of the request uri can be looked up without creating a String for it.
+	 */
+	private static final class Node {
+
+		private String[] literalValues;
+		private Node[] literals;
+		private int literalCount;
+		private Node pathParam;
+		private final List<Route> routes = new ArrayList<Route>(1);
+		private int minGroup = Integer.MAX_VALUE;
+
+		/**
+		 * Finds or creates the child for a path segment.
+		 *
+		 * @param value
+		 *            the literal value of the segment, or null for a path param
+		 * @return the child
+		 */
+		Node child(String value) {
+			if (value == null) {
+				if (this.pathParam == null) {
+					this.pathParam = new Node();
+				}
+				return this.pathParam;
+			}
+			if (this.literals == null) {
+				this.literalValues = new String[4];
+				this.literals = new Node[4];
+			}
+			int slot = this.slot(value.hashCode());
+			while (this.literalValues[slot] != null) {
+				if (this.literalValues[slot].equals(value)) {
+					return this.literals[slot];
+				}
+				slot = (slot + 1) & (this.literals.length - 1);
+			}
+			if ((this.literalCount + 1) * 2 > this.literals.length) {
+				this.resize();
+				return this.child(value);
+			}
+			this.literalValues[slot] = value;
+			this.literals[slot] = new Node();
+			this.literalCount++;
+			return this.literals[slot];
+		}
+
+		/**
+		 * Finds the literal child matching a segment of a request path.
+		 *
+		 * @param path
+		 *            the request path
+		 * @param index
+		 *            the index of the segment
+		 * @return the child, or null if no literal matches the segment
+		 */
+		Node literal(RequestPath path, int index) {
+			if (this.literals == null) {
+				return null;
+			}
+			int slot = this.slot(path.hash(index));
+			while (this.literalValues[slot] != null) {
+				if (path.matches(index, this.literalValues[slot])) {
+					return this.literals[slot];
+				}
+				slot = (slot + 1) & (this.literals.length - 1);
+			}
+			return null;
+		}
+
+		/**
+		 * @param hash
+		 *            the String hash code of a segment
+		 * @return the first slot to probe for the segment
+		 */
+		private int slot(int hash) {
+			return (hash ^ (hash >>> 16)) & (this.literals.length - 1);
+		}
+
+		/**
+		 * Doubles the size of the literal table.
+		 */
+		private void resize() {
+			final String[] values = this.literalValues;
+			final Node[] nodes = this.literals;
+			this.literalValues = new String[values.length * 2];
+			this.literals = new Node[nodes.length * 2];
+			for (int i = 0; i < values.length; i++) {
+				if (values[i] != null) {
+					int slot = this.slot(values[i].hashCode());
+					while (this.literalValues[slot] != null) {
+						slot = (slot + 1) & (this.literals.length - 1);
+					}
+					this.literalValues[slot] = values[i];
+					this.literals[slot] = nodes[i];
+				}
+			}
+		}
+	}
+
+	/**
+	 * A definition that ends at a node, with its position in the sorted list.
+	 */
+	private static final class Route {
+
+		private final RequestDefinition requestDefinition;
+		private final int rank;
+		private final int group;
+
+		/**
+		 * @param requestDefinition
+		 *            the definition
+		 * @param rank
+		 *            the position of the definition in the sorted list
+		 * @param group
+		 *            the group of definitions the comparator considers equal
+		 */
+		Route(RequestDefinition requestDefinition, int rank, int group) {
+			this.requestDefinition = requestDefinition;
+			this.rank = rank;
+			this.group = group;
+		}
+	}
+
+	/**
+	 * A route that matches a request.
+	 */
+	private static final class Match {
+
+		private final Route route;
+		private final int group;
+		private final float quality;
+
+		/**
+		 * @param route
+		 *            the route
+		 * @param group
+		 *            the group of the route, moved after every group if the accept type only matched a wildcard
+		 * @param quality
+		 *            the quality of the route's accept type
+		 */
+		Match(Route route, int group, float quality) {
+			this.route = route;
+			this.group = group;
+			this.quality = quality;
+		}
+
+		/**
+		 * @param other
+		 *            another match
+		 * @return true if this match is in an earlier group, or has a higher quality or rank in the same group
+		 */
+		boolean isBetterThan(Match other) {
+			if (this.group != other.group) {
+				return this.group < other.group;
+			}
+			if (this.quality != other.quality) {
+				return this.quality > other.quality;
+			}
+			return this.route.rank < other.route.rank;
+		}
+	}
+}
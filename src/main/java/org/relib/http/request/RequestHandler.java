@@ -26,9 +26,11 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.relib.http.CacheResponse;
 import org.relib.http.HandleRequest;
-import org.relib.http.HttpMethod;
-import org.relib.http.MediaType;
+import org.relib.http.Offload;
+import org.relib.http.ResponseVersion;
+import org.relib.http.View;
 
 /**
  * Handles mapping requests to methods calls.
@@ -39,8 +41,7 @@ public class RequestHandler {
 
 	private final RequestDefinitionBuilder requestDefinitionBuilder = new RequestDefinitionBuilder();
 	private final RequestInfoBuilder requestInfoBuilder = new RequestInfoBuilder();
-	private final List<RequestDefinition> requestDefinitions;
-	private final Object controller;
+	private final RequestDefinitionTrie requestDefinitions;
 
 	/**
 	 * Constructor that handles initializing the controller mappings.
@@ -49,21 +50,46 @@ public class RequestHandler {
 	 *            the controller to handle requests for.
 	 */
 	public RequestHandler(Object controller) {
-		this.requestDefinitions = new ArrayList<RequestDefinition>();
-		this.controller = controller;
+		final List<RequestDefinition> definitions = new ArrayList<RequestDefinition>();
+		final Offload controllerOffload = controller.getClass().getAnnotation(Offload.class);
 
 		Class<?> clazz = controller.getClass();
 		while (clazz != null) {
 			for (final Method method : clazz.getMethods()) {
 				if (method.isAnnotationPresent(HandleRequest.class)) {
-					this.requestDefinitions.add(this.requestDefinitionBuilder
-							.parseHandler(method.getAnnotation(HandleRequest.class), method));
+					final HandleRequest handleRequest = method.getAnnotation(HandleRequest.class);
+					final RequestDefinition requestDefinition = this.requestDefinitionBuilder
+							.parseHandler(handleRequest, method);
+					requestDefinition.setInvoker(new HandlerInvoker(controller, requestDefinition));
+					if (method.isAnnotationPresent(ResponseVersion.class)) {
+						final Method versionMethod = this.findVersionMethod(controller, method);
+						requestDefinition.setVersionInvoker(new HandlerInvoker(controller,
+								this.requestDefinitionBuilder.parseVersion(handleRequest, versionMethod)));
+					}
+					if (method.isAnnotationPresent(CacheResponse.class)) {
+						if (View.class.isAssignableFrom(method.getReturnType())) {
+							throw new IllegalStateException("Responses rendered by a view can not be cached " + method);
+						}
+						requestDefinition
+								.setResponseCache(new ResponseCache(method.getAnnotation(CacheResponse.class)));
+					}
+					if (method.isAnnotationPresent(Offload.class)) {
+						if (View.class.isAssignableFrom(method.getReturnType())) {
+							throw new IllegalStateException(
+									"Responses rendered by a view can not be offloaded " + method);
+						}
+						requestDefinition.setOffload(new HandlerOffload(method.getAnnotation(Offload.class)));
+					} else if (controllerOffload != null && !View.class.isAssignableFrom(method.getReturnType())) {
+						requestDefinition.setOffload(new HandlerOffload(controllerOffload));
+					}
+					definitions.add(requestDefinition);
 				}
 			}
 			clazz = clazz.getSuperclass();
 		}
 
-		Collections.sort(this.requestDefinitions, new RequestDefinitionComparator());
+		Collections.sort(definitions, new RequestDefinitionComparator());
+		this.requestDefinitions = new RequestDefinitionTrie(definitions);
 	}
 
 	/**
@@ -78,95 +104,83 @@ public class RequestHandler {
 	 * @throws IOException
 	 *             exception
 	 */
-	public void handleRequest(HttpServletRequest req, HttpServletResponse resp)
+	public void handleRequest(final HttpServletRequest req, final HttpServletResponse resp)
 			throws ServletException, IOException {
 
-		boolean handled = false;
 		final RequestInfo requestInfo = this.requestInfoBuilder.parseRequest(req, resp);
-		Object returnValue = null;
+		final RequestDefinition requestDefinition = this.requestDefinitions.find(requestInfo);
 
-		for (final RequestDefinition requestDefinition : this.requestDefinitions) {
-			try {
-				if (this.requestMatchesDefinition(requestInfo, requestDefinition)) {
-					final Method method = requestDefinition.getMethod();
-					method.setAccessible(true);
-					final Object[] args = this.generateMethodArguments(requestInfo, requestDefinition);
-					returnValue = method.invoke(this.controller, args);
-					requestDefinition.getResponseGenerator().generateResponse(req, resp, returnValue);
-					handled = true;
-					break;
-				}
-			} catch (final IllegalAccessException e) {
-				throw new ServletException("Unable to invoke controller method.", e);
-			} catch (final IllegalArgumentException e) {
-				throw new ServletException("Unable to invoke method using argument.", e);
-			} catch (final InvocationTargetException e) {
-				throw new ServletException("Unable to invoke method", e);
-			}
-		}
-
-		if (!handled) {
+		if (requestDefinition == null) {
 			// return 404
 			resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+
+		if (requestDefinition.getOffload() != null) {
+			requestDefinition.getOffload().handle(req, resp, new HandlerOffload.Handler() {
+				public void handle() throws ServletException, IOException {
+					RequestHandler.this.invokeHandler(req, resp, requestInfo, requestDefinition);
+				}
+			});
+			return;
 		}
+		this.invokeHandler(req, resp, requestInfo, requestDefinition);
 	}
 
 	/**
-	 * Determines if a RequestDefinition is capable of handling the RequestInfo.
+	 * Invokes the handler for a request and generates the response.
 	 *
+	 * @param req
+	 *            the http servlet request
+	 * @param resp
+	 *            the http servlet response
 	 * @param requestInfo
-	 *            the servlet request information
+	 *            the parsed request
 	 * @param requestDefinition
-	 *            the annotated method definition for handling a request
-	 * @return true if the request definition can handle the request info
+	 *            the handler definition
+	 * @throws ServletException
+	 *             exception
+	 * @throws IOException
+	 *             exception
 	 */
-	private boolean requestMatchesDefinition(RequestInfo requestInfo, RequestDefinition requestDefinition) {
-
-		final String[] requestPathParts = requestInfo.getPathParts();
-		final PathDefinition[] pathDefinitions = requestDefinition.getPathParts();
-
-		// Verify the path length, http method, accept header, and response header match
-		if (requestPathParts.length == pathDefinitions.length
-				&& (requestDefinition.getHttpMethod() == HttpMethod.UNKNOWN
-						|| requestDefinition.getHttpMethod() == requestInfo.getMethod())
-				&& (requestDefinition.getAccept() == MediaType.UNKNOWN
-						|| requestDefinition.getAccept() == requestInfo.getAccept())
-				&& (requestDefinition.getContentType() == MediaType.UNKNOWN
-						|| requestDefinition.getContentType() == requestInfo.getContentType())) {
-
-			// Verify the individual path parts match
-			for (int i = 0; i < requestPathParts.length; i++) {
-				if (!(pathDefinitions[i].getValue() == null // It's a wild card
-						|| requestPathParts[i].equals(pathDefinitions[i].getValue()))) {
-					return false;
-				}
+	private void invokeHandler(HttpServletRequest req, HttpServletResponse resp, RequestInfo requestInfo,
+			RequestDefinition requestDefinition) throws ServletException, IOException {
+		try {
+			if (requestDefinition.getVersionInvoker() != null && ConditionalRequest.isConditional(req)
+					&& ConditionalRequest.checkVersion(req, resp,
+							requestDefinition.getVersionInvoker().invoke(requestInfo))) {
+				return;
 			}
-
-			return true;
+			if (requestDefinition.getResponseCache() != null && ConditionalRequest.isConditional(req)) {
+				requestDefinition.getResponseCache().respond(requestInfo, requestDefinition);
+				return;
+			}
+			final Object returnValue = requestDefinition.getInvoker().invoke(requestInfo);
+			requestDefinition.getResponseGenerator().generateResponse(req, resp, returnValue);
+		} catch (final IllegalArgumentException e) {
+			throw new ServletException("Unable to invoke method using argument.", e);
+		} catch (final InvocationTargetException e) {
+			throw new ServletException("Unable to invoke method", e);
 		}
-		return false;
 	}
 
 	/**
-	 * Builds the method arguments by using the requestDefinitions argument generators.
+	 * Finds the method named by the {@link ResponseVersion} of a handler.
 	 *
-	 * @param requestInfo
-	 *            the current request information
-	 * @param requestDefinition
-	 *            the method handler definition
-	 * @return an array of arguments
+	 * @param controller
+	 *            the controller
+	 * @param method
+	 *            the handler
+	 * @return the public version method
 	 */
-	private Object[] generateMethodArguments(RequestInfo requestInfo, RequestDefinition requestDefinition) {
-
-		final ArgumentGenerator[] argumentGenerators = requestDefinition.getArgumentGenerators();
-
-		final Object[] args = new Object[argumentGenerators.length];
-		for (int i = 0; i < argumentGenerators.length; i++) {
-			if (argumentGenerators[i] != null) {
-				args[i] = argumentGenerators[i].generateArgument(requestInfo);
+	private Method findVersionMethod(Object controller, Method method) {
+		final String name = method.getAnnotation(ResponseVersion.class).value();
+		for (final Method versionMethod : controller.getClass().getMethods()) {
+			if (versionMethod.getName().equals(name)) {
+				return versionMethod;
 			}
 		}
-		return args;
+		throw new IllegalStateException("No public version method named " + name + " for " + method);
 	}
 
 }
@@ -15,8 +15,6 @@
  */
 package org.relib.http.request;
 
-import java.util.Arrays;
-
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -31,9 +29,10 @@ import org.relib.http.MediaType;
 class RequestInfo {
 
 	private MediaType accept;
+	private AcceptHeader acceptHeader;
 	private MediaType contentType;
 	private HttpMethod method;
-	private String[] pathParts;
+	private RequestPath path;
 	private HttpServletRequest request;
 	private HttpServletResponse response;
 
@@ -50,6 +49,28 @@ class RequestInfo {
 	 */
 	public void setAccept(MediaType accept) {
 		this.accept = accept;
+		this.acceptHeader = null;
+	}
+
+	/**
+	 * @return the parsed Accept header, or one naming only the accept type if no header was set
+	 */
+	public AcceptHeader getAcceptHeader() {
+		if (this.acceptHeader == null) {
+			this.acceptHeader = AcceptHeader.of(this.accept == null ? MediaType.UNKNOWN : this.accept);
+		}
+		return this.acceptHeader;
+	}
+
+	/**
+	 * Sets the parsed Accept header and the accept type to its preferred type.
+	 *
+	 * @param acceptHeader
+	 *            the acceptHeader to set
+	 */
+	public void setAcceptHeader(AcceptHeader acceptHeader) {
+		this.acceptHeader = acceptHeader;
+		this.accept = acceptHeader.getPreferred();
 	}
 
 	/**
@@ -83,10 +104,25 @@ class RequestInfo {
 	}
 
 	/**
-	 * @return the pathParts
+	 * @return the path
+	 */
+	public RequestPath getPath() {
+		return this.path;
+	}
+
+	/**
+	 * @param path
+	 *            the path to set
+	 */
+	public void setPath(RequestPath path) {
+		this.path = path;
+	}
+
+	/**
+	 * @return a new array holding the path parts
 	 */
 	public String[] getPathParts() {
-		return this.pathParts;
+		return this.path == null ? null : this.path.toArray();
 	}
 
 	/**
@@ -94,7 +130,7 @@ class RequestInfo {
 	 *            the pathParts to set
 	 */
 	public void setPathParts(String[] pathParts) {
-		this.pathParts = pathParts;
+		this.path = pathParts == null ? null : RequestPath.of(pathParts);
 	}
 
 	/**
@@ -135,7 +171,7 @@ class RequestInfo {
 	@Override
 	public String toString() {
 		return "RequestInfo [accept=" + this.accept + ", contentType=" + this.contentType + ", method="
-				+ this.method + ", pathParts=" + Arrays.toString(this.pathParts) + "]";
+				+ this.method + ", pathParts=" + this.path + "]";
 	}
 
 }
@@ -19,7 +19,6 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.relib.http.HttpMethod;
-import org.relib.http.MediaType;
 import org.relib.util.Strings;
 
 /**
@@ -41,39 +40,16 @@ class RequestInfoBuilder {
 	RequestInfo parseRequest(HttpServletRequest request, HttpServletResponse response) {
 		final RequestInfo requestInfo = new RequestInfo();
 
-		String pathUrlString = !Strings.isBlank(request.getContextPath())
-				? request.getRequestURI().substring(request.getContextPath().length()) : request.getRequestURI();
+		final int pathOffset = !Strings.isBlank(request.getContextPath()) ? request.getContextPath().length() : 0;
 
-		if (pathUrlString.charAt(0) == '/') {
-			pathUrlString = pathUrlString.substring(1);
-		}
-
-		requestInfo.setPathParts(pathUrlString.split("/"));
+		requestInfo.setPath(RequestPath.parse(request.getRequestURI(), pathOffset));
 		requestInfo.setMethod(HttpMethod.byName(request.getMethod()));
-		requestInfo.setContentType(this.determineMediaType(request.getContentType()));
-		requestInfo.setAccept(this.determineMediaType(request.getHeader("Accept")));
+		requestInfo.setContentType(MediaTypeResolver.contentType(request.getContentType()));
+		requestInfo.setAcceptHeader(MediaTypeResolver.accept(request.getHeader("Accept")));
 		requestInfo.setRequest(request);
 		requestInfo.setResponse(response);
 
 		return requestInfo;
 	}
 
-	/**
-	 * Parses the given media type string looking for a matching MediaType.
-	 *
-	 * @param mediaTypeString
-	 *            the media type string
-	 * @return the matching MediaType or UNKNOWN
-	 */
-	private MediaType determineMediaType(String mediaTypeString) {
-		if (mediaTypeString != null) {
-			for (final MediaType mediaType : MediaType.values()) {
-				if (mediaTypeString.startsWith(mediaType.getTypeString())) {
-					return mediaType;
-				}
-			}
-		}
-		return MediaType.UNKNOWN;
-	}
-
 }
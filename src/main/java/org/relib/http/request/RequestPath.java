@@ -0,0 +1,184 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.http.request;
+
+import java.util.Arrays;
+
+/**
+ * The segments of a request path, kept as offsets into the request URI.
+ *
+ * <p>
+ * The segments are split the same way as <code>path.split("/")</code> after removing a leading slash: empty
+ * segments between slashes are kept, trailing empty segments are dropped and an empty path has one empty segment.
+ * Matching a segment against a literal compares the region of the URI, so a segment only becomes a String when
+ * {@link #get(int)} is called for a path param.
+ *
+ * @author Troy Histed
+ */
+final class RequestPath {
+
+	private static final int[] NO_BOUNDS = new int[0];
+
+	private final String uri;
+	private final int[] bounds;
+
+	/**
+	 * @param uri
+	 *            the request uri
+	 * @param bounds
+	 *            the start and end offset of each segment
+	 */
+	private RequestPath(String uri, int[] bounds) {
+		this.uri = uri;
+		this.bounds = bounds;
+	}
+
+	/**
+	 * Splits the path of a request uri into segments.
+	 *
+	 * @param uri
+	 *            the request uri
+	 * @param offset
+	 *            the offset of the path in the uri, after the context path
+	 * @return the path
+	 */
+	static RequestPath parse(String uri, int offset) {
+		int start = offset;
+		final int length = uri.length();
+		if (start < length && uri.charAt(start) == '/') {
+			start++;
+		}
+
+		// Trailing slashes only produce trailing empty segments, which are dropped
+		int end = length;
+		while (end > start && uri.charAt(end - 1) == '/') {
+			end--;
+		}
+		if (end == start) {
+			return new RequestPath(uri, end == length ? new int[] { start, start } : RequestPath.NO_BOUNDS);
+		}
+
+		int count = 1;
+		for (int i = start; i < end; i++) {
+			if (uri.charAt(i) == '/') {
+				count++;
+			}
+		}
+		final int[] bounds = new int[count * 2];
+		int segment = 0;
+		int segmentStart = start;
+		for (int i = start; i < end; i++) {
+			if (uri.charAt(i) == '/') {
+				bounds[segment++] = segmentStart;
+				bounds[segment++] = i;
+				segmentStart = i + 1;
+			}
+		}
+		bounds[segment++] = segmentStart;
+		bounds[segment] = end;
+		return new RequestPath(uri, bounds);
+	}
+
+	/**
+	 * Builds a path from segments that have already been split.
+	 *
+	 * @param parts
+	 *            the segments
+	 * @return the path
+	 */
+	static RequestPath of(String[] parts) {
+		final StringBuilder uri = new StringBuilder();
+		final int[] bounds = new int[parts.length * 2];
+		for (int i = 0; i < parts.length; i++) {
+			if (i > 0) {
+				uri.append('/');
+			}
+			bounds[i * 2] = uri.length();
+			uri.append(parts[i]);
+			bounds[i * 2 + 1] = uri.length();
+		}
+		return new RequestPath(uri.toString(), bounds);
+	}
+
+	/**
+	 * @return the number of segments
+	 */
+	int size() {
+		return this.bounds.length / 2;
+	}
+
+	/**
+	 * Creates the String of a segment.
+	 *
+	 * @param index
+	 *            the segment index
+	 * @return the segment
+	 */
+	String get(int index) {
+		return this.uri.substring(this.bounds[index * 2], this.bounds[index * 2 + 1]);
+	}
+
+	/**
+	 * Computes the hash code the segment would have as a String.
+	 *
+	 * @param index
+	 *            the segment index
+	 * @return the hash code
+	 */
+	int hash(int index) {
+		int hash = 0;
+		for (int i = this.bounds[index * 2]; i < this.bounds[index * 2 + 1]; i++) {
+			hash = 31 * hash + this.uri.charAt(i);
+		}
+		return hash;
+	}
+
+	/**
+	 * Compares a segment to a literal without creating a String for the segment.
+	 *
+	 * @param index
+	 *            the segment index
+	 * @param literal
+	 *            the literal
+	 * @return true if the segment equals the literal
+	 */
+	boolean matches(int index, String literal) {
+		final int start = this.bounds[index * 2];
+		return this.bounds[index * 2 + 1] - start == literal.length()
+				&& this.uri.regionMatches(start, literal, 0, literal.length());
+	}
+
+	/**
+	 * @return a new array holding every segment
+	 */
+	String[] toArray() {
+		final String[] parts = new String[this.size()];
+		for (int i = 0; i < parts.length; i++) {
+			parts[i] = this.get(i);
+		}
+		return parts;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return Arrays.toString(this.toArray());
+	}
+}
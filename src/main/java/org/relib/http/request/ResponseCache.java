@@ -0,0 +1,414 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.http.request;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+
+import org.relib.http.CacheResponse;
+import org.relib.http.ResponseCompression;
+
+/**
+ * Keeps the responses of a handler annotated with {@link CacheResponse}.
+ *
+ * <p>
+ * Each key maps to a task that captures the handler's response. The first request for a key runs the task and
+ * any request for the same key that arrives meanwhile waits for it, so a burst of identical requests calls the
+ * handler once. Responses are captured without compression or conditional headers, and each request is then sent
+ * the captured response compressed, or answered with a 304, as it asks.
+ *
+ * <p>
+ * The tasks are kept in access order, so once the cache is full the least recently used responses are dropped
+ * first.
+ *
+ * @author Troy Histed
+ */
+final class ResponseCache {
+
+	private final long ttl;
+	private final String[] varyBy;
+	private final int maxEntries;
+	/** The tasks by key in access order, guarded by synchronizing on the map */
+	private final Map<String, FutureTask<Entry>> entries = new LinkedHashMap<String, FutureTask<Entry>>(16, 0.75f,
+			true);
+
+	/**
+	 * @param cacheResponse
+	 *            the annotation of the handler
+	 */
+	ResponseCache(CacheResponse cacheResponse) {
+		this.ttl = cacheResponse.ttl();
+		this.varyBy = cacheResponse.varyBy();
+		this.maxEntries = cacheResponse.maxEntries();
+	}
+
+	/**
+	 * Sends the cached response for a request, calling the handler if it is not cached.
+	 *
+	 * @param requestInfo
+	 *            the request
+	 * @param requestDefinition
+	 *            the definition of the handler
+	 * @throws InvocationTargetException
+	 *             if the handler throws an exception
+	 * @throws IOException
+	 *             if the response can not be written
+	 */
+	void respond(final RequestInfo requestInfo, final RequestDefinition requestDefinition)
+			throws InvocationTargetException, IOException {
+		final String key = this.key(requestInfo, requestDefinition);
+		while (true) {
+			boolean ran = false;
+			FutureTask<Entry> task;
+			synchronized (this.entries) {
+				task = this.entries.get(key);
+				if (task == null) {
+					task = new FutureTask<Entry>(new Callable<Entry>() {
+						public Entry call() throws InvocationTargetException {
+							return ResponseCache.this.capture(requestInfo, requestDefinition);
+						}
+					});
+					this.entries.put(key, task);
+					this.evict();
+					ran = true;
+				}
+			}
+			if (ran) {
+				task.run();
+			}
+
+			final Entry entry = this.get(key, task);
+			if (!entry.isCacheable()) {
+				this.remove(key, task);
+			} else if (!ran && entry.isExpired()) {
+				this.remove(key, task);
+				continue;
+			}
+			entry.send(requestInfo.getRequest(), requestInfo.getResponse());
+			return;
+		}
+	}
+
+	/**
+	 * Builds the key of a request from its path params, the request params named by varyBy and the accept type of
+	 * the handler it matched, so clients that accept the same response share it.
+	 *
+	 * @param requestInfo
+	 *            the request
+	 * @param requestDefinition
+	 *            the definition of the handler
+	 * @return the key
+	 */
+	String key(RequestInfo requestInfo, RequestDefinition requestDefinition) {
+		final StringBuilder key = new StringBuilder();
+		final PathDefinition[] pathDefinitions = requestDefinition.getPathParts();
+		for (int i = 0; i < pathDefinitions.length; i++) {
+			if (pathDefinitions[i].getValue() == null) {
+				ResponseCache.appendValue(key, requestInfo.getPath().get(i));
+			}
+		}
+		for (final String name : this.varyBy) {
+			key.append('?');
+			final String[] values = requestInfo.getRequest().getParameterValues(name);
+			if (values != null) {
+				for (final String value : values) {
+					ResponseCache.appendValue(key, value);
+				}
+			}
+		}
+		return key.append('|').append(requestDefinition.getAccept().name()).toString();
+	}
+
+	/**
+	 * Appends a value with its length, so values holding separators can not run together.
+	 *
+	 * @param key
+	 *            the key
+	 * @param value
+	 *            the value
+	 */
+	private static void appendValue(StringBuilder key, String value) {
+		key.append(value.length()).append(':').append(value);
+	}
+
+	/**
+	 * Waits for the response of a key.
+	 *
+	 * @param key
+	 *            the key
+	 * @param task
+	 *            the task capturing the response
+	 * @return the response
+	 * @throws InvocationTargetException
+	 *             if the handler threw an exception
+	 */
+	private Entry get(String key, FutureTask<Entry> task) throws InvocationTargetException {
+		try {
+			return task.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted waiting for cached response", e);
+		} catch (final ExecutionException e) {
+			this.remove(key, task);
+			final Throwable cause = e.getCause();
+			if (cause instanceof InvocationTargetException) {
+				throw (InvocationTargetException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException("Unable to cache response", cause);
+		}
+	}
+
+	/**
+	 * Calls the handler and captures its response.
+	 *
+	 * @param requestInfo
+	 *            the request
+	 * @param requestDefinition
+	 *            the definition of the handler
+	 * @return the captured response
+	 * @throws InvocationTargetException
+	 *             if the handler throws an exception
+	 */
+	private Entry capture(RequestInfo requestInfo, RequestDefinition requestDefinition)
+			throws InvocationTargetException {
+		final HttpServletResponse response = requestInfo.getResponse();
+		final CapturedResponse captured = new CapturedResponse(response);
+		requestInfo.setResponse(captured);
+		try {
+			final Object returnValue = requestDefinition.getInvoker().invoke(requestInfo);
+			requestDefinition.getResponseGenerator().generateResponse(
+					new UnconditionalRequest(requestInfo.getRequest()), captured, returnValue);
+		} finally {
+			requestInfo.setResponse(response);
+		}
+		final byte[] body = captured.finish();
+		return new Entry(captured, body, System.currentTimeMillis() + this.ttl);
+	}
+
+	/**
+	 * Removes the task of a key, unless it has already been replaced.
+	 *
+	 * @param key
+	 *            the key
+	 * @param task
+	 *            the task
+	 */
+	private void remove(String key, FutureTask<Entry> task) {
+		synchronized (this.entries) {
+			if (this.entries.get(key) == task) {
+				this.entries.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * Makes room for a new response by dropping the least recently used responses until the cache fits. Responses
+	 * still being captured are kept, since requests are waiting for them. Called while holding the lock on the
+	 * entries.
+	 */
+	private void evict() {
+		for (final Iterator<FutureTask<Entry>> it = this.entries.values().iterator(); it.hasNext()
+				&& this.entries.size() > this.maxEntries;) {
+			if (it.next().isDone()) {
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * @return the number of responses kept or being captured
+	 */
+	int size() {
+		synchronized (this.entries) {
+			return this.entries.size();
+		}
+	}
+
+	/**
+	 * A captured response. Only the captured values are kept, not the response they were captured from.
+	 */
+	private static final class Entry {
+
+		private final int status;
+		private final String contentType;
+		private final String characterEncoding;
+		private final Object[][] headers;
+		private final String etag;
+		private final byte[] body;
+		private final long expires;
+
+		/**
+		 * @param captured
+		 *            the status and headers
+		 * @param body
+		 *            the body
+		 * @param expires
+		 *            the time the response expires
+		 */
+		Entry(CapturedResponse captured, byte[] body, long expires) {
+			this.status = captured.getStatus();
+			this.contentType = captured.getContentType();
+			this.characterEncoding = captured.getCharacterEncodingSet();
+			this.headers = captured.getHeaders().toArray(new Object[0][]);
+			this.etag = captured.getHeader("ETag");
+			this.body = body;
+			this.expires = expires;
+		}
+
+		/**
+		 * @return true if the response can be sent for later requests
+		 */
+		boolean isCacheable() {
+			return this.status == HttpServletResponse.SC_OK;
+		}
+
+		/**
+		 * @return true if the ttl has passed
+		 */
+		boolean isExpired() {
+			return System.currentTimeMillis() >= this.expires;
+		}
+
+		/**
+		 * Sends the response, compressed if the request accepts it, or a 304 if the request already has it.
+		 *
+		 * @param request
+		 *            the request
+		 * @param response
+		 *            the response
+		 * @throws IOException
+		 *             if the response can not be written
+		 */
+		void send(HttpServletRequest request, HttpServletResponse response) throws IOException {
+			final String encoding = ResponseCompression.isEnabled() && this.isCacheable()
+					? CompressingResponse.chooseEncoding(request.getHeader("Accept-Encoding")) : null;
+			final CompressingResponse compressing = encoding == null ? null
+					: new CompressingResponse(response, encoding, ResponseCompression.getThreshold());
+			final HttpServletResponse target = compressing == null ? response : compressing;
+
+			try {
+				this.sendHeaders(target);
+				if (this.isCacheable() && this.etag != null && ConditionalRequest.isConditional(request)
+						&& ConditionalRequest.isNotModified(request, this.etag, -1)) {
+					target.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+				} else {
+					target.setContentLength(this.body.length);
+					final OutputStream out = target.getOutputStream();
+					out.write(this.body);
+					out.flush();
+				}
+				if (compressing != null) {
+					compressing.finish();
+				}
+			} finally {
+				if (compressing != null) {
+					compressing.release();
+				}
+			}
+		}
+
+		/**
+		 * Sends the status and headers. The first value of each header replaces any value already set.
+		 *
+		 * @param response
+		 *            the response
+		 */
+		private void sendHeaders(HttpServletResponse response) {
+			if (this.status != HttpServletResponse.SC_OK) {
+				response.setStatus(this.status);
+			}
+			if (this.contentType != null) {
+				response.setContentType(this.contentType);
+			}
+			if (this.characterEncoding != null) {
+				response.setCharacterEncoding(this.characterEncoding);
+			}
+			final Set<String> sent = new HashSet<String>();
+			for (final Object[] header : this.headers) {
+				final String name = (String) header[0];
+				final boolean first = sent.add(name.toLowerCase(Locale.ENGLISH));
+				if (header[1] instanceof Long && first) {
+					response.setDateHeader(name, ((Long) header[1]).longValue());
+				} else if (header[1] instanceof Long) {
+					response.addDateHeader(name, ((Long) header[1]).longValue());
+				} else if (first) {
+					response.setHeader(name, (String) header[1]);
+				} else {
+					response.addHeader(name, (String) header[1]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Hides the headers that make a response depend on what the client already has or how it is encoded, so the
+	 * captured response suits every request.
+	 */
+	private static final class UnconditionalRequest extends HttpServletRequestWrapper {
+
+		/**
+		 * @param request
+		 *            the request
+		 */
+		UnconditionalRequest(HttpServletRequest request) {
+			super(request);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public String getHeader(String name) {
+			return ResponseCache.isHidden(name) ? null : super.getHeader(name);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public long getDateHeader(String name) {
+			return ResponseCache.isHidden(name) ? -1 : super.getDateHeader(name);
+		}
+	}
+
+	/**
+	 * @param name
+	 *            a header name
+	 * @return true if the header is hidden while capturing
+	 */
+	private static boolean isHidden(String name) {
+		return "Accept-Encoding".equalsIgnoreCase(name) || "If-None-Match".equalsIgnoreCase(name)
+				|| "If-Modified-Since".equalsIgnoreCase(name);
+	}
+}
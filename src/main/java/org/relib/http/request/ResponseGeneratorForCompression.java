@@ -0,0 +1,65 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.http.request;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.relib.http.ResponseCompression;
+
+/**
+ * Compresses the response built by another {@link ResponseGenerator} when the request accepts gzip or deflate.
+ *
+ * @see ResponseCompression
+ * @author Troy Histed
+ */
+class ResponseGeneratorForCompression implements ResponseGenerator {
+
+	private final ResponseGenerator responseGenerator;
+
+	/**
+	 * @param responseGenerator
+	 *            the generator that builds the response
+	 */
+	ResponseGeneratorForCompression(ResponseGenerator responseGenerator) {
+		this.responseGenerator = responseGenerator;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void generateResponse(HttpServletRequest request, HttpServletResponse response, Object value) {
+		final String encoding = ResponseCompression.isEnabled()
+				? CompressingResponse.chooseEncoding(request.getHeader("Accept-Encoding")) : null;
+		if (encoding == null) {
+			this.responseGenerator.generateResponse(request, response, value);
+			return;
+		}
+
+		final CompressingResponse compressingResponse = new CompressingResponse(response, encoding,
+				ResponseCompression.getThreshold());
+		try {
+			this.responseGenerator.generateResponse(request, compressingResponse, value);
+			compressingResponse.finish();
+		} catch (final IOException e) {
+			throw new IllegalStateException("Unable to compress response", e);
+		} finally {
+			compressingResponse.release();
+		}
+	}
+}
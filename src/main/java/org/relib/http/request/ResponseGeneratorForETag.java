@@ -0,0 +1,44 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.http.request;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Handles building the response for MediaType.JSON with a strong ETag computed from the json of a GET or HEAD
+ * response, answering with a 304 instead of the body if the client already has it.
+ *
+ * <p>
+ * The ETag is hashed from the {@link JsonResponseWriter} buffer, so the value is only converted to json once. A
+ * body too large for the buffer is streamed without an ETag. A response that already has an ETag, from a
+ * {@link org.relib.http.ResponseVersion}, is written without another.
+ *
+ * @author Troy Histed
+ */
+class ResponseGeneratorForETag extends ResponseGeneratorForJson {
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	JsonResponseWriter createWriter(HttpServletRequest request, HttpServletResponse response) {
+		if (!ConditionalRequest.isConditional(request) || response.containsHeader("ETag")) {
+			return super.createWriter(request, response);
+		}
+		return new JsonResponseWriter(response, request);
+	}
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.http.request;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Handles building the response for a CompletionStage or Future {@link org.relib.http.HandleRequest} return value.
+ *
+ * <p>
+ * The result is passed to another generator once it completes. If asynchronous processing is allowed and
+ * {@link AsyncSupport} can start it, the container thread returns at once and the response is built on the thread
+ * that completes the stage, with a timer sending a 503 if it takes longer than the timeout. Otherwise the
+ * container thread waits for the result up to the timeout.
+ *
+ * @author Troy Histed
+ */
+class ResponseGeneratorForFuture implements ResponseGenerator {
+
+	private final ResponseGenerator responseGenerator;
+	private final long timeout;
+	private final boolean asyncAllowed;
+
+	/**
+	 * @param responseGenerator
+	 *            the generator that builds the response from the result
+	 * @param timeout
+	 *            the milliseconds to wait for the result
+	 * @param asyncAllowed
+	 *            true if the generator can build the response outside the container thread, which a view forward
+	 *            can not
+	 */
+	ResponseGeneratorForFuture(ResponseGenerator responseGenerator, long timeout, boolean asyncAllowed) {
+		this.responseGenerator = responseGenerator;
+		this.timeout = timeout;
+		this.asyncAllowed = asyncAllowed;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void generateResponse(HttpServletRequest request, HttpServletResponse response, Object value) {
+		if (value == null) {
+			this.responseGenerator.generateResponse(request, response, null);
+			return;
+		}
+
+		// A captured response must hold the whole response when this returns
+		if (this.asyncAllowed && value instanceof CompletionStage && !(response instanceof CapturedResponse)) {
+			final Object asyncContext = AsyncSupport.start(request);
+			if (asyncContext != null) {
+				this.generateLater(request, response, (CompletionStage<?>) value, asyncContext);
+				return;
+			}
+		}
+
+		final Future<?> future = value instanceof Future ? (Future<?>) value
+				: ((CompletionStage<?>) value).toCompletableFuture();
+		final Object result;
+		try {
+			result = future.get(this.timeout, TimeUnit.MILLISECONDS);
+		} catch (final TimeoutException e) {
+			future.cancel(true);
+			ResponseGeneratorForFuture.sendTimeout(response);
+			return;
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted waiting for handler result", e);
+		} catch (final ExecutionException e) {
+			throw new IllegalStateException("Handler result completed exceptionally", e.getCause());
+		} catch (final CancellationException e) {
+			throw new IllegalStateException("Handler result was cancelled", e);
+		}
+		this.responseGenerator.generateResponse(request, response, result);
+	}
+
+	/**
+	 * Builds the response when a stage completes, or sends a 503 if the timeout passes first.
+	 *
+	 * @param request
+	 *            the request
+	 * @param response
+	 *            the response
+	 * @param stage
+	 *            the handler result
+	 * @param asyncContext
+	 *            the started AsyncContext
+	 */
+	private void generateLater(final HttpServletRequest request, final HttpServletResponse response,
+			final CompletionStage<?> stage, final Object asyncContext) {
+		final AtomicBoolean done = new AtomicBoolean();
+		final ScheduledFuture<?> timer = AsyncSupport.schedule(new Runnable() {
+			public void run() {
+				if (done.compareAndSet(false, true)) {
+					stage.toCompletableFuture().cancel(true);
+					try {
+						ResponseGeneratorForFuture.sendTimeout(response);
+					} finally {
+						AsyncSupport.complete(asyncContext);
+					}
+				}
+			}
+		}, this.timeout);
+
+		stage.whenComplete(new BiConsumer<Object, Throwable>() {
+			public void accept(Object result, Throwable failure) {
+				if (!done.compareAndSet(false, true)) {
+					return;
+				}
+				timer.cancel(false);
+				try {
+					if (failure == null) {
+						ResponseGeneratorForFuture.this.responseGenerator.generateResponse(request, response, result);
+					} else {
+						AsyncSupport.sendError(response, failure);
+					}
+				} catch (final RuntimeException e) {
+					AsyncSupport.sendError(response, e);
+				} finally {
+					AsyncSupport.complete(asyncContext);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Sends a 503 for a result that took too long.
+	 *
+	 * @param response
+	 *            the response
+	 */
+	private static void sendTimeout(HttpServletResponse response) {
+		try {
+			response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+		} catch (final IOException e) {
+			throw new IllegalStateException("Unable to send timeout", e);
+		}
+	}
+}
@@ -16,7 +16,6 @@
 package org.relib.http.request;
 
 import java.io.IOException;
-import java.io.PrintWriter;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -27,6 +26,10 @@ import org.relib.http.json.Json;
 /**
  * Handles building the response for MediaType.JSON.
  *
+ * <p>
+ * The json is written as the value is traversed through a {@link JsonResponseWriter}, so the body is never held
+ * as a single String.
+ *
  * @author Troy Histed
  */
 class ResponseGeneratorForJson implements ResponseGenerator {
@@ -34,19 +37,31 @@ class ResponseGeneratorForJson implements ResponseGenerator {
 	/**
 	 * {@inheritDoc}
 	 */
-	@SuppressWarnings("resource")
 	public void generateResponse(HttpServletRequest request, HttpServletResponse response, Object value) {
 
 		response.setContentType(MediaType.JSON.getTypeString());
 
-		PrintWriter writer;
+		final JsonResponseWriter writer = this.createWriter(request, response);
 		try {
-			writer = response.getWriter();
-			writer.print(Json.toJson(value));
+			Json.toJson(value, writer);
+			writer.close();
 		} catch (final IOException e) {
 			throw new IllegalStateException("Unable to convert object to json " + value, e);
 		}
 
 	}
 
+	/**
+	 * Creates the writer for the body.
+	 *
+	 * @param request
+	 *            the request
+	 * @param response
+	 *            the response
+	 * @return the writer
+	 */
+	JsonResponseWriter createWriter(HttpServletRequest request, HttpServletResponse response) {
+		return new JsonResponseWriter(response);
+	}
+
 }
\ No newline at end of file
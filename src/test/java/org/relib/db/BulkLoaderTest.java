@@ -0,0 +1,256 @@
+package org.relib.db;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the BulkLoader class.
+ *
+ * @author Troy Histed
+ */
+public class BulkLoaderTest {
+
+	private static final String INSERT = "insert into test (param1, param2) values (:param1, :param2)";
+
+	final List<MockConnection> connections = Collections.synchronizedList(new ArrayList<MockConnection>());
+	final List<MockPreparedStatement> statements = Collections
+			.synchronizedList(new ArrayList<MockPreparedStatement>());
+
+	/**
+	 * Creates a loader whose writers use mock connections. A batch containing the value "bad" fails.
+	 *
+	 * @param writers
+	 *            the number of writers
+	 * @param chunkSize
+	 *            the chunk size
+	 * @return the loader
+	 */
+	private <T> BulkLoader<T> createLoader(int writers, int chunkSize) {
+		return new BulkLoader<T>(BulkLoaderTest.INSERT, null, writers, chunkSize, 100) {
+			@Override
+			protected JdbcConnection connect(String connectionName) throws SQLException {
+				final MockConnection connection = new MockConnection() {
+					@Override
+					public PreparedStatement prepareStatement(String sql) throws SQLException {
+						final MockPreparedStatement statement = new FailingPreparedStatement();
+						BulkLoaderTest.this.statements.add(statement);
+						this.preparedStatement = statement;
+						return statement;
+					}
+				};
+				BulkLoaderTest.this.connections.add(connection);
+				return new JdbcConnection(connection);
+			}
+		};
+	}
+
+	/**
+	 * Verify every row is loaded and committed in chunks.
+	 *
+	 * @throws SQLException
+	 *             exception
+	 */
+	@Test
+	public void testLoad() throws SQLException {
+		final BulkLoader<TestBean> loader = this.createLoader(2, 10);
+		for (int i = 0; i < 250; i++) {
+			final TestBean bean = new TestBean();
+			bean.setParam1("value" + i);
+			bean.setParam2(Integer.valueOf(i));
+			loader.add(bean);
+		}
+		final BulkLoader.Report report = loader.finish();
+
+		Assert.assertEquals(250, report.getRowsAdded());
+		Assert.assertEquals(250, report.getRowsLoaded());
+		Assert.assertTrue(report.getFailedChunks().isEmpty());
+		Assert.assertEquals(2, this.connections.size());
+		// each writer prepares the statement once
+		Assert.assertEquals(2, this.statements.size());
+
+		int batches = 0;
+		for (final MockPreparedStatement statement : this.statements) {
+			Assert.assertTrue(statement.isClosed());
+			for (final Integer batchSize : ((FailingPreparedStatement) statement).batchSizes) {
+				Assert.assertTrue(batchSize.intValue() <= 10);
+				batches += batchSize.intValue();
+			}
+		}
+		Assert.assertEquals(250, batches);
+
+		int commits = 0;
+		for (final MockConnection connection : this.connections) {
+			Assert.assertFalse(connection.getAutoCommit());
+			Assert.assertTrue(connection.isClosed());
+			commits += connection.commitCount;
+		}
+		Assert.assertEquals(report.getChunksCommitted(), commits);
+	}
+
+	/**
+	 * Verify a failing chunk is rolled back and reported while the other chunks are loaded.
+	 *
+	 * @throws SQLException
+	 *             exception
+	 */
+	@Test
+	public void testFailedChunk() throws SQLException {
+		final BulkLoader<Map<String, Object>> loader = this.createLoader(1, 5);
+		for (int i = 0; i < 20; i++) {
+			final Map<String, Object> row = new HashMap<String, Object>();
+			row.put("param1", i == 7 ? "bad" : "good");
+			row.put("param2", Integer.valueOf(i));
+			loader.add(row);
+		}
+		final BulkLoader.Report report = loader.finish();
+
+		Assert.assertEquals(1, report.getFailedChunks().size());
+		final BulkLoader.FailedChunk failedChunk = report.getFailedChunks().get(0);
+		Assert.assertTrue(failedChunk.getCause() instanceof DaoException);
+		Assert.assertEquals(20 - failedChunk.getRows().size(), report.getRowsLoaded());
+		Assert.assertEquals(1, this.connections.get(0).rollbackCount);
+
+		boolean containsBadRow = false;
+		for (final Object row : failedChunk.getRows()) {
+			containsBadRow |= "bad".equals(((Map<?, ?>) row).get("param1"));
+		}
+		Assert.assertTrue(containsBadRow);
+
+		// the failed chunk's statement is closed and the next chunk prepares a new one
+		Assert.assertEquals(2, this.statements.size());
+		for (final MockPreparedStatement statement : this.statements) {
+			Assert.assertTrue(statement.isClosed());
+		}
+	}
+
+	/**
+	 * Verify the statement of a chunk that fails to bind is closed.
+	 *
+	 * @throws SQLException
+	 *             exception
+	 */
+	@Test
+	public void testFailedBind() throws SQLException {
+		final BulkLoader<Object> loader = this.createLoader(1, 5);
+		for (int i = 0; i < 10; i++) {
+			final Map<String, Object> row = new HashMap<String, Object>();
+			row.put("param1", "good");
+			row.put("param2", Integer.valueOf(i));
+			loader.add(i == 2 ? new UnreadableBean() : row);
+		}
+		final BulkLoader.Report report = loader.finish();
+
+		Assert.assertEquals(1, report.getFailedChunks().size());
+		Assert.assertEquals(5, report.getRowsLoaded());
+		Assert.assertEquals(2, this.statements.size());
+		for (final MockPreparedStatement statement : this.statements) {
+			Assert.assertTrue(statement.isClosed());
+		}
+	}
+
+	/**
+	 * Verify rows can not be added once the loader is finished.
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testAddAfterFinish() {
+		final BulkLoader<TestBean> loader = this.createLoader(1, 5);
+		loader.finish();
+		loader.add(new TestBean());
+	}
+
+	/**
+	 * Verify every row is loaded when writers drain more than one end marker with their last chunk.
+	 */
+	@Test
+	public void testFinishWithLargeChunks() {
+		final BulkLoader<Map<String, Object>> loader = this.createLoader(4, 200);
+		for (int i = 0; i < 90; i++) {
+			final Map<String, Object> row = new HashMap<String, Object>();
+			row.put("param1", "good");
+			row.put("param2", Integer.valueOf(i));
+			loader.add(row);
+		}
+		final BulkLoader.Report report = loader.finish();
+
+		Assert.assertEquals(90, report.getRowsLoaded());
+		Assert.assertTrue(report.getFailedChunks().isEmpty());
+	}
+
+	/**
+	 * Verify rows left on the queue are reported as failed when every writer has stopped.
+	 */
+	@Test
+	public void testEveryWriterStopped() {
+		final BulkLoader<Map<String, Object>> loader = new BulkLoader<Map<String, Object>>(BulkLoaderTest.INSERT,
+				null, 2, 5, 100) {
+			@Override
+			protected JdbcConnection connect(String connectionName) throws SQLException {
+				throw new SQLException("no connection");
+			}
+		};
+		for (int i = 0; i < 10; i++) {
+			final Map<String, Object> row = new HashMap<String, Object>();
+			row.put("param1", "good");
+			row.put("param2", Integer.valueOf(i));
+			loader.add(row);
+		}
+		final BulkLoader.Report report = loader.finish();
+
+		Assert.assertEquals(0, report.getRowsLoaded());
+		int failedRows = 0;
+		for (final BulkLoader.FailedChunk failedChunk : report.getFailedChunks()) {
+			failedRows += failedChunk.getRows().size();
+		}
+		Assert.assertEquals(10, failedRows);
+	}
+
+	/**
+	 * A bean whose property can not be read.
+	 */
+	public static class UnreadableBean {
+
+		/**
+		 * @return never returns
+		 */
+		public String getParam1() {
+			throw new IllegalStateException("unreadable");
+		}
+	}
+
+	/**
+	 * A prepared statement that fails to execute a batch containing the value "bad".
+	 */
+	static class FailingPreparedStatement extends MockPreparedStatement {
+
+		private boolean bad = false;
+		private int pending = 0;
+		final List<Integer> batchSizes = new ArrayList<Integer>();
+
+		@Override
+		public void addBatch() throws SQLException {
+			this.bad |= this.getValues().containsValue("bad");
+			this.pending++;
+			super.addBatch();
+		}
+
+		@Override
+		public int[] executeBatch() throws SQLException {
+			if (this.bad) {
+				throw new SQLException("bad row");
+			}
+			// executing a batch empties it
+			this.batchSizes.add(Integer.valueOf(this.pending));
+			final int[] updateCounts = new int[this.pending];
+			this.pending = 0;
+			return updateCounts;
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package org.relib.db;
+
+import java.sql.Connection;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the ConnectionTracker class.
+ *
+ * @author Troy Histed
+ */
+public class ConnectionTrackerTest {
+
+	private final JdbcConnector connector = new JdbcConnector() {
+		@Override
+		public Connection getConnection() {
+			return new MockConnection();
+		}
+
+		@Override
+		public String getName() {
+			return "tracked";
+		}
+	};
+
+	/**
+	 * Resets the tracker.
+	 */
+	@Before
+	public void resetTracker() {
+		ConnectionTracker.reset();
+		ConnectionTracker.setLeakThresholdMillis(ConnectionTracker.DEFAULT_LEAK_THRESHOLD_MILLIS);
+		ConnectionTracker.setSampleRate(ConnectionTracker.DEFAULT_SAMPLE_RATE);
+	}
+
+	/**
+	 * Restores the tracker settings.
+	 */
+	@After
+	public void restoreTracker() {
+		this.resetTracker();
+	}
+
+	/**
+	 * Verify a connection is tracked from connect until clean up.
+	 */
+	@Test
+	public void testBorrowedCount() {
+		final int borrowed = ConnectionTracker.getBorrowedCount();
+		final JdbcConnection connection = JdbcConnection.connect(this.connector, "tracked", Dialect.GENERIC);
+
+		Assert.assertEquals(borrowed + 1, ConnectionTracker.getBorrowedCount());
+		Assert.assertEquals(1, ConnectionTracker.getBorrowCount());
+		Assert.assertEquals(1, ConnectionTracker.getWaitTimes("tracked").getCount());
+
+		connection.cleanUp();
+		Assert.assertEquals(borrowed, ConnectionTracker.getBorrowedCount());
+	}
+
+	/**
+	 * Verify connections held longer than the threshold are flagged once.
+	 */
+	@Test
+	public void testLeakSuspects() {
+		ConnectionTracker.setLeakThresholdMillis(0);
+		ConnectionTracker.setSampleRate(1);
+		final JdbcConnection connection = JdbcConnection.connect(this.connector, "tracked", Dialect.GENERIC);
+		try {
+			final List<BorrowedConnection> suspects = ConnectionTracker.getLeakSuspects();
+			Assert.assertFalse(suspects.isEmpty());
+			final BorrowedConnection suspect = suspects.get(suspects.size() - 1);
+			Assert.assertTrue(suspect.isFlagged());
+			Assert.assertEquals("tracked", suspect.getConnectionName());
+			Assert.assertEquals(Thread.currentThread().getName(), suspect.getThreadName());
+			Assert.assertNotNull(suspect.getAcquisitionSite());
+			Assert.assertNotNull(ConnectionTracker.getLongestHolder());
+
+			final long leaks = ConnectionTracker.getLeakCount();
+			ConnectionTracker.getLeakSuspects();
+			Assert.assertEquals(leaks, ConnectionTracker.getLeakCount());
+		} finally {
+			connection.cleanUp();
+		}
+	}
+
+	/**
+	 * Verify acquisition sites are only recorded for sampled borrows.
+	 */
+	@Test
+	public void testSampling() {
+		ConnectionTracker.setSampleRate(2);
+		final BorrowedConnection first = ConnectionTracker.borrowed(null, 0);
+		final BorrowedConnection second = ConnectionTracker.borrowed(null, 0);
+		ConnectionTracker.returned(first);
+		ConnectionTracker.returned(second);
+
+		Assert.assertNull(first.getAcquisitionSite());
+		Assert.assertNotNull(second.getAcquisitionSite());
+		Assert.assertEquals(2, ConnectionTracker.getWaitTimes().get("").getCount());
+	}
+
+	/**
+	 * Verify connections that are not borrowed from a connector are not tracked.
+	 */
+	@Test
+	public void testUntrackedConnection() {
+		final int borrowed = ConnectionTracker.getBorrowedCount();
+		final JdbcConnection connection = new JdbcConnection(new MockConnection());
+		connection.cleanUp();
+		Assert.assertEquals(borrowed, ConnectionTracker.getBorrowedCount());
+		Assert.assertEquals(0, ConnectionTracker.getBorrowCount());
+	}
+}
@@ -0,0 +1,191 @@
+package org.relib.db;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the EntityCache class.
+ *
+ * @author Troy Histed
+ */
+public class EntityCacheTest {
+
+	AtomicInteger loadCount;
+	CountDownLatch loadLatch;
+	EntityCache<Long, TestBean> cache;
+
+	/**
+	 * Resets the instance members to new instances.
+	 */
+	@Before
+	public void constructCache() {
+		this.loadCount = new AtomicInteger();
+		this.loadLatch = new CountDownLatch(0);
+		this.cache = this.newCache(4);
+	}
+
+	/**
+	 * Creates a cache that loads beans without a database.
+	 *
+	 * @param maxSize
+	 *            the maximum cache size
+	 * @return the cache
+	 */
+	private EntityCache<Long, TestBean> newCache(int maxSize) {
+		return new EntityCache<Long, TestBean>("Select * from test where id = :id",
+				BeanRowMapper.forClass(TestBean.class), "id", maxSize, null) {
+			@Override
+			protected TestBean load(Long key) {
+				EntityCacheTest.this.loadCount.incrementAndGet();
+				try {
+					EntityCacheTest.this.loadLatch.await(5, TimeUnit.SECONDS);
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				if (key.longValue() < 0) {
+					return null;
+				}
+				final TestBean bean = new TestBean();
+				bean.setParam3(key.longValue());
+				return bean;
+			}
+		};
+	}
+
+	/**
+	 * Verify a cached entity is only loaded once.
+	 */
+	@Test
+	public void testReadThrough() {
+		final TestBean first = this.cache.get(Long.valueOf(1));
+		final TestBean second = this.cache.get(Long.valueOf(1));
+
+		Assert.assertEquals(1L, first.getParam3());
+		Assert.assertSame(first, second);
+		Assert.assertEquals(1, this.loadCount.get());
+		Assert.assertEquals(1, this.cache.getHitCount());
+		Assert.assertEquals(1, this.cache.getMissCount());
+	}
+
+	/**
+	 * Verify keys without a row are not cached.
+	 */
+	@Test
+	public void testMissingEntity() {
+		Assert.assertNull(this.cache.get(Long.valueOf(-1)));
+		Assert.assertNull(this.cache.get(Long.valueOf(-1)));
+		Assert.assertEquals(2, this.loadCount.get());
+		Assert.assertEquals(0, this.cache.size());
+	}
+
+	/**
+	 * Verify the cache does not grow past its maximum size.
+	 */
+	@Test
+	public void testMaxSize() {
+		for (long i = 0; i < 100; i++) {
+			this.cache.get(Long.valueOf(i));
+		}
+		Assert.assertTrue(this.cache.size() <= 4);
+	}
+
+	/**
+	 * Verify an invalidated entity is loaded again.
+	 */
+	@Test
+	public void testInvalidate() {
+		this.cache.get(Long.valueOf(1));
+		this.cache.invalidate(Long.valueOf(1));
+		this.cache.get(Long.valueOf(1));
+		Assert.assertEquals(2, this.loadCount.get());
+	}
+
+	/**
+	 * Verify an update invalidates the entity after it executes.
+	 */
+	@Test
+	public void testUpdateInvalidates() {
+		this.cache.get(Long.valueOf(1));
+		Assert.assertEquals(1, this.cache.size());
+
+		final Update update = new Update("Update test set param1 = :param1 where id = :id", new MockConnection());
+		update.set("param1", "foo").set("id", 1L).invalidates(this.cache, Long.valueOf(1));
+		Assert.assertEquals(1, this.cache.size());
+		update.execute();
+
+		Assert.assertEquals(0, this.cache.size());
+	}
+
+	/**
+	 * Verify an update in a transaction invalidates the entity again when its connection is closed, so a copy of
+	 * the old row loaded before the commit is not kept.
+	 *
+	 * @throws SQLException
+	 *             exception
+	 */
+	@Test
+	public void testUpdateInvalidatesAfterTransaction() throws SQLException {
+		final MockConnection connection = new MockConnection() {
+			@Override
+			public void close() throws SQLException {
+				// another reader loads the row before the transaction ends
+				EntityCacheTest.this.cache.get(Long.valueOf(1));
+				Assert.assertEquals(1, EntityCacheTest.this.cache.size());
+				super.close();
+			}
+		};
+		connection.setAutoCommit(false);
+
+		new Update("Update test set param1 = :param1 where id = :id", connection).set("param1", "foo").set("id", 1L)
+				.invalidates(this.cache, Long.valueOf(1)).execute();
+
+		Assert.assertEquals(0, this.cache.size());
+	}
+
+	/**
+	 * Verify concurrent requests for the same missing key share a single load.
+	 *
+	 * @throws InterruptedException
+	 *             exception
+	 */
+	@Test
+	public void testConcurrentMissesCollapse() throws InterruptedException {
+		this.loadLatch = new CountDownLatch(1);
+		final List<Thread> threads = new ArrayList<Thread>();
+		final List<TestBean> results = new ArrayList<TestBean>();
+		for (int i = 0; i < 8; i++) {
+			final Thread thread = new Thread() {
+				@Override
+				public void run() {
+					final TestBean bean = EntityCacheTest.this.cache.get(Long.valueOf(7));
+					synchronized (results) {
+						results.add(bean);
+					}
+				}
+			};
+			threads.add(thread);
+			thread.start();
+		}
+
+		// Give the threads a chance to block on the load before releasing it
+		Thread.sleep(100);
+		this.loadLatch.countDown();
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+
+		Assert.assertEquals(8, results.size());
+		for (final TestBean bean : results) {
+			Assert.assertSame(results.get(0), bean);
+		}
+		Assert.assertEquals(1, this.loadCount.get());
+	}
+}
@@ -0,0 +1,75 @@
+package org.relib.db;
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the FetchSizePolicy class.
+ *
+ * @author Troy Histed
+ */
+public class FetchSizePolicyTest {
+
+	/**
+	 * Verify a fixed policy always returns its size.
+	 */
+	@Test
+	public void testFixed() {
+		final FetchSizePolicy policy = FetchSizePolicy.fixed(500);
+		Assert.assertEquals(500, policy.beforeExecute("select"));
+		policy.completed("select", 10);
+		Assert.assertEquals(500, policy.beforeExecute("select"));
+	}
+
+	/**
+	 * Verify a fixed policy rejects sizes below one.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testFixedInvalid() {
+		FetchSizePolicy.fixed(0);
+	}
+
+	/**
+	 * Verify the memory budget bounds the fetch size.
+	 *
+	 * @throws SQLException
+	 *             exception
+	 */
+	@Test
+	public void testMemoryBudget() throws SQLException {
+		final LinkedHashMap<String, Object> row = new LinkedHashMap<String, Object>();
+		row.put("id", Long.valueOf(1));
+		row.put("name", "name");
+		final MockResultSetMetaData metaData = new MockResultSetMetaData(row);
+		final int rowWidth = FetchSizePolicy.estimateRowWidth(metaData);
+
+		final FetchSizePolicy policy = FetchSizePolicy.adaptive(rowWidth * 20);
+		Assert.assertEquals(20, policy.afterExecute("select", metaData));
+		Assert.assertEquals(20, policy.beforeExecute("select"));
+	}
+
+	/**
+	 * Verify the fetch size follows the average number of rows returned.
+	 *
+	 * @throws SQLException
+	 *             exception
+	 */
+	@Test
+	public void testLearnsRowCount() throws SQLException {
+		final LinkedHashMap<String, Object> row = new LinkedHashMap<String, Object>();
+		row.put("id", Long.valueOf(1));
+		final MockResultSetMetaData metaData = new MockResultSetMetaData(row);
+
+		final FetchSizePolicy policy = FetchSizePolicy.adaptive();
+		policy.afterExecute("select", metaData);
+		policy.completed("select", 40);
+		Assert.assertEquals(41, policy.beforeExecute("select"));
+
+		policy.completed("select", 0);
+		Assert.assertEquals(31, policy.beforeExecute("select"));
+		Assert.assertEquals(100, policy.beforeExecute("other"));
+	}
+}
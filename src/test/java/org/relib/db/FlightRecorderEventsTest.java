@@ -0,0 +1,97 @@
+package org.relib.db;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Test the FlightRecorderEvents class.
+ *
+ * @author Troy Histed
+ */
+public class FlightRecorderEventsTest {
+
+	/**
+	 * Disables the events.
+	 */
+	@After
+	public void disableEvents() {
+		FlightRecorderEvents.setEnabled(false);
+	}
+
+	/**
+	 * Verify nothing is created while the events are disabled.
+	 */
+	@Test
+	public void testDisabled() {
+		Assert.assertFalse(FlightRecorderEvents.isEnabled());
+		Assert.assertNull(FlightRecorderEvents.begin(FlightRecorderEvents.EXECUTE));
+		FlightRecorderEvents.end(null, "select", 1);
+	}
+
+	/**
+	 * Verify a select records its execute, map and cleanup events.
+	 *
+	 * @throws IOException
+	 *             exception
+	 */
+	@Test
+	public void testSelectEvents() throws IOException {
+		Assert.assertTrue(FlightRecorderEvents.setEnabled(true));
+
+		final MockConnection connection = new MockConnection();
+		final MockSelect<String> select = new MockSelect<String>("Select col1 from table where id = :id",
+				new RowMapper<String>() {
+					@Override
+					protected String mapRow(ResultSet resultSet) throws SQLException {
+						return resultSet.getString("col1");
+					}
+				}, connection);
+		final MockResultSet resultSet = new MockResultSet();
+		for (int i = 0; i < 3; i++) {
+			final LinkedHashMap<String, Object> row = new LinkedHashMap<String, Object>();
+			row.put("col1", "row" + i);
+			resultSet.getValues().add(row);
+		}
+		connection.getPreparedStatement().setResultSet(resultSet);
+
+		final File file = File.createTempFile("relib", ".jfr");
+		final Recording recording = new Recording();
+		try {
+			recording.enable("org.relib.db.Execute").withThreshold(Duration.ZERO);
+			recording.enable("org.relib.db.Map").withThreshold(Duration.ZERO);
+			recording.enable("org.relib.db.Cleanup").withThreshold(Duration.ZERO);
+			recording.start();
+			select.set("id", 1).executeForAll();
+			recording.stop();
+			recording.dump(file.toPath());
+
+			final Map<String, RecordedEvent> events = new HashMap<String, RecordedEvent>();
+			final List<RecordedEvent> recorded = RecordingFile.readAllEvents(file.toPath());
+			for (final RecordedEvent event : recorded) {
+				events.put(event.getEventType().getName(), event);
+			}
+			Assert.assertEquals("Select col1 from table where id = ?",
+					events.get("org.relib.db.Execute").getString("fingerprint"));
+			Assert.assertEquals(3, events.get("org.relib.db.Map").getLong("rows"));
+			Assert.assertTrue(events.containsKey("org.relib.db.Cleanup"));
+		} finally {
+			recording.close();
+			file.delete();
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package org.relib.db;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the LatencyHistogram class.
+ *
+ * @author Troy Histed
+ */
+public class LatencyHistogramTest {
+
+	/**
+	 * Verify durations are placed in buckets that double in size.
+	 */
+	@Test
+	public void testBuckets() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(500);
+		histogram.record(TimeUnit.MICROSECONDS.toNanos(2));
+		histogram.record(TimeUnit.MICROSECONDS.toNanos(3));
+		histogram.record(Long.MAX_VALUE / 2);
+
+		final long[] buckets = histogram.getBucketCounts();
+		Assert.assertEquals(1, buckets[0]);
+		Assert.assertEquals(1, buckets[1]);
+		Assert.assertEquals(1, buckets[2]);
+		Assert.assertEquals(1, buckets[LatencyHistogram.BUCKETS - 1]);
+		Assert.assertEquals(4, histogram.getCount());
+		Assert.assertEquals(Long.MAX_VALUE / 2, histogram.getMaxNanos());
+	}
+
+	/**
+	 * Verify percentiles are estimated from the bucket upper bounds.
+	 */
+	@Test
+	public void testPercentile() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		Assert.assertEquals(0, histogram.getPercentileNanos(50));
+		for (int i = 0; i < 99; i++) {
+			histogram.record(TimeUnit.MICROSECONDS.toNanos(10));
+		}
+		histogram.record(TimeUnit.MILLISECONDS.toNanos(5));
+
+		Assert.assertEquals(TimeUnit.MICROSECONDS.toNanos(16), histogram.getPercentileNanos(50));
+		Assert.assertEquals(TimeUnit.MICROSECONDS.toNanos(16), histogram.getPercentileNanos(99));
+		Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(5), histogram.getPercentileNanos(100));
+	}
+
+	/**
+	 * Verify reset clears the histogram.
+	 */
+	@Test
+	public void testReset() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(1000);
+		histogram.reset();
+		Assert.assertEquals(0, histogram.getCount());
+		Assert.assertEquals(0, histogram.getMaxNanos());
+		Assert.assertEquals(0, histogram.getBucketCounts()[0]);
+	}
+}
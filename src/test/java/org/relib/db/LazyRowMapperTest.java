@@ -0,0 +1,117 @@
+package org.relib.db;
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the LazyRowMapper and LazyRow classes.
+ *
+ * @author Troy Histed
+ */
+public class LazyRowMapperTest {
+
+	MockConnection connection;
+	MockResultSet resultSet;
+	MockSelect<LazyRow> select;
+
+	/**
+	 * Resets the instance members to new instances.
+	 */
+	@Before
+	public void constructStatement() {
+		this.connection = new MockConnection();
+		this.select = new MockSelect<LazyRow>("Select param1, param2, param3 from table", new LazyRowMapper(),
+				this.connection);
+
+		this.resultSet = new MockResultSet();
+		this.connection.getPreparedStatement().setResultSet(this.resultSet);
+		this.addRow("foo", Integer.valueOf(1), Long.valueOf(10));
+		this.addRow("bar", null, Long.valueOf(20));
+	}
+
+	/**
+	 * Adds a row to the mock result set.
+	 *
+	 * @param param1
+	 *            the param1 column value
+	 * @param param2
+	 *            the param2 column value
+	 * @param param3
+	 *            the param3 column value
+	 */
+	private void addRow(String param1, Integer param2, Long param3) {
+		final LinkedHashMap<String, Object> row = new LinkedHashMap<String, Object>();
+		row.put("param1", param1);
+		row.put("param2", param2);
+		row.put("param3", param3);
+		this.resultSet.getValues().add(row);
+	}
+
+	/**
+	 * Verify the rows can be read as a map by column label.
+	 *
+	 * @throws SQLException
+	 *             exception
+	 */
+	@Test
+	public void testMapView() throws SQLException {
+		final List<LazyRow> rows = this.select.executeForAll();
+
+		Assert.assertEquals(2, rows.size());
+		Assert.assertEquals(3, rows.get(0).size());
+		Assert.assertEquals("foo", rows.get(0).get("param1"));
+		Assert.assertEquals("foo", rows.get(0).get("PARAM1"));
+		Assert.assertNull(rows.get(1).get("param2"));
+		Assert.assertTrue(rows.get(1).containsKey("param2"));
+		Assert.assertFalse(rows.get(1).containsKey("param4"));
+		Assert.assertEquals(Long.valueOf(20), rows.get(1).get(3));
+		Assert.assertEquals("[param1, param2, param3]", rows.get(0).keySet().toString());
+		Assert.assertTrue(this.connection.isClosed());
+	}
+
+	/**
+	 * Verify the values are converted to the requested type when read.
+	 */
+	@Test
+	public void testTypedGetters() {
+		final LazyRow row = this.select.execute();
+
+		Assert.assertEquals("1", row.getString("param2"));
+		Assert.assertEquals(Integer.valueOf(10), row.getInteger("param3"));
+		Assert.assertEquals(Long.valueOf(1), row.getLong("param2"));
+		Assert.assertEquals(Double.valueOf(10), row.getDouble("param3"));
+	}
+
+	/**
+	 * Verify reading an unknown column with a typed getter fails.
+	 */
+	@Test(expected = DaoException.class)
+	public void testUnknownColumn() {
+		this.select.execute().getString("param4");
+	}
+
+	/**
+	 * Verify the row can be materialized into a bean.
+	 */
+	@Test
+	public void testToBean() {
+		final TestBean bean = this.select.execute().toBean(TestBean.class);
+
+		Assert.assertEquals("foo", bean.getParam1());
+		Assert.assertEquals(Integer.valueOf(1), bean.getParam2());
+		Assert.assertEquals(10L, bean.getParam3());
+	}
+
+	/**
+	 * Verify a bean class without a no-arg constructor can not be materialized.
+	 */
+	@Test(expected = DaoException.class)
+	public void testToBeanWithoutNoArgConstructor() {
+		this.select.execute().toBean(Integer.class);
+	}
+}
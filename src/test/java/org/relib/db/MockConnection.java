@@ -27,6 +27,12 @@ import java.util.concurrent.Executor;
 public class MockConnection implements Connection {
 
 	private boolean open = false;
+	private boolean autoCommit = true;
+	int commitCount = 0;
+	int rollbackCount = 0;
+	int savepointCount = 0;
+	int savepointRollbackCount = 0;
+	int savepointReleaseCount = 0;
 	MockPreparedStatement preparedStatement;
 
 	/**
@@ -41,6 +47,18 @@ public class MockConnection implements Connection {
 		return this.preparedStatement;
 	}
 
+	public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+		this.prepareStatement(sql);
+		this.preparedStatement.autoGeneratedKeys = autoGeneratedKeys;
+		return this.preparedStatement;
+	}
+
+	public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
+		this.prepareStatement(sql);
+		this.preparedStatement.keyColumnNames = columnNames;
+		return this.preparedStatement;
+	}
+
 	public void close() throws SQLException {
 		this.open = false;
 	}
@@ -49,6 +67,22 @@ public class MockConnection implements Connection {
 		return !this.open;
 	}
 
+	public void setAutoCommit(boolean autoCommit) throws SQLException {
+		this.autoCommit = autoCommit;
+	}
+
+	public boolean getAutoCommit() throws SQLException {
+		return this.autoCommit;
+	}
+
+	public void commit() throws SQLException {
+		this.commitCount += 1;
+	}
+
+	public void rollback() throws SQLException {
+		this.rollbackCount += 1;
+	}
+
 	/**
 	 * @return the mocked prepared statement
 	 */
@@ -80,22 +114,6 @@ public class MockConnection implements Connection {
 		throw new UnsupportedOperationException("This is a mock object");
 	}
 
-	public void setAutoCommit(boolean autoCommit) throws SQLException {
-		throw new UnsupportedOperationException("This is a mock object");
-	}
-
-	public boolean getAutoCommit() throws SQLException {
-		throw new UnsupportedOperationException("This is a mock object");
-	}
-
-	public void commit() throws SQLException {
-		throw new UnsupportedOperationException("This is a mock object");
-	}
-
-	public void rollback() throws SQLException {
-		throw new UnsupportedOperationException("This is a mock object");
-	}
-
 	public DatabaseMetaData getMetaData() throws SQLException {
 		throw new UnsupportedOperationException("This is a mock object");
 	}
@@ -163,7 +181,16 @@ public class MockConnection implements Connection {
 	}
 
 	public Savepoint setSavepoint() throws SQLException {
-		throw new UnsupportedOperationException("This is a mock object");
+		this.savepointCount += 1;
+		return new Savepoint() {
+			public int getSavepointId() throws SQLException {
+				return MockConnection.this.savepointCount;
+			}
+
+			public String getSavepointName() throws SQLException {
+				throw new SQLException("Unnamed savepoint");
+			}
+		};
 	}
 
 	public Savepoint setSavepoint(String name) throws SQLException {
@@ -171,11 +198,11 @@ public class MockConnection implements Connection {
 	}
 
 	public void rollback(Savepoint savepoint) throws SQLException {
-		throw new UnsupportedOperationException("This is a mock object");
+		this.savepointRollbackCount += 1;
 	}
 
 	public void releaseSavepoint(Savepoint savepoint) throws SQLException {
-		throw new UnsupportedOperationException("This is a mock object");
+		this.savepointReleaseCount += 1;
 	}
 
 	public Statement createStatement(int resultSetType, int resultSetConcurrency, int resultSetHoldability)
@@ -193,18 +220,10 @@ public class MockConnection implements Connection {
 		throw new UnsupportedOperationException("This is a mock object");
 	}
 
-	public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
-		throw new UnsupportedOperationException("This is a mock object");
-	}
-
 	public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
 		throw new UnsupportedOperationException("This is a mock object");
 	}
 
-	public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
-		throw new UnsupportedOperationException("This is a mock object");
-	}
-
 	public Clob createClob() throws SQLException {
 		throw new UnsupportedOperationException("This is a mock object");
 	}
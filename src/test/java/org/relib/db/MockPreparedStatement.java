@@ -36,6 +36,10 @@ public class MockPreparedStatement implements PreparedStatement {
 	private boolean open = true;
 	private MockResultSet resultSet;
 	int batchCount = 0;
+	private int fetchSize = 0;
+	private MockResultSet generatedKeys;
+	int autoGeneratedKeys = java.sql.Statement.NO_GENERATED_KEYS;
+	String[] keyColumnNames;
 
 	/**
 	 * -------------------------- Mocked methods --------------------------
@@ -87,6 +91,29 @@ public class MockPreparedStatement implements PreparedStatement {
 		return this.resultSet;
 	}
 
+	/**
+	 * @param generatedKeys
+	 *            the generated keys to return
+	 */
+	public void setGeneratedKeys(MockResultSet generatedKeys) {
+		this.generatedKeys = generatedKeys;
+	}
+
+	public ResultSet getGeneratedKeys() throws SQLException {
+		if (this.generatedKeys == null) {
+			this.generatedKeys = new MockResultSet();
+		}
+		return this.generatedKeys;
+	}
+
+	public void setFetchSize(int rows) throws SQLException {
+		this.fetchSize = rows;
+	}
+
+	public int getFetchSize() throws SQLException {
+		return this.fetchSize;
+	}
+
 	/**
 	 * -------------------------- Mocked setter methods --------------------------
 	 */
@@ -271,14 +298,6 @@ public class MockPreparedStatement implements PreparedStatement {
 		throw new UnsupportedOperationException("This is a mock object");
 	}
 
-	public void setFetchSize(int rows) throws SQLException {
-		throw new UnsupportedOperationException("This is a mock object");
-	}
-
-	public int getFetchSize() throws SQLException {
-		throw new UnsupportedOperationException("This is a mock object");
-	}
-
 	public int getResultSetConcurrency() throws SQLException {
 		throw new UnsupportedOperationException("This is a mock object");
 	}
@@ -303,10 +322,6 @@ public class MockPreparedStatement implements PreparedStatement {
 		throw new UnsupportedOperationException("This is a mock object");
 	}
 
-	public ResultSet getGeneratedKeys() throws SQLException {
-		throw new UnsupportedOperationException("This is a mock object");
-	}
-
 	public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
 		throw new UnsupportedOperationException("This is a mock object");
 	}
@@ -37,6 +37,7 @@ public class MockResultSet implements ResultSet {
 	private boolean open = true;
 	private int cursorIndex = -1;
 	private boolean wasNull = false;
+	private int fetchSize = 0;
 
 	/**
 	 * -------------------------- Mocked methods --------------------------
@@ -107,26 +108,102 @@ public class MockResultSet implements ResultSet {
 		return value == null ? 0 : value.longValue();
 	}
 
-	/**
-	 * -------------------------- Unimplemented methods --------------------------
-	 */
-
 	public String getString(int columnIndex) throws SQLException {
-		throw new IllegalStateException("This is a mock class");
+		return this.getString(this.labelAt(columnIndex));
 	}
 
 	public int getInt(int columnIndex) throws SQLException {
-		throw new IllegalStateException("This is a mock class");
+		return this.getInt(this.labelAt(columnIndex));
 	}
 
 	public long getLong(int columnIndex) throws SQLException {
-		throw new IllegalStateException("This is a mock class");
+		return this.getLong(this.labelAt(columnIndex));
+	}
+
+	public boolean getBoolean(String columnLabel) throws SQLException {
+		final Boolean value = (Boolean) this.currentRow.get(columnLabel);
+		this.wasNull = value == null;
+		return value == null ? false : value.booleanValue();
+	}
+
+	public double getDouble(String columnLabel) throws SQLException {
+		final Double value = (Double) this.currentRow.get(columnLabel);
+		this.wasNull = value == null;
+		return value == null ? 0 : value.doubleValue();
 	}
 
 	public boolean getBoolean(int columnIndex) throws SQLException {
-		throw new IllegalStateException("This is a mock class");
+		return this.getBoolean(this.labelAt(columnIndex));
+	}
+
+	public double getDouble(int columnIndex) throws SQLException {
+		return this.getDouble(this.labelAt(columnIndex));
+	}
+
+	public Object getObject(String columnLabel) throws SQLException {
+		final Object value = this.currentRow.get(columnLabel);
+		this.wasNull = value == null;
+		return value;
+	}
+
+	public Object getObject(int columnIndex) throws SQLException {
+		return this.getObject(this.labelAt(columnIndex));
+	}
+
+	public int findColumn(String columnLabel) throws SQLException {
+		int index = 1;
+		for (final String label : this.firstRow().keySet()) {
+			if (label.equalsIgnoreCase(columnLabel)) {
+				return index;
+			}
+			index++;
+		}
+		throw new SQLException("No column named " + columnLabel);
+	}
+
+	public ResultSetMetaData getMetaData() throws SQLException {
+		return new MockResultSetMetaData(this.firstRow());
+	}
+
+	public void setFetchSize(int rows) throws SQLException {
+		this.fetchSize = rows;
+	}
+
+	public int getFetchSize() throws SQLException {
+		return this.fetchSize;
+	}
+
+	/**
+	 * Looks up the column label for a column index using the column order of the first row.
+	 *
+	 * @param columnIndex
+	 *            the one based column index
+	 * @return the column label
+	 * @throws SQLException
+	 *             if the column index is invalid
+	 */
+	private String labelAt(int columnIndex) throws SQLException {
+		int index = 1;
+		for (final String label : this.firstRow().keySet()) {
+			if (index == columnIndex) {
+				return label;
+			}
+			index++;
+		}
+		throw new SQLException("Invalid column index " + columnIndex);
 	}
 
+	/**
+	 * @return the first row of values, or an empty row if there are no values
+	 */
+	private LinkedHashMap<String, Object> firstRow() {
+		return this.values.isEmpty() ? new LinkedHashMap<String, Object>() : this.values.get(0);
+	}
+
+	/**
+	 * -------------------------- Unimplemented methods --------------------------
+	 */
+
 	public byte getByte(int columnIndex) throws SQLException {
 		throw new IllegalStateException("This is a mock class");
 	}
@@ -139,10 +216,6 @@ public class MockResultSet implements ResultSet {
 		throw new IllegalStateException("This is a mock class");
 	}
 
-	public double getDouble(int columnIndex) throws SQLException {
-		throw new IllegalStateException("This is a mock class");
-	}
-
 	public BigDecimal getBigDecimal(int columnIndex, int scale) throws SQLException {
 		throw new IllegalStateException("This is a mock class");
 	}
@@ -163,10 +236,6 @@ public class MockResultSet implements ResultSet {
 		throw new IllegalStateException("This is a mock class");
 	}
 
-	public boolean getBoolean(String columnLabel) throws SQLException {
-		throw new IllegalStateException("This is a mock class");
-	}
-
 	public byte getByte(String columnLabel) throws SQLException {
 		throw new IllegalStateException("This is a mock class");
 	}
@@ -179,10 +248,6 @@ public class MockResultSet implements ResultSet {
 		throw new IllegalStateException("This is a mock class");
 	}
 
-	public double getDouble(String columnLabel) throws SQLException {
-		throw new IllegalStateException("This is a mock class");
-	}
-
 	public BigDecimal getBigDecimal(String columnLabel, int scale) throws SQLException {
 		throw new IllegalStateException("This is a mock class");
 	}
@@ -247,22 +312,6 @@ public class MockResultSet implements ResultSet {
 		throw new IllegalStateException("This is a mock class");
 	}
 
-	public ResultSetMetaData getMetaData() throws SQLException {
-		throw new IllegalStateException("This is a mock class");
-	}
-
-	public Object getObject(int columnIndex) throws SQLException {
-		throw new IllegalStateException("This is a mock class");
-	}
-
-	public Object getObject(String columnLabel) throws SQLException {
-		throw new IllegalStateException("This is a mock class");
-	}
-
-	public int findColumn(String columnLabel) throws SQLException {
-		throw new IllegalStateException("This is a mock class");
-	}
-
 	public Reader getCharacterStream(int columnIndex) throws SQLException {
 		throw new IllegalStateException("This is a mock class");
 	}
@@ -327,14 +376,6 @@ public class MockResultSet implements ResultSet {
 		throw new IllegalStateException("This is a mock class");
 	}
 
-	public void setFetchSize(int rows) throws SQLException {
-		throw new IllegalStateException("This is a mock class");
-	}
-
-	public int getFetchSize() throws SQLException {
-		throw new IllegalStateException("This is a mock class");
-	}
-
 	public int getType() throws SQLException {
 		throw new IllegalStateException("This is a mock class");
 	}
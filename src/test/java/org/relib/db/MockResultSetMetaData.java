@@ -0,0 +1,144 @@
+package org.relib.db;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+
+/**
+ * Mocks result set meta data using the column labels and values of a single row.
+ *
+ * @author Troy Histed
+ */
+public class MockResultSetMetaData implements ResultSetMetaData {
+
+	private final List<String> labels = new ArrayList<String>();
+	private final List<Object> values = new ArrayList<Object>();
+
+	/**
+	 * Constructs the meta data from a row of the mock result set.
+	 *
+	 * @param row
+	 *            the row to describe
+	 */
+	public MockResultSetMetaData(LinkedHashMap<String, Object> row) {
+		for (final Entry<String, Object> entry : row.entrySet()) {
+			this.labels.add(entry.getKey());
+			this.values.add(entry.getValue());
+		}
+	}
+
+	/**
+	 * -------------------------- Mocked methods --------------------------
+	 */
+
+	public int getColumnCount() throws SQLException {
+		return this.labels.size();
+	}
+
+	public String getColumnLabel(int column) throws SQLException {
+		return this.labels.get(column - 1);
+	}
+
+	public String getColumnName(int column) throws SQLException {
+		return this.labels.get(column - 1);
+	}
+
+	public int getColumnType(int column) throws SQLException {
+		final Object value = this.values.get(column - 1);
+		if (value instanceof String) {
+			return Types.VARCHAR;
+		} else if (value instanceof Integer) {
+			return Types.INTEGER;
+		} else if (value instanceof Long) {
+			return Types.BIGINT;
+		} else if (value instanceof Double) {
+			return Types.DOUBLE;
+		}
+		return Types.OTHER;
+	}
+
+	public int getColumnDisplaySize(int column) throws SQLException {
+		final Object value = this.values.get(column - 1);
+		return value == null ? 0 : String.valueOf(value).length();
+	}
+
+	/**
+	 * -------------------------- Unimplemented methods --------------------------
+	 */
+
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		throw new IllegalStateException("This is a mock class");
+	}
+
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		throw new IllegalStateException("This is a mock class");
+	}
+
+	public boolean isAutoIncrement(int column) throws SQLException {
+		throw new IllegalStateException("This is a mock class");
+	}
+
+	public boolean isCaseSensitive(int column) throws SQLException {
+		throw new IllegalStateException("This is a mock class");
+	}
+
+	public boolean isSearchable(int column) throws SQLException {
+		throw new IllegalStateException("This is a mock class");
+	}
+
+	public boolean isCurrency(int column) throws SQLException {
+		throw new IllegalStateException("This is a mock class");
+	}
+
+	public int isNullable(int column) throws SQLException {
+		throw new IllegalStateException("This is a mock class");
+	}
+
+	public boolean isSigned(int column) throws SQLException {
+		throw new IllegalStateException("This is a mock class");
+	}
+
+	public String getSchemaName(int column) throws SQLException {
+		throw new IllegalStateException("This is a mock class");
+	}
+
+	public int getPrecision(int column) throws SQLException {
+		throw new IllegalStateException("This is a mock class");
+	}
+
+	public int getScale(int column) throws SQLException {
+		throw new IllegalStateException("This is a mock class");
+	}
+
+	public String getTableName(int column) throws SQLException {
+		throw new IllegalStateException("This is a mock class");
+	}
+
+	public String getCatalogName(int column) throws SQLException {
+		throw new IllegalStateException("This is a mock class");
+	}
+
+	public String getColumnTypeName(int column) throws SQLException {
+		throw new IllegalStateException("This is a mock class");
+	}
+
+	public boolean isReadOnly(int column) throws SQLException {
+		throw new IllegalStateException("This is a mock class");
+	}
+
+	public boolean isWritable(int column) throws SQLException {
+		throw new IllegalStateException("This is a mock class");
+	}
+
+	public boolean isDefinitelyWritable(int column) throws SQLException {
+		throw new IllegalStateException("This is a mock class");
+	}
+
+	public String getColumnClassName(int column) throws SQLException {
+		throw new IllegalStateException("This is a mock class");
+	}
+}
@@ -172,4 +172,149 @@ public class NamedStatementParserStrategyTest {
 		this.prepareStatement("Select foo //**// from bar");
 		this.testPreparedStatement("Select foo //**// from bar", new ArrayList<String>());
 	}
+
+	/**
+	 * Verify that named parameters in line comments are ignored.
+	 */
+	@Test
+	public void testLineComment() {
+		this.prepareStatement("Select foo -- :fakeParam\nfrom bar where id = :id");
+		this.testPreparedStatement("Select foo -- :fakeParam\nfrom bar where id = ?", Arrays.asList("id"));
+	}
+
+	/**
+	 * Verify that a single dash is not treated as a comment.
+	 */
+	@Test
+	public void testMinus() {
+		this.prepareStatement("Select :a-:b from bar");
+		this.testPreparedStatement("Select ?-? from bar", Arrays.asList("a", "b"));
+	}
+
+	/**
+	 * Verify that PostgreSQL casts are not treated as named parameters.
+	 */
+	@Test
+	public void testCast() {
+		this.prepareStatement("Select foo::integer from bar where id = :id::bigint");
+		this.testPreparedStatement("Select foo::integer from bar where id = ?::bigint", Arrays.asList("id"));
+	}
+
+	/**
+	 * Verify that a statement can start with a quote.
+	 */
+	@Test
+	public void testQuoteAtStart() {
+		this.prepareStatement("':fake' || :param1");
+		this.testPreparedStatement("':fake' || ?", Arrays.asList("param1"));
+	}
+
+	/**
+	 * Verify that doubled quotes inside a string do not end the string.
+	 */
+	@Test
+	public void testDoubledQuotes() {
+		this.prepareStatement("Select 'it'':fake' from bar where id = :id");
+		this.testPreparedStatement("Select 'it'':fake' from bar where id = ?", Arrays.asList("id"));
+	}
+
+	/**
+	 * Verify that the parameter name stops at characters that are not part of an identifier.
+	 */
+	@Test
+	public void testNamedParameterTerminators() {
+		this.prepareStatement("Select foo from bar where a=:a;");
+		this.testPreparedStatement("Select foo from bar where a=?;", Arrays.asList("a"));
+	}
+
+	/**
+	 * Verify that nested bean properties are supported.
+	 */
+	@Test
+	public void testNestedProperty() {
+		this.prepareStatement("Select foo from bar where a = :bean.param1.");
+		this.testPreparedStatement("Select foo from bar where a = ?.", Arrays.asList("bean.param1"));
+	}
+
+	/**
+	 * Verify that the offsets of the named parameters are recorded.
+	 */
+	@Test
+	public void testParameterOffsets() {
+		final ParsedNamedStatement parsedStatement = this.parser.prepareNamedStatement("Select :a, :bb, :c");
+		Assert.assertArrayEquals(new int[] { 7, 11, 16 }, parsedStatement.getParameterOffsets());
+	}
+
+	/**
+	 * Verify that a statement without named parameters is not copied.
+	 */
+	@Test
+	public void testNoParametersNotCopied() {
+		final String sql = "Select foo from bar";
+		Assert.assertSame(sql, this.parser.prepareNamedStatement(sql).getStatement());
+	}
+
+	/**
+	 * Verify that dollar quoted strings are skipped.
+	 */
+	@Test
+	public void testDollarQuotes() {
+		this.prepareStatement("Select $tag$:fake$tag$, V$SESSION.:id from bar");
+		this.testPreparedStatement("Select $tag$:fake$tag$, V$SESSION.? from bar", Arrays.asList("id"));
+	}
+
+	/**
+	 * Verify that backslashes only escape quotes when the dialect allows it.
+	 */
+	@Test
+	public void testDialectBackslashes() {
+		final String sql = "Select 'C:\\' || :a || '\\' from bar";
+		Assert.assertEquals(Arrays.asList("a"),
+				new NamedStatementParserStrategy(Dialect.POSTGRESQL).prepareNamedStatement(sql).getParameters());
+		Assert.assertEquals(Arrays.asList(),
+				new NamedStatementParserStrategy(Dialect.MYSQL).prepareNamedStatement(sql).getParameters());
+	}
+
+	/**
+	 * Verify that square brackets quote identifiers for SQL Server.
+	 */
+	@Test
+	public void testBracketQuotes() {
+		final ParsedNamedStatement parsedStatement = new NamedStatementParserStrategy(Dialect.SQL_SERVER)
+				.prepareNamedStatement("Select [a:b] from bar where id = :id");
+		Assert.assertEquals("Select [a:b] from bar where id = ?", parsedStatement.getStatement());
+		Assert.assertEquals(Arrays.asList("id"), parsedStatement.getParameters());
+	}
+
+	/**
+	 * Verify that selects and updates are parsed with the dialect they are given, and with the generic dialect
+	 * otherwise.
+	 */
+	@Test
+	public void testStatementDialect() {
+		final String sql = "Select [a:b] from bar where id = :id";
+		Assert.assertEquals(Arrays.asList("b", "id"),
+				new MockSelect<String>(sql, RowMappers.STRING_MAPPER, new MockConnection()).getParameters());
+		Assert.assertEquals(Arrays.asList("b", "id"), new Update(sql, new MockConnection()).getParameters());
+		Assert.assertEquals(Arrays.asList("id"),
+				new Select<String>(sql, RowMappers.STRING_MAPPER, new MockConnection(), Dialect.SQL_SERVER)
+						.getParameters());
+		Assert.assertEquals(Arrays.asList("id"),
+				new Update(sql, new MockConnection(), Dialect.SQL_SERVER).getParameters());
+		Assert.assertEquals(Arrays.asList("b", "id"),
+				new Select<String>(sql, RowMappers.STRING_MAPPER, new MockConnection(), null).getParameters());
+	}
+
+	/**
+	 * Verify that the statements of a pipeline are parsed with the dialect of its connection.
+	 */
+	@Test
+	public void testPipelineDialect() {
+		final String sql = "Select [a:b] from bar where id = :id";
+		final Pipeline pipeline = new Pipeline(new MockConnection(), Dialect.SQL_SERVER);
+		Assert.assertEquals(Arrays.asList("id"), pipeline.forObject(sql, RowMappers.STRING_MAPPER).getParameters());
+		Assert.assertEquals(Arrays.asList("id"), pipeline.update(sql).getParameters());
+		Assert.assertEquals(Arrays.asList("b", "id"),
+				new Pipeline(new MockConnection()).forObject(sql, RowMappers.STRING_MAPPER).getParameters());
+	}
 }
@@ -0,0 +1,128 @@
+package org.relib.db;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the Pipeline class.
+ *
+ * @author Troy Histed
+ */
+public class PipelineTest {
+
+	MockConnection connection;
+	List<MockPreparedStatement> preparedStatements;
+	Pipeline pipeline;
+
+	/**
+	 * Resets the instance members to new instances.
+	 */
+	@Before
+	public void constructPipeline() {
+		this.preparedStatements = new ArrayList<MockPreparedStatement>();
+		this.connection = new MockConnection() {
+			@Override
+			public PreparedStatement prepareStatement(String sql) throws SQLException {
+				final MockPreparedStatement preparedStatement = (MockPreparedStatement) super.prepareStatement(sql);
+				final MockResultSet resultSet = new MockResultSet();
+				final LinkedHashMap<String, Object> row = new LinkedHashMap<String, Object>();
+				row.put("col1", "row" + PipelineTest.this.preparedStatements.size());
+				resultSet.getValues().add(row);
+				preparedStatement.setResultSet(resultSet);
+				PipelineTest.this.preparedStatements.add(preparedStatement);
+				return preparedStatement;
+			}
+		};
+		this.pipeline = new Pipeline(this.connection);
+	}
+
+	/**
+	 * Verify the statements run in order on one connection that is closed at the end.
+	 *
+	 * @throws SQLException
+	 *             exception
+	 */
+	@Test
+	public void testExecute() throws SQLException {
+		final Pipeline.Result<String> first = this.pipeline.add(this.pipeline.forString("Select col1 from a"));
+		final Pipeline.Result<List<String>> second = this.pipeline
+				.addForAll(this.pipeline.forString("Select col1 from b"));
+		final Pipeline.Result<Integer> third = this.pipeline
+				.add(this.pipeline.update("Update c set col1 = :col1").set("col1", "foo"));
+
+		Assert.assertFalse(first.isAvailable());
+		this.pipeline.execute();
+
+		Assert.assertEquals("row0", first.get());
+		Assert.assertEquals(1, second.get().size());
+		Assert.assertEquals("row1", second.get().get(0));
+		Assert.assertEquals(Integer.valueOf(1), third.get());
+		Assert.assertEquals(3, this.preparedStatements.size());
+		for (final MockPreparedStatement preparedStatement : this.preparedStatements) {
+			Assert.assertTrue(preparedStatement.isClosed());
+		}
+		Assert.assertTrue(this.connection.isClosed());
+	}
+
+	/**
+	 * Verify a statement executing does not close the shared connection.
+	 *
+	 * @throws SQLException
+	 *             exception
+	 */
+	@Test
+	public void testStatementLeavesConnectionOpen() throws SQLException {
+		this.pipeline.forString("Select col1 from a").execute();
+		Assert.assertFalse(this.connection.isClosed());
+		this.pipeline.execute();
+		Assert.assertTrue(this.connection.isClosed());
+	}
+
+	/**
+	 * Verify a failed statement stops the pipeline and closes every statement and the connection.
+	 *
+	 * @throws SQLException
+	 *             exception
+	 */
+	@Test
+	public void testFailure() throws SQLException {
+		final Pipeline.Result<String> first = this.pipeline.add(this.pipeline.forObject("Select col1 from a",
+				new RowMapper<String>() {
+					@Override
+					protected String mapRow(java.sql.ResultSet resultSet) throws SQLException {
+						throw new SQLException("Mocking failed mapping");
+					}
+				}));
+		final Pipeline.Result<String> second = this.pipeline.add(this.pipeline.forString("Select col1 from b"));
+
+		try {
+			this.pipeline.execute();
+			Assert.fail("Expected DaoException");
+		} catch (final DaoException e) {
+			// expected
+		}
+
+		Assert.assertFalse(first.isAvailable());
+		Assert.assertFalse(second.isAvailable());
+		for (final MockPreparedStatement preparedStatement : this.preparedStatements) {
+			Assert.assertTrue(preparedStatement.isClosed());
+		}
+		Assert.assertTrue(this.connection.isClosed());
+	}
+
+	/**
+	 * Verify a pipeline can only be executed once.
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testExecuteTwice() {
+		this.pipeline.execute();
+		this.pipeline.execute();
+	}
+}
@@ -0,0 +1,175 @@
+package org.relib.db;
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the RowReaderMapper and RowReader classes.
+ *
+ * @author Troy Histed
+ */
+public class RowReaderMapperTest {
+
+	MockConnection connection;
+	MockResultSet resultSet;
+	ValuesMapper mapper;
+	MockSelect<Object[]> select;
+
+	/**
+	 * Mapper reading declared columns into an array.
+	 */
+	static class ValuesMapper extends RowReaderMapper<Object[]> {
+
+		private final RowReader.Column name = this.column("name");
+		private final RowReader.Column count = this.column("COUNT");
+		private final RowReader.Column total = this.column("total");
+		private final RowReader.Column ratio = this.column("ratio");
+		private final RowReader.Column active = this.column("active");
+
+		@Override
+		protected Object[] mapRow(RowReader row) throws SQLException {
+			return new Object[] {
+					row.getString(this.name),
+					Integer.valueOf(row.getInt(this.count, -1)),
+					Long.valueOf(row.getLong(this.total, -1)),
+					Double.valueOf(row.getDouble(this.ratio, -1)),
+					Boolean.valueOf(row.getBoolean(this.active, true)),
+					Integer.valueOf(row.getInt("count")),
+					Boolean.valueOf(row.wasNull()), };
+		}
+	}
+
+	/**
+	 * Resets the instance members to new instances.
+	 */
+	@Before
+	public void constructStatement() {
+		this.connection = new MockConnection();
+		this.mapper = new ValuesMapper();
+		this.select = new MockSelect<Object[]>("Select * from table", this.mapper, this.connection);
+		this.resultSet = new MockResultSet();
+		this.connection.getPreparedStatement().setResultSet(this.resultSet);
+		this.addRow("foo", Integer.valueOf(1), Long.valueOf(10), Double.valueOf(0.5), Boolean.FALSE);
+		this.addRow("bar", null, null, null, null);
+	}
+
+	/**
+	 * Adds a row to the mock result set.
+	 *
+	 * @param name
+	 *            the name column value
+	 * @param count
+	 *            the count column value
+	 * @param total
+	 *            the total column value
+	 * @param ratio
+	 *            the ratio column value
+	 * @param active
+	 *            the active column value
+	 */
+	private void addRow(String name, Integer count, Long total, Double ratio, Boolean active) {
+		final LinkedHashMap<String, Object> row = new LinkedHashMap<String, Object>();
+		row.put("name", name);
+		row.put("count", count);
+		row.put("total", total);
+		row.put("ratio", ratio);
+		row.put("active", active);
+		this.resultSet.getValues().add(row);
+	}
+
+	/**
+	 * Verify declared and labeled columns are read, with null values replaced by the given defaults.
+	 *
+	 * @throws SQLException
+	 *             exception
+	 */
+	@Test
+	public void testReadColumns() throws SQLException {
+		final List<Object[]> rows = this.select.executeForAll();
+
+		Assert.assertEquals(2, rows.size());
+		Assert.assertArrayEquals(new Object[] { "foo", Integer.valueOf(1), Long.valueOf(10), Double.valueOf(0.5),
+				Boolean.FALSE, Integer.valueOf(1), Boolean.FALSE }, rows.get(0));
+		Assert.assertArrayEquals(new Object[] { "bar", Integer.valueOf(-1), Long.valueOf(-1), Double.valueOf(-1),
+				Boolean.TRUE, Integer.valueOf(0), Boolean.TRUE }, rows.get(1));
+		Assert.assertTrue(this.connection.isClosed());
+	}
+
+	/**
+	 * Verify the columns are resolved again when the mapper reads a different result set.
+	 */
+	@Test
+	public void testNewResultSet() {
+		this.select.executeForAll();
+
+		final MockConnection otherConnection = new MockConnection();
+		final MockSelect<Object[]> otherSelect = new MockSelect<Object[]>("Select * from table", this.mapper,
+				otherConnection);
+		final MockResultSet otherResultSet = new MockResultSet();
+		otherConnection.getPreparedStatement().setResultSet(otherResultSet);
+		final LinkedHashMap<String, Object> row = new LinkedHashMap<String, Object>();
+		row.put("active", Boolean.TRUE);
+		row.put("ratio", Double.valueOf(2));
+		row.put("total", Long.valueOf(3));
+		row.put("count", Integer.valueOf(4));
+		row.put("name", "baz");
+		otherResultSet.getValues().add(row);
+
+		final Object[] values = otherSelect.execute();
+		Assert.assertArrayEquals(new Object[] { "baz", Integer.valueOf(4), Long.valueOf(3), Double.valueOf(2),
+				Boolean.TRUE, Integer.valueOf(4), Boolean.FALSE }, values);
+	}
+
+	/**
+	 * Verify a column declared by another mapper is read by its label rather than the column in the same slot.
+	 */
+	@Test
+	public void testOtherMapperColumn() {
+		final RowReaderMapper<Object> other = new RowReaderMapper<Object>() {
+			@Override
+			protected Object mapRow(RowReader row) throws SQLException {
+				return null;
+			}
+		};
+		// the same slot as name in the reading mapper
+		final RowReader.Column otherTotal = other.column("total");
+		final MockSelect<Object> otherSelect = new MockSelect<Object>("Select * from table",
+				new RowReaderMapper<Object>() {
+					private final RowReader.Column name = this.column("name");
+
+					@Override
+					protected Object mapRow(RowReader row) throws SQLException {
+						Assert.assertEquals("foo", row.getString(this.name));
+						return row.getObject(otherTotal);
+					}
+				}, this.connection);
+		this.connection.getPreparedStatement().setResultSet(this.resultSet);
+
+		Assert.assertEquals(Long.valueOf(10), otherSelect.execute());
+	}
+
+	/**
+	 * Verify reading a missing column fails.
+	 */
+	@Test(expected = DaoException.class)
+	public void testMissingColumn() {
+		final MockConnection otherConnection = new MockConnection();
+		final MockSelect<String> otherSelect = new MockSelect<String>("Select * from table", new RowReaderMapper<String>() {
+			private final RowReader.Column missing = this.column("missing");
+
+			@Override
+			protected String mapRow(RowReader row) throws SQLException {
+				Assert.assertFalse(row.hasColumn(this.missing));
+				Assert.assertTrue(row.hasColumn("NAME"));
+				return row.getString(this.missing);
+			}
+		}, otherConnection);
+		otherConnection.getPreparedStatement().setResultSet(this.resultSet);
+		otherSelect.execute();
+	}
+}
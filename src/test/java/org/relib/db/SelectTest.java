@@ -180,4 +180,39 @@ public class SelectTest {
 				"Select 'test' from table where something = :param1", this.rowMapper, null);
 	}
 
+	/**
+	 * Verify an explicit fetch size is set on the prepared statement.
+	 *
+	 * @throws SQLException
+	 *             exception
+	 */
+	@Test
+	public void testFetchSize() throws SQLException {
+		this.select.fetchSize(250).executeForAll();
+		Assert.assertEquals(250, this.connection.getPreparedStatement().getFetchSize());
+		Assert.assertEquals(0, this.resultSet.getFetchSize());
+	}
+
+	/**
+	 * Verify an adaptive fetch size follows the rows returned by earlier executions.
+	 *
+	 * @throws SQLException
+	 *             exception
+	 */
+	@Test
+	public void testAdaptiveFetchSize() throws SQLException {
+		final FetchSizePolicy policy = FetchSizePolicy.adaptive();
+		this.select.fetchSize(policy).executeForAll();
+		Assert.assertEquals(100, this.connection.getPreparedStatement().getFetchSize());
+		Assert.assertEquals(FetchSizePolicy.MAX_FETCH_SIZE, this.resultSet.getFetchSize());
+
+		final MockConnection nextConnection = new MockConnection();
+		final MockSelect<String> next = new MockSelect<String>(
+				"Select 'test' from table where something = :param1", this.rowMapper, nextConnection);
+		final MockResultSet nextResultSet = new MockResultSet();
+		nextResultSet.getValues().add(this.resultSet.getValues().get(0));
+		nextConnection.getPreparedStatement().setResultSet(nextResultSet);
+		next.fetchSize(policy).executeForAll();
+		Assert.assertEquals(2, nextConnection.getPreparedStatement().getFetchSize());
+	}
 }
@@ -0,0 +1,176 @@
+package org.relib.db;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermission;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the SpilledRows class.
+ *
+ * @author Troy Histed
+ */
+public class SpilledRowsTest {
+
+	MockResultSet resultSet;
+
+	/**
+	 * Resets the instance members to new instances.
+	 */
+	@Before
+	public void constructResultSet() {
+		this.resultSet = new MockResultSet();
+		for (int i = 0; i < 50; i++) {
+			final LinkedHashMap<String, Object> row = new LinkedHashMap<String, Object>();
+			row.put("param1", "value" + i);
+			row.put("param2", i % 3 == 0 ? null : Integer.valueOf(i));
+			row.put("param3", Long.valueOf(i * 1000L));
+			row.put("param4", new BigDecimal("12.5" + i));
+			row.put("param5", new Timestamp(i));
+			this.resultSet.getValues().add(row);
+		}
+	}
+
+	/**
+	 * Verify the rows can be read back, more than once, when rows cross segment boundaries.
+	 *
+	 * @throws SQLException
+	 *             exception
+	 */
+	@Test
+	public void testSpill() throws SQLException {
+		final SpilledRows rows = SpilledRows.spill(this.resultSet, 100);
+		try {
+			Assert.assertEquals(50, rows.size());
+			for (int pass = 0; pass < 2; pass++) {
+				int i = 0;
+				for (final LazyRow row : rows) {
+					Assert.assertEquals("value" + i, row.get("param1"));
+					Assert.assertEquals(i % 3 == 0 ? null : Integer.valueOf(i), row.get("param2"));
+					Assert.assertEquals(Long.valueOf(i * 1000L), row.get("param3"));
+					Assert.assertEquals(new BigDecimal("12.5" + i), row.get("param4"));
+					Assert.assertEquals(new Timestamp(i), row.get("param5"));
+					i++;
+				}
+				Assert.assertEquals(50, i);
+			}
+		} finally {
+			rows.close();
+		}
+	}
+
+	/**
+	 * Verify the temporary file is only readable by its owner and is deleted when the rows are closed.
+	 *
+	 * @throws Exception
+	 *             exception
+	 */
+	@Test
+	public void testTemporaryFile() throws Exception {
+		final SpilledRows rows = SpilledRows.spill(this.resultSet);
+		final File file = rows.getFile();
+		try {
+			Assert.assertTrue(file.exists());
+			if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+				Assert.assertEquals(EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE),
+						Files.getPosixFilePermissions(file.toPath()));
+			}
+		} finally {
+			rows.close();
+		}
+		Assert.assertFalse(file.exists());
+	}
+
+	/**
+	 * Verify iterating closed rows fails.
+	 *
+	 * @throws SQLException
+	 *             exception
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testClosed() throws SQLException {
+		final SpilledRows rows = SpilledRows.spill(this.resultSet);
+		rows.close();
+		rows.iterator();
+	}
+
+	/**
+	 * Verify a row larger than a segment is rejected.
+	 *
+	 * @throws SQLException
+	 *             exception
+	 */
+	@Test(expected = DaoException.class)
+	public void testRowLargerThanSegment() throws SQLException {
+		SpilledRows.spill(this.resultSet, 16);
+	}
+
+	/**
+	 * Verify a select can spill its rows and closes all resources.
+	 *
+	 * @throws SQLException
+	 *             exception
+	 */
+	@Test
+	public void testExecuteForSpilledRows() throws SQLException {
+		final MockConnection connection = new MockConnection();
+		final MockSelect<String> select = new MockSelect<String>("Select param1 from table",
+				RowMappers.STRING_MAPPER, connection);
+		connection.getPreparedStatement().setResultSet(this.resultSet);
+
+		final SpilledRows rows = select.executeForSpilledRows();
+		try {
+			final Iterator<LazyRow> iterator = rows.iterator();
+			Assert.assertEquals("value0", iterator.next().getString("param1"));
+			Assert.assertTrue(connection.isClosed());
+			Assert.assertTrue(this.resultSet.isClosed());
+		} finally {
+			rows.close();
+		}
+	}
+
+	/**
+	 * Verify a failure closing the result set does not replace the failure reading it.
+	 *
+	 * @throws SQLException
+	 *             exception
+	 */
+	@Test
+	public void testExecuteForSpilledRowsCleanupFailure() throws SQLException {
+		final MockConnection connection = new MockConnection();
+		final MockSelect<String> select = new MockSelect<String>("Select param1 from table",
+				RowMappers.STRING_MAPPER, connection);
+		connection.getPreparedStatement().setResultSet(new MockResultSet() {
+			@Override
+			public ResultSetMetaData getMetaData() throws SQLException {
+				throw new SQLException("read failed");
+			}
+
+			@Override
+			public void close() throws SQLException {
+				throw new SQLException("close failed");
+			}
+		});
+
+		try {
+			select.executeForSpilledRows();
+			Assert.fail("Expected failure");
+		} catch (final DaoException e) {
+			Assert.assertEquals("read failed", e.getCause().getMessage());
+			Assert.assertEquals(1, e.getSuppressed().length);
+			Assert.assertEquals("close failed", e.getSuppressed()[0].getCause().getMessage());
+			Assert.assertTrue(connection.isClosed());
+		}
+	}
+}
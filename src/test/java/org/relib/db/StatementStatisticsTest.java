@@ -0,0 +1,222 @@
+package org.relib.db;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the StatementStatistics class.
+ *
+ * @author Troy Histed
+ */
+public class StatementStatisticsTest {
+
+	private static final String FINGERPRINT = "Select col1 from a where col2 = ?";
+
+	MockConnection connection;
+	List<String> prepared;
+	MockPreparedStatement explainStatement;
+	boolean failExplain;
+	MockResultSet selectResultSet;
+	boolean explainedAfterResultsClosed;
+
+	/**
+	 * Enables statistics and builds a connection that answers explain statements.
+	 */
+	@Before
+	public void enable() {
+		StatementStatistics.reset();
+		StatementStatistics.setEnabled(true);
+		StatementStatistics.setSlowThresholdMillis(0);
+		StatementStatistics.setExplainDialect(Dialect.POSTGRESQL);
+		this.prepared = new ArrayList<String>();
+		this.connection = new MockConnection() {
+			@Override
+			public PreparedStatement prepareStatement(String sql) throws SQLException {
+				if (sql.startsWith("EXPLAIN")) {
+					StatementStatisticsTest.this.explainedAfterResultsClosed = !this.isClosed()
+							&& StatementStatisticsTest.this.selectResultSet.isClosed();
+				}
+				final MockPreparedStatement preparedStatement = (MockPreparedStatement) super.prepareStatement(sql);
+				StatementStatisticsTest.this.prepared.add(sql);
+				final MockResultSet resultSet = new MockResultSet();
+				final LinkedHashMap<String, Object> row = new LinkedHashMap<String, Object>();
+				if (sql.startsWith("EXPLAIN")) {
+					if (StatementStatisticsTest.this.failExplain) {
+						throw new SQLException("syntax error");
+					}
+					StatementStatisticsTest.this.explainStatement = preparedStatement;
+					row.put("QUERY PLAN", "Seq Scan on a \"x\"");
+				} else {
+					row.put("col1", "foo");
+					StatementStatisticsTest.this.selectResultSet = resultSet;
+				}
+				resultSet.getValues().add(row);
+				preparedStatement.setResultSet(resultSet);
+				return preparedStatement;
+			}
+		};
+	}
+
+	/**
+	 * Restores the defaults.
+	 */
+	@After
+	public void disable() {
+		StatementStatistics.setEnabled(false);
+		StatementStatistics.setExplainDialect(null);
+		StatementStatistics.setSlowThresholdMillis(StatementStatistics.DEFAULT_SLOW_THRESHOLD_MILLIS);
+		StatementStatistics.setExplainIntervalMillis(StatementStatistics.DEFAULT_EXPLAIN_INTERVAL_MILLIS);
+		StatementStatistics.reset();
+	}
+
+	/**
+	 * @return a select on the test connection
+	 */
+	private Select<String> select() {
+		return new MockSelect<String>("Select col1 from a where col2 = :col2", RowMappers.STRING_MAPPER,
+				this.connection).set("col2", 5);
+	}
+
+	/**
+	 * Verify a slow select is recorded and explained with its parameters.
+	 *
+	 * @throws SQLException
+	 *             exception
+	 */
+	@Test
+	public void testExplainSlowSelect() throws SQLException {
+		Assert.assertEquals("foo", this.select().execute());
+
+		final StatementStatistics.Entry entry = StatementStatistics.get(StatementStatisticsTest.FINGERPRINT);
+		Assert.assertEquals(1, entry.getLatency().getCount());
+		Assert.assertEquals(1, entry.getSlowCount());
+		Assert.assertEquals("Seq Scan on a \"x\"", entry.getPlan());
+		Assert.assertTrue(entry.getPlanCapturedMillis() > 0);
+		Assert.assertEquals("EXPLAIN " + StatementStatisticsTest.FINGERPRINT, this.prepared.get(1));
+		Assert.assertEquals(Integer.valueOf(5), this.explainStatement.getValues().get(Integer.valueOf(1)));
+		Assert.assertTrue(this.explainStatement.isClosed());
+	}
+
+	/**
+	 * Verify the explain runs once the result set of the select is closed, while the connection is still open.
+	 *
+	 * @throws SQLException
+	 *             exception
+	 */
+	@Test
+	public void testExplainAfterResultSetClosed() throws SQLException {
+		this.select().executeForAll();
+
+		Assert.assertEquals(2, this.prepared.size());
+		Assert.assertTrue(this.explainedAfterResultsClosed);
+		Assert.assertTrue(this.explainStatement.isClosed());
+	}
+
+	/**
+	 * Verify an explain inside a transaction runs in a savepoint that is released.
+	 *
+	 * @throws SQLException
+	 *             exception
+	 */
+	@Test
+	public void testExplainInTransaction() throws SQLException {
+		this.connection.setAutoCommit(false);
+		this.select().execute();
+
+		Assert.assertEquals("Seq Scan on a \"x\"", StatementStatistics.get(StatementStatisticsTest.FINGERPRINT)
+				.getPlan());
+		Assert.assertEquals(1, this.connection.savepointCount);
+		Assert.assertEquals(1, this.connection.savepointReleaseCount);
+		Assert.assertEquals(0, this.connection.savepointRollbackCount);
+	}
+
+	/**
+	 * Verify a failed explain inside a transaction is rolled back to its savepoint, and one outside a transaction
+	 * sets no savepoint.
+	 *
+	 * @throws SQLException
+	 *             exception
+	 */
+	@Test
+	public void testFailedExplainInTransaction() throws SQLException {
+		this.failExplain = true;
+		this.select().execute();
+		Assert.assertEquals(0, this.connection.savepointCount);
+
+		StatementStatistics.reset();
+		this.connection.setAutoCommit(false);
+		this.select().execute();
+
+		Assert.assertEquals("Unable to explain statement: syntax error",
+				StatementStatistics.get(StatementStatisticsTest.FINGERPRINT).getPlan());
+		Assert.assertEquals(1, this.connection.savepointCount);
+		Assert.assertEquals(1, this.connection.savepointRollbackCount);
+		Assert.assertEquals(0, this.connection.rollbackCount);
+	}
+
+	/**
+	 * Verify a statement is explained at most once per interval.
+	 */
+	@Test
+	public void testExplainRateLimited() {
+		this.select().execute();
+		this.select().executeForAll();
+
+		Assert.assertEquals(3, this.prepared.size());
+		final StatementStatistics.Entry entry = StatementStatistics.get(StatementStatisticsTest.FINGERPRINT);
+		Assert.assertEquals(2, entry.getLatency().getCount());
+		Assert.assertEquals(2, entry.getSlowCount());
+
+		StatementStatistics.setExplainIntervalMillis(-1);
+		this.select().executeForAll();
+		Assert.assertEquals(5, this.prepared.size());
+	}
+
+	/**
+	 * Verify fast selects are recorded without being explained.
+	 */
+	@Test
+	public void testFastSelect() {
+		StatementStatistics.setSlowThresholdMillis(60000);
+		this.select().execute();
+
+		final StatementStatistics.Entry entry = StatementStatistics.get(StatementStatisticsTest.FINGERPRINT);
+		Assert.assertEquals(1, entry.getLatency().getCount());
+		Assert.assertEquals(0, entry.getSlowCount());
+		Assert.assertNull(entry.getPlan());
+		Assert.assertEquals(1, this.prepared.size());
+	}
+
+	/**
+	 * Verify nothing is recorded while statistics are disabled.
+	 */
+	@Test
+	public void testDisabled() {
+		StatementStatistics.setEnabled(false);
+		this.select().execute();
+
+		Assert.assertNull(StatementStatistics.get(StatementStatisticsTest.FINGERPRINT));
+		Assert.assertEquals("[]", StatementStatistics.toJson());
+	}
+
+	/**
+	 * Verify the statistics are dumped as JSON.
+	 */
+	@Test
+	public void testJson() {
+		this.select().execute();
+
+		final String json = StatementStatistics.toJson();
+		Assert.assertTrue(json,
+				json.startsWith("[{\"fingerprint\":\"Select col1 from a where col2 = ?\",\"count\":1,"));
+		Assert.assertTrue(json, json.endsWith(",\"plan\":\"Seq Scan on a \\\"x\\\"\"}]"));
+	}
+}
@@ -0,0 +1,99 @@
+package org.relib.db;
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the StringDictionary class.
+ *
+ * @author Troy Histed
+ */
+public class StringDictionaryTest {
+
+	/**
+	 * Verify equal values are replaced with a single shared instance.
+	 */
+	@Test
+	public void testDeduplicate() {
+		final StringDictionary dictionary = new StringDictionary();
+		final String first = new String("ACTIVE");
+		final String second = new String("ACTIVE");
+
+		Assert.assertSame(first, dictionary.deduplicate(first));
+		Assert.assertSame(first, dictionary.deduplicate(second));
+		Assert.assertNull(dictionary.deduplicate(null));
+		Assert.assertEquals(1, dictionary.size());
+	}
+
+	/**
+	 * Verify the dictionary does not grow past its maximum size.
+	 */
+	@Test
+	public void testMaxSize() {
+		final StringDictionary dictionary = new StringDictionary(2);
+		dictionary.deduplicate("A");
+		dictionary.deduplicate("B");
+		final String third = new String("C");
+
+		Assert.assertSame(third, dictionary.deduplicate(third));
+		Assert.assertEquals(2, dictionary.size());
+		Assert.assertTrue(dictionary.isEnabled());
+	}
+
+	/**
+	 * Verify an adaptive dictionary disables itself when the values do not repeat.
+	 */
+	@Test
+	public void testAdaptiveDisables() {
+		final StringDictionary dictionary = StringDictionary.adaptive(4);
+		for (int i = 0; i < 10; i++) {
+			dictionary.deduplicate("value" + i);
+		}
+
+		Assert.assertFalse(dictionary.isEnabled());
+		Assert.assertEquals(0, dictionary.size());
+	}
+
+	/**
+	 * Verify an adaptive dictionary stays enabled when the values repeat.
+	 */
+	@Test
+	public void testAdaptiveStaysEnabled() {
+		final StringDictionary dictionary = StringDictionary.adaptive(4);
+		for (int i = 0; i < 100; i++) {
+			dictionary.deduplicate("value" + i % 5);
+		}
+
+		Assert.assertTrue(dictionary.isEnabled());
+		Assert.assertEquals(4, dictionary.size());
+	}
+
+	/**
+	 * Verify the bean row mapper shares repeated values of a hinted column.
+	 *
+	 * @throws SQLException
+	 *             exception
+	 */
+	@Test
+	public void testBeanRowMapper() throws SQLException {
+		final MockConnection connection = new MockConnection();
+		final MockSelect<TestBean> select = new MockSelect<TestBean>("Select param1 from table",
+				BeanRowMapper.forClass(TestBean.class).deduplicateStrings("param1"), connection);
+		final MockResultSet resultSet = new MockResultSet();
+		for (int i = 0; i < 2; i++) {
+			final LinkedHashMap<String, Object> row = new LinkedHashMap<String, Object>();
+			row.put("param1", new String("ACTIVE"));
+			resultSet.getValues().add(row);
+		}
+		connection.getPreparedStatement().setResultSet(resultSet);
+
+		final List<TestBean> beans = select.executeForAll();
+
+		Assert.assertEquals("ACTIVE", beans.get(0).getParam1());
+		Assert.assertSame(beans.get(0).getParam1(), beans.get(1).getParam1());
+	}
+}
@@ -0,0 +1,149 @@
+package org.relib.db;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the generated key handling of the Update class.
+ *
+ * @author Troy Histed
+ */
+public class UpdateTest {
+
+	MockConnection connection;
+
+	/**
+	 * Resets the instance members to new instances.
+	 */
+	@Before
+	public void constructConnection() {
+		this.connection = new MockConnection();
+	}
+
+	/**
+	 * Builds a mock result set of generated keys.
+	 *
+	 * @param label
+	 *            the label of the first key column
+	 * @param values
+	 *            the key value of each row
+	 * @return the result set
+	 */
+	private MockResultSet keys(String label, Object... values) {
+		final MockResultSet resultSet = new MockResultSet();
+		for (final Object value : values) {
+			final LinkedHashMap<String, Object> row = new LinkedHashMap<String, Object>();
+			row.put(label, value);
+			resultSet.getValues().add(row);
+		}
+		this.connection.getPreparedStatement().setGeneratedKeys(resultSet);
+		return resultSet;
+	}
+
+	/**
+	 * Verify plain updates do not ask the driver for generated keys and cannot return them.
+	 *
+	 * @throws SQLException
+	 *             exception
+	 */
+	@Test
+	public void testKeysNotRequested() throws SQLException {
+		final Update update = new Update("Update a set b = :b", this.connection);
+		Assert.assertEquals(Statement.NO_GENERATED_KEYS, this.connection.getPreparedStatement().autoGeneratedKeys);
+		Assert.assertNull(this.connection.getPreparedStatement().keyColumnNames);
+
+		try {
+			update.executeAndReturnKey();
+			Assert.fail("Expected keys to be unavailable");
+		} catch (final DaoException e) {
+			Assert.assertTrue(e.getMessage().startsWith("Generated keys were not requested"));
+		}
+		Assert.assertTrue(this.connection.isClosed());
+	}
+
+	/**
+	 * Verify the driver chooses the key columns when none are named.
+	 *
+	 * @throws SQLException
+	 *             exception
+	 */
+	@Test
+	public void testDriverKeys() throws SQLException {
+		final Update update = new Update("Insert into a (b) values (:b)", this.connection, new String[0]);
+		Assert.assertEquals(Statement.RETURN_GENERATED_KEYS,
+				this.connection.getPreparedStatement().autoGeneratedKeys);
+		final MockResultSet keys = this.keys("GENERATED_KEY", Long.valueOf(42));
+
+		Assert.assertEquals(42, update.set("b", "foo").executeAndReturnKey());
+		Assert.assertTrue(keys.isClosed());
+		Assert.assertTrue(this.connection.isClosed());
+	}
+
+	/**
+	 * Verify named key columns are requested and returned as a row.
+	 */
+	@Test
+	public void testNamedKeys() {
+		final Update update = new Update("Insert into a (b) values (:b)", this.connection,
+				new String[] { "id", "code" });
+		Assert.assertArrayEquals(new String[] { "id", "code" }, this.connection.getPreparedStatement().keyColumnNames);
+		final MockResultSet keys = this.keys("id", Long.valueOf(7));
+		keys.getValues().get(0).put("code", "A7");
+
+		final LazyRow row = update.executeAndReturnKeys();
+		Assert.assertEquals(Long.valueOf(7), row.getLong("ID"));
+		Assert.assertEquals("A7", row.getString("code"));
+	}
+
+	/**
+	 * Verify every generated key of a batch is returned.
+	 */
+	@Test
+	public void testBatchKeys() {
+		final Update update = new Update("Insert into a (b) values (:b)", this.connection, new String[] { "id" });
+		this.keys("id", Long.valueOf(1), Long.valueOf(2), Long.valueOf(3));
+		update.set("b", "x").addBatch();
+		update.set("b", "y").addBatch();
+
+		Assert.assertArrayEquals(new long[] { 1, 2, 3 }, update.executeBatchAndReturnKeys());
+	}
+
+	/**
+	 * Verify the generated keys of a batch are copied back onto the beans.
+	 */
+	@Test
+	public void testBatchKeysOntoBeans() {
+		final Update update = new Update("Insert into a (param1) values (:param1)", this.connection,
+				new String[] { "param3" });
+		this.keys("ID", Long.valueOf(11), Long.valueOf(12));
+		final TestBean first = new TestBean();
+		first.setParam1("foo");
+		final TestBean second = new TestBean();
+		second.setParam1("bar");
+
+		final List<TestBean> beans = update.executeBatchAndReturnKeys(Arrays.asList(first, second));
+		Assert.assertEquals(2, this.connection.getPreparedStatement().batchCount);
+		Assert.assertSame(first, beans.get(0));
+		Assert.assertEquals(11, first.getParam3());
+		Assert.assertEquals(12, second.getParam3());
+	}
+
+	/**
+	 * Verify a batch fails when the keys can not be matched to the beans.
+	 */
+	@Test(expected = DaoException.class)
+	public void testBatchKeysMissing() {
+		final Update update = new Update("Insert into a (param1) values (:param1)", this.connection,
+				new String[] { "param3" });
+		this.keys("param3", Long.valueOf(11));
+
+		update.executeBatchAndReturnKeys(Arrays.asList(new TestBean(), new TestBean()));
+	}
+}
@@ -0,0 +1,213 @@
+package org.relib.db;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the Upsert class.
+ *
+ * @author Troy Histed
+ */
+public class UpsertTest {
+
+	/**
+	 * Verify the PostgreSQL form.
+	 */
+	@Test
+	public void testPostgresql() {
+		final Upsert upsert = Query.upsert("test", Dialect.POSTGRESQL, "param1");
+		Assert.assertEquals("INSERT INTO test (param1, param2, param3) VALUES (:param1, :param2, :param3)"
+				+ " ON CONFLICT (param1) DO UPDATE SET param2 = EXCLUDED.param2, param3 = EXCLUDED.param3",
+				upsert.getStatement(TestBean.class));
+	}
+
+	/**
+	 * Verify the PostgreSQL form when every column is part of the key.
+	 */
+	@Test
+	public void testPostgresqlKeyOnly() {
+		final Upsert upsert = Query.upsert("test", Dialect.POSTGRESQL, "param1").columns("param1");
+		Assert.assertEquals("INSERT INTO test (param1) VALUES (:param1) ON CONFLICT (param1) DO NOTHING",
+				upsert.getStatement(TestBean.class));
+	}
+
+	/**
+	 * Verify the MySQL form.
+	 */
+	@Test
+	public void testMysql() {
+		final Upsert upsert = Query.upsert("test", Dialect.MYSQL, "param1").columns("param1", "param2");
+		Assert.assertEquals("INSERT INTO test (param1, param2) VALUES (:param1, :param2)"
+				+ " ON DUPLICATE KEY UPDATE param2 = VALUES(param2)", upsert.getStatement(TestBean.class));
+	}
+
+	/**
+	 * Verify the Oracle form.
+	 */
+	@Test
+	public void testOracle() {
+		final Upsert upsert = Query.upsert("test", Dialect.ORACLE, "param1").columns("param1", "param2");
+		Assert.assertEquals("MERGE INTO test target USING (SELECT :param1 AS param1, :param2 AS param2 FROM dual)"
+				+ " source ON (target.param1 = source.param1) WHEN MATCHED THEN UPDATE SET target.param2 ="
+				+ " source.param2 WHEN NOT MATCHED THEN INSERT (param1, param2) VALUES (source.param1,"
+				+ " source.param2)", upsert.getStatement(TestBean.class));
+	}
+
+	/**
+	 * Verify the SQL Server form.
+	 */
+	@Test
+	public void testSqlServer() {
+		final Upsert upsert = Query.upsert("test", Dialect.SQL_SERVER, "param1", "param3")
+				.columns("param1", "param2", "param3");
+		Assert.assertEquals("MERGE INTO test AS target USING (VALUES (:param1, :param2, :param3)) AS source"
+				+ " (param1, param2, param3) ON (target.param1 = source.param1 AND target.param3 = source.param3)"
+				+ " WHEN MATCHED THEN UPDATE SET target.param2 = source.param2 WHEN NOT MATCHED THEN INSERT"
+				+ " (param1, param2, param3) VALUES (source.param1, source.param2, source.param3);",
+				upsert.getStatement(TestBean.class));
+	}
+
+	/**
+	 * Verify the H2 form.
+	 */
+	@Test
+	public void testH2() {
+		final Upsert upsert = Query.upsert("test", Dialect.H2, "param1").columns("param1", "param2");
+		Assert.assertEquals("MERGE INTO test (param1, param2) KEY (param1) VALUES (:param1, :param2)",
+				upsert.getStatement(TestBean.class));
+	}
+
+	/**
+	 * Verify the statement is generated once per bean class.
+	 */
+	@Test
+	public void testStatementCached() {
+		final Upsert upsert = Query.upsert("test", Dialect.POSTGRESQL, "param1");
+		Assert.assertSame(upsert.getStatement(TestBean.class), upsert.getStatement(TestBean.class));
+	}
+
+	/**
+	 * Verify the key columns must be written.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testMissingKey() {
+		Query.upsert("test", Dialect.POSTGRESQL, "id").getStatement(TestBean.class);
+	}
+
+	/**
+	 * Verify the generic dialect is rejected.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testGenericDialect() {
+		Query.upsert("test", Dialect.GENERIC, "param1");
+	}
+
+	/**
+	 * Verify beans are bound and batched.
+	 */
+	@Test
+	public void testBatch() {
+		final MockConnection connection = new MockConnection();
+		final Upsert upsert = Query.upsert("test", Dialect.POSTGRESQL, "param1");
+		final TestBean first = new TestBean();
+		first.setParam1("a");
+		first.setParam2(Integer.valueOf(1));
+		final TestBean second = new TestBean();
+		second.setParam1("b");
+		second.setParam2(Integer.valueOf(2));
+
+		final int[] counts = upsert.addBatch(upsert.update(TestBean.class, connection), Arrays.asList(first, second))
+				.executeBatch();
+		Assert.assertEquals(2, counts.length);
+		Assert.assertEquals("b", connection.getPreparedStatement().getValues().get(Integer.valueOf(1)));
+		Assert.assertEquals(Integer.valueOf(2), connection.getPreparedStatement().getValues().get(Integer.valueOf(2)));
+	}
+
+	/**
+	 * Verify enum and character properties are written as strings.
+	 */
+	@Test
+	public void testEnumAndCharacter() {
+		final MockConnection connection = new MockConnection();
+		final Upsert upsert = Query.upsert("test", Dialect.POSTGRESQL, "id");
+		Assert.assertEquals("INSERT INTO test (id, grade, status) VALUES (:id, :grade, :status)"
+				+ " ON CONFLICT (id) DO UPDATE SET grade = EXCLUDED.grade, status = EXCLUDED.status",
+				upsert.getStatement(StatusBean.class));
+
+		final StatusBean bean = new StatusBean();
+		bean.setId(7);
+		bean.setGrade('B');
+		bean.setStatus(Status.ACTIVE);
+		upsert.update(StatusBean.class, connection).setBean(bean).execute();
+
+		final Map<Integer, Object> values = connection.getPreparedStatement().getValues();
+		Assert.assertEquals(Long.valueOf(7), values.get(Integer.valueOf(1)));
+		Assert.assertEquals("B", values.get(Integer.valueOf(2)));
+		Assert.assertEquals("ACTIVE", values.get(Integer.valueOf(3)));
+	}
+
+	/**
+	 * A status held in an enum column.
+	 */
+	public enum Status {
+		ACTIVE, CLOSED
+	}
+
+	/**
+	 * A bean with enum and character properties.
+	 */
+	public static class StatusBean {
+
+		private long id;
+		private char grade;
+		private Status status;
+
+		/**
+		 * @return the id
+		 */
+		public long getId() {
+			return this.id;
+		}
+
+		/**
+		 * @param id
+		 *            the id to set
+		 */
+		public void setId(long id) {
+			this.id = id;
+		}
+
+		/**
+		 * @return the grade
+		 */
+		public char getGrade() {
+			return this.grade;
+		}
+
+		/**
+		 * @param grade
+		 *            the grade to set
+		 */
+		public void setGrade(char grade) {
+			this.grade = grade;
+		}
+
+		/**
+		 * @return the status
+		 */
+		public Status getStatus() {
+			return this.status;
+		}
+
+		/**
+		 * @param status
+		 *            the status to set
+		 */
+		public void setStatus(Status status) {
+			this.status = status;
+		}
+	}
+}
@@ -16,6 +16,9 @@
 package org.relib.http;
 
 import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -242,4 +245,152 @@ public class ControllerTest {
 		controller.doGet(this.request, this.response);
 		Assert.assertEquals("subclass", this.testString);
 	}
+
+	/**
+	 * Verify a handler returning a CompletableFuture has its result written as json.
+	 *
+	 * @throws ServletException
+	 *             exception
+	 * @throws IOException
+	 *             exception
+	 */
+	@Test
+	public void testControllerWithCompletableFuture() throws ServletException, IOException {
+		this.request.setMethod("GET");
+		this.request.setRequestURI("/items/7");
+		this.request.setHeader("Accept", "application/json");
+
+		final Controller controller = new Controller() {
+			@HandleRequest(value = "/items/{id}", accept = MediaType.JSON, timeout = 1000)
+			public CompletableFuture<int[]> getItem(@PathParam("{id}") final int id) {
+				return CompletableFuture.supplyAsync(new Supplier<int[]>() {
+					public int[] get() {
+						return new int[] { id };
+					}
+				});
+			}
+		};
+
+		controller.doGet(this.request, this.response);
+		Assert.assertEquals("[7]", this.response.getBody());
+	}
+
+	/**
+	 * Verify an offloaded handler is invoked and its limit is returned afterwards.
+	 *
+	 * @throws ServletException
+	 *             exception
+	 * @throws IOException
+	 *             exception
+	 */
+	@Test
+	public void testControllerWithOffload() throws ServletException, IOException {
+		this.request.setMethod("GET");
+		this.request.setRequestURI("/items/7");
+		this.request.setHeader("Accept", "application/json");
+
+		final Controller controller = new OffloadController();
+		controller.doGet(this.request, this.response);
+		Assert.assertEquals("[7]", this.response.getBody());
+
+		this.response = new MockHttpServletResponse();
+		controller.doGet(this.request, this.response);
+		Assert.assertEquals("[7]", this.response.getBody());
+	}
+
+	/**
+	 * Verify a handler returning a view can not be offloaded.
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testControllerWithOffloadedView() {
+		new Controller() {
+			@HandleRequest("/page")
+			@Offload
+			public View getPage() {
+				return View.of("/page.jsp");
+			}
+		};
+	}
+
+	/**
+	 * Controller with every handler offloaded, one at a time.
+	 */
+	@Offload(maxConcurrent = 1)
+	public static class OffloadController extends Controller {
+
+		/**
+		 * @param id
+		 *            the id
+		 * @return the item
+		 */
+		@HandleRequest(value = "/items/{id}", accept = MediaType.JSON)
+		public int[] getItem(@PathParam("{id}") int id) {
+			return new int[] { id };
+		}
+
+		/**
+		 * @return a view, which is not offloaded
+		 */
+		@HandleRequest("/page")
+		public View getPage() {
+			return View.of("/page.jsp");
+		}
+	}
+
+	/**
+	 * Verify a handler with a version is skipped when the client already has that version.
+	 *
+	 * @throws ServletException
+	 *             exception
+	 * @throws IOException
+	 *             exception
+	 */
+	@Test
+	public void testControllerWithResponseVersion() throws ServletException, IOException {
+		this.request.setMethod("GET");
+		this.request.setRequestURI("/items/7");
+		this.request.setHeader("Accept", "application/json");
+
+		final Controller controller = new Controller() {
+			@HandleRequest(value = "/items/{id}", accept = MediaType.JSON)
+			@ResponseVersion("itemVersion")
+			public int[] getItem(@PathParam("{id}") int id) {
+				ControllerTest.this.testString = "invoked";
+				return new int[] { id };
+			}
+
+			public Date itemVersion(@PathParam("{id}") int id) {
+				ControllerTest.this.testInt = id;
+				return new Date(1000000000000L);
+			}
+		};
+
+		controller.doGet(this.request, this.response);
+		Assert.assertEquals(7, this.testInt);
+		Assert.assertEquals("invoked", this.testString);
+		Assert.assertEquals("[7]", this.response.getBody());
+		final String etag = this.response.getHeader("ETag");
+		final String lastModified = this.response.getHeader("Last-Modified");
+		Assert.assertTrue(etag, etag.startsWith("W/\""));
+		Assert.assertEquals("Sun, 09 Sep 2001 01:46:40 GMT", lastModified);
+
+		this.testString = null;
+		this.request.setHeader("If-Modified-Since", lastModified);
+		this.response = new MockHttpServletResponse();
+		controller.doGet(this.request, this.response);
+		Assert.assertNull(this.testString);
+		Assert.assertEquals(HttpServletResponse.SC_NOT_MODIFIED, this.response.getStatus());
+
+		this.request.setHeader("If-Modified-Since", null);
+		this.request.setHeader("If-None-Match", etag);
+		this.response = new MockHttpServletResponse();
+		controller.doGet(this.request, this.response);
+		Assert.assertNull(this.testString);
+		Assert.assertEquals(HttpServletResponse.SC_NOT_MODIFIED, this.response.getStatus());
+
+		this.request.setHeader("If-None-Match", "W/\"other\"");
+		this.response = new MockHttpServletResponse();
+		controller.doGet(this.request, this.response);
+		Assert.assertEquals("invoked", this.testString);
+	}
 }
@@ -29,6 +29,7 @@ public class MockHandleRequest implements HandleRequest {
 	private HttpMethod method;
 	private MediaType contentType;
 	private MediaType accept;
+	private long timeout = 30000;
 
 	public Class<? extends Annotation> annotationType() {
 		return HandleRequest.class;
@@ -122,4 +123,19 @@ public class MockHandleRequest implements HandleRequest {
 		this.accept = accept;
 	}
 
+	/**
+	 * @return the timeout
+	 */
+	public long timeout() {
+		return this.timeout;
+	}
+
+	/**
+	 * @param timeout
+	 *            the timeout to set
+	 */
+	public void setTimeout(long timeout) {
+		this.timeout = timeout;
+	}
+
 }
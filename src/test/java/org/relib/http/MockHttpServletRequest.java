@@ -18,6 +18,8 @@ package org.relib.http;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.security.Principal;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Locale;
@@ -96,6 +98,18 @@ public class MockHttpServletRequest implements HttpServletRequest {
 		return this.headers.get(name);
 	}
 
+	public long getDateHeader(String name) {
+		final String value = this.headers.get(name);
+		if (value == null) {
+			return -1;
+		}
+		try {
+			return new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US).parse(value).getTime();
+		} catch (final ParseException e) {
+			throw new IllegalArgumentException("Invalid date header " + value, e);
+		}
+	}
+
 	public void setAttribute(String name, Object o) {
 		this.attributes.put(name, o);
 	}
@@ -138,9 +152,6 @@ public class MockHttpServletRequest implements HttpServletRequest {
 		throw new UnsupportedOperationException("unimplemented");
 	}
 
-	public long getDateHeader(String name) {
-		throw new UnsupportedOperationException("unimplemented");
-	}
 
 	public Enumeration<?> getHeaders(String name) {
 		throw new UnsupportedOperationException("unimplemented");
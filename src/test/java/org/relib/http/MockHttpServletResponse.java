@@ -15,11 +15,17 @@
  */
 package org.relib.http;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.TimeZone;
 
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.Cookie;
@@ -38,6 +44,10 @@ public class MockHttpServletResponse implements HttpServletResponse {
 	private Locale locale;
 	private int contentLength;
 	private String characterEncoding;
+	private int status = HttpServletResponse.SC_OK;
+	private final Body body = new Body();
+	private PrintWriter writer;
+	private ServletOutputStream outputStream;
 
 	public boolean containsHeader(String name) {
 		return this.headers.containsKey(name);
@@ -51,37 +61,145 @@ public class MockHttpServletResponse implements HttpServletResponse {
 		this.headers.put(name, value);
 	}
 
-	/******** Unimplemented *******/
+	/**
+	 * @param name
+	 *            the header name
+	 * @return the header value, or null if it was not set
+	 */
+	public String getHeader(String name) {
+		return this.headers.get(name);
+	}
 
 	public ServletOutputStream getOutputStream() throws IOException {
-		throw new UnsupportedOperationException("unimplemented");
+		if (this.writer != null) {
+			throw new IllegalStateException("getWriter has already been called");
+		}
+		if (this.outputStream == null) {
+			this.outputStream = new ServletOutputStream() {
+				@Override
+				public void write(int b) throws IOException {
+					MockHttpServletResponse.this.body.write(b);
+				}
+
+				@Override
+				public void flush() throws IOException {
+					MockHttpServletResponse.this.body.flush();
+				}
+			};
+		}
+		return this.outputStream;
 	}
 
 	public PrintWriter getWriter() throws IOException {
-		throw new UnsupportedOperationException("unimplemented");
+		if (this.outputStream != null) {
+			throw new IllegalStateException("getOutputStream has already been called");
+		}
+		if (this.writer == null) {
+			this.writer = new PrintWriter(new OutputStreamWriter(this.body, this.getCharset()));
+		}
+		return this.writer;
 	}
 
 	public void setCharacterEncoding(String charset) {
-		throw new UnsupportedOperationException("unimplemented");
+		this.characterEncoding = charset;
 	}
 
-	public void setBufferSize(int size) {
-		throw new UnsupportedOperationException("unimplemented");
+	public void flushBuffer() throws IOException {
+		if (this.writer != null) {
+			this.writer.flush();
+		}
+		this.body.flush();
 	}
 
-	public int getBufferSize() {
-		throw new UnsupportedOperationException("unimplemented");
+	public boolean isCommitted() {
+		return this.body.flushCount > 0;
 	}
 
-	public void flushBuffer() throws IOException {
+	public void setDateHeader(String name, long date) {
+		final SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+		format.setTimeZone(TimeZone.getTimeZone("GMT"));
+		this.headers.put(name, format.format(new Date(date)));
+	}
+
+	public void setStatus(int sc) {
+		this.status = sc;
+	}
+
+	/**
+	 * @return the status
+	 */
+	public int getStatus() {
+		return this.status;
+	}
+
+	/**
+	 * @return the body written so far, decoded with the character encoding
+	 */
+	public String getBody() {
+		this.flushWriter();
+		try {
+			return this.body.toString(this.getCharset());
+		} catch (final UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @return the raw bytes written so far
+	 */
+	public byte[] getBodyBytes() {
+		this.flushWriter();
+		return this.body.toByteArray();
+	}
+
+	/**
+	 * @return the number of times the body was flushed to the client
+	 */
+	public int getFlushCount() {
+		return this.body.flushCount;
+	}
+
+	/**
+	 * Pushes characters held by the writer into the body without counting it as a flush to the client.
+	 */
+	private void flushWriter() {
+		if (this.writer != null) {
+			final int flushCount = this.body.flushCount;
+			this.writer.flush();
+			this.body.flushCount = flushCount;
+		}
+	}
+
+	/**
+	 * @return the character encoding, defaulting to ISO-8859-1 as a servlet container does
+	 */
+	private String getCharset() {
+		return this.characterEncoding != null ? this.characterEncoding : "ISO-8859-1";
+	}
+
+	/**
+	 * Collects the body and counts flushes.
+	 */
+	private static class Body extends ByteArrayOutputStream {
+		private int flushCount;
+
+		@Override
+		public void flush() {
+			this.flushCount++;
+		}
+	}
+
+	/******** Unimplemented *******/
+
+	public void setBufferSize(int size) {
 		throw new UnsupportedOperationException("unimplemented");
 	}
 
-	public void resetBuffer() {
+	public int getBufferSize() {
 		throw new UnsupportedOperationException("unimplemented");
 	}
 
-	public boolean isCommitted() {
+	public void resetBuffer() {
 		throw new UnsupportedOperationException("unimplemented");
 	}
 
@@ -110,20 +228,17 @@ public class MockHttpServletResponse implements HttpServletResponse {
 	}
 
 	public void sendError(int sc, String msg) throws IOException {
-		throw new UnsupportedOperationException("unimplemented");
+		this.status = sc;
 	}
 
 	public void sendError(int sc) throws IOException {
-		throw new UnsupportedOperationException("unimplemented");
+		this.status = sc;
 	}
 
 	public void sendRedirect(String location) throws IOException {
 		throw new UnsupportedOperationException("unimplemented");
 	}
 
-	public void setDateHeader(String name, long date) {
-		throw new UnsupportedOperationException("unimplemented");
-	}
 
 	public void addDateHeader(String name, long date) {
 		throw new UnsupportedOperationException("unimplemented");
@@ -137,9 +252,6 @@ public class MockHttpServletResponse implements HttpServletResponse {
 		throw new UnsupportedOperationException("unimplemented");
 	}
 
-	public void setStatus(int sc) {
-		throw new UnsupportedOperationException("unimplemented");
-	}
 
 	public void setStatus(int sc, String sm) {
 		throw new UnsupportedOperationException("unimplemented");
@@ -0,0 +1,238 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.http.request;
+
+import java.lang.reflect.InvocationTargetException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.relib.http.HttpMethod;
+import org.relib.http.MockHttpServletRequest;
+import org.relib.http.MockRequestParam;
+
+/**
+ * Tests the {@link HandlerInvoker} class.
+ *
+ * @author Troy Histed
+ */
+public class HandlerInvokerTest {
+
+	String called;
+
+	/**
+	 * Controller methods to invoke.
+	 */
+	class TestController {
+
+		public String join(String first, int second, Object third) {
+			return first + second + third;
+		}
+
+		public void record(String value) {
+			HandlerInvokerTest.this.called = value;
+		}
+
+		public long page(int page, long size) {
+			return page * size;
+		}
+
+		public String fail() {
+			throw new IllegalStateException("failed");
+		}
+	}
+
+	/**
+	 * Builds a definition for a method of the test controller.
+	 *
+	 * @param name
+	 *            the method name
+	 * @param argumentGenerators
+	 *            the argument generators
+	 * @return the definition
+	 * @throws NoSuchMethodException
+	 *             exception
+	 */
+	private RequestDefinition definition(String name, ArgumentGenerator... argumentGenerators)
+			throws NoSuchMethodException {
+		for (final java.lang.reflect.Method method : TestController.class.getMethods()) {
+			if (method.getName().equals(name)) {
+				final RequestDefinition requestDefinition = new RequestDefinition();
+				requestDefinition.setMethod(method);
+				requestDefinition.setArgumentGenerators(argumentGenerators);
+				return requestDefinition;
+			}
+		}
+		throw new NoSuchMethodException(name);
+	}
+
+	/**
+	 * @param value
+	 *            the value to generate
+	 * @return a generator that always returns the value
+	 */
+	private ArgumentGenerator generator(final Object value) {
+		return new ArgumentGenerator() {
+			public Object generateArgument(RequestInfo requestInfo) {
+				return value;
+			}
+		};
+	}
+
+	/**
+	 * Verify the arguments are generated from the request and passed to the method.
+	 *
+	 * @throws Exception
+	 *             exception
+	 */
+	@Test
+	public void testInvoke() throws Exception {
+		final ArgumentGenerator method = new ArgumentGenerator() {
+			public Object generateArgument(RequestInfo requestInfo) {
+				return requestInfo.getMethod().name();
+			}
+		};
+		final HandlerInvoker invoker = new HandlerInvoker(new TestController(),
+				this.definition("join", method, this.generator(Integer.valueOf(5)), null));
+		final RequestInfo requestInfo = new RequestInfo();
+		requestInfo.setMethod(HttpMethod.GET);
+
+		Assert.assertEquals("GET5null", invoker.invoke(requestInfo));
+		requestInfo.setMethod(HttpMethod.POST);
+		Assert.assertEquals("POST5null", invoker.invoke(requestInfo));
+	}
+
+	/**
+	 * Verify a void method returns null.
+	 *
+	 * @throws Exception
+	 *             exception
+	 */
+	@Test
+	public void testInvokeVoid() throws Exception {
+		final HandlerInvoker invoker = new HandlerInvoker(new TestController(),
+				this.definition("record", this.generator("foo")));
+
+		Assert.assertNull(invoker.invoke(new RequestInfo()));
+		Assert.assertEquals("foo", this.called);
+	}
+
+	/**
+	 * Verify an exception thrown by the method is wrapped.
+	 *
+	 * @throws Exception
+	 *             exception
+	 */
+	@Test
+	public void testMethodException() throws Exception {
+		final HandlerInvoker invoker = new HandlerInvoker(new TestController(), this.definition("fail"));
+
+		try {
+			invoker.invoke(new RequestInfo());
+			Assert.fail("Expected the method exception");
+		} catch (final InvocationTargetException e) {
+			Assert.assertEquals("failed", e.getCause().getMessage());
+		}
+	}
+
+	/**
+	 * Verify an exception thrown by an argument generator is not wrapped.
+	 *
+	 * @throws Exception
+	 *             exception
+	 */
+	@Test(expected = UnsupportedOperationException.class)
+	public void testGeneratorException() throws Exception {
+		final HandlerInvoker invoker = new HandlerInvoker(new TestController(),
+				this.definition("record", new ArgumentGenerator() {
+					public Object generateArgument(RequestInfo requestInfo) {
+						throw new UnsupportedOperationException();
+					}
+				}));
+
+		invoker.invoke(new RequestInfo());
+	}
+
+	/**
+	 * Verify a primitive parameter without an argument generator fails.
+	 *
+	 * @throws Exception
+	 *             exception
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testMissingPrimitive() throws Exception {
+		final HandlerInvoker invoker = new HandlerInvoker(new TestController(),
+				this.definition("join", this.generator("a"), null, null));
+
+		invoker.invoke(new RequestInfo());
+	}
+
+	/**
+	 * Verify a missing request param for a primitive parameter fails with an IllegalArgumentException, as it did
+	 * through reflection.
+	 *
+	 * @throws Exception
+	 *             exception
+	 */
+	@Test
+	public void testMissingPrimitiveRequestParam() throws Exception {
+		final MockRequestParam requestParam = new MockRequestParam();
+		requestParam.setValue("page");
+		final HandlerInvoker invoker = new HandlerInvoker(new TestController(), this.definition("page",
+				new ArgumentGeneratorForRequestParam(requestParam, int.class), this.generator(Long.valueOf(10))));
+		final RequestInfo requestInfo = new RequestInfo();
+		requestInfo.setRequest(new MockHttpServletRequest());
+
+		try {
+			invoker.invoke(requestInfo);
+			Assert.fail("Expected an IllegalArgumentException");
+		} catch (final IllegalArgumentException e) {
+			Assert.assertTrue(e.getCause() instanceof NullPointerException);
+		}
+	}
+
+	/**
+	 * Verify an argument of the wrong type fails with an IllegalArgumentException.
+	 *
+	 * @throws Exception
+	 *             exception
+	 */
+	@Test
+	public void testMismatchedArgument() throws Exception {
+		final HandlerInvoker invoker = new HandlerInvoker(new TestController(),
+				this.definition("page", this.generator("1"), this.generator(Long.valueOf(10))));
+
+		try {
+			invoker.invoke(new RequestInfo());
+			Assert.fail("Expected an IllegalArgumentException");
+		} catch (final IllegalArgumentException e) {
+			Assert.assertTrue(e.getCause() instanceof ClassCastException);
+		}
+	}
+
+	/**
+	 * Verify a primitive argument is widened to its parameter type, as it is through reflection.
+	 *
+	 * @throws Exception
+	 *             exception
+	 */
+	@Test
+	public void testWidenedArgument() throws Exception {
+		final HandlerInvoker invoker = new HandlerInvoker(new TestController(),
+				this.definition("page", this.generator(Integer.valueOf(2)), this.generator(Integer.valueOf(10))));
+
+		Assert.assertEquals(Long.valueOf(20), invoker.invoke(new RequestInfo()));
+	}
+}
@@ -0,0 +1,307 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.http.request;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.relib.http.MockHttpServletRequest;
+import org.relib.http.MockHttpServletResponse;
+import org.relib.http.Offload;
+import org.relib.http.request.ResponseGeneratorForFutureTest.MockAsyncRequest;
+
+/**
+ * Tests the {@link HandlerOffload}.
+ *
+ * @author Troy Histed
+ */
+public class HandlerOffloadTest {
+
+	private MockHttpServletResponse response;
+
+	/**
+	 * Reinitialize.
+	 */
+	@Before
+	public void setup() {
+		this.response = new MockHttpServletResponse();
+	}
+
+	/**
+	 * Handler limited to one request at a time.
+	 */
+	@Offload(maxConcurrent = 1, timeout = 10)
+	public void limited() {
+		// annotation holder
+	}
+
+	/**
+	 * Handler limited to one request at a time, with time to wait for a turn.
+	 */
+	@Offload(maxConcurrent = 1, timeout = 5000)
+	public void queued() {
+		// annotation holder
+	}
+
+	/**
+	 * Handler without a limit that must finish quickly.
+	 */
+	@Offload(timeout = 50)
+	public void deadline() {
+		// annotation holder
+	}
+
+	/**
+	 * Handler without a limit.
+	 */
+	@Offload
+	public void unlimited() {
+		// annotation holder
+	}
+
+	/**
+	 * @param name
+	 *            the annotated method
+	 * @return a new offload for the method's annotation
+	 */
+	private HandlerOffload offload(String name) throws NoSuchMethodException {
+		return new HandlerOffload(HandlerOffloadTest.class.getMethod(name).getAnnotation(Offload.class));
+	}
+
+	/**
+	 * Verify the handler runs on the request thread when async processing is not available.
+	 */
+	@Test
+	public void testWithoutAsync() throws Exception {
+		final AtomicReference<Thread> thread = new AtomicReference<Thread>();
+
+		this.offload("unlimited").handle(new MockHttpServletRequest(), this.response, new HandlerOffload.Handler() {
+			public void handle() {
+				thread.set(Thread.currentThread());
+			}
+		});
+
+		Assert.assertSame(Thread.currentThread(), thread.get());
+	}
+
+	/**
+	 * Verify the handler runs on another thread and the request is completed when async processing is available.
+	 */
+	@Test
+	public void testAsync() throws Exception {
+		final MockAsyncRequest request = new MockAsyncRequest();
+		final AtomicReference<Thread> thread = new AtomicReference<Thread>();
+
+		this.offload("unlimited").handle(request, this.response, new HandlerOffload.Handler() {
+			public void handle() {
+				thread.set(Thread.currentThread());
+			}
+		});
+
+		Assert.assertTrue(request.getAsyncContext().await(1, TimeUnit.SECONDS));
+		Assert.assertNotNull(thread.get());
+		Assert.assertNotSame(Thread.currentThread(), thread.get());
+		Assert.assertEquals(HttpServletResponse.SC_OK, this.response.getStatus());
+	}
+
+	/**
+	 * Verify a failure on the offload thread is sent as a 500.
+	 */
+	@Test
+	public void testAsyncFailure() throws Exception {
+		final MockAsyncRequest request = new MockAsyncRequest();
+
+		this.offload("unlimited").handle(request, this.response, new HandlerOffload.Handler() {
+			public void handle() throws ServletException {
+				throw new ServletException("failed");
+			}
+		});
+
+		Assert.assertTrue(request.getAsyncContext().await(1, TimeUnit.SECONDS));
+		Assert.assertEquals(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, this.response.getStatus());
+	}
+
+	/**
+	 * Verify a request that can not get a turn within the timeout is sent a 503, and the permit is returned.
+	 */
+	@Test
+	public void testLimit() throws Exception {
+		final HandlerOffload offload = this.offload("limited");
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final Thread first = new Thread() {
+			@Override
+			public void run() {
+				try {
+					offload.handle(new MockHttpServletRequest(), new MockHttpServletResponse(),
+							new HandlerOffload.Handler() {
+								public void handle() throws IOException {
+									started.countDown();
+									try {
+										release.await();
+									} catch (final InterruptedException e) {
+										throw new IOException(e);
+									}
+								}
+							});
+				} catch (final Exception e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		};
+		first.start();
+		Assert.assertTrue(started.await(1, TimeUnit.SECONDS));
+		Assert.assertEquals(0, offload.availablePermits());
+
+		final boolean[] invoked = { false };
+		offload.handle(new MockHttpServletRequest(), this.response, new HandlerOffload.Handler() {
+			public void handle() {
+				invoked[0] = true;
+			}
+		});
+		Assert.assertFalse(invoked[0]);
+		Assert.assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, this.response.getStatus());
+
+		release.countDown();
+		first.join(1000);
+		Assert.assertEquals(1, offload.availablePermits());
+		Assert.assertEquals(-1, this.offload("unlimited").availablePermits());
+	}
+
+	/**
+	 * Verify an async request over the limit waits for its permit off the container thread, and is sent a 503 if
+	 * none is returned within the timeout.
+	 */
+	@Test
+	public void testAsyncLimit() throws Exception {
+		final HandlerOffload offload = this.offload("limited");
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		// held by a request on its container thread, which has no deadline
+		final Thread first = new Thread() {
+			@Override
+			public void run() {
+				try {
+					offload.handle(new MockHttpServletRequest(), new MockHttpServletResponse(),
+							HandlerOffloadTest.this.blocking(started, release));
+				} catch (final Exception e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		};
+		first.start();
+		Assert.assertTrue(started.await(1, TimeUnit.SECONDS));
+		Assert.assertEquals(0, offload.availablePermits());
+
+		final MockAsyncRequest second = new MockAsyncRequest();
+		final boolean[] invoked = { false };
+		offload.handle(second, this.response, new HandlerOffload.Handler() {
+			public void handle() {
+				invoked[0] = true;
+			}
+		});
+		Assert.assertNotNull(second.getAsyncContext());
+		Assert.assertTrue(second.getAsyncContext().await(1, TimeUnit.SECONDS));
+		Assert.assertFalse(invoked[0]);
+		Assert.assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, this.response.getStatus());
+
+		release.countDown();
+		first.join(1000);
+		Assert.assertEquals(1, offload.availablePermits());
+	}
+
+	/**
+	 * Verify an async request over the limit returns the container thread at once and runs when a permit is
+	 * returned.
+	 */
+	@Test
+	public void testAsyncWaitsForPermit() throws Exception {
+		final HandlerOffload offload = this.offload("queued");
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final MockAsyncRequest first = new MockAsyncRequest();
+		offload.handle(first, new MockHttpServletResponse(), this.blocking(started, release));
+		Assert.assertTrue(started.await(1, TimeUnit.SECONDS));
+
+		final MockAsyncRequest second = new MockAsyncRequest();
+		final AtomicReference<Thread> thread = new AtomicReference<Thread>();
+		final long begin = System.nanoTime();
+		offload.handle(second, this.response, new HandlerOffload.Handler() {
+			public void handle() {
+				thread.set(Thread.currentThread());
+			}
+		});
+		Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin) < 1000);
+		Assert.assertNull(thread.get());
+
+		release.countDown();
+		Assert.assertTrue(second.getAsyncContext().await(1, TimeUnit.SECONDS));
+		Assert.assertNotNull(thread.get());
+		Assert.assertEquals(HttpServletResponse.SC_OK, this.response.getStatus());
+		Assert.assertEquals(1, offload.availablePermits());
+	}
+
+	/**
+	 * Verify an async request whose handler runs past the timeout is sent a 503 and the handler is interrupted.
+	 */
+	@Test
+	public void testAsyncDeadline() throws Exception {
+		final MockAsyncRequest request = new MockAsyncRequest();
+		final CountDownLatch interrupted = new CountDownLatch(1);
+
+		this.offload("deadline").handle(request, this.response, new HandlerOffload.Handler() {
+			public void handle() {
+				try {
+					Thread.sleep(10000);
+				} catch (final InterruptedException e) {
+					interrupted.countDown();
+				}
+			}
+		});
+
+		Assert.assertTrue(request.getAsyncContext().await(1, TimeUnit.SECONDS));
+		Assert.assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, this.response.getStatus());
+		Assert.assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * @param started
+	 *            counted down when the handler starts
+	 * @param release
+	 *            awaited before the handler returns
+	 * @return a handler that blocks until released
+	 */
+	private HandlerOffload.Handler blocking(final CountDownLatch started, final CountDownLatch release) {
+		return new HandlerOffload.Handler() {
+			public void handle() throws IOException {
+				started.countDown();
+				try {
+					release.await();
+				} catch (final InterruptedException e) {
+					throw new IOException(e);
+				}
+			}
+		};
+	}
+}
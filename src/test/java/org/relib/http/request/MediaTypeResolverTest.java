@@ -0,0 +1,106 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.http.request;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.relib.http.MediaType;
+
+/**
+ * Tests the {@link MediaTypeResolver} and the {@link AcceptHeader} it parses.
+ *
+ * @author Troy Histed
+ */
+public class MediaTypeResolverTest {
+
+	/**
+	 * Verify content types are resolved ignoring parameters and case.
+	 */
+	@Test
+	public void testContentType() {
+		Assert.assertSame(MediaType.JSON, MediaTypeResolver.contentType("application/json"));
+		Assert.assertSame(MediaType.JSON, MediaTypeResolver.contentType("Application/JSON; charset=UTF-8"));
+		Assert.assertSame(MediaType.HTML, MediaTypeResolver.contentType("text/html;charset=ISO-8859-1"));
+		Assert.assertSame(MediaType.UNKNOWN, MediaTypeResolver.contentType("application/jsonp"));
+		Assert.assertSame(MediaType.UNKNOWN, MediaTypeResolver.contentType(null));
+	}
+
+	/**
+	 * Verify the quality of each type comes from the most specific range covering it.
+	 */
+	@Test
+	public void testQuality() {
+		final AcceptHeader acceptHeader = MediaTypeResolver.accept("text/html;q=0.5, text/*, */*;q=0.1");
+
+		Assert.assertEquals(0.5f, acceptHeader.quality(MediaType.HTML), 0);
+		Assert.assertEquals(1f, acceptHeader.quality(MediaType.CSS), 0);
+		Assert.assertEquals(0.1f, acceptHeader.quality(MediaType.JSON), 0);
+		Assert.assertTrue(acceptHeader.isExplicit(MediaType.HTML));
+		Assert.assertFalse(acceptHeader.isExplicit(MediaType.CSS));
+		Assert.assertSame(MediaType.HTML, acceptHeader.getPreferred());
+	}
+
+	/**
+	 * Verify the preferred type is the explicit type with the highest quality, then the first listed.
+	 */
+	@Test
+	public void testPreferred() {
+		Assert.assertSame(MediaType.HTML, MediaTypeResolver.accept("application/json;q=0.5, text/html").getPreferred());
+		Assert.assertSame(MediaType.JSON, MediaTypeResolver.accept("application/json, text/html").getPreferred());
+		Assert.assertSame(MediaType.XML, MediaTypeResolver.accept("text/html;q=0, text/xml;q=0.2").getPreferred());
+		Assert.assertSame(MediaType.UNKNOWN, MediaTypeResolver.accept("*/*").getPreferred());
+		Assert.assertSame(MediaType.UNKNOWN, MediaTypeResolver.accept("image/png").getPreferred());
+	}
+
+	/**
+	 * Verify a q of zero or one that can not be read makes a type unacceptable.
+	 */
+	@Test
+	public void testNotAcceptable() {
+		final AcceptHeader acceptHeader = MediaTypeResolver.accept("application/json;q=0, text/html;q=abc, */*");
+
+		Assert.assertEquals(0f, acceptHeader.quality(MediaType.JSON), 0);
+		Assert.assertEquals(0f, acceptHeader.quality(MediaType.HTML), 0);
+		Assert.assertEquals(1f, acceptHeader.quality(MediaType.PDF), 0);
+	}
+
+	/**
+	 * Verify a missing header accepts every type without naming any.
+	 */
+	@Test
+	public void testMissingHeader() {
+		final AcceptHeader acceptHeader = MediaTypeResolver.accept(null);
+
+		Assert.assertEquals(1f, acceptHeader.quality(MediaType.JSON), 0);
+		Assert.assertFalse(acceptHeader.isExplicit(MediaType.JSON));
+		Assert.assertSame(MediaType.UNKNOWN, acceptHeader.getPreferred());
+	}
+
+	/**
+	 * Verify repeated headers share a parsed value and the cache stays bounded.
+	 */
+	@Test
+	public void testCache() {
+		final String header = "application/json, text/javascript, */*; q=0.01";
+		Assert.assertSame(MediaTypeResolver.accept(header), MediaTypeResolver.accept(header));
+
+		for (int i = 0; i < MediaTypeResolver.MAX_CACHED * 3; i++) {
+			MediaTypeResolver.accept("application/x-" + i);
+			MediaTypeResolver.contentType("application/x-" + i);
+		}
+		Assert.assertTrue(MediaTypeResolver.size() <= MediaTypeResolver.MAX_CACHED * 2);
+	}
+}
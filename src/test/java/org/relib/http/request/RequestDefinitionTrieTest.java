@@ -0,0 +1,256 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.http.request;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.relib.http.HttpMethod;
+import org.relib.http.MediaType;
+
+/**
+ * Tests the {@link RequestDefinitionTrie} finds the same definition as searching the sorted definitions in order.
+ *
+ * @author Troy Histed
+ */
+public class RequestDefinitionTrieTest {
+
+	private List<RequestDefinition> requestDefinitions;
+
+	/**
+	 * Setup.
+	 */
+	@Before
+	public void setup() {
+		this.requestDefinitions = new ArrayList<RequestDefinition>();
+	}
+
+	/**
+	 * Adds a definition.
+	 *
+	 * @param httpMethod
+	 *            the http method
+	 * @param accept
+	 *            the accept media type
+	 * @param path
+	 *            the path, with * for path params
+	 * @return the definition
+	 */
+	private RequestDefinition add(HttpMethod httpMethod, MediaType accept, String path) {
+		final RequestDefinition requestDefinition = new RequestDefinition();
+		requestDefinition.setHttpMethod(httpMethod);
+		requestDefinition.setAccept(accept);
+		requestDefinition.setContentType(MediaType.UNKNOWN);
+		final String[] parts = path.split("/");
+		final PathDefinition[] pathDefinitions = new PathDefinition[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			pathDefinitions[i] = new PathDefinition();
+			if (!"*".equals(parts[i])) {
+				pathDefinitions[i].setValue(parts[i]);
+			}
+		}
+		requestDefinition.setPathParts(pathDefinitions);
+		this.requestDefinitions.add(requestDefinition);
+		return requestDefinition;
+	}
+
+	/**
+	 * Builds a request.
+	 *
+	 * @param httpMethod
+	 *            the http method
+	 * @param accept
+	 *            the accept media type
+	 * @param path
+	 *            the path
+	 * @return the request info
+	 */
+	private RequestInfo request(HttpMethod httpMethod, MediaType accept, String path) {
+		final RequestInfo requestInfo = new RequestInfo();
+		requestInfo.setMethod(httpMethod);
+		requestInfo.setAccept(accept);
+		requestInfo.setContentType(MediaType.UNKNOWN);
+		requestInfo.setPathParts(path.split("/"));
+		return requestInfo;
+	}
+
+	/**
+	 * Sorts the definitions and builds the tree.
+	 *
+	 * @return the tree
+	 */
+	private RequestDefinitionTrie build() {
+		Collections.sort(this.requestDefinitions, new RequestDefinitionComparator());
+		return new RequestDefinitionTrie(this.requestDefinitions);
+	}
+
+	/**
+	 * Finds a definition by checking each sorted definition in turn.
+	 *
+	 * @param requestInfo
+	 *            the request
+	 * @return the first matching definition
+	 */
+	private RequestDefinition findInOrder(RequestInfo requestInfo) {
+		for (final RequestDefinition requestDefinition : this.requestDefinitions) {
+			final PathDefinition[] pathDefinitions = requestDefinition.getPathParts();
+			final String[] pathParts = requestInfo.getPathParts();
+			boolean matches = pathDefinitions.length == pathParts.length
+					&& (requestDefinition.getHttpMethod() == HttpMethod.UNKNOWN
+							|| requestDefinition.getHttpMethod() == requestInfo.getMethod())
+					&& (requestDefinition.getAccept() == MediaType.UNKNOWN
+							|| requestDefinition.getAccept() == requestInfo.getAccept());
+			for (int i = 0; matches && i < pathParts.length; i++) {
+				matches = pathDefinitions[i].getValue() == null || pathDefinitions[i].getValue().equals(pathParts[i]);
+			}
+			if (matches) {
+				return requestDefinition;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Verify literal segments are preferred over path params.
+	 */
+	@Test
+	public void testLiteralBeforePathParam() {
+		final RequestDefinition param = this.add(HttpMethod.UNKNOWN, MediaType.UNKNOWN, "a/*");
+		final RequestDefinition literal = this.add(HttpMethod.UNKNOWN, MediaType.UNKNOWN, "a/b");
+		final RequestDefinitionTrie trie = this.build();
+
+		Assert.assertSame(literal, trie.find(this.request(HttpMethod.GET, MediaType.UNKNOWN, "a/b")));
+		Assert.assertSame(param, trie.find(this.request(HttpMethod.GET, MediaType.UNKNOWN, "a/c")));
+		Assert.assertNull(trie.find(this.request(HttpMethod.GET, MediaType.UNKNOWN, "a")));
+		Assert.assertNull(trie.find(this.request(HttpMethod.GET, MediaType.UNKNOWN, "a/b/c")));
+		Assert.assertNull(trie.find(this.request(HttpMethod.GET, MediaType.UNKNOWN, "b/b")));
+	}
+
+	/**
+	 * Verify a specific http method takes precedence over a literal path, as it does in the comparator.
+	 */
+	@Test
+	public void testMethodBeforePath() {
+		final RequestDefinition literal = this.add(HttpMethod.UNKNOWN, MediaType.UNKNOWN, "a/b");
+		final RequestDefinition get = this.add(HttpMethod.GET, MediaType.UNKNOWN, "*/*");
+		final RequestDefinitionTrie trie = this.build();
+
+		Assert.assertSame(get, trie.find(this.request(HttpMethod.GET, MediaType.UNKNOWN, "a/b")));
+		Assert.assertSame(literal, trie.find(this.request(HttpMethod.POST, MediaType.UNKNOWN, "a/b")));
+		Assert.assertNull(trie.find(this.request(HttpMethod.POST, MediaType.UNKNOWN, "a/c")));
+	}
+
+	/**
+	 * Verify the tree finds the same definition as the sorted list for every combination of definitions and
+	 * requests.
+	 */
+	@Test
+	public void testSameAsSortedList() {
+		final HttpMethod[] methods = { HttpMethod.UNKNOWN, HttpMethod.GET, HttpMethod.POST };
+		final MediaType[] accepts = { MediaType.UNKNOWN, MediaType.JSON };
+		final String[] paths = { "a", "*", "a/b", "a/*", "*/b", "*/*", "a/b/c", "*/b/*", "a/*/c" };
+		for (final HttpMethod method : methods) {
+			for (final MediaType accept : accepts) {
+				for (final String path : paths) {
+					this.add(method, accept, path);
+				}
+			}
+		}
+		final RequestDefinitionTrie trie = this.build();
+
+		final String[] requests = { "a", "b", "a/b", "a/c", "c/b", "c/c", "a/b/c", "x/b/y", "a/x/c", "a/b/c/d" };
+		for (final HttpMethod method : methods) {
+			for (final MediaType accept : accepts) {
+				for (final String path : requests) {
+					final RequestInfo requestInfo = this.request(method, accept, path);
+					Assert.assertSame(requestInfo.toString(), this.findInOrder(requestInfo), trie.find(requestInfo));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Verify a node with many literal children finds each of them.
+	 */
+	@Test
+	public void testManyLiterals() {
+		final List<RequestDefinition> expected = new ArrayList<RequestDefinition>();
+		for (int i = 0; i < 100; i++) {
+			expected.add(this.add(HttpMethod.UNKNOWN, MediaType.UNKNOWN, "items/" + i));
+		}
+		final RequestDefinition param = this.add(HttpMethod.UNKNOWN, MediaType.UNKNOWN, "items/*");
+		final RequestDefinitionTrie trie = this.build();
+
+		for (int i = 0; i < 100; i++) {
+			final RequestInfo requestInfo = this.request(HttpMethod.GET, MediaType.UNKNOWN, "items/" + i);
+			Assert.assertSame(expected.get(i), trie.find(requestInfo));
+		}
+		Assert.assertSame(param, trie.find(this.request(HttpMethod.GET, MediaType.UNKNOWN, "items/100")));
+	}
+
+	/**
+	 * Builds a request with an Accept header.
+	 *
+	 * @param accept
+	 *            the Accept header
+	 * @param path
+	 *            the path
+	 * @return the request info
+	 */
+	private RequestInfo request(String accept, String path) {
+		final RequestInfo requestInfo = this.request(HttpMethod.GET, MediaType.UNKNOWN, path);
+		requestInfo.setAcceptHeader(MediaTypeResolver.accept(accept));
+		return requestInfo;
+	}
+
+	/**
+	 * Verify the definition with the highest quality accept type is chosen when several match.
+	 */
+	@Test
+	public void testAcceptQuality() {
+		final RequestDefinition json = this.add(HttpMethod.UNKNOWN, MediaType.JSON, "a/b");
+		final RequestDefinition html = this.add(HttpMethod.UNKNOWN, MediaType.HTML, "a/b");
+		final RequestDefinitionTrie trie = this.build();
+
+		Assert.assertSame(html, trie.find(this.request("text/html, application/json;q=0.9", "a/b")));
+		Assert.assertSame(json, trie.find(this.request("text/html;q=0.5, application/json", "a/b")));
+		Assert.assertSame(json, trie.find(this.request("application/json, text/html", "a/b")));
+		Assert.assertSame(html, trie.find(this.request("application/json;q=0, text/*", "a/b")));
+		Assert.assertNull(trie.find(this.request("text/css", "a/b")));
+	}
+
+	/**
+	 * Verify an accept type only covered by a wildcard matches after definitions without an accept type.
+	 */
+	@Test
+	public void testAcceptWildcard() {
+		final RequestDefinition json = this.add(HttpMethod.UNKNOWN, MediaType.JSON, "a/b");
+		final RequestDefinition any = this.add(HttpMethod.UNKNOWN, MediaType.UNKNOWN, "a/*");
+		final RequestDefinition jsonOnly = this.add(HttpMethod.UNKNOWN, MediaType.JSON, "c/d");
+		final RequestDefinitionTrie trie = this.build();
+
+		Assert.assertSame(json, trie.find(this.request("application/json", "a/b")));
+		Assert.assertSame(any, trie.find(this.request("text/html, */*;q=0.8", "a/b")));
+		Assert.assertSame(any, trie.find(this.request("*/*", "a/b")));
+		Assert.assertSame(jsonOnly, trie.find(this.request("*/*", "c/d")));
+		Assert.assertSame(jsonOnly, trie.find(this.request(null, "c/d")));
+		Assert.assertNull(trie.find(this.request("text/html", "c/d")));
+	}
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.http.request;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link RequestPath} class.
+ *
+ * @author Troy Histed
+ */
+public class RequestPathTest {
+
+	/**
+	 * Verify paths are split the same way as removing the leading slash and splitting on slashes.
+	 */
+	@Test
+	public void testSameAsSplit() {
+		final String[] paths = { "", "/", "//", "/a", "a", "/a/b", "/a/b/", "/a//b", "/a/b//", "///a", "/abc/de/f" };
+		for (final String path : paths) {
+			final String expected = path.length() > 0 && path.charAt(0) == '/' ? path.substring(1) : path;
+			Assert.assertArrayEquals(path, expected.split("/"), RequestPath.parse(path, 0).toArray());
+			Assert.assertArrayEquals(path, expected.split("/"),
+					RequestPath.parse("/context" + path, "/context".length()).toArray());
+		}
+	}
+
+	/**
+	 * Verify segments are hashed and compared without creating Strings.
+	 */
+	@Test
+	public void testMatches() {
+		final RequestPath path = RequestPath.parse("/ctx/users/42/orders", 4);
+
+		Assert.assertEquals(3, path.size());
+		Assert.assertEquals("users".hashCode(), path.hash(0));
+		Assert.assertEquals("".hashCode(), RequestPath.parse("/", 0).hash(0));
+		Assert.assertTrue(path.matches(0, "users"));
+		Assert.assertFalse(path.matches(0, "user"));
+		Assert.assertFalse(path.matches(0, "usersx"));
+		Assert.assertTrue(path.matches(2, "orders"));
+		Assert.assertEquals("42", path.get(1));
+	}
+
+	/**
+	 * Verify a path can be built from split segments.
+	 */
+	@Test
+	public void testOf() {
+		final RequestPath path = RequestPath.of(new String[] { "a", "", "b" });
+
+		Assert.assertEquals(3, path.size());
+		Assert.assertTrue(path.matches(1, ""));
+		Assert.assertEquals("[a, , b]", path.toString());
+	}
+}
@@ -0,0 +1,353 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.http.request;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.relib.http.CacheResponse;
+import org.relib.http.HandleRequest;
+import org.relib.http.MediaType;
+import org.relib.http.MockHttpServletRequest;
+import org.relib.http.MockHttpServletResponse;
+import org.relib.http.PathParam;
+import org.relib.http.RequestParam;
+
+/**
+ * Tests the {@link ResponseCache}.
+ *
+ * @author Troy Histed
+ */
+public class ResponseCacheTest {
+
+	private final AtomicInteger invocations = new AtomicInteger();
+	private volatile CountDownLatch release;
+
+	/**
+	 * Controller with cached handlers.
+	 */
+	public class CachingController {
+
+		/**
+		 * @param id
+		 *            path param
+		 * @param region
+		 *            request param that selects the response
+		 * @param other
+		 *            request param that does not
+		 * @return the response
+		 * @throws InterruptedException
+		 *             exception
+		 */
+		@HandleRequest(value = "/reports/{id}", accept = MediaType.JSON)
+		@CacheResponse(ttl = 60000, varyBy = "region", maxEntries = 4)
+		public String[] getReport(@PathParam("{id}") String id, @RequestParam("region") String region,
+				@RequestParam("other") String other) throws InterruptedException {
+			ResponseCacheTest.this.invocations.incrementAndGet();
+			if (ResponseCacheTest.this.release != null) {
+				ResponseCacheTest.this.release.await(5, TimeUnit.SECONDS);
+			}
+			final String[] report = new String[200];
+			for (int i = 0; i < report.length; i++) {
+				report[i] = id + "-" + region + "-" + other;
+			}
+			return report;
+		}
+
+		/**
+		 * @return the response
+		 */
+		@HandleRequest(value = "/short", accept = MediaType.JSON)
+		@CacheResponse(ttl = 1)
+		public String getShort() {
+			ResponseCacheTest.this.invocations.incrementAndGet();
+			return "short";
+		}
+
+		/**
+		 * @param response
+		 *            the response
+		 */
+		@HandleRequest("/missing")
+		@CacheResponse(ttl = 60000)
+		public void getMissing(HttpServletResponse response) {
+			ResponseCacheTest.this.invocations.incrementAndGet();
+			response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+		}
+	}
+
+	private final RequestHandler requestHandler = new RequestHandler(new CachingController());
+
+	/**
+	 * Sends a request.
+	 *
+	 * @param method
+	 *            the http method
+	 * @param uri
+	 *            the request uri
+	 * @param headers
+	 *            header names and values
+	 * @return the response
+	 * @throws ServletException
+	 *             exception
+	 * @throws IOException
+	 *             exception
+	 */
+	private MockHttpServletResponse send(String method, String uri, String... headers)
+			throws ServletException, IOException {
+		final MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setMethod(method);
+		final int query = uri.indexOf('?');
+		request.setRequestURI(query < 0 ? uri : uri.substring(0, query));
+		if (query >= 0) {
+			for (final String param : uri.substring(query + 1).split("&")) {
+				final String[] pair = param.split("=");
+				request.getParameterMap().put(pair[0], new String[] { pair[1] });
+			}
+		}
+		for (int i = 0; i < headers.length; i += 2) {
+			request.setHeader(headers[i], headers[i + 1]);
+		}
+		final MockHttpServletResponse response = new MockHttpServletResponse();
+		this.requestHandler.handleRequest(request, response);
+		return response;
+	}
+
+	/**
+	 * Verify clients sending different Accept headers that match the same handler share its cached response.
+	 *
+	 * @throws Exception
+	 *             exception
+	 */
+	@Test
+	public void testAcceptSharesEntry() throws Exception {
+		final String json = this.send("GET", "/reports/1?region=east", "Accept", "application/json").getBody();
+		Assert.assertEquals(json, this.send("GET", "/reports/1?region=east", "Accept", "*/*").getBody());
+		Assert.assertEquals(json, this.send("GET", "/reports/1?region=east", "Accept",
+				"text/html,application/xhtml+xml,application/json;q=0.9,*/*;q=0.8").getBody());
+
+		Assert.assertEquals(1, this.invocations.get());
+	}
+
+	/**
+	 * Verify a repeated request is answered from the cache.
+	 *
+	 * @throws Exception
+	 *             exception
+	 */
+	@Test
+	public void testHit() throws Exception {
+		final MockHttpServletResponse first = this.send("GET", "/reports/1?region=east");
+		final MockHttpServletResponse second = this.send("GET", "/reports/1?region=east");
+
+		Assert.assertEquals(1, this.invocations.get());
+		Assert.assertEquals(first.getBody(), second.getBody());
+		Assert.assertTrue(second.getBody().startsWith("[\"1-east-null\""));
+		Assert.assertEquals(MediaType.JSON.getTypeString(), second.getContentType());
+		Assert.assertEquals(second.getBodyBytes().length, second.getContentLength());
+		Assert.assertEquals(first.getHeader("ETag"), second.getHeader("ETag"));
+	}
+
+	/**
+	 * Verify path params and varyBy params select responses, while other params and methods are not cached.
+	 *
+	 * @throws Exception
+	 *             exception
+	 */
+	@Test
+	public void testKey() throws Exception {
+		this.send("GET", "/reports/1?region=east");
+		this.send("GET", "/reports/2?region=east");
+		this.send("GET", "/reports/1?region=west");
+		this.send("GET", "/reports/1");
+		Assert.assertEquals(4, this.invocations.get());
+
+		Assert.assertTrue(this.send("GET", "/reports/1?region=east&other=x").getBody().contains("1-east-null"));
+		Assert.assertEquals(4, this.invocations.get());
+
+		this.send("POST", "/reports/1?region=east");
+		this.send("POST", "/reports/1?region=east");
+		Assert.assertEquals(6, this.invocations.get());
+	}
+
+	/**
+	 * Verify a response is captured again once its ttl passes.
+	 *
+	 * @throws Exception
+	 *             exception
+	 */
+	@Test
+	public void testExpired() throws Exception {
+		this.send("GET", "/short");
+		Thread.sleep(10);
+		Assert.assertEquals("\"short\"", this.send("GET", "/short").getBody());
+		Assert.assertEquals(2, this.invocations.get());
+	}
+
+	/**
+	 * Verify responses other than 200 are not kept.
+	 *
+	 * @throws Exception
+	 *             exception
+	 */
+	@Test
+	public void testNotCached() throws Exception {
+		Assert.assertEquals(HttpServletResponse.SC_NOT_FOUND, this.send("GET", "/missing").getStatus());
+		Assert.assertEquals(HttpServletResponse.SC_NOT_FOUND, this.send("GET", "/missing").getStatus());
+		Assert.assertEquals(2, this.invocations.get());
+	}
+
+	/**
+	 * Verify a cached response is compressed or answered with a 304 for each request.
+	 *
+	 * @throws Exception
+	 *             exception
+	 */
+	@Test
+	public void testCompressedAndConditional() throws Exception {
+		final MockHttpServletResponse plain = this.send("GET", "/reports/1?region=east");
+		final MockHttpServletResponse gzipped = this.send("GET", "/reports/1?region=east", "Accept-Encoding", "gzip");
+
+		Assert.assertEquals("gzip", gzipped.getHeader("Content-Encoding"));
+		Assert.assertEquals("W/" + plain.getHeader("ETag"), gzipped.getHeader("ETag"));
+		final GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped.getBodyBytes()));
+		final byte[] body = new byte[plain.getBodyBytes().length + 1];
+		int length = 0;
+		int read;
+		while ((read = in.read(body, length, body.length - length)) > 0) {
+			length += read;
+		}
+		Assert.assertEquals(plain.getBody(), new String(body, 0, length, "ISO-8859-1"));
+
+		final MockHttpServletResponse notModified = this.send("GET", "/reports/1?region=east", "If-None-Match",
+				gzipped.getHeader("ETag"));
+		Assert.assertEquals(HttpServletResponse.SC_NOT_MODIFIED, notModified.getStatus());
+		Assert.assertEquals(0, notModified.getBodyBytes().length);
+		Assert.assertEquals(1, this.invocations.get());
+	}
+
+	/**
+	 * Verify concurrent requests for a response that is not cached call the handler once.
+	 *
+	 * @throws Exception
+	 *             exception
+	 */
+	@Test
+	public void testCoalesced() throws Exception {
+		this.release = new CountDownLatch(1);
+		final List<Thread> threads = new ArrayList<Thread>();
+		final List<String> bodies = new ArrayList<String>();
+		for (int i = 0; i < 8; i++) {
+			threads.add(new Thread() {
+				@Override
+				public void run() {
+					try {
+						final String body = ResponseCacheTest.this.send("GET", "/reports/9?region=north").getBody();
+						synchronized (bodies) {
+							bodies.add(body);
+						}
+					} catch (final Exception e) {
+						throw new IllegalStateException(e);
+					}
+				}
+			});
+		}
+		for (final Thread thread : threads) {
+			thread.start();
+		}
+		while (this.invocations.get() == 0) {
+			Thread.sleep(1);
+		}
+		Thread.sleep(50);
+		this.release.countDown();
+		for (final Thread thread : threads) {
+			thread.join(5000);
+		}
+
+		Assert.assertEquals(1, this.invocations.get());
+		Assert.assertEquals(8, bodies.size());
+		for (final String body : bodies) {
+			Assert.assertEquals(bodies.get(0), body);
+		}
+	}
+
+	/**
+	 * Verify the cache keeps no more than its maximum number of responses.
+	 *
+	 * @throws Exception
+	 *             exception
+	 */
+	@Test
+	public void testBounded() throws Exception {
+		final Method method = CachingController.class.getMethod("getReport", String.class, String.class,
+				String.class);
+		final RequestDefinition requestDefinition = new RequestDefinitionBuilder()
+				.parseHandler(method.getAnnotation(HandleRequest.class), method);
+		requestDefinition.setInvoker(new HandlerInvoker(new CachingController(), requestDefinition));
+		final ResponseCache responseCache = new ResponseCache(method.getAnnotation(CacheResponse.class));
+
+		for (int i = 0; i < 20; i++) {
+			final MockHttpServletRequest request = new MockHttpServletRequest();
+			request.setMethod("GET");
+			request.setRequestURI("/reports/" + i);
+			responseCache.respond(new RequestInfoBuilder().parseRequest(request, new MockHttpServletResponse()),
+					requestDefinition);
+			Assert.assertTrue(responseCache.size() <= 4);
+		}
+		Assert.assertEquals(20, this.invocations.get());
+	}
+
+	/**
+	 * Verify a full cache drops the least recently used response rather than one that is still being requested.
+	 *
+	 * @throws Exception
+	 *             exception
+	 */
+	@Test
+	public void testLeastRecentlyUsedEvicted() throws Exception {
+		final Method method = CachingController.class.getMethod("getReport", String.class, String.class,
+				String.class);
+		final RequestDefinition requestDefinition = new RequestDefinitionBuilder()
+				.parseHandler(method.getAnnotation(HandleRequest.class), method);
+		requestDefinition.setInvoker(new HandlerInvoker(new CachingController(), requestDefinition));
+		final ResponseCache responseCache = new ResponseCache(method.getAnnotation(CacheResponse.class));
+
+		for (int i = 0; i < 20; i++) {
+			for (final String id : new String[] { "hot", String.valueOf(i) }) {
+				final MockHttpServletRequest request = new MockHttpServletRequest();
+				request.setMethod("GET");
+				request.setRequestURI("/reports/" + id);
+				responseCache.respond(
+						new RequestInfoBuilder().parseRequest(request, new MockHttpServletResponse()),
+						requestDefinition);
+			}
+		}
+		Assert.assertEquals(21, this.invocations.get());
+		Assert.assertEquals(4, responseCache.size());
+	}
+}
@@ -0,0 +1,315 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.http.request;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.relib.http.MediaType;
+import org.relib.http.MockHttpServletRequest;
+import org.relib.http.MockHttpServletResponse;
+import org.relib.http.ResponseCompression;
+import org.relib.http.json.Json;
+
+/**
+ * Tests the {@link ResponseGeneratorForCompression}.
+ *
+ * @author Troy Histed
+ */
+public class ResponseGeneratorForCompressionTest {
+
+	private static final int GZIP_HEADER_LENGTH = 10;
+
+	private MockHttpServletRequest request;
+	private MockHttpServletResponse response;
+	private final ResponseGenerator responseGenerator = new ResponseGeneratorForCompression(
+			new ResponseGeneratorForJson());
+
+	/**
+	 * Reinitialize.
+	 */
+	@Before
+	public void setup() {
+		this.request = new MockHttpServletRequest();
+		this.response = new MockHttpServletResponse();
+	}
+
+	/**
+	 * Restore the default settings.
+	 */
+	@After
+	public void tearDown() {
+		ResponseCompression.setEnabled(true);
+		ResponseCompression.setThreshold(ResponseCompression.DEFAULT_THRESHOLD);
+	}
+
+	/**
+	 * Builds a value whose json is larger than the given number of characters.
+	 *
+	 * @param size
+	 *            the number of values
+	 * @return the value
+	 */
+	private Integer[] value(int size) {
+		final Integer[] value = new Integer[size];
+		for (int i = 0; i < value.length; i++) {
+			value[i] = Integer.valueOf(i % 100);
+		}
+		return value;
+	}
+
+	/**
+	 * Reads a stream fully.
+	 *
+	 * @param in
+	 *            the stream
+	 * @return the contents decoded as ISO-8859-1
+	 * @throws IOException
+	 *             exception
+	 */
+	private String read(InputStream in) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[1024];
+		int read;
+		while ((read = in.read(buffer)) >= 0) {
+			out.write(buffer, 0, read);
+		}
+		return out.toString("ISO-8859-1");
+	}
+
+	/**
+	 * Inflates a compressed body, checking that nothing follows the compressed data but the expected trailer.
+	 *
+	 * @param body
+	 *            the body
+	 * @param offset
+	 *            the length of the header before the compressed data
+	 * @param nowrap
+	 *            true for raw deflate data
+	 * @param trailer
+	 *            the number of bytes expected after the compressed data
+	 * @return the inflated body decoded as ISO-8859-1
+	 * @throws DataFormatException
+	 *             exception
+	 * @throws IOException
+	 *             exception
+	 */
+	private String inflate(byte[] body, int offset, boolean nowrap, int trailer)
+			throws DataFormatException, IOException {
+		final Inflater inflater = new Inflater(nowrap);
+		try {
+			inflater.setInput(body, offset, body.length - offset);
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[1024];
+			while (!inflater.finished()) {
+				final int inflated = inflater.inflate(buffer);
+				if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					Assert.fail("Compressed data is incomplete");
+				}
+				out.write(buffer, 0, inflated);
+			}
+			Assert.assertEquals(trailer, inflater.getRemaining());
+			return out.toString("ISO-8859-1");
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * Verify the encoding is chosen from the Accept-Encoding header by quality.
+	 */
+	@Test
+	public void testChooseEncoding() {
+		Assert.assertEquals("gzip", CompressingResponse.chooseEncoding("gzip, deflate, br"));
+		Assert.assertEquals("deflate", CompressingResponse.chooseEncoding("gzip;q=0.5, deflate"));
+		Assert.assertEquals("deflate", CompressingResponse.chooseEncoding("gzip;q=0, *"));
+		Assert.assertEquals("gzip", CompressingResponse.chooseEncoding("*"));
+		Assert.assertNull(CompressingResponse.chooseEncoding("identity"));
+		Assert.assertNull(CompressingResponse.chooseEncoding("*;q=0"));
+		Assert.assertNull(CompressingResponse.chooseEncoding(null));
+	}
+
+	/**
+	 * Verify a body over the threshold is gzipped.
+	 *
+	 * @throws IOException
+	 *             exception
+	 */
+	@Test
+	public void testGzip() throws DataFormatException, IOException {
+		this.request.setHeader("Accept-Encoding", "gzip, deflate");
+		final Integer[] value = this.value(1000);
+
+		this.responseGenerator.generateResponse(this.request, this.response, value);
+
+		Assert.assertEquals("gzip", this.response.getHeader("Content-Encoding"));
+		Assert.assertEquals("Accept-Encoding", this.response.getHeader("Vary"));
+		Assert.assertEquals(0, this.response.getContentLength());
+		final byte[] body = this.response.getBodyBytes();
+		Assert.assertTrue(body.length < Json.toJson(value).length() / 2);
+		Assert.assertEquals(Json.toJson(value),
+				this.read(new GZIPInputStream(new ByteArrayInputStream(body))));
+		// Only the CRC and length follow the compressed data
+		Assert.assertEquals(Json.toJson(value),
+				this.inflate(body, ResponseGeneratorForCompressionTest.GZIP_HEADER_LENGTH, true, 8));
+	}
+
+	/**
+	 * Verify a body over the threshold is deflated.
+	 *
+	 * @throws IOException
+	 *             exception
+	 */
+	@Test
+	public void testDeflate() throws DataFormatException, IOException {
+		this.request.setHeader("Accept-Encoding", "deflate");
+		final Integer[] value = this.value(1000);
+
+		this.responseGenerator.generateResponse(this.request, this.response, value);
+
+		Assert.assertEquals("deflate", this.response.getHeader("Content-Encoding"));
+		Assert.assertEquals(Json.toJson(value),
+				this.read(new InflaterInputStream(new ByteArrayInputStream(this.response.getBodyBytes()))));
+		Assert.assertEquals(Json.toJson(value), this.inflate(this.response.getBodyBytes(), 0, false, 0));
+	}
+
+	/**
+	 * Verify a streamed body is compressed in flushed chunks.
+	 *
+	 * @throws IOException
+	 *             exception
+	 */
+	@Test
+	public void testStreamed() throws DataFormatException, IOException {
+		this.request.setHeader("Accept-Encoding", "gzip");
+		final Integer[] value = this.value(50000);
+
+		this.responseGenerator.generateResponse(this.request, this.response, value);
+
+		Assert.assertTrue(this.response.getFlushCount() > 1);
+		Assert.assertEquals(Json.toJson(value),
+				this.read(new GZIPInputStream(new ByteArrayInputStream(this.response.getBodyBytes()))));
+		final byte[] body = this.response.getBodyBytes();
+		Assert.assertEquals(Json.toJson(value),
+				this.inflate(body, ResponseGeneratorForCompressionTest.GZIP_HEADER_LENGTH, true, 8));
+	}
+
+	/**
+	 * Verify the Deflater is released and nothing more is written when building the response fails.
+	 *
+	 * @throws IOException
+	 *             exception
+	 */
+	@Test
+	public void testGeneratorFails() throws IOException {
+		this.request.setHeader("Accept-Encoding", "gzip");
+		final CompressingResponse[] compressing = new CompressingResponse[1];
+		final ResponseGenerator failing = new ResponseGeneratorForCompression(new ResponseGenerator() {
+			public void generateResponse(HttpServletRequest request, HttpServletResponse response, Object value) {
+				compressing[0] = (CompressingResponse) response;
+				response.setContentType(MediaType.JSON.getTypeString());
+				try {
+					response.getOutputStream().write(new byte[ResponseCompression.DEFAULT_THRESHOLD * 2]);
+				} catch (final IOException e) {
+					throw new IllegalStateException(e);
+				}
+				throw new IllegalArgumentException("failed");
+			}
+		});
+
+		try {
+			failing.generateResponse(this.request, this.response, null);
+			Assert.fail("Expected failure");
+		} catch (final IllegalArgumentException e) {
+			Assert.assertEquals("failed", e.getMessage());
+		}
+		Assert.assertFalse(compressing[0].isCompressing());
+		final int length = this.response.getBodyBytes().length;
+		try {
+			compressing[0].getOutputStream().write(1);
+			Assert.fail("Expected the body to be ended");
+		} catch (final IOException e) {
+			Assert.assertEquals(length, this.response.getBodyBytes().length);
+		}
+	}
+
+	/**
+	 * Verify a body under the threshold is sent as it is with its length.
+	 */
+	@Test
+	public void testUnderThreshold() {
+		this.request.setHeader("Accept-Encoding", "gzip");
+
+		this.responseGenerator.generateResponse(this.request, this.response, this.value(10));
+
+		Assert.assertNull(this.response.getHeader("Content-Encoding"));
+		Assert.assertEquals(Json.toJson(this.value(10)), this.response.getBody());
+		Assert.assertEquals(Json.toJson(this.value(10)).length(), this.response.getContentLength());
+	}
+
+	/**
+	 * Verify nothing is compressed when the request does not accept it or compression is disabled.
+	 */
+	@Test
+	public void testNotCompressed() {
+		this.responseGenerator.generateResponse(this.request, this.response, this.value(1000));
+		Assert.assertNull(this.response.getHeader("Content-Encoding"));
+		Assert.assertEquals(Json.toJson(this.value(1000)), this.response.getBody());
+
+		ResponseCompression.setEnabled(false);
+		this.request.setHeader("Accept-Encoding", "gzip");
+		this.response = new MockHttpServletResponse();
+		this.responseGenerator.generateResponse(this.request, this.response, this.value(1000));
+		Assert.assertNull(this.response.getHeader("Content-Encoding"));
+	}
+
+	/**
+	 * Verify a content type that is not compressible is sent as it is.
+	 */
+	@Test
+	public void testNotCompressible() {
+		this.request.setHeader("Accept-Encoding", "gzip");
+		final byte[] pdf = new byte[4096];
+		final ResponseGenerator generator = new ResponseGeneratorForCompression(new ResponseGenerator() {
+			public void generateResponse(HttpServletRequest request, HttpServletResponse response, Object value) {
+				response.setContentType(MediaType.PDF.getTypeString());
+				try {
+					response.getOutputStream().write(pdf);
+				} catch (final IOException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		});
+
+		generator.generateResponse(this.request, this.response, null);
+
+		Assert.assertNull(this.response.getHeader("Content-Encoding"));
+		Assert.assertEquals(pdf.length, this.response.getBodyBytes().length);
+	}
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.http.request;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.relib.http.MockHttpServletRequest;
+import org.relib.http.MockHttpServletResponse;
+
+/**
+ * Tests the {@link ResponseGeneratorForETag}.
+ *
+ * @author Troy Histed
+ */
+public class ResponseGeneratorForETagTest {
+
+	private MockHttpServletRequest request;
+	private MockHttpServletResponse response;
+	private final ResponseGenerator responseGenerator = new ResponseGeneratorForETag();
+
+	/**
+	 * Reinitialize.
+	 */
+	@Before
+	public void setup() {
+		this.request = new MockHttpServletRequest();
+		this.request.setMethod("GET");
+		this.response = new MockHttpServletResponse();
+	}
+
+	/**
+	 * Generates a response to a fresh request and response.
+	 *
+	 * @param value
+	 *            the value
+	 * @return the ETag of the response
+	 */
+	private String etag(Object value) {
+		final MockHttpServletRequest getRequest = new MockHttpServletRequest();
+		getRequest.setMethod("GET");
+		final MockHttpServletResponse getResponse = new MockHttpServletResponse();
+		this.responseGenerator.generateResponse(getRequest, getResponse, value);
+		return getResponse.getHeader("ETag");
+	}
+
+	/**
+	 * Verify the ETag is strong and follows the json.
+	 */
+	@Test
+	public void testETag() {
+		final String etag = this.etag(new int[] { 1, 2, 3 });
+
+		Assert.assertTrue(etag, etag.matches("\"[0-9a-f]{16}\""));
+		Assert.assertEquals(etag, this.etag(new int[] { 1, 2, 3 }));
+		Assert.assertFalse(etag.equals(this.etag(new int[] { 1, 2, 4 })));
+		Assert.assertFalse(this.etag("\u0100").equals(this.etag("\u0001")));
+	}
+
+	/**
+	 * Verify a matching If-None-Match is answered with a 304 and no body.
+	 */
+	@Test
+	public void testNotModified() {
+		final int[] value = { 1, 2, 3 };
+		this.request.setHeader("If-None-Match", "\"0000000000000000\", " + this.etag(value));
+
+		this.responseGenerator.generateResponse(this.request, this.response, value);
+
+		Assert.assertEquals(HttpServletResponse.SC_NOT_MODIFIED, this.response.getStatus());
+		Assert.assertEquals("", this.response.getBody());
+		Assert.assertEquals(this.etag(value), this.response.getHeader("ETag"));
+	}
+
+	/**
+	 * Verify a weak If-None-Match, as sent back for a compressed body, still matches.
+	 */
+	@Test
+	public void testWeakMatch() {
+		final int[] value = { 1, 2, 3 };
+		this.request.setHeader("If-None-Match", "W/" + this.etag(value));
+
+		this.responseGenerator.generateResponse(this.request, this.response, value);
+
+		Assert.assertEquals(HttpServletResponse.SC_NOT_MODIFIED, this.response.getStatus());
+	}
+
+	/**
+	 * Verify a stale If-None-Match gets the body.
+	 */
+	@Test
+	public void testModified() {
+		this.request.setHeader("If-None-Match", this.etag(new int[] { 1 }));
+
+		this.responseGenerator.generateResponse(this.request, this.response, new int[] { 2 });
+
+		Assert.assertEquals(HttpServletResponse.SC_OK, this.response.getStatus());
+		Assert.assertEquals("[2]", this.response.getBody());
+	}
+
+	/**
+	 * Verify requests other than GET and HEAD get no ETag.
+	 */
+	@Test
+	public void testPost() {
+		this.request.setMethod("POST");
+		this.request.setHeader("If-None-Match", "*");
+
+		this.responseGenerator.generateResponse(this.request, this.response, new int[] { 2 });
+
+		Assert.assertNull(this.response.getHeader("ETag"));
+		Assert.assertEquals("[2]", this.response.getBody());
+	}
+
+	/**
+	 * Verify the ETag of a compressed body is made weak and a 304 is sent without compressing.
+	 */
+	@Test
+	public void testCompressed() {
+		final ResponseGenerator compressing = new ResponseGeneratorForCompression(this.responseGenerator);
+		final int[] value = new int[1000];
+		this.request.setHeader("Accept-Encoding", "gzip");
+
+		compressing.generateResponse(this.request, this.response, value);
+		final String etag = this.response.getHeader("ETag");
+		Assert.assertEquals("gzip", this.response.getHeader("Content-Encoding"));
+		Assert.assertEquals("W/" + this.etag(value), etag);
+
+		this.request.setHeader("If-None-Match", etag);
+		this.response = new MockHttpServletResponse();
+		compressing.generateResponse(this.request, this.response, value);
+		Assert.assertEquals(HttpServletResponse.SC_NOT_MODIFIED, this.response.getStatus());
+		Assert.assertNull(this.response.getHeader("Content-Encoding"));
+		Assert.assertEquals(0, this.response.getBodyBytes().length);
+	}
+
+	/**
+	 * Verify the value is converted to json once.
+	 */
+	@Test
+	public void testSerializedOnce() {
+		final CountingBean bean = new CountingBean();
+
+		this.responseGenerator.generateResponse(this.request, this.response, bean);
+
+		Assert.assertEquals(1, bean.reads);
+		Assert.assertNotNull(this.response.getHeader("ETag"));
+	}
+
+	/**
+	 * Verify a body too large for the buffer is streamed without an ETag.
+	 */
+	@Test
+	public void testStreamedWithoutETag() {
+		final int[] value = new int[JsonResponseWriter.BUFFER_SIZE];
+
+		this.responseGenerator.generateResponse(this.request, this.response, value);
+
+		Assert.assertNull(this.response.getHeader("ETag"));
+		Assert.assertEquals(HttpServletResponse.SC_OK, this.response.getStatus());
+		Assert.assertTrue(this.response.getBody().length() > JsonResponseWriter.BUFFER_SIZE);
+	}
+
+	/**
+	 * Bean that counts reads of its property.
+	 */
+	public static class CountingBean {
+
+		private int reads;
+
+		/**
+		 * @return the value
+		 */
+		public String getValue() {
+			this.reads++;
+			return "value";
+		}
+	}
+}
@@ -0,0 +1,240 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.http.request;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.relib.http.MockHttpServletRequest;
+import org.relib.http.MockHttpServletResponse;
+
+/**
+ * Tests the {@link ResponseGeneratorForFuture}.
+ *
+ * @author Troy Histed
+ */
+public class ResponseGeneratorForFutureTest {
+
+	private MockHttpServletRequest request;
+	private MockHttpServletResponse response;
+
+	/**
+	 * Reinitialize.
+	 */
+	@Before
+	public void setup() {
+		this.request = new MockHttpServletRequest();
+		this.request.setMethod("GET");
+		this.response = new MockHttpServletResponse();
+	}
+
+	/**
+	 * Verify a completed result is written as json.
+	 */
+	@Test
+	public void testCompleted() {
+		new ResponseGeneratorForFuture(new ResponseGeneratorForJson(), 1000, true).generateResponse(this.request,
+				this.response, CompletableFuture.completedFuture(new int[] { 1, 2 }));
+
+		Assert.assertEquals(HttpServletResponse.SC_OK, this.response.getStatus());
+		Assert.assertEquals("[1, 2]", this.response.getBody());
+	}
+
+	/**
+	 * Verify a plain Future is waited on.
+	 */
+	@Test
+	public void testFuture() throws Exception {
+		final FutureTask<String> future = new FutureTask<String>(new Runnable() {
+			public void run() {
+				// nothing to do
+			}
+		}, "done");
+		new Thread(future).start();
+
+		new ResponseGeneratorForFuture(new ResponseGeneratorForJson(), 1000, true).generateResponse(this.request,
+				this.response, future);
+
+		Assert.assertEquals("\"done\"", this.response.getBody());
+	}
+
+	/**
+	 * Verify a result that takes too long is answered with a 503 and cancelled.
+	 */
+	@Test
+	public void testTimeout() {
+		final CompletableFuture<String> future = new CompletableFuture<String>();
+
+		new ResponseGeneratorForFuture(new ResponseGeneratorForJson(), 10, true).generateResponse(this.request,
+				this.response, future);
+
+		Assert.assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, this.response.getStatus());
+		Assert.assertEquals("", this.response.getBody());
+		Assert.assertTrue(future.isCancelled());
+	}
+
+	/**
+	 * Verify a failed result is thrown to the container.
+	 */
+	@Test
+	public void testFailed() {
+		final CompletableFuture<String> future = new CompletableFuture<String>();
+		future.completeExceptionally(new IllegalArgumentException("bad"));
+
+		try {
+			new ResponseGeneratorForFuture(new ResponseGeneratorForJson(), 1000, true).generateResponse(this.request,
+					this.response, future);
+			Assert.fail("Expected failure");
+		} catch (final IllegalStateException e) {
+			Assert.assertTrue(e.getCause() instanceof IllegalArgumentException);
+		}
+	}
+
+	/**
+	 * Verify the container thread is released when async processing is available.
+	 */
+	@Test
+	public void testAsync() throws Exception {
+		final MockAsyncRequest asyncRequest = new MockAsyncRequest();
+		final CompletableFuture<String> future = new CompletableFuture<String>();
+
+		new ResponseGeneratorForFuture(new ResponseGeneratorForJson(), 1000, true).generateResponse(asyncRequest,
+				this.response, future);
+
+		Assert.assertEquals(0L, asyncRequest.context.timeout);
+		Assert.assertEquals(1, asyncRequest.context.completed.getCount());
+		Assert.assertEquals("", this.response.getBody());
+
+		future.complete("later");
+
+		Assert.assertTrue(asyncRequest.context.completed.await(1, TimeUnit.SECONDS));
+		Assert.assertEquals("\"later\"", this.response.getBody());
+	}
+
+	/**
+	 * Verify an async result that takes too long is answered with a 503 and completed.
+	 */
+	@Test
+	public void testAsyncTimeout() throws Exception {
+		final MockAsyncRequest asyncRequest = new MockAsyncRequest();
+		final CompletableFuture<String> future = new CompletableFuture<String>();
+
+		new ResponseGeneratorForFuture(new ResponseGeneratorForJson(), 10, true).generateResponse(asyncRequest,
+				this.response, future);
+
+		Assert.assertTrue(asyncRequest.context.completed.await(1, TimeUnit.SECONDS));
+		Assert.assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, this.response.getStatus());
+		Assert.assertTrue(future.isCancelled());
+
+		future.complete("too late");
+		Assert.assertEquals("", this.response.getBody());
+	}
+
+	/**
+	 * Verify the request waits when async processing is not allowed for the generator.
+	 */
+	@Test
+	public void testAsyncNotAllowed() {
+		final MockAsyncRequest asyncRequest = new MockAsyncRequest();
+
+		new ResponseGeneratorForFuture(new ResponseGeneratorForJson(), 1000, false).generateResponse(asyncRequest,
+				this.response, CompletableFuture.completedFuture("now"));
+
+		Assert.assertNull(asyncRequest.context);
+		Assert.assertEquals("\"now\"", this.response.getBody());
+	}
+
+	/**
+	 * Request with the Servlet 3 async methods.
+	 */
+	public static class MockAsyncRequest extends MockHttpServletRequest {
+
+		private MockAsyncContext context;
+
+		/**
+		 * @return true
+		 */
+		public boolean isAsyncSupported() {
+			return true;
+		}
+
+		/**
+		 * @return a new context
+		 */
+		public MockAsyncContext startAsync() {
+			this.context = new MockAsyncContext();
+			return this.context;
+		}
+
+		/**
+		 * @return true once async processing has started
+		 */
+		public boolean isAsyncStarted() {
+			return this.context != null;
+		}
+
+		/**
+		 * @return the started context, or null
+		 */
+		public MockAsyncContext getAsyncContext() {
+			return this.context;
+		}
+	}
+
+	/**
+	 * Context with the Servlet 3 AsyncContext methods used.
+	 */
+	public static class MockAsyncContext {
+
+		private final CountDownLatch completed = new CountDownLatch(1);
+		private long timeout = -1;
+
+		/**
+		 * @param timeout
+		 *            the timeout
+		 */
+		public void setTimeout(long timeout) {
+			this.timeout = timeout;
+		}
+
+		/**
+		 * Completes the request.
+		 */
+		public void complete() {
+			this.completed.countDown();
+		}
+
+		/**
+		 * @param wait
+		 *            the time to wait
+		 * @param unit
+		 *            the unit of the wait
+		 * @return true if the request was completed
+		 * @throws InterruptedException
+		 *             exception
+		 */
+		public boolean await(long wait, TimeUnit unit) throws InterruptedException {
+			return this.completed.await(wait, unit);
+		}
+	}
+}
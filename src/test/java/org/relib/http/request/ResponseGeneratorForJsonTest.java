@@ -0,0 +1,113 @@
+/**
+ * Copyright 2016 Troy Histed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.relib.http.request;
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.relib.http.MediaType;
+import org.relib.http.MockHttpServletRequest;
+import org.relib.http.MockHttpServletResponse;
+import org.relib.http.json.Json;
+
+/**
+ * Tests the {@link ResponseGeneratorForJson}.
+ *
+ * @author Troy Histed
+ */
+public class ResponseGeneratorForJsonTest {
+
+	private MockHttpServletRequest request;
+	private MockHttpServletResponse response;
+	private final ResponseGeneratorForJson responseGenerator = new ResponseGeneratorForJson();
+
+	/**
+	 * Reinitialize.
+	 */
+	@Before
+	public void setup() {
+		this.request = new MockHttpServletRequest();
+		this.response = new MockHttpServletResponse();
+	}
+
+	/**
+	 * Verify a body that fits in the buffer is sent with a Content-Length.
+	 */
+	@Test
+	public void testContentLength() {
+		final String[] value = { "a", "b" };
+
+		this.responseGenerator.generateResponse(this.request, this.response, value);
+
+		Assert.assertEquals(MediaType.JSON.getTypeString(), this.response.getContentType());
+		Assert.assertEquals("[\"a\", \"b\"]", this.response.getBody());
+		Assert.assertEquals(10, this.response.getContentLength());
+	}
+
+	/**
+	 * Verify the Content-Length counts bytes in the response's character encoding.
+	 */
+	@Test
+	public void testContentLengthEncoded() {
+		this.response.setCharacterEncoding("UTF-8");
+
+		this.responseGenerator.generateResponse(this.request, this.response, "caf\u00e9");
+
+		Assert.assertEquals("\"caf\u00e9\"", this.response.getBody());
+		Assert.assertEquals(7, this.response.getContentLength());
+	}
+
+	/**
+	 * Verify a body larger than the buffer is streamed in flushed chunks without a Content-Length.
+	 */
+	@Test
+	public void testStreamed() {
+		final Integer[] value = new Integer[20000];
+		for (int i = 0; i < value.length; i++) {
+			value[i] = Integer.valueOf(i);
+		}
+
+		this.responseGenerator.generateResponse(this.request, this.response, value);
+
+		Assert.assertTrue(this.response.getFlushCount() > 1);
+		Assert.assertEquals(0, this.response.getContentLength());
+		Assert.assertEquals(Json.toJson(value), this.response.getBody());
+	}
+
+	/**
+	 * Verify characters written one at a time and in pieces straddling the buffer end arrive in order.
+	 *
+	 * @throws IOException
+	 *             exception
+	 */
+	@Test
+	public void testWriterBoundaries() throws IOException {
+		final StringBuilder expected = new StringBuilder();
+		final JsonResponseWriter writer = new JsonResponseWriter(this.response);
+		for (int i = 0; i < JsonResponseWriter.BUFFER_SIZE / 3; i++) {
+			writer.write('x');
+			writer.write("abcdefg", 1, 3);
+			expected.append("xbcd");
+		}
+		Assert.assertTrue(writer.isStreaming());
+		writer.close();
+		writer.close();
+
+		Assert.assertEquals(expected.toString(), this.response.getBody());
+	}
+}